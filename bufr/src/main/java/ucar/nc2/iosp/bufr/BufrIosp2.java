@@ -4,6 +4,7 @@
  */
 package ucar.nc2.iosp.bufr;
 
+import com.google.common.collect.ImmutableList;
 import java.io.IOException;
 import java.util.Formatter;
 import java.util.HashSet;
@@ -23,6 +24,7 @@ import ucar.nc2.Structure;
 import ucar.nc2.Variable;
 import ucar.nc2.constants.DataFormatType;
 import ucar.nc2.iosp.AbstractIOServiceProvider;
+import ucar.nc2.iosp.IospSignature;
 import ucar.nc2.util.CancelTask;
 import ucar.unidata.io.RandomAccessFile;
 
@@ -34,6 +36,8 @@ import ucar.unidata.io.RandomAccessFile;
  */
 public class BufrIosp2 extends AbstractIOServiceProvider {
   private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(BufrIosp2.class);
+  // MessageScanner looks for "BUFR" in the first 40K
+  private static final List<IospSignature> signatures = ImmutableList.of(IospSignature.within("BUFR", 40 * 1000));
 
   public static final String obsRecordName = "obs";
   public static final String fxyAttName = "BUFR:TableB_descriptor";
@@ -59,6 +63,11 @@ public class BufrIosp2 extends AbstractIOServiceProvider {
     return MessageScanner.isValidFile(raf);
   }
 
+  @Override
+  public List<IospSignature> getSignatures() {
+    return signatures;
+  }
+
   @Override
   public boolean isBuilder() {
     return true;
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.grib.grib2;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import javax.imageio.ImageIO;
+import ucar.jpeg.jj2000.j2k.util.ParameterList;
+import ucar.unidata.io.RandomAccessFile;
+
+/**
+ * Time the decoding of the JPEG2000 and PNG images of GRIB2 templates 5.40 and 5.41.
+ * PNG: Grib2PngDecoder against ImageIO, on the records of the files and on a large synthetic greyscale grid.
+ * JPEG2000: the jj2000 decode, and the setup of its parameter list that used to be done for every record.
+ *
+ * <pre>
+ * TimeGrib2ImageDecode [file.grib2 ...]
+ * </pre>
+ */
+public class TimeGrib2ImageDecode {
+  private static final int repeat = 20;
+  private static long sink; // so the decoded values are used
+
+  public static void main(String[] args) throws IOException {
+    if (args.length == 0) {
+      args = new String[] {"../grib/src/test/data/pdsScale.pds1.grib2",
+          "../grib/src/test/data/pngEncoding/24-bit/MRMS_FLASH_HP_MAXUNITSTREAMFLOW_00.00_20210615-190000.grib2"};
+    }
+    for (String filename : args) {
+      timeFile(filename);
+    }
+    timePng("synthetic 16 bit 1440x721", syntheticPng(1440, 721));
+  }
+
+  private static void timeFile(String filename) throws IOException {
+    try (RandomAccessFile raf = new RandomAccessFile(filename, "r")) {
+      Grib2RecordScanner scan = new Grib2RecordScanner(raf);
+      int count = 0;
+      while (scan.hasNext() && count < 10) {
+        Grib2Record gr = scan.next();
+        int template = gr.getDataRepresentationSection().getDataTemplate();
+        if (template != 40 && template != 41)
+          continue;
+        Grib2SectionData ds = gr.getDataSection();
+        byte[] image = new byte[ds.getMsgLength() - 5];
+        raf.seek(ds.getStartingPosition() + 5);
+        raf.readFully(image);
+
+        String name = filename + " record " + count++;
+        if (template == 41) {
+          timePng(name, image);
+        } else {
+          Grib2Drs.Type0 drs = (Grib2Drs.Type0) gr.getDataRepresentationSection().getDrs(raf);
+          timeJpeg2000(name, image, drs.numberOfBits);
+        }
+      }
+    }
+  }
+
+  private static void timePng(String name, byte[] png) throws IOException {
+    long imageio = 0, direct = 0;
+    for (int i = 0; i < repeat; i++) {
+      long start = System.nanoTime();
+      WritableRaster raster = ImageIO.read(new ByteArrayInputStream(png)).getRaster();
+      DataBuffer db = raster.getDataBuffer();
+      for (int j = 0; j < db.getSize(); j++)
+        sink += db.getElem(j);
+      imageio += System.nanoTime() - start;
+
+      start = System.nanoTime();
+      Grib2PngDecoder decoder = Grib2PngDecoder.open(png);
+      int[] values = new int[(int) decoder.getNumPixels()];
+      decoder.decode(values);
+      for (int value : values)
+        sink += value;
+      direct += System.nanoTime() - start;
+    }
+    System.out.printf("PNG %s (%d bytes): ImageIO %.2f msecs, Grib2PngDecoder %.2f msecs%n", name, png.length,
+        imageio / 1e6 / repeat, direct / 1e6 / repeat);
+  }
+
+  private static void timeJpeg2000(String name, byte[] j2k, int nbits) throws IOException {
+    long decode = 0, setup = 0;
+    for (int i = 0; i < repeat; i++) {
+      long start = System.nanoTime();
+      Grib2JpegDecoder g2j = new Grib2JpegDecoder(nbits, false);
+      g2j.decode(j2k);
+      decode += System.nanoTime() - start;
+
+      // what each decoder did before the default parameters were shared
+      start = System.nanoTime();
+      ParameterList defpl = new ParameterList();
+      String[][] param = Grib2JpegDecoder.getAllParameters();
+      for (int p = param.length - 1; p >= 0; p--) {
+        if (param[p][3] != null)
+          defpl.put(param[p][0], param[p][3]);
+      }
+      setup += System.nanoTime() - start;
+    }
+    System.out.printf("JPEG2000 %s (%d bytes): decode %.3f msecs, per record setup no longer done %.3f msecs%n", name,
+        j2k.length, decode / 1e6 / repeat, setup / 1e6 / repeat);
+  }
+
+  private static byte[] syntheticPng(int width, int height) throws IOException {
+    BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_USHORT_GRAY);
+    WritableRaster raster = image.getRaster();
+    Random random = new Random(42);
+    int[] row = new int[width];
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++)
+        row[x] = (int) (30000 + 20000 * Math.sin(x / 50.0) * Math.cos(y / 40.0)) + random.nextInt(16);
+      raster.setPixels(0, y, width, 1, row);
+    }
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ImageIO.write(image, "png", out);
+    return out.toByteArray();
+  }
+}
@@ -5,6 +5,8 @@
 
 package ucar.nc2;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Lists;
 import java.io.BufferedInputStream;
 import java.io.ByteArrayOutputStream;
@@ -27,15 +29,16 @@ import java.util.zip.GZIPInputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 import javax.annotation.Nullable;
-import ucar.nc2.internal.iosp.netcdf3.N3headerNew;
 import ucar.nc2.internal.iosp.netcdf3.N3iospNew;
 import ucar.nc2.iosp.AbstractIOServiceProvider;
 import ucar.nc2.iosp.IOServiceProvider;
+import ucar.nc2.iosp.IospSignature;
 import ucar.nc2.util.CancelTask;
 import ucar.nc2.util.DiskCache;
 import ucar.nc2.util.EscapeStrings;
 import ucar.nc2.util.IO;
 import ucar.nc2.util.rc.RC;
+import ucar.unidata.io.InMemoryRandomAccessFile;
 import ucar.unidata.io.UncompressInputStream;
 import ucar.unidata.io.bzip2.CBZip2InputStream;
 import ucar.unidata.io.spi.RandomAccessFileProvider;
@@ -55,6 +58,9 @@ public class NetcdfFiles {
   private static final int default_buffersize = 8092;
   private static final StringLocker stringLocker = new StringLocker();
   private static final List<String> possibleCompressedSuffixes = Arrays.asList("Z", "zip", "gzip", "gz", "bz2");
+  private static final int signaturePrefixSize = 16 * 1024; // IOSP signatures are matched against this much
+  // location -> the IOSP that was found for it, while the file is not modified
+  private static final Cache<String, DetectedIosp> detectedIosps = CacheBuilder.newBuilder().maximumSize(1000).build();
   private static boolean loadWarnings = false;
   private static boolean userLoads;
 
@@ -156,6 +162,7 @@ public class NetcdfFiles {
       registeredProviders.add(0, spi); // put user stuff first
     else
       registeredProviders.add(spi);
+    detectedIosps.invalidateAll();
   }
 
   /**
@@ -777,54 +784,96 @@ public class NetcdfFiles {
     return ncfile;
   }
 
+  private static class DetectedIosp {
+    final long lastModified;
+    final Class<?> iospClass;
+
+    DetectedIosp(long lastModified, Class<?> iospClass) {
+      this.lastModified = lastModified;
+      this.iospClass = iospClass;
+    }
+  }
+
   @Nullable
   private static IOServiceProvider getIosp(ucar.unidata.io.RandomAccessFile raf) throws IOException {
     if (NetcdfFile.debugSPI)
       log.info("NetcdfFile try to open = {}", raf.getLocation());
 
-    // Registered providers override defaults.
-    for (IOServiceProvider registeredSpi : registeredProviders) {
-      if (NetcdfFile.debugSPI)
-        log.info(" try iosp = {}", registeredSpi.getClass().getName());
-
-      if (registeredSpi.isValidFile(raf)) {
-        // need a new instance for thread safety
-        Class c = registeredSpi.getClass();
-        try {
-          return (IOServiceProvider) c.newInstance();
-        } catch (InstantiationException e) {
-          throw new IOException("IOServiceProvider " + c.getName() + "must have no-arg constructor.");
-        } catch (IllegalAccessException e) {
-          throw new IOException("IOServiceProvider " + c.getName() + " IllegalAccessException: " + e.getMessage());
-        }
+    // reuse what was found the last time this file was opened, if it has not been modified since
+    long lastModified = (raf.isDirectory() || raf instanceof InMemoryRandomAccessFile) ? 0 : raf.getLastModified();
+    if (lastModified > 0) {
+      DetectedIosp detected = detectedIosps.getIfPresent(raf.getLocation());
+      if (detected != null && detected.lastModified == lastModified) {
+        return newIosp(detected.iospClass);
       }
     }
 
-    if (N3headerNew.isValidFile(raf)) {
-      return new N3iospNew();
+    IOServiceProvider spi = findIosp(raf);
+    if (spi != null && lastModified > 0) {
+      detectedIosps.put(raf.getLocation(), new DetectedIosp(lastModified, spi.getClass()));
+    }
+    return spi;
+  }
 
-    } else {
-      // look for dynamically loaded IOSPs, and sort before using
-      final ServiceLoader<IOServiceProvider> iosps = ServiceLoader.load(IOServiceProvider.class);
-      final List<IOServiceProvider> sortedIosps = Lists.newArrayList(iosps);
-      Collections.sort(sortedIosps);
-
-      for (IOServiceProvider loadedSpi : sortedIosps) {
-        if (loadedSpi.isValidFile(raf)) {
-          Class c = loadedSpi.getClass();
-          try {
-            return (IOServiceProvider) c.newInstance();
-          } catch (InstantiationException e) {
-            throw new IOException("IOServiceProvider " + c.getName() + "must have no-arg constructor.");
-          } catch (IllegalAccessException e) {
-            throw new IOException("IOServiceProvider " + c.getName() + " IllegalAccessException: " + e.getMessage());
-          }
-        }
+  /*
+   * The IOSPs are tried in order: registered providers override defaults, then netcdf3, then the dynamically loaded
+   * IOSPs, sorted. An IOSP that declares signatures is skipped if the start of the file cannot match any of them.
+   */
+  @Nullable
+  private static IOServiceProvider findIosp(ucar.unidata.io.RandomAccessFile raf) throws IOException {
+    byte[] prefix = new byte[signaturePrefixSize];
+    int prefixLength = 0;
+    long fileLength = 0;
+    if (!raf.isDirectory()) {
+      fileLength = raf.length();
+      prefixLength = (int) Math.min(fileLength, prefix.length);
+      raf.seek(0);
+      raf.readFully(prefix, 0, prefixLength);
+    }
+
+    List<IOServiceProvider> candidates = new ArrayList<>(registeredProviders);
+    candidates.add(new N3iospNew());
+    // look for dynamically loaded IOSPs, and sort before using
+    final ServiceLoader<IOServiceProvider> iosps = ServiceLoader.load(IOServiceProvider.class);
+    final List<IOServiceProvider> sortedIosps = Lists.newArrayList(iosps);
+    Collections.sort(sortedIosps);
+    candidates.addAll(sortedIosps);
+
+    for (IOServiceProvider candidate : candidates) {
+      if (!raf.isDirectory() && !mayMatch(candidate, prefix, prefixLength, fileLength))
+        continue;
+      if (NetcdfFile.debugSPI)
+        log.info(" try iosp = {}", candidate.getClass().getName());
+      if (candidate.isValidFile(raf)) {
+        return newIosp(candidate.getClass());
       }
     }
     return null;
   }
 
+  // false if the iosp declares signatures and the file cannot match any of them
+  private static boolean mayMatch(IOServiceProvider candidate, byte[] prefix, int prefixLength, long fileLength) {
+    List<IospSignature> signatures = candidate.getSignatures();
+    if (signatures.isEmpty())
+      return true;
+    for (IospSignature signature : signatures) {
+      if (signature.mayMatch(prefix, prefixLength, fileLength))
+        return true;
+    }
+    return false;
+  }
+
+  // need a new instance for thread safety
+  private static IOServiceProvider newIosp(Class<?> c) throws IOException {
+    try {
+      return (IOServiceProvider) c.newInstance();
+    } catch (InstantiationException e) {
+      throw new IOException("IOServiceProvider " + c.getName() + "must have no-arg constructor.");
+    } catch (IllegalAccessException e) {
+      throw new IOException("IOServiceProvider " + c.getName() + " IllegalAccessException: " + e.getMessage());
+    }
+  }
+
   public static NetcdfFile build(IOServiceProvider spi, ucar.unidata.io.RandomAccessFile raf, String location,
       ucar.nc2.util.CancelTask cancelTask) throws IOException {
 
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 1998-2021 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.dataset;
+
+import java.util.List;
+import java.util.stream.IntStream;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.nc2.filter.Enhancement;
+
+/**
+ * Applies a list of Enhancements to an Array in a single pass, reading the source primitive array and writing
+ * the converted type directly. Values are converted a block at a time through a small double buffer, so there is
+ * no boxing, and no intermediate double[] the size of the data. Large arrays are converted in parallel.
+ */
+class EnhanceConverter {
+  // arrays with at least this many elements are converted in parallel
+  static final int PARALLEL_THRESHOLD = 1 << 16;
+  private static final int BLOCK_SIZE = 4096;
+
+  private EnhanceConverter() {}
+
+  /**
+   * Convert the data.
+   *
+   * @param data source values, as returned by Array.getDouble()
+   * @param convertedType type of the result
+   * @param enhancements applied in order to each value
+   * @return new Array of convertedType, same shape as data
+   */
+  static Array convert(Array data, DataType convertedType, List<Enhancement> enhancements) {
+    Enhancement[] toApply = enhancements.toArray(new Enhancement[0]);
+    Object src = data.get1DJavaArray(data.getDataType()); // no copy if already in canonical order
+    if (!isPrimitiveNumeric(src)) {
+      src = data.get1DJavaArray(DataType.DOUBLE);
+    }
+    boolean unsigned = data.isUnsigned();
+    Array out = Array.factory(convertedType, data.getShape());
+    Object dst = out.getStorage();
+    int n = (int) data.getSize();
+
+    Object source = src;
+    if (n >= PARALLEL_THRESHOLD) {
+      int nblocks = (n + BLOCK_SIZE - 1) / BLOCK_SIZE;
+      IntStream.range(0, nblocks).parallel().forEach(b -> {
+        double[] buf = new double[BLOCK_SIZE];
+        int start = b * BLOCK_SIZE;
+        convertBlock(source, unsigned, dst, toApply, start, Math.min(n, start + BLOCK_SIZE), buf);
+      });
+    } else {
+      double[] buf = new double[Math.min(n, BLOCK_SIZE)];
+      for (int start = 0; start < n; start += BLOCK_SIZE) {
+        convertBlock(source, unsigned, dst, toApply, start, Math.min(n, start + BLOCK_SIZE), buf);
+      }
+    }
+    return out;
+  }
+
+  private static boolean isPrimitiveNumeric(Object src) {
+    return src instanceof double[] || src instanceof float[] || src instanceof long[] || src instanceof int[]
+        || src instanceof short[] || src instanceof byte[];
+  }
+
+  private static void convertBlock(Object src, boolean unsigned, Object dst, Enhancement[] toApply, int start,
+      int end, double[] buf) {
+    int len = end - start;
+    read(src, unsigned, start, len, buf);
+    for (Enhancement e : toApply) {
+      for (int i = 0; i < len; i++) {
+        buf[i] = e.convert(buf[i]);
+      }
+    }
+    write(buf, len, dst, start);
+  }
+
+  // same values as Array.getDouble()
+  private static void read(Object src, boolean unsigned, int start, int len, double[] buf) {
+    if (src instanceof double[]) {
+      System.arraycopy(src, start, buf, 0, len);
+    } else if (src instanceof float[]) {
+      float[] s = (float[]) src;
+      for (int i = 0; i < len; i++)
+        buf[i] = s[start + i];
+    } else if (src instanceof long[]) {
+      long[] s = (long[]) src;
+      for (int i = 0; i < len; i++)
+        buf[i] = s[start + i];
+    } else if (src instanceof int[]) {
+      int[] s = (int[]) src;
+      if (unsigned) {
+        for (int i = 0; i < len; i++)
+          buf[i] = s[start + i] & 0xffffffffL;
+      } else {
+        for (int i = 0; i < len; i++)
+          buf[i] = s[start + i];
+      }
+    } else if (src instanceof short[]) {
+      short[] s = (short[]) src;
+      if (unsigned) {
+        for (int i = 0; i < len; i++)
+          buf[i] = s[start + i] & 0xffff;
+      } else {
+        for (int i = 0; i < len; i++)
+          buf[i] = s[start + i];
+      }
+    } else {
+      byte[] s = (byte[]) src;
+      if (unsigned) {
+        for (int i = 0; i < len; i++)
+          buf[i] = s[start + i] & 0xff;
+      } else {
+        for (int i = 0; i < len; i++)
+          buf[i] = s[start + i];
+      }
+    }
+  }
+
+  // same values as Array.setObject(Double)
+  private static void write(double[] buf, int len, Object dst, int start) {
+    if (dst instanceof double[]) {
+      System.arraycopy(buf, 0, dst, start, len);
+    } else if (dst instanceof float[]) {
+      float[] d = (float[]) dst;
+      for (int i = 0; i < len; i++)
+        d[start + i] = (float) buf[i];
+    } else if (dst instanceof long[]) {
+      long[] d = (long[]) dst;
+      for (int i = 0; i < len; i++)
+        d[start + i] = (long) buf[i];
+    } else if (dst instanceof int[]) {
+      int[] d = (int[]) dst;
+      for (int i = 0; i < len; i++)
+        d[start + i] = (int) buf[i];
+    } else if (dst instanceof short[]) {
+      short[] d = (short[]) dst;
+      for (int i = 0; i < len; i++)
+        d[start + i] = (short) buf[i];
+    } else if (dst instanceof byte[]) {
+      byte[] d = (byte[]) dst;
+      for (int i = 0; i < len; i++)
+        d[start + i] = (byte) buf[i];
+    } else {
+      throw new IllegalArgumentException("Unsupported converted type " + dst.getClass());
+    }
+  }
+}
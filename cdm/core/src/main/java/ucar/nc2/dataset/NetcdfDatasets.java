@@ -15,6 +15,7 @@ import ucar.nc2.internal.ncml.NcmlReader;
 import ucar.nc2.util.CancelTask;
 import ucar.nc2.util.cache.FileCache;
 import ucar.nc2.util.cache.FileCacheIF;
+import ucar.nc2.util.cache.FileCacheStriped;
 import ucar.nc2.util.cache.FileFactory;
 
 /**
@@ -28,7 +29,7 @@ public class NetcdfDatasets {
   ////////////////////////////////////////////////////////////////////////////////////
   // NetcdfFile caching
 
-  private static ucar.nc2.util.cache.FileCache netcdfFileCache;
+  private static FileCacheIF netcdfFileCache;
   private static ucar.nc2.util.cache.FileFactory defaultNetcdfFileFactory = new StandardFileFactory();
 
   // no state, so a singleton is ok
@@ -66,6 +67,18 @@ public class NetcdfDatasets {
     netcdfFileCache = new FileCache("NetcdfFileCache", minElementsInMemory, maxElementsInMemory, hardLimit, period);
   }
 
+  /**
+   * Use the given cache, eg a {@link FileCacheStriped} for heavily concurrent servers, instead of the one made by
+   * initNetcdfFileCache(). Any previous cache is disabled.
+   *
+   * @param cache use this cache; null to disable caching
+   */
+  public static synchronized void setNetcdfFileCache(FileCacheIF cache) {
+    if (null != netcdfFileCache)
+      netcdfFileCache.disable();
+    netcdfFileCache = cache;
+  }
+
   public static synchronized void disableNetcdfFileCache() {
     if (null != netcdfFileCache)
       netcdfFileCache.disable();
@@ -79,6 +92,7 @@ public class NetcdfDatasets {
   public static synchronized void shutdown() {
     disableNetcdfFileCache();
     FileCache.shutdown();
+    FileCacheStriped.shutdown();
   }
 
   /**
@@ -398,7 +412,7 @@ public class NetcdfDatasets {
    * @param spiObject sent to iosp.setSpecial() if not null
    * @return NetcdfFile or throw an Exception.
    */
-  private static NetcdfFile openOrAcquireFile(FileCache cache, FileFactory factory, Object hashKey, DatasetUrl durl,
+  private static NetcdfFile openOrAcquireFile(FileCacheIF cache, FileFactory factory, Object hashKey, DatasetUrl durl,
       int buffer_size, ucar.nc2.util.CancelTask cancelTask, Object spiObject) throws IOException {
 
     if (factory == null)
@@ -291,21 +291,7 @@ public class VariableDS extends Variable implements VariableEnhanced, EnhanceSca
       toApply.addAll(loadedEnhancements);
 
 
-      double[] dataArray = (double[]) data.get1DJavaArray(DataType.DOUBLE);
-
-      dataArray = Arrays.stream(dataArray).parallel().map((num) -> {
-        for (Enhancement e : toApply) {
-          num = e.convert(num);
-        }
-        return num;
-      }).toArray();
-
-      Array out = Array.factory(convertedType, data.getShape());
-      IndexIterator iterOut = out.getIndexIterator();
-      for (int i = 0; i < data.getSize(); i++) {
-        iterOut.setObjectNext(dataArray[i]);
-      }
-      return out;
+      return EnhanceConverter.convert(data, convertedType, toApply);
     }
   }
 
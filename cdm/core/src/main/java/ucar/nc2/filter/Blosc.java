@@ -5,17 +5,144 @@
 
 package ucar.nc2.filter;
 
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+import javax.annotation.Nullable;
 
-
-// TODO: Still to be implemented
+/**
+ * Filter implementation of the Blosc (version 1) container format, see https://www.blosc.org.
+ * Pure java. Decodes the blosclz, lz4, lz4hc and zlib codecs, with byte or bit shuffling.
+ * The zstd and snappy codecs are not supported, and decoding their data throws an IOException naming the codec.
+ * Encodes with lz4 or zlib; data for other codecs is stored uncompressed, which is a valid Blosc container.
+ * <p>
+ * The blocks of a Blosc container are independent, and are decoded in parallel if an executor has been set with
+ * {@link #setExecutor}.
+ */
 public class Blosc extends Filter {
 
   private static final String name = "blosc";
 
   private static final int id = 32001;
 
-  public Blosc(Map<String, Object> properties) {}
+  // header
+  private static final int HEADER_SIZE = 16;
+  private static final int VERSION_FORMAT = 2;
+  private static final int BYTE_SHUFFLE = 0x1;
+  private static final int MEMCPYED = 0x2;
+  private static final int BIT_SHUFFLE = 0x4;
+  private static final int DONT_SPLIT = 0x10;
+
+  // shuffle property values, 0 for no shuffle
+  private static final int SHUFFLE = 1;
+  private static final int BITSHUFFLE = 2;
+
+  // blocks are split into typesize streams only when there are enough elements
+  private static final int MAX_SPLITS = 16;
+  private static final int MIN_BUFFERSIZE = 128;
+  private static final int DEFAULT_BLOCKSIZE = 256 * 1024;
+
+  private static final int BLOSCLZ_MAX_DISTANCE = 8191;
+
+  // decode blocks in parallel, when set
+  private static Executor executor;
+
+  /**
+   * Set an Executor to decode the blocks of a container in parallel. Off by default.
+   *
+   * @param exec use this Executor, or null to decode serially.
+   */
+  public static synchronized void setExecutor(@Nullable Executor exec) {
+    executor = exec;
+  }
+
+  private static synchronized Executor getExecutor() {
+    return executor;
+  }
+
+  /** Codecs, with their Blosc compressor codes */
+  public enum Codec {
+    BLOSCLZ("blosclz", 0), LZ4("lz4", 1), LZ4HC("lz4hc", 1), SNAPPY("snappy", 2), ZLIB("zlib", 3), ZSTD("zstd", 4);
+
+    private final String cname;
+    private final int code;
+
+    Codec(String cname, int code) {
+      this.cname = cname;
+      this.code = code;
+    }
+
+    static Codec fromName(String cname) {
+      for (Codec codec : values()) {
+        if (codec.cname.equalsIgnoreCase(cname)) {
+          return codec;
+        }
+      }
+      throw new IllegalArgumentException("Unknown Blosc compressor: " + cname);
+    }
+
+    static Codec fromCode(int code) {
+      for (Codec codec : values()) {
+        if (codec.code == code) {
+          return codec;
+        }
+      }
+      throw new IllegalArgumentException("Unknown Blosc compressor code: " + code);
+    }
+  }
+
+  private final Codec codec;
+  private final int clevel;
+  private final int shuffle;
+  private final int typesize;
+  private final int blocksize; // 0 = automatic
+
+  /**
+   * Properties are those of the numcodecs Blosc codec (cname, clevel, shuffle, blocksize) for Zarr, or the
+   * client data of the HDF5 Blosc filter (typesize, chunk size, clevel, shuffle, compressor code in elements 2-6).
+   */
+  public Blosc(Map<String, Object> properties) {
+    Object data = properties.get(Filters.Keys.DATA);
+    if (data instanceof int[] && ((int[]) data).length >= 7) {
+      int[] cd = (int[]) data;
+      this.typesize = Math.max(cd[2], 1);
+      this.clevel = cd[4];
+      this.shuffle = cd[5];
+      this.codec = Codec.fromCode(cd[6]);
+    } else {
+      Object cname = properties.get("cname");
+      this.codec = cname == null ? Codec.LZ4 : Codec.fromName(cname.toString());
+      this.clevel = intProperty(properties, "clevel", 5);
+      this.shuffle = intProperty(properties, "shuffle", SHUFFLE);
+      int elemSize = intProperty(properties, Filters.Keys.ELEM_SIZE, 1);
+      this.typesize = Math.max(intProperty(properties, "typesize", elemSize), 1);
+    }
+    this.blocksize = intProperty(properties, "blocksize", 0);
+    if (clevel < 0 || clevel > 9) {
+      throw new IllegalArgumentException("Invalid compression level: " + clevel);
+    }
+  }
+
+  private static int intProperty(Map<String, Object> properties, String key, int defaultValue) {
+    Object value = properties.get(key);
+    if (value instanceof Number) {
+      return ((Number) value).intValue();
+    } else if (value instanceof String) {
+      return Integer.parseInt((String) value);
+    }
+    return defaultValue;
+  }
 
   @Override
   public String getName() {
@@ -27,14 +154,632 @@ public class Blosc extends Filter {
     return id;
   }
 
+  //////////////////////////////////////////////////////////////////////////////////////////
+  // decode
+
   @Override
-  public byte[] encode(byte[] dataIn) {
-    return new byte[0];
+  public byte[] decode(byte[] dataIn) throws IOException {
+    if (dataIn.length < HEADER_SIZE) {
+      throw new EOFException("Blosc data shorter than its header");
+    }
+    int version = dataIn[0] & 0xff;
+    int flags = dataIn[2] & 0xff;
+    int typesize = dataIn[3] & 0xff;
+    int nbytes = readInt(dataIn, 4);
+    int blocksize = readInt(dataIn, 8);
+    int cbytes = readInt(dataIn, 12);
+    if (version > VERSION_FORMAT) {
+      throw new IOException("Unsupported Blosc format version " + version);
+    }
+    if (nbytes < 0 || cbytes > dataIn.length) {
+      throw new EOFException("Blosc data is truncated");
+    }
+
+    byte[] dest = new byte[nbytes];
+    if (nbytes == 0) {
+      return dest;
+    }
+    if ((flags & MEMCPYED) != 0) {
+      if (HEADER_SIZE + nbytes > dataIn.length) {
+        throw new EOFException("Blosc data is truncated");
+      }
+      System.arraycopy(dataIn, HEADER_SIZE, dest, 0, nbytes);
+      return dest;
+    }
+    if (blocksize <= 0) {
+      throw new IOException("Invalid Blosc blocksize " + blocksize);
+    }
+
+    Header header = new Header(flags, typesize, nbytes, blocksize);
+    Executor exec = getExecutor();
+    if (exec == null || header.nblocks < 2) {
+      byte[] tmp = new byte[blocksize];
+      for (int i = 0; i < header.nblocks; i++) {
+        decodeBlock(dataIn, header, i, dest, tmp);
+      }
+    } else {
+      decodeBlocksConcurrently(dataIn, header, dest, exec);
+    }
+    return dest;
+  }
+
+  private static class Header {
+    final int flags;
+    final int typesize;
+    final int nbytes;
+    final int blocksize;
+    final int nblocks;
+    final Codec codec;
+
+    Header(int flags, int typesize, int nbytes, int blocksize) throws IOException {
+      this.flags = flags;
+      this.typesize = Math.max(typesize, 1);
+      this.nbytes = nbytes;
+      this.blocksize = blocksize;
+      this.nblocks = (int) ((nbytes + (long) blocksize - 1) / blocksize);
+      this.codec = decodableCodec(flags >> 5);
+    }
+  }
+
+  // check up front, so that data is not rejected only when a block happens to be compressed
+  private static Codec decodableCodec(int code) throws IOException {
+    Codec codec;
+    try {
+      codec = Codec.fromCode(code);
+    } catch (IllegalArgumentException e) {
+      throw new IOException("Unknown Blosc compressor code " + code);
+    }
+    if (codec == Codec.SNAPPY || codec == Codec.ZSTD) {
+      throw new IOException("Blosc data compressed with " + codec.cname
+          + " cannot be decoded, only blosclz, lz4, lz4hc and zlib are supported");
+    }
+    return codec;
+  }
+
+  private void decodeBlocksConcurrently(byte[] src, Header header, byte[] dest, Executor exec) throws IOException {
+    // each task decodes a contiguous group of blocks into its own part of dest
+    int ntasks = Math.min(header.nblocks, Math.max(Runtime.getRuntime().availableProcessors(), 2));
+    int perTask = (header.nblocks + ntasks - 1) / ntasks;
+    List<CompletableFuture<Void>> tasks = new ArrayList<>();
+    for (int start = 0; start < header.nblocks; start += perTask) {
+      final int first = start;
+      final int last = Math.min(start + perTask, header.nblocks);
+      tasks.add(CompletableFuture.runAsync(() -> {
+        byte[] tmp = new byte[header.blocksize];
+        try {
+          for (int i = first; i < last; i++) {
+            decodeBlock(src, header, i, dest, tmp);
+          }
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }, exec));
+    }
+    try {
+      CompletableFuture.allOf(tasks.toArray(new CompletableFuture[0])).join();
+    } catch (CompletionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof UncheckedIOException)
+        throw ((UncheckedIOException) cause).getCause();
+      if (cause instanceof RuntimeException)
+        throw (RuntimeException) cause;
+      throw new IOException(cause);
+    }
+  }
+
+  private void decodeBlock(byte[] src, Header header, int blockNum, byte[] dest, byte[] tmp) throws IOException {
+    int bstartPos = HEADER_SIZE + 4 * blockNum;
+    if (bstartPos + 4 > src.length) {
+      throw new EOFException("Blosc data is truncated");
+    }
+    int ip = readInt(src, bstartPos);
+    int destOff = blockNum * header.blocksize;
+    boolean leftover = blockNum == header.nblocks - 1 && header.nbytes % header.blocksize != 0;
+    int bsize = leftover ? header.nbytes % header.blocksize : header.blocksize;
+    int typesize = header.typesize;
+
+    boolean byteShuffle = (header.flags & BYTE_SHUFFLE) != 0 && typesize > 1;
+    // format version 2 bitshuffles only whole blocks with a multiple of 8 elements
+    boolean bitShuffle = (header.flags & BIT_SHUFFLE) != 0 && bsize >= typesize && (bsize / typesize) % 8 == 0;
+    byte[] out = (byteShuffle || bitShuffle) ? tmp : dest;
+    int outPos = (byteShuffle || bitShuffle) ? 0 : destOff;
+
+    int nstreams = splitBlock(header.flags, typesize, bsize, leftover) ? typesize : 1;
+    int neblock = bsize / nstreams;
+    for (int j = 0; j < nstreams; j++) {
+      if (ip < 0 || ip + 4 > src.length) {
+        throw new EOFException("Blosc data is truncated");
+      }
+      int cbytes = readInt(src, ip);
+      ip += 4;
+      if (cbytes < 0) {
+        // a run of a single byte value
+        Arrays.fill(out, outPos, outPos + neblock, (byte) -cbytes);
+        cbytes = 0;
+      } else if (ip + cbytes > src.length) {
+        throw new EOFException("Blosc data is truncated");
+      } else if (cbytes == neblock) {
+        // stored uncompressed
+        System.arraycopy(src, ip, out, outPos, neblock);
+      } else {
+        int n = decompress(header.codec, src, ip, cbytes, out, outPos, neblock);
+        if (n != neblock) {
+          throw new IOException(String.format("Blosc %s stream decoded to %d bytes, expected %d", header.codec.cname,
+              n, neblock));
+        }
+      }
+      ip += cbytes;
+      outPos += neblock;
+    }
+
+    if (byteShuffle) {
+      unshuffle(typesize, bsize, tmp, dest, destOff);
+    } else if (bitShuffle) {
+      bitunshuffle(typesize, bsize, tmp, dest, destOff);
+    }
+  }
+
+  private static boolean splitBlock(int flags, int typesize, int bsize, boolean leftover) {
+    if ((flags & DONT_SPLIT) != 0 || leftover) {
+      return false;
+    }
+    return typesize <= MAX_SPLITS && (bsize / typesize) >= MIN_BUFFERSIZE;
   }
 
+  private static int decompress(Codec codec, byte[] src, int srcOff, int srcLen, byte[] dest, int destOff, int maxOut)
+      throws IOException {
+    switch (codec) {
+      case BLOSCLZ:
+        return blosclzDecompress(src, srcOff, srcLen, dest, destOff, maxOut);
+      case LZ4:
+      case LZ4HC:
+        return lz4Decompress(src, srcOff, srcLen, dest, destOff, maxOut);
+      case ZLIB:
+        return zlibDecompress(src, srcOff, srcLen, dest, destOff, maxOut);
+      default:
+        throw new IOException("Blosc compressor " + codec.cname + " is not supported");
+    }
+  }
+
+  // FastLZ level 1 derived format
+  private static int blosclzDecompress(byte[] src, int srcOff, int srcLen, byte[] dest, int destOff, int maxOut)
+      throws IOException {
+    if (srcLen == 0) {
+      return 0;
+    }
+    int ip = srcOff;
+    int ipLimit = srcOff + srcLen;
+    int op = destOff;
+    int opLimit = destOff + maxOut;
+    int ctrl = src[ip++] & 31;
+
+    while (true) {
+      if (ctrl >= 32) {
+        // match
+        int len = (ctrl >> 5) - 1;
+        int ofs = (ctrl & 31) << 8;
+        int code;
+        if (len == 7 - 1) {
+          do {
+            if (ip + 1 >= ipLimit) {
+              throw new IOException("Corrupt blosclz stream");
+            }
+            code = src[ip++] & 0xff;
+            len += code;
+          } while (code == 255);
+        } else if (ip + 1 > ipLimit) {
+          throw new IOException("Corrupt blosclz stream");
+        }
+        code = src[ip++] & 0xff;
+        len += 3;
+        int ref = op - ofs - code;
+
+        // match from 16-bit distance
+        if (code == 255 && ofs == (31 << 8)) {
+          if (ip + 1 >= ipLimit) {
+            throw new IOException("Corrupt blosclz stream");
+          }
+          ofs = (src[ip++] & 0xff) << 8;
+          ofs += src[ip++] & 0xff;
+          ref = op - ofs - BLOSCLZ_MAX_DISTANCE;
+        }
+        ref--;
+        if (op + len > opLimit || ref < destOff) {
+          throw new IOException("Corrupt blosclz stream");
+        }
+        copyMatch(dest, ref, op, len);
+        op += len;
+      } else {
+        // literal run
+        ctrl++;
+        if (op + ctrl > opLimit || ip + ctrl > ipLimit) {
+          throw new IOException("Corrupt blosclz stream");
+        }
+        System.arraycopy(src, ip, dest, op, ctrl);
+        op += ctrl;
+        ip += ctrl;
+      }
+      if (ip >= ipLimit) {
+        break;
+      }
+      ctrl = src[ip++] & 0xff;
+    }
+    return op - destOff;
+  }
+
+  // LZ4 block format
+  private static int lz4Decompress(byte[] src, int srcOff, int srcLen, byte[] dest, int destOff, int maxOut)
+      throws IOException {
+    int ip = srcOff;
+    int ipLimit = srcOff + srcLen;
+    int op = destOff;
+    int opLimit = destOff + maxOut;
+    try {
+      while (ip < ipLimit) {
+        int token = src[ip++] & 0xff;
+
+        int litLen = token >>> 4;
+        if (litLen == 15) {
+          int b;
+          do {
+            b = src[ip++] & 0xff;
+            litLen += b;
+          } while (b == 255);
+        }
+        if (op + litLen > opLimit || ip + litLen > ipLimit) {
+          throw new IOException("Corrupt lz4 stream");
+        }
+        System.arraycopy(src, ip, dest, op, litLen);
+        ip += litLen;
+        op += litLen;
+        if (ip >= ipLimit) {
+          break; // the last sequence has only literals
+        }
+
+        int offset = (src[ip] & 0xff) | (src[ip + 1] & 0xff) << 8;
+        ip += 2;
+        int matchLen = token & 15;
+        if (matchLen == 15) {
+          int b;
+          do {
+            b = src[ip++] & 0xff;
+            matchLen += b;
+          } while (b == 255);
+        }
+        matchLen += 4;
+        int ref = op - offset;
+        if (offset == 0 || ref < destOff || op + matchLen > opLimit) {
+          throw new IOException("Corrupt lz4 stream");
+        }
+        copyMatch(dest, ref, op, matchLen);
+        op += matchLen;
+      }
+    } catch (ArrayIndexOutOfBoundsException e) {
+      throw new IOException("Corrupt lz4 stream");
+    }
+    return op - destOff;
+  }
+
+  // copy a match that may overlap its destination, repeating the overlapped bytes
+  private static void copyMatch(byte[] buf, int ref, int op, int len) {
+    if (op - ref >= len) {
+      System.arraycopy(buf, ref, buf, op, len);
+    } else if (op - ref == 1) {
+      Arrays.fill(buf, op, op + len, buf[ref]);
+    } else {
+      // the copied bytes repeat with period (op - ref), so copy from ref in doubling chunks
+      int copied = 0;
+      while (copied < len) {
+        int n = Math.min(op + copied - ref, len - copied);
+        System.arraycopy(buf, ref, buf, op + copied, n);
+        copied += n;
+      }
+    }
+  }
+
+  private static int zlibDecompress(byte[] src, int srcOff, int srcLen, byte[] dest, int destOff, int maxOut)
+      throws IOException {
+    Inflater inflater = ZlibPool.getInflater();
+    try {
+      inflater.setInput(src, srcOff, srcLen);
+      int n = 0;
+      while (n < maxOut && !inflater.finished()) {
+        int count = inflater.inflate(dest, destOff + n, maxOut - n);
+        if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          throw new EOFException("Unexpected end of ZLIB input stream");
+        }
+        n += count;
+      }
+      return n;
+    } catch (DataFormatException e) {
+      String msg = e.getMessage();
+      throw new ZipException(msg != null ? msg : "Invalid ZLIB data format");
+    } finally {
+      ZlibPool.release(inflater);
+    }
+  }
+
+  // bytes of each element are grouped together: all first bytes, then all second bytes, etc
+  private static void unshuffle(int typesize, int bsize, byte[] src, byte[] dest, int destOff) {
+    int nelems = bsize / typesize;
+    for (int j = 0; j < typesize; j++) {
+      int s = j * nelems;
+      int d = destOff + j;
+      for (int i = 0; i < nelems; i++) {
+        dest[d] = src[s++];
+        d += typesize;
+      }
+    }
+    int done = nelems * typesize;
+    System.arraycopy(src, done, dest, destOff + done, bsize - done);
+  }
+
+  // bits are grouped into typesize * 8 bit planes, plane (j * 8 + k) holds bit k of byte j of each element,
+  // least significant bit first
+  private static void bitunshuffle(int typesize, int bsize, byte[] src, byte[] dest, int destOff) {
+    int nelems = bsize / typesize;
+    int planeBytes = nelems / 8;
+    Arrays.fill(dest, destOff, destOff + bsize, (byte) 0);
+    for (int j = 0; j < typesize; j++) {
+      for (int k = 0; k < 8; k++) {
+        int plane = (j * 8 + k) * planeBytes;
+        for (int m = 0; m < planeBytes; m++) {
+          int bits = src[plane + m] & 0xff;
+          if (bits == 0) {
+            continue;
+          }
+          int d = destOff + m * 8 * typesize + j;
+          for (int b = 0; b < 8; b++) {
+            if ((bits & (1 << b)) != 0) {
+              dest[d + b * typesize] |= (byte) (1 << k);
+            }
+          }
+        }
+      }
+    }
+    int done = nelems * typesize;
+    System.arraycopy(src, done, dest, destOff + done, bsize - done);
+  }
+
+  //////////////////////////////////////////////////////////////////////////////////////////
+  // encode
+
   @Override
-  public byte[] decode(byte[] dataIn) {
-    return new byte[0];
+  public byte[] encode(byte[] dataIn) throws IOException {
+    int nbytes = dataIn.length;
+    int bsize = blocksize > 0 ? blocksize : DEFAULT_BLOCKSIZE;
+    bsize = Math.min(bsize, Math.max(nbytes, 1));
+    if (bsize > typesize) {
+      bsize -= bsize % typesize; // blocks hold whole elements
+    }
+    int nblocks = (nbytes + bsize - 1) / bsize;
+
+    int flags = codec.code << 5;
+    if (shuffle == SHUFFLE && typesize > 1) {
+      flags |= BYTE_SHUFFLE;
+    } else if (shuffle == BITSHUFFLE) {
+      flags |= BIT_SHUFFLE;
+    }
+    boolean split = splitBlock(0, typesize, bsize, false);
+    if (!split) {
+      flags |= DONT_SPLIT;
+    }
+
+    byte[] out = new byte[HEADER_SIZE + 4 * nblocks + nbytes + 4 * nblocks * typesize + 64];
+    int op = HEADER_SIZE + 4 * nblocks;
+    byte[] tmp = new byte[bsize];
+    boolean compress = clevel > 0 && nbytes > 0;
+    for (int i = 0; i < nblocks && compress; i++) {
+      writeInt(out, HEADER_SIZE + 4 * i, op);
+      int off = i * bsize;
+      boolean leftover = i == nblocks - 1 && nbytes % bsize != 0;
+      int size = leftover ? nbytes % bsize : bsize;
+
+      byte[] block = dataIn;
+      int blockOff = off;
+      if ((flags & BYTE_SHUFFLE) != 0) {
+        shuffle(typesize, size, dataIn, off, tmp);
+        block = tmp;
+        blockOff = 0;
+      } else if ((flags & BIT_SHUFFLE) != 0 && size >= typesize && (size / typesize) % 8 == 0) {
+        bitshuffle(typesize, size, dataIn, off, tmp);
+        block = tmp;
+        blockOff = 0;
+      }
+
+      int nstreams = splitBlock(flags, typesize, size, leftover) ? typesize : 1;
+      int neblock = size / nstreams;
+      for (int j = 0; j < nstreams; j++) {
+        int start = blockOff + j * neblock;
+        int cbytes = compress(block, start, neblock, out, op + 4, neblock);
+        if (cbytes <= 0 || cbytes >= neblock) {
+          // store uncompressed
+          System.arraycopy(block, start, out, op + 4, neblock);
+          cbytes = neblock;
+        }
+        writeInt(out, op, cbytes);
+        op += 4 + cbytes;
+      }
+      if (op > HEADER_SIZE + nbytes) {
+        compress = false; // not worth it
+      }
+    }
+
+    if (!compress) {
+      flags = (flags & ~(BYTE_SHUFFLE | BIT_SHUFFLE)) | MEMCPYED;
+      out = new byte[HEADER_SIZE + nbytes];
+      System.arraycopy(dataIn, 0, out, HEADER_SIZE, nbytes);
+      op = HEADER_SIZE + nbytes;
+    } else {
+      out = Arrays.copyOf(out, op);
+    }
+
+    out[0] = VERSION_FORMAT;
+    out[1] = 1; // codec format version
+    out[2] = (byte) flags;
+    out[3] = (byte) Math.min(typesize, 255);
+    writeInt(out, 4, nbytes);
+    writeInt(out, 8, bsize);
+    writeInt(out, 12, op);
+    return out;
+  }
+
+  // return compressed size, or -1 if it doesnt fit in maxOut
+  private int compress(byte[] src, int srcOff, int srcLen, byte[] dest, int destOff, int maxOut) {
+    switch (codec) {
+      case LZ4:
+      case LZ4HC:
+        return lz4Compress(src, srcOff, srcLen, dest, destOff, maxOut);
+      case ZLIB:
+        return zlibCompress(src, srcOff, srcLen, dest, destOff, maxOut);
+      default:
+        return -1; // stored uncompressed
+    }
+  }
+
+  private static final int LZ4_HASH_LOG = 12;
+  private static final int LZ4_MIN_MATCH = 4;
+  private static final int LZ4_MFLIMIT = 12; // no match may start in the last 12 bytes
+  private static final int LZ4_LAST_LITERALS = 5; // the last 5 bytes are always literals
+
+  // greedy LZ4 block compressor
+  private static int lz4Compress(byte[] src, int srcOff, int srcLen, byte[] dest, int destOff, int maxOut) {
+    int srcEnd = srcOff + srcLen;
+    int anchor = srcOff;
+    int op = destOff;
+    int opLimit = destOff + maxOut;
+
+    if (srcLen > LZ4_MFLIMIT) {
+      int matchLimit = srcEnd - LZ4_LAST_LITERALS;
+      int ipLimit = srcEnd - LZ4_MFLIMIT;
+      int[] table = new int[1 << LZ4_HASH_LOG];
+      Arrays.fill(table, -1);
+      int ip = srcOff;
+      while (ip < ipLimit) {
+        int seq = readInt(src, ip);
+        int h = (seq * -1640531535) >>> (32 - LZ4_HASH_LOG);
+        int ref = table[h];
+        table[h] = ip;
+        if (ref < 0 || ip - ref > 65535 || readInt(src, ref) != seq) {
+          ip++;
+          continue;
+        }
+        // extend backwards over the pending literals
+        while (ip > anchor && ref > srcOff && src[ip - 1] == src[ref - 1]) {
+          ip--;
+          ref--;
+        }
+        int len = LZ4_MIN_MATCH;
+        while (ip + len < matchLimit && src[ip + len] == src[ref + len]) {
+          len++;
+        }
+        op = lz4Sequence(src, anchor, ip - anchor, ip - ref, len, dest, op, opLimit);
+        if (op < 0) {
+          return -1;
+        }
+        ip += len;
+        anchor = ip;
+      }
+    }
+    op = lz4Sequence(src, anchor, srcEnd - anchor, 0, 0, dest, op, opLimit);
+    return op < 0 ? -1 : op - destOff;
+  }
+
+  // write a sequence, or only literals if matchLen == 0. return new position, or -1 if it doesnt fit
+  private static int lz4Sequence(byte[] src, int litStart, int litLen, int offset, int matchLen, byte[] dest, int op,
+      int opLimit) {
+    if (op + 1 + litLen + litLen / 255 + 1 + 2 + matchLen / 255 + 1 > opLimit) {
+      return -1;
+    }
+    int tokenPos = op++;
+    int token = Math.min(litLen, 15) << 4;
+    if (litLen >= 15) {
+      int rest = litLen - 15;
+      for (; rest >= 255; rest -= 255) {
+        dest[op++] = (byte) 255;
+      }
+      dest[op++] = (byte) rest;
+    }
+    System.arraycopy(src, litStart, dest, op, litLen);
+    op += litLen;
+    if (matchLen > 0) {
+      dest[op++] = (byte) offset;
+      dest[op++] = (byte) (offset >>> 8);
+      int ml = matchLen - LZ4_MIN_MATCH;
+      token |= Math.min(ml, 15);
+      if (ml >= 15) {
+        int rest = ml - 15;
+        for (; rest >= 255; rest -= 255) {
+          dest[op++] = (byte) 255;
+        }
+        dest[op++] = (byte) rest;
+      }
+    }
+    dest[tokenPos] = (byte) token;
+    return op;
+  }
+
+  private int zlibCompress(byte[] src, int srcOff, int srcLen, byte[] dest, int destOff, int maxOut) {
+    Deflater deflater = ZlibPool.getDeflater(clevel);
+    try {
+      deflater.setInput(src, srcOff, srcLen);
+      deflater.finish();
+      int n = 0;
+      while (!deflater.finished()) {
+        if (n >= maxOut) {
+          return -1;
+        }
+        n += deflater.deflate(dest, destOff + n, maxOut - n);
+      }
+      return n;
+    } finally {
+      ZlibPool.release(deflater);
+    }
+  }
+
+  private static void shuffle(int typesize, int bsize, byte[] src, int srcOff, byte[] dest) {
+    int nelems = bsize / typesize;
+    for (int j = 0; j < typesize; j++) {
+      int s = srcOff + j;
+      int d = j * nelems;
+      for (int i = 0; i < nelems; i++) {
+        dest[d++] = src[s];
+        s += typesize;
+      }
+    }
+    int done = nelems * typesize;
+    System.arraycopy(src, srcOff + done, dest, done, bsize - done);
+  }
+
+  private static void bitshuffle(int typesize, int bsize, byte[] src, int srcOff, byte[] dest) {
+    int nelems = bsize / typesize;
+    int planeBytes = nelems / 8;
+    for (int j = 0; j < typesize; j++) {
+      for (int k = 0; k < 8; k++) {
+        int plane = (j * 8 + k) * planeBytes;
+        for (int m = 0; m < planeBytes; m++) {
+          int s = srcOff + m * 8 * typesize + j;
+          int bits = 0;
+          for (int b = 0; b < 8; b++) {
+            bits |= ((src[s + b * typesize] >> k) & 1) << b;
+          }
+          dest[plane + m] = (byte) bits;
+        }
+      }
+    }
+    int done = nelems * typesize;
+    System.arraycopy(src, srcOff + done, dest, done, bsize - done);
+  }
+
+  private static int readInt(byte[] b, int pos) {
+    return (b[pos] & 0xff) | (b[pos + 1] & 0xff) << 8 | (b[pos + 2] & 0xff) << 16 | (b[pos + 3] & 0xff) << 24;
+  }
+
+  private static void writeInt(byte[] b, int pos, int value) {
+    b[pos] = (byte) value;
+    b[pos + 1] = (byte) (value >>> 8);
+    b[pos + 2] = (byte) (value >>> 16);
+    b[pos + 3] = (byte) (value >>> 24);
   }
 
   public static class Provider implements FilterProvider {
@@ -49,6 +794,11 @@ public class Blosc extends Filter {
       return id;
     }
 
+    @Override
+    public boolean isStateless() {
+      return true;
+    }
+
     @Override
     public Filter create(Map<String, Object> properties) {
       return new Blosc(properties);
@@ -162,6 +162,11 @@ public class Checksum32 extends Filter {
       return CType.FLETCHER.id;
     }
 
+    @Override
+    public boolean isStateless() {
+      return true;
+    }
+
     @Override
     public Filter create(Map<String, Object> properties) {
       return new Checksum32(CType.FLETCHER);
@@ -180,6 +185,11 @@ public class Checksum32 extends Filter {
       return CType.ADLER.id;
     }
 
+    @Override
+    public boolean isStateless() {
+      return true;
+    }
+
     @Override
     public Filter create(Map<String, Object> properties) {
       return new Checksum32(CType.ADLER);
@@ -198,6 +208,11 @@ public class Checksum32 extends Filter {
       return CType.CRC.id;
     }
 
+    @Override
+    public boolean isStateless() {
+      return true;
+    }
+
     @Override
     public Filter create(Map<String, Object> properties) {
       return new Checksum32(CType.CRC);
@@ -5,15 +5,15 @@
 
 package ucar.nc2.filter;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Map;
+import java.util.zip.DataFormatException;
 import java.util.zip.Deflater;
-import java.util.zip.DeflaterOutputStream;
 import java.util.zip.Inflater;
-import java.util.zip.InflaterInputStream;
-import ucar.nc2.util.IO;
+import java.util.zip.ZipException;
 
 /**
  * Filter implementation of zlib compression.
@@ -57,26 +57,95 @@ public class Deflate extends Filter {
 
   @Override
   public byte[] encode(byte[] dataIn) throws IOException {
-    ByteArrayOutputStream os = new ByteArrayOutputStream(dataIn.length);
-    try (DeflaterOutputStream dos = new DeflaterOutputStream(os, new Deflater(clevel));) {
-      dos.write(dataIn);
-      // close everything and return
-      dos.finish();
-      dos.close();
-      return os.toByteArray();
-    }
+    return deflate(dataIn, 0, dataIn.length);
   }
 
   @Override
   public byte[] decode(byte[] dataIn) throws IOException {
-    int len = Math.min(8 * dataIn.length, MAX_ARRAY_LEN);
-    try (ByteArrayInputStream in = new ByteArrayInputStream(dataIn);
-        InflaterInputStream iis = new InflaterInputStream(in, new Inflater(), dataIn.length);
-        ByteArrayOutputStream os = new ByteArrayOutputStream(len)) {
+    return inflate(dataIn, 0, dataIn.length, -1);
+  }
+
+  @Override
+  public byte[] decode(byte[] dataIn, int decodedSize) throws IOException {
+    return inflate(dataIn, 0, dataIn.length, decodedSize);
+  }
+
+  @Override
+  public ByteBuffer encode(ByteBuffer dataIn) throws IOException {
+    if (!dataIn.hasArray()) {
+      return super.encode(dataIn);
+    }
+    return ByteBuffer.wrap(deflate(dataIn.array(), dataIn.arrayOffset() + dataIn.position(), dataIn.remaining()));
+  }
 
-      IO.copyB(iis, os, IO.default_socket_buffersize);
+  @Override
+  public ByteBuffer decode(ByteBuffer dataIn) throws IOException {
+    if (!dataIn.hasArray()) {
+      return super.decode(dataIn);
+    }
+    return ByteBuffer.wrap(inflate(dataIn.array(), dataIn.arrayOffset() + dataIn.position(), dataIn.remaining(), -1));
+  }
 
-      return os.toByteArray();
+  private byte[] deflate(byte[] dataIn, int off, int len) {
+    Deflater deflater = ZlibPool.getDeflater(clevel);
+    try {
+      deflater.setInput(dataIn, off, len);
+      deflater.finish();
+      byte[] out = new byte[Math.max(64, len / 2)];
+      int n = 0;
+      while (!deflater.finished()) {
+        if (n == out.length) {
+          out = Arrays.copyOf(out, (int) Math.min(2L * out.length, MAX_ARRAY_LEN));
+        }
+        n += deflater.deflate(out, n, out.length - n);
+      }
+      return n == out.length ? out : Arrays.copyOf(out, n);
+    } finally {
+      ZlibPool.release(deflater);
+    }
+  }
+
+  private static byte[] inflate(byte[] dataIn, int off, int len, int decodedSize) throws IOException {
+    Inflater inflater = ZlibPool.getInflater();
+    try {
+      inflater.setInput(dataIn, off, len);
+      int size = decodedSize > 0 ? decodedSize : (int) Math.min(4L * len, MAX_ARRAY_LEN);
+      byte[] out = new byte[Math.max(size, 64)];
+      int n = 0;
+      while (!inflater.finished()) {
+        if (n == out.length) {
+          // when the size was known, only the end of stream checksum should be left
+          byte[] probe = new byte[1];
+          int count = inflater.inflate(probe);
+          if (count == 0 && inflater.finished()) {
+            break;
+          }
+          if (out.length >= MAX_ARRAY_LEN) {
+            throw new IOException("Inflated data is larger than the maximum array length");
+          }
+          out = Arrays.copyOf(out, (int) Math.min(2L * out.length, MAX_ARRAY_LEN));
+          if (count == 1) {
+            out[n++] = probe[0];
+          }
+          continue;
+        }
+        int count = inflater.inflate(out, n, out.length - n);
+        n += count;
+        if (count == 0 && !inflater.finished()) {
+          if (inflater.needsInput()) {
+            throw new EOFException("Unexpected end of ZLIB input stream");
+          }
+          if (inflater.needsDictionary()) {
+            throw new ZipException("ZLIB dictionary needed");
+          }
+        }
+      }
+      return n == out.length ? out : Arrays.copyOf(out, n);
+    } catch (DataFormatException e) {
+      String msg = e.getMessage();
+      throw new ZipException(msg != null ? msg : "Invalid ZLIB data format");
+    } finally {
+      ZlibPool.release(inflater);
     }
   }
 
@@ -92,6 +161,11 @@ public class Deflate extends Filter {
       return id;
     }
 
+    @Override
+    public boolean isStateless() {
+      return true;
+    }
+
     @Override
     public Filter create(Map<String, Object> properties) {
       return new Deflate(properties);
@@ -6,6 +6,7 @@
 package ucar.nc2.filter;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.Formatter;
 import java.util.Map;
@@ -23,6 +24,45 @@ public abstract class Filter {
 
   public abstract byte[] decode(byte[] dataIn) throws IOException;
 
+  /**
+   * Decode when the size of the decoded data is expected to be known, e.g. from the chunk shape.
+   * The size is only a hint, used to avoid resizing and copying the output.
+   *
+   * @param dataIn encoded data
+   * @param decodedSize expected size of the decoded data in bytes, or -1 if not known
+   */
+  public byte[] decode(byte[] dataIn, int decodedSize) throws IOException {
+    return decode(dataIn);
+  }
+
+  /**
+   * Encode the remaining bytes of dataIn. The position of dataIn is not changed.
+   *
+   * @return a buffer with position 0 and limit at the end of the encoded data
+   */
+  public ByteBuffer encode(ByteBuffer dataIn) throws IOException {
+    return ByteBuffer.wrap(encode(toArray(dataIn)));
+  }
+
+  /**
+   * Decode the remaining bytes of dataIn. The position of dataIn is not changed.
+   *
+   * @return a buffer with position 0 and limit at the end of the decoded data
+   */
+  public ByteBuffer decode(ByteBuffer dataIn) throws IOException {
+    return ByteBuffer.wrap(decode(toArray(dataIn)));
+  }
+
+  /** The remaining bytes of the buffer, without copying when it wraps an entire array. */
+  protected static byte[] toArray(ByteBuffer bb) {
+    if (bb.hasArray() && bb.arrayOffset() == 0 && bb.position() == 0 && bb.remaining() == bb.array().length) {
+      return bb.array();
+    }
+    byte[] result = new byte[bb.remaining()];
+    bb.duplicate().get(result);
+    return result;
+  }
+
   public String toString() {
     Formatter f = new Formatter();
     return f.format("Name: %s, ID: %d", getName(), getId()).toString();
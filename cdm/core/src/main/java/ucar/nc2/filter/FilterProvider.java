@@ -26,6 +26,14 @@ public interface FilterProvider {
     return id == getId();
   }
 
+  /**
+   * Whether the Filters created by this Provider are immutable, and depend only on the properties passed to
+   * {@link #create}. If so, a Filter may be reused for all requests with equal properties.
+   */
+  default boolean isStateless() {
+    return false;
+  }
+
   /**
    * Create a {@link ucar.nc2.filter.Filter} of the correct type
    * 
@@ -5,8 +5,17 @@
 
 package ucar.nc2.filter;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.ServiceLoader;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class Filters {
 
@@ -39,6 +48,81 @@ public class Filters {
 
   private static NullFilter nullFilter = new NullFilter();
 
+  // providers registered with registerFilterProvider(), tried before those found by the ServiceLoader
+  private static final List<FilterProvider> registeredProviders = new CopyOnWriteArrayList<>();
+  // providers found by the ServiceLoader, scanned once
+  private static List<FilterProvider> loadedProviders;
+  // resolved providers by name and by id; empty if none can provide
+  private static final Map<String, Optional<FilterProvider>> byName = new ConcurrentHashMap<>();
+  private static final Map<Integer, Optional<FilterProvider>> byId = new ConcurrentHashMap<>();
+  // filters from stateless providers, keyed by provider and properties
+  private static final Cache<List<Object>, Filter> filterCache = CacheBuilder.newBuilder().maximumSize(1000).build();
+
+  /**
+   * Register a FilterProvider. Registered providers are tried before those found by the ServiceLoader,
+   * most recently registered first.
+   */
+  public static void registerFilterProvider(FilterProvider provider) {
+    registeredProviders.add(0, provider);
+    clearCache();
+  }
+
+  /** Remove a FilterProvider added with registerFilterProvider(). */
+  public static void unregisterFilterProvider(FilterProvider provider) {
+    registeredProviders.remove(provider);
+    clearCache();
+  }
+
+  /** Forget resolved providers and reusable filters. The ServiceLoader scan is not repeated. */
+  public static void clearCache() {
+    byName.clear();
+    byId.clear();
+    filterCache.invalidateAll();
+  }
+
+  private static synchronized List<FilterProvider> getLoadedProviders() {
+    if (loadedProviders == null) {
+      List<FilterProvider> result = new ArrayList<>();
+      for (FilterProvider fp : ServiceLoader.load(FilterProvider.class)) {
+        result.add(fp);
+      }
+      loadedProviders = result;
+    }
+    return loadedProviders;
+  }
+
+  private static Optional<FilterProvider> findProvider(String name) {
+    return byName.computeIfAbsent(name, n -> {
+      for (FilterProvider fp : registeredProviders) {
+        if (fp.canProvide(n)) {
+          return Optional.of(fp);
+        }
+      }
+      for (FilterProvider fp : getLoadedProviders()) {
+        if (fp.canProvide(n)) {
+          return Optional.of(fp);
+        }
+      }
+      return Optional.empty();
+    });
+  }
+
+  private static Optional<FilterProvider> findProvider(int id) {
+    return byId.computeIfAbsent(id, i -> {
+      for (FilterProvider fp : registeredProviders) {
+        if (fp.canProvide(i)) {
+          return Optional.of(fp);
+        }
+      }
+      for (FilterProvider fp : getLoadedProviders()) {
+        if (fp.canProvide(i)) {
+          return Optional.of(fp);
+        }
+      }
+      return Optional.empty();
+    });
+  }
+
   /**
    * Create a filter object matching the provided id
    * 
@@ -60,26 +144,60 @@ public class Filters {
 
     // try by name first
     if (name != null && !name.isEmpty()) {
-      // look for dynamically loaded filters by name
-      for (FilterProvider fp : ServiceLoader.load(FilterProvider.class)) {
-        if (fp.canProvide(name)) {
-          return fp.create(properties);
-        }
+      Optional<FilterProvider> fp = findProvider(name);
+      if (fp.isPresent()) {
+        return create(fp.get(), properties);
+      }
+      if (!(oid instanceof Number)) {
+        throw new UnknownFilterException(name);
       }
     }
 
     // try by id next
-    int id = ((Short) oid).intValue();
-    // look for dynamically loaded filters by id
-    for (FilterProvider fp : ServiceLoader.load(FilterProvider.class)) {
-      if (fp.canProvide(id)) {
-        return fp.create(properties);
-      }
+    int id = ((Number) oid).intValue();
+    Optional<FilterProvider> fp = findProvider(id);
+    if (fp.isPresent()) {
+      return create(fp.get(), properties);
     }
     // final fallback
     throw new UnknownFilterException(id);
   }
 
+  private static Filter create(FilterProvider fp, Map<String, Object> properties) {
+    if (!fp.isStateless()) {
+      return fp.create(properties);
+    }
+    List<Object> key = new ArrayList<>();
+    key.add(fp);
+    key.add(cacheKey(properties));
+    Filter filter = filterCache.getIfPresent(key);
+    if (filter == null) {
+      filter = fp.create(properties);
+      filterCache.put(key, filter);
+    }
+    return filter;
+  }
+
+  // copy the properties so that they compare by value, including array values
+  private static Map<String, Object> cacheKey(Map<String, Object> properties) {
+    Map<String, Object> key = new TreeMap<>();
+    for (Map.Entry<String, Object> entry : properties.entrySet()) {
+      key.put(entry.getKey(), cacheValue(entry.getValue()));
+    }
+    return key;
+  }
+
+  private static Object cacheValue(Object value) {
+    if (value != null && value.getClass().isArray()) {
+      List<Object> list = new ArrayList<>();
+      for (int i = 0; i < Array.getLength(value); i++) {
+        list.add(cacheValue(Array.get(value, i)));
+      }
+      return list;
+    }
+    return value;
+  }
+
   /**
    * A filter which passes data through unchanged
    */
@@ -286,6 +286,11 @@ public class ScaleOffset extends Filter implements Enhancement {
       return id;
     }
 
+    @Override
+    public boolean isStateless() {
+      return true;
+    }
+
     @Override
     public Filter create(Map<String, Object> properties) {
       return new ScaleOffset(properties);
@@ -99,6 +99,11 @@ public class Shuffle extends Filter {
       return id;
     }
 
+    @Override
+    public boolean isStateless() {
+      return true;
+    }
+
     @Override
     public Filter create(Map<String, Object> properties) {
       return new Shuffle(properties);
@@ -53,24 +53,21 @@ public class UnsignedConversion implements Enhancement {
   }
 
   public double convert(double value) {
-    Number val;
+    if (this.signedness != DataType.Signedness.UNSIGNED) {
+      return value;
+    }
+    // reinterpret the value as the signed type one size smaller than outType, then widen if negative
     switch (outType) {
       case UBYTE:
-        val = new Byte((byte) value);
-        break;
       case USHORT:
-        val = new Byte((byte) value);
-        break;
+        return ((byte) value) & 0xff;
       case UINT:
-        val = new Short((short) value);
-        break;
+        return ((short) value) & 0xffff;
       case ULONG:
-        val = new Integer((int) value);
-        break;
+        return ((int) value) & 0xffffffffL;
       default:
-        val = new Double(value);
+        return value;
     }
-    return this.signedness == DataType.Signedness.UNSIGNED ? DataType.widenNumberIfNegative(val).doubleValue() : value;
   }
 
   public Array convertUnsigned(Array in) {
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2021 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.nc2.filter;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Reuses zlib Inflaters and Deflaters, which hold native state that is expensive to create and is only freed by
+ * end(). Release each one in a finally block:
+ *
+ * <pre>
+ * Inflater inflater = ZlibPool.getInflater();
+ * try {
+ *   ...
+ * } finally {
+ *   ZlibPool.release(inflater);
+ * }
+ * </pre>
+ *
+ * A few idle ones are kept for reuse by any thread; the rest are ended when released.
+ */
+public final class ZlibPool {
+  private static final int maxIdle = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+  private static final BlockingQueue<Inflater> inflaters = new ArrayBlockingQueue<>(maxIdle);
+  private static final BlockingQueue<Deflater> deflaters = new ArrayBlockingQueue<>(maxIdle);
+
+  private ZlibPool() {}
+
+  /** An Inflater for zlib data, to be given back with {@link #release(Inflater)}. */
+  public static Inflater getInflater() {
+    Inflater inflater = inflaters.poll();
+    return (inflater != null) ? inflater : new Inflater();
+  }
+
+  /** Give back an Inflater from {@link #getInflater}. Drops its reference to the input. */
+  public static void release(Inflater inflater) {
+    inflater.reset();
+    if (!inflaters.offer(inflater)) {
+      inflater.end();
+    }
+  }
+
+  /**
+   * A Deflater that writes zlib data, to be given back with {@link #release(Deflater)}.
+   *
+   * @param level compression level, 0-9
+   */
+  public static Deflater getDeflater(int level) {
+    Deflater deflater = deflaters.poll();
+    if (deflater == null) {
+      return new Deflater(level);
+    }
+    deflater.setLevel(level); // no input since reset, so takes effect on the next deflate
+    return deflater;
+  }
+
+  /** Give back a Deflater from {@link #getDeflater}. Drops its reference to the input. */
+  public static void release(Deflater deflater) {
+    deflater.reset();
+    if (!deflaters.offer(deflater)) {
+      deflater.end();
+    }
+  }
+}
@@ -5,6 +5,7 @@
 package ucar.nc2.internal.iosp.hdf4;
 
 import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Multimap;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
@@ -37,6 +38,7 @@ import ucar.nc2.NetcdfFiles;
 import ucar.nc2.Structure;
 import ucar.nc2.Variable;
 import ucar.nc2.constants.CDM;
+import ucar.nc2.iosp.IospSignature;
 import ucar.nc2.iosp.hdf4.H4type;
 import ucar.nc2.iosp.hdf4.TagEnum;
 import ucar.nc2.write.Ncdump;
@@ -56,6 +58,9 @@ public class H4header implements HdfHeaderIF {
   private static final byte[] H4HEAD = {(byte) 0x0e, (byte) 0x03, (byte) 0x13, (byte) 0x01};
   private static final String H4HEAD_STRING = new String(H4HEAD, StandardCharsets.UTF_8);
   private static final long maxHeaderPos = 500000; // header's gotta be within this
+  // the offsets that the header can be at; only the first few are within the prefix that signatures are matched on
+  static final List<IospSignature> signatures =
+      ImmutableList.of(IospSignature.at(H4HEAD, 0, 512, 1024, 2048, 4096, 8192, 16384, 32768, 65536, 131072, 262144));
 
   static boolean isValidFile(ucar.unidata.io.RandomAccessFile raf) throws IOException {
     // fail fast on directory
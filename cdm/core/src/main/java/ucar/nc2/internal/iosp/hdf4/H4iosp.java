@@ -26,6 +26,7 @@ import ucar.nc2.Variable;
 import ucar.nc2.constants.DataFormatType;
 import ucar.nc2.iosp.AbstractIOServiceProvider;
 import ucar.nc2.iosp.IospHelper;
+import ucar.nc2.iosp.IospSignature;
 import ucar.nc2.iosp.Layout;
 import ucar.nc2.iosp.LayoutBB;
 import ucar.nc2.iosp.LayoutBBTiled;
@@ -52,6 +53,11 @@ public class H4iosp extends AbstractIOServiceProvider {
     return H4header.isValidFile(raf);
   }
 
+  @Override
+  public List<IospSignature> getSignatures() {
+    return H4header.signatures;
+  }
+
   @Override
   public String getFileTypeId() {
     if (header != null && header.isEos()) {
@@ -5,6 +5,7 @@
 
 package ucar.nc2.internal.iosp.hdf5;
 
+import com.google.common.collect.ImmutableList;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
@@ -56,6 +57,7 @@ import ucar.nc2.internal.iosp.hdf5.H5objects.MessageFillValueOld;
 import ucar.nc2.internal.iosp.hdf5.H5objects.MessageFilter;
 import ucar.nc2.internal.iosp.hdf5.H5objects.MessageType;
 import ucar.nc2.internal.iosp.hdf5.H5objects.StructureMember;
+import ucar.nc2.iosp.IospSignature;
 import ucar.nc2.write.NetcdfFileFormat;
 import ucar.nc2.iosp.IospHelper;
 import ucar.nc2.iosp.Layout;
@@ -115,6 +117,9 @@ public class H5headerNew implements H5headerIF, HdfHeaderIF {
   private static final byte[] magic = {(byte) 0x89, 'H', 'D', 'F', '\r', '\n', 0x1a, '\n'};
   private static final String magicString = new String(magic, StandardCharsets.UTF_8);
   private static final long maxHeaderPos = 50000; // header's gotta be within this
+  // the offsets that the header can be at, below maxHeaderPos
+  static final List<IospSignature> signatures =
+      ImmutableList.of(IospSignature.at(magic, 0, 512, 1024, 2048, 4096, 8192, 16384, 32768));
   private static final boolean transformReference = true;
 
   public static boolean isValidFile(RandomAccessFile raf) throws IOException {
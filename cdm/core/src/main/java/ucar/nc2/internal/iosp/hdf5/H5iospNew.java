@@ -10,6 +10,7 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.charset.Charset;
+import java.util.List;
 import java.util.Optional;
 import ucar.ma2.Array;
 import ucar.ma2.ArrayStructure;
@@ -30,6 +31,7 @@ import ucar.nc2.constants.DataFormatType;
 import ucar.nc2.internal.iosp.hdf4.HdfEos;
 import ucar.nc2.iosp.AbstractIOServiceProvider;
 import ucar.nc2.iosp.IospHelper;
+import ucar.nc2.iosp.IospSignature;
 import ucar.nc2.iosp.Layout;
 import ucar.nc2.iosp.LayoutBB;
 import ucar.nc2.iosp.LayoutRegular;
@@ -83,6 +85,11 @@ public class H5iospNew extends AbstractIOServiceProvider {
     return H5headerNew.isValidFile(raf);
   }
 
+  @Override
+  public List<IospSignature> getSignatures() {
+    return H5headerNew.signatures;
+  }
+
   @Override
   public String getFileTypeId() {
     if (isEos)
@@ -313,7 +320,7 @@ public class H5iospNew extends AbstractIOServiceProvider {
 
     // special processing
     if (typeInfo.hdfType == 2) { // time
-      Object data = IospHelper.readDataFill(raf, layout, dataType, fillValue, endian, true);
+      Object data = readDataFill(layout, dataType, fillValue, endian, true);
       Array timeArray = Array.factory(dataType, shape, data);
 
       // now transform into an ISO Date String
@@ -327,7 +334,7 @@ public class H5iospNew extends AbstractIOServiceProvider {
     }
 
     if (typeInfo.hdfType == 8) { // enum
-      Object data = IospHelper.readDataFill(raf, layout, dataType, fillValue, endian);
+      Object data = readDataFill(layout, dataType, fillValue, endian, true);
       return Array.factory(dataType, shape, data);
     }
 
@@ -382,8 +389,7 @@ public class H5iospNew extends AbstractIOServiceProvider {
           System.out.println(
               " readStructure " + v.getFullName() + " chunk= " + chunk + " index.getElemSize= " + layout.getElemSize());
         // copy bytes directly into the underlying byte[] LOOK : assumes contiguous layout ??
-        raf.seek(chunk.getSrcPos());
-        raf.readFully(byteArray, (int) chunk.getDestElem() * recsize, chunk.getNelems() * recsize);
+        raf.readFully(chunk.getSrcPos(), byteArray, (int) chunk.getDestElem() * recsize, chunk.getNelems() * recsize);
       }
 
       // place data into an ArrayStructureBB
@@ -568,8 +574,7 @@ public class H5iospNew extends AbstractIOServiceProvider {
         int recsize = layout.getElemSize();
         for (int i = 0; i < chunk.getNelems(); i++) {
           byte[] pa = new byte[recsize];
-          raf.seek(chunk.getSrcPos() + i * recsize);
-          raf.readFully(pa, 0, recsize);
+          raf.readFully(chunk.getSrcPos() + (long) i * recsize, pa, 0, recsize);
           opArray.setObject(count++, ByteBuffer.wrap(pa));
         }
       }
@@ -577,7 +582,16 @@ public class H5iospNew extends AbstractIOServiceProvider {
     }
 
     // normal case
-    return IospHelper.readDataFill(raf, layout, dataType, fillValue, endian, convertChar);
+    return readDataFill(layout, dataType, fillValue, endian, convertChar);
+  }
+
+  // use positional reads when the byte order is known, so that concurrent reads can share the raf
+  private Object readDataFill(Layout layout, DataType dataType, Object fillValue, int endian, boolean convertChar)
+      throws IOException {
+    if (endian < 0)
+      return IospHelper.readDataFill(raf, layout, dataType, fillValue, endian, convertChar);
+    ByteOrder bo = (endian == RandomAccessFile.LITTLE_ENDIAN) ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+    return IospHelper.readDataFill(raf, layout, dataType, fillValue, bo, convertChar);
   }
 
   // old way
@@ -20,6 +20,7 @@ import ucar.nc2.Variable;
 import ucar.nc2.filter.Filter;
 import ucar.nc2.filter.Filters;
 import ucar.nc2.filter.UnknownFilterException;
+import ucar.nc2.iosp.ChunkCache;
 import ucar.nc2.iosp.LayoutBB;
 import ucar.nc2.iosp.LayoutBBTiled;
 import ucar.nc2.iosp.hdf5.DataBTree;
@@ -48,11 +49,15 @@ public class H5tiledLayoutBB implements LayoutBB {
   private RandomAccessFile raf;
   private Filter[] filters;
   private ByteOrder byteOrder;
+  private final String varName;
+  private final ChunkCache chunkCache; // null if not caching decoded chunks
+  private String fileKey;
 
   private Section want;
   private int[] chunkSize; // from the StorageLayout message (exclude the elemSize)
   private int elemSize; // last dimension of the StorageLayout message
   private int nChunkDims;
+  private int chunkBytes = -1; // size of a decoded chunk, if it fits in an array
 
   private boolean debug;
 
@@ -91,6 +96,11 @@ public class H5tiledLayoutBB implements LayoutBB {
       }
     }
     this.byteOrder = byteOrder;
+    this.varName = v2.getFullName();
+    this.chunkCache = ChunkCache.getGlobalCache();
+    if (chunkCache != null) {
+      this.fileKey = ChunkCache.fileKey(raf);
+    }
 
     // we have to translate the want section into the same rank as the storageSize, in order to be able to call
     // Section.intersect(). It appears that storageSize (actually msl.chunkSize) may have an extra dimension, relative
@@ -107,6 +117,13 @@ public class H5tiledLayoutBB implements LayoutBB {
     this.chunkSize = new int[nChunkDims];
     System.arraycopy(vinfo.storageSize, 0, chunkSize, 0, nChunkDims);
     this.elemSize = vinfo.storageSize[vinfo.storageSize.length - 1]; // last one is always the elements size
+    long nbytes = 1;
+    for (int size : vinfo.storageSize) {
+      nbytes *= size;
+    }
+    if (nbytes <= Integer.MAX_VALUE) {
+      this.chunkBytes = (int) nbytes;
+    }
 
     // create the data chunk iterator
     DataBTree.DataChunkIterator iter = vinfo.btree.getDataChunkIteratorFilter(this.want);
@@ -175,6 +192,12 @@ public class H5tiledLayoutBB implements LayoutBB {
     public LayoutBBTiled.DataChunk next() throws IOException {
       return new DataChunk(delegate.next());
     }
+
+    // chunks are read with positional reads, and filters are stateless
+    @Override
+    public boolean allowsConcurrentReads() {
+      return true;
+    }
   }
 
   private class DataChunk implements LayoutBBTiled.DataChunk {
@@ -217,11 +240,18 @@ public class H5tiledLayoutBB implements LayoutBB {
     }
 
     public ByteBuffer getByteBuffer() throws IOException {
+      // cached chunks are shared, the returned buffer is only read from
+      byte[] data = (chunkCache == null) ? decode() : chunkCache.get(fileKey, varName, delegate.offset, this::decode);
+      ByteBuffer result = ByteBuffer.wrap(data);
+      result.order(byteOrder);
+      return result;
+    }
+
+    private byte[] decode() throws IOException {
       try {
         // read the data
         byte[] data = new byte[delegate.size];
-        raf.seek(delegate.filePos);
-        raf.readFully(data);
+        raf.readFully(delegate.filePos, data, 0, data.length);
 
         // apply filters backwards
         for (int i = filters.length - 1; i >= 0; i--) {
@@ -232,12 +262,10 @@ public class H5tiledLayoutBB implements LayoutBB {
             }
             continue;
           }
-          data = f.decode(data);
+          data = f.decode(data, chunkBytes);
         }
 
-        ByteBuffer result = ByteBuffer.wrap(data);
-        result.order(byteOrder);
-        return result;
+        return data;
       } catch (OutOfMemoryError e) {
         Error oom = new OutOfMemoryError("Ran out of memory trying to read HDF5 filtered chunk. Either increase the "
             + "JVM's heap size (use the -Xmx switch) or reduce the size of the dataset's chunks (use nccopy -c).");
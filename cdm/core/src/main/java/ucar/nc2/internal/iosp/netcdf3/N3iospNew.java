@@ -3,11 +3,15 @@ package ucar.nc2.internal.iosp.netcdf3;
 
 import static ucar.nc2.NetcdfFile.IOSP_MESSAGE_GET_NETCDF_FILE_FORMAT;
 
+import com.google.common.collect.ImmutableList;
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
 import java.util.Formatter;
+import java.util.List;
 import java.util.Optional;
 import ucar.ma2.Array;
 import ucar.ma2.ArrayStructureBB;
@@ -24,6 +28,7 @@ import ucar.nc2.constants.DataFormatType;
 import ucar.nc2.iosp.AbstractIOServiceProvider;
 import ucar.nc2.iosp.IOServiceProvider;
 import ucar.nc2.iosp.IospHelper;
+import ucar.nc2.iosp.IospSignature;
 import ucar.nc2.iosp.Layout;
 import ucar.nc2.iosp.LayoutRegular;
 import ucar.nc2.iosp.LayoutRegularSegmented;
@@ -45,6 +50,10 @@ public class N3iospNew extends AbstractIOServiceProvider implements IOServicePro
   // NetCDF File Format Type (defined in netcdf.h from the C library)
   private static final String NC_FORMATX_NC3 = String.valueOf(NetcdfFileFormat.NETCDF3.version());
 
+  // netcdf3 classic and 64-bit offset, CDF5 is not supported
+  private static final List<IospSignature> signatures = ImmutableList
+      .of(IospSignature.at(new byte[] {'C', 'D', 'F', 1}, 0), IospSignature.at(new byte[] {'C', 'D', 'F', 2}, 0));
+
   /*
    * CLASSIC
    * The maximum size of a record in the classic format in versions 3.5.1 and earlier is 2^32 - 4 bytes.
@@ -94,6 +103,11 @@ public class N3iospNew extends AbstractIOServiceProvider implements IOServicePro
     return N3headerNew.isValidFile(raf);
   }
 
+  @Override
+  public List<IospSignature> getSignatures() {
+    return signatures;
+  }
+
   @Override
   public String getDetailInfo() {
     Formatter f = new Formatter();
@@ -230,7 +244,6 @@ public class N3iospNew extends AbstractIOServiceProvider implements IOServicePro
     for (int recnum : recordRange) {
       if (debugRecord)
         System.out.println(" read record " + recnum);
-      raf.seek(header.recStart + recnum * header.recsize); // where the record starts
       count += raf.readToByteChannel(out, header.recStart + recnum * header.recsize, header.recsize);
     }
     // }
@@ -334,7 +347,7 @@ public class N3iospNew extends AbstractIOServiceProvider implements IOServicePro
    * @return primitive array with data read in
    */
   private Object readData(Layout index, DataType dataType) throws java.io.IOException {
-    return IospHelper.readDataFill(raf, index, dataType, null, -1);
+    return IospHelper.readDataFill(raf, index, dataType, null, ByteOrder.BIG_ENDIAN, true);
   }
 
   /**
@@ -413,13 +426,14 @@ public class N3iospNew extends AbstractIOServiceProvider implements IOServicePro
     for (int recnum : recordRange) {
       if (debugRecord)
         System.out.println(" read record " + recnum);
-      raf.seek(header.recStart + recnum * header.recsize); // where the record starts
+      long recordPos = header.recStart + recnum * header.recsize; // where the record starts
+      ByteBuffer dst = ByteBuffer.wrap(result, (int) (count * header.recsize), (int) header.recsize);
 
       if (recnum != header.numrecs - 1) {
-        raf.readFully(result, (int) (count * header.recsize), (int) header.recsize);
+        raf.readFully(recordPos, dst);
       } else {
         // "wart" allows file to be one byte short. since its always padding, we allow
-        raf.read(result, (int) (count * header.recsize), (int) header.recsize);
+        raf.read(recordPos, dst);
       }
       count++;
     }
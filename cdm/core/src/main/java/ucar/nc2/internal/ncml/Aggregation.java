@@ -19,6 +19,7 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.Executor;
+import javax.annotation.Nullable;
 
 /**
  * Superclass for NcML Aggregation Builder.
@@ -57,11 +58,26 @@ public abstract class Aggregation implements ucar.nc2.ncml.AggregationIF {
 
   // experimental multithreading
   protected static Executor executor;
+  protected static int maxDatasetsInFlight = 8;
 
   public static void setExecutor(Executor exec) {
     executor = exec;
   }
 
+  /**
+   * Read the nested datasets of outer dimension aggregations concurrently on the given executor, for both whole
+   * variable and section reads. The data is still assembled in the order of the nested datasets.
+   *
+   * @param exec read nested datasets on this executor, or null to read them serially (the default).
+   * @param maxInFlight maximum number of nested datasets that each read has in progress at once.
+   */
+  public static void setExecutor(@Nullable Executor exec, int maxInFlight) {
+    if (maxInFlight < 1)
+      throw new IllegalArgumentException("maxInFlight must be > 0");
+    executor = exec;
+    maxDatasetsInFlight = maxInFlight;
+  }
+
   public static void setTypicalDatasetMode(String mode) {
     if (mode.equalsIgnoreCase("random"))
       typicalDatasetMode = TypicalDataset.RANDOM;
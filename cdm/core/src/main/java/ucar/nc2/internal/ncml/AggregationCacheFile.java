@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.nc2.internal.ncml;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.ma2.IndexIterator;
+
+/**
+ * The persistent cache of a joinExisting aggregation. For each nested dataset it holds the last modified time of the
+ * dataset, its number of coordinates along the aggregation dimension, and the values of the cached variables (the
+ * coordinate variable and any promoted global attributes), so that reopening an aggregation does not have to open
+ * every nested dataset. Entries are only used by the aggregation if the dataset has not been modified since.
+ * <p/>
+ * The file is a compact binary file, kept in the DiskCache2 set with Aggregation.setPersistenceCache().
+ * Used by both ucar.nc2.internal.ncml.AggregationExisting and ucar.nc2.ncml.AggregationExisting.
+ */
+public class AggregationCacheFile {
+  private static final int MAGIC = 0x41474743; // "AGGC"
+  private static final int VERSION = 4; // version 3 was the XML cache file
+
+  /** What is known about one nested dataset. */
+  public static class Entry {
+    public final String id;
+    public final long lastModified; // of the dataset when the entry was made, or 0 if not known
+    public final int ncoord;
+    public final Map<String, Array> values; // cached variable name -> its values in this dataset
+
+    public Entry(String id, long lastModified, int ncoord, Map<String, Array> values) {
+      this.id = id;
+      this.lastModified = lastModified;
+      this.ncoord = ncoord;
+      this.values = values;
+    }
+  }
+
+  /**
+   * Read a cache file.
+   *
+   * @param cacheFile the cache file
+   * @return entries by dataset id, in the order they were written
+   * @throws IOException if the file can't be read, or is not a cache file of this version
+   */
+  public static Map<String, Entry> read(File cacheFile) throws IOException {
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)))) {
+      if (in.readInt() != MAGIC) {
+        throw new IOException("Not an aggregation cache file " + cacheFile.getPath());
+      }
+      int version = in.readInt();
+      if (version != VERSION) {
+        throw new IOException("Aggregation cache file " + cacheFile.getPath() + " has version " + version);
+      }
+
+      int ndatasets = in.readInt();
+      Map<String, Entry> result = new LinkedHashMap<>(2 * ndatasets);
+      for (int i = 0; i < ndatasets; i++) {
+        String id = in.readUTF();
+        long lastModified = in.readLong();
+        int ncoord = in.readInt();
+        int nvars = in.readInt();
+        Map<String, Array> values = new HashMap<>();
+        for (int j = 0; j < nvars; j++) {
+          String varName = in.readUTF();
+          values.put(varName, readArray(in));
+        }
+        result.put(id, new Entry(id, lastModified, ncoord, values));
+      }
+      return result;
+    }
+  }
+
+  /**
+   * Write a cache file. The file is written next to the cache file and then moved into place, so readers never see a
+   * partly written file. Values of types other than numbers and Strings are not written.
+   *
+   * @param cacheFile the cache file
+   * @param entries one entry for each nested dataset
+   */
+  public static void write(File cacheFile, Collection<Entry> entries) throws IOException {
+    File dir = cacheFile.getParentFile();
+    if (!dir.exists() && !dir.mkdirs()) {
+      throw new IOException("Cant make cache directory= " + dir);
+    }
+
+    File tempFile = File.createTempFile(cacheFile.getName(), ".tmp", dir);
+    try {
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(entries.size());
+        for (Entry entry : entries) {
+          out.writeUTF(entry.id);
+          out.writeLong(entry.lastModified);
+          out.writeInt(entry.ncoord);
+          int nvars = 0;
+          for (Array data : entry.values.values()) {
+            if (canWrite(data.getDataType())) {
+              nvars++;
+            }
+          }
+          out.writeInt(nvars);
+          for (Map.Entry<String, Array> value : entry.values.entrySet()) {
+            if (canWrite(value.getValue().getDataType())) {
+              out.writeUTF(value.getKey());
+              writeArray(out, value.getValue());
+            }
+          }
+        }
+      }
+
+      try {
+        Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+
+    } finally {
+      Files.deleteIfExists(tempFile.toPath()); // only there if something failed
+    }
+  }
+
+  private static boolean canWrite(DataType dtype) {
+    return dtype.isNumeric() || dtype == DataType.STRING;
+  }
+
+  private static void writeArray(DataOutputStream out, Array data) throws IOException {
+    DataType dtype = data.getDataType();
+    out.writeUTF(dtype.name());
+    out.writeInt((int) data.getSize());
+    IndexIterator ii = data.getIndexIterator();
+    while (ii.hasNext()) {
+      switch (dtype) {
+        case STRING:
+          out.writeUTF(String.valueOf(ii.getObjectNext()));
+          break;
+        case LONG:
+        case ULONG:
+          out.writeLong(ii.getLongNext());
+          break;
+        case FLOAT:
+          out.writeFloat(ii.getFloatNext());
+          break;
+        default:
+          out.writeDouble(ii.getDoubleNext());
+      }
+    }
+  }
+
+  private static Array readArray(DataInputStream in) throws IOException {
+    String typeName = in.readUTF();
+    DataType dtype = DataType.getType(typeName);
+    if (dtype == null || !canWrite(dtype)) {
+      throw new IOException("Bad data type in aggregation cache file " + typeName);
+    }
+    int n = in.readInt();
+    Array data = Array.factory(dtype, new int[] {n});
+    for (int i = 0; i < n; i++) {
+      switch (dtype) {
+        case STRING:
+          data.setObject(i, in.readUTF());
+          break;
+        case LONG:
+        case ULONG:
+          data.setLong(i, in.readLong());
+          break;
+        case FLOAT:
+          data.setFloat(i, in.readFloat());
+          break;
+        default:
+          data.setDouble(i, in.readDouble());
+      }
+    }
+    return data;
+  }
+}
@@ -6,21 +6,13 @@
 package ucar.nc2.internal.ncml;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
-import java.nio.channels.FileChannel;
-import java.nio.channels.FileLock;
-import java.nio.channels.OverlappingFileLockException;
-import java.nio.charset.StandardCharsets;
-import java.util.Date;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import org.jdom2.Element;
-import thredds.client.catalog.Catalog;
+import javax.annotation.Nullable;
 import thredds.inventory.MFile;
 import ucar.ma2.Array;
 import ucar.ma2.DataType;
@@ -170,23 +162,12 @@ class AggregationExisting extends AggregationOuter {
 
   /**
    * Persist info (ncoords, coordValues) from joinExisting, since that can be expensive to
-   * recreate.
+   * recreate. See {@link AggregationCacheFile}.
    */
   public void persistWrite() throws IOException {
-    if (diskCache2 == null) {
-      return;
-    }
-
-    String cacheName = getCacheName();
-    if (cacheName == null) {
-      return;
-    }
-    if (cacheName.startsWith("file:")) { // LOOK HACK
-      cacheName = cacheName.substring(5);
-    }
-    File cacheFile = diskCache2.getCacheFile(cacheName);
+    File cacheFile = getCacheFile();
     if (cacheFile == null) {
-      throw new IllegalStateException();
+      return;
     }
 
     // only write out if something changed after the cache file was last written, or if the file has been deleted
@@ -194,209 +175,113 @@ class AggregationExisting extends AggregationOuter {
       return;
     }
 
-    File dir = cacheFile.getParentFile();
-    if (!dir.exists()) {
-      if (!dir.mkdirs()) {
-        logger.error("Cant make cache directory= " + cacheFile);
-      }
-    }
-
-    // Get a file channel for the file
-    try (FileOutputStream fos = new FileOutputStream(cacheFile);
-        FileChannel channel = fos.getChannel();
-        PrintWriter out = new PrintWriter(new OutputStreamWriter(fos, StandardCharsets.UTF_8))) {
-
-      // Try acquiring the lock without blocking. This method returns
-      // null or throws an exception if the file is already locked.
-      FileLock lock;
-      try {
-        lock = channel.tryLock();
-      } catch (OverlappingFileLockException e) {
-        // File is already locked in this thread or virtual machine
-        return; // give up
-      }
-      if (lock == null) {
-        return;
-      }
-
-      out.print("<?xml version='1.0' encoding='UTF-8'?>\n");
-      out.print("<aggregation xmlns='http://www.unidata.ucar.edu/namespaces/netcdf/ncml-2.2' version='3' ");
-      out.print("type='" + type + "' ");
-      if (dimName != null) {
-        out.print("dimName='" + dimName + "' ");
-      }
-      if (datasetManager.getRecheck() != null) {
-        out.print("recheckEvery='" + datasetManager.getRecheck() + "' ");
+    List<AggregationCacheFile.Entry> entries = new ArrayList<>();
+    for (AggDataset dataset : getDatasets()) {
+      AggDatasetOuter dod = (AggDatasetOuter) dataset;
+      if (dod.getId() == null) {
+        logger.warn("id is null");
+        continue;
       }
-      out.print(">\n");
-
-      List<AggDataset> nestedDatasets = getDatasets();
-      for (AggDataset dataset : nestedDatasets) {
-        AggDatasetOuter dod = (AggDatasetOuter) dataset;
-        if (dod.getId() == null) {
-          logger.warn("id is null");
-        }
 
-        out.print("  <netcdf id='" + dod.getId() + "' ");
-        out.print("ncoords='" + dod.getNcoords(null) + "' >\n");
-
-        for (CacheVar pv : cacheList) {
-          Array data = pv.getData(dod.getId());
-          if (data != null) {
-            out.print("    <cache varName='" + pv.varName + "' >");
-            while (data.hasNext()) {
-              out.printf("%s ", data.next());
-            }
-            out.print("</cache>\n");
-            if (logger.isDebugEnabled()) {
-              logger.debug(
-                  " wrote array = " + pv.varName + " nelems= " + data.getSize() + " for " + dataset.getLocation());
-            }
-          }
+      Map<String, Array> values = new HashMap<>();
+      for (CacheVar pv : cacheList) {
+        Array data = pv.getData(dod.getId());
+        if (data != null) {
+          values.put(pv.varName, data);
         }
-        out.print("  </netcdf>\n");
       }
+      MFile mfile = dod.getMFile();
+      long lastModified = (mfile == null) ? 0 : mfile.getLastModified();
+      entries.add(new AggregationCacheFile.Entry(dod.getId(), lastModified, dod.getNcoords(null), values));
+    }
 
-      out.print("</aggregation>\n");
+    AggregationCacheFile.write(cacheFile, entries);
+    cacheDirty = false;
 
-      long time = datasetManager.getLastScanned();
-      if (time == 0) {
-        time = System.currentTimeMillis(); // no scans (eg all static) will have a 0
-      }
-
-      if (!cacheFile.setLastModified(time)) {
-        logger.warn("FAIL to set lastModified on {}", cacheFile.getPath());
-      }
-      cacheDirty = false;
-
-      if (logger.isDebugEnabled()) {
-        logger.debug("Aggregation persisted = " + cacheFile.getPath() + " lastModified= "
-            + new Date(datasetManager.getLastScanned()));
-      }
+    if (logger.isDebugEnabled()) {
+      logger.debug("Aggregation persisted = {} ndatasets= {}", cacheFile.getPath(), entries.size());
     }
   }
 
-  // read info from the persistent XML file, if it exists
+  // read info from the persistent cache file, if it exists. Datasets modified since they were cached are skipped,
+  // so only new or changed datasets have to be opened.
   protected void persistRead() {
-    if (diskCache2 == null) {
-      return;
-    }
-
-    String cacheName = getCacheName();
-    if (cacheName == null) {
-      return;
-    }
-    if (cacheName.startsWith("file:")) // LOOK
-    {
-      cacheName = cacheName.substring(5);
-    }
-
-    File cacheFile = diskCache2.getCacheFile(cacheName);
-    if (cacheFile == null) {
-      throw new IllegalStateException();
-    }
-    if (!cacheFile.exists()) {
+    File cacheFile = getCacheFile();
+    if (cacheFile == null || !cacheFile.exists()) {
       return;
     }
-    long lastWritten = cacheFile.lastModified();
 
     if (logger.isDebugEnabled()) {
-      logger.debug(" Try to Read cache {} " + cacheFile.getPath());
+      logger.debug(" Try to Read cache {}", cacheFile.getPath());
     }
 
-    Element aggElem;
+    Map<String, AggregationCacheFile.Entry> entries;
     try {
-      aggElem = ucar.nc2.util.xml.Parse.readRootElement("file:" + cacheFile.getPath());
+      entries = AggregationCacheFile.read(cacheFile);
     } catch (IOException e) {
       if (debugCache) {
-        System.out.println(" No cache for " + cacheName + " - " + e.getMessage());
+        System.out.println(" No cache for " + cacheFile.getPath() + " - " + e.getMessage());
       }
-      return;
-    }
-
-    String version = aggElem.getAttributeValue("version");
-    if (!"3".equals(version)) {
-      return; // dont read old cache files, recreate
-    }
-
-    // use a map to find datasets to avoid O(n**2) searching
-    Map<String, AggDataset> map = new HashMap<>();
-    for (AggDataset ds : getDatasets()) {
-      map.put(ds.getId(), ds);
+      return; // eg old XML cache files; it will be rewritten
     }
 
-    List<Element> ncList = aggElem.getChildren("netcdf", Catalog.ncmlNS);
-    for (Element netcdfElemNested : ncList) {
-      String id = netcdfElemNested.getAttributeValue("id");
-      AggDatasetOuter dod = (AggDatasetOuter) map.get(id);
-
-      if (null == dod) {
-        // this should mean that the dataset has been deleted. so not a problem
-        if (logger.isDebugEnabled()) {
-          logger.debug(" have cache but no dataset= {}", id);
-        }
-        continue;
-      }
-      if (logger.isDebugEnabled()) {
-        logger.debug(" use cache for dataset= {}", id);
+    for (AggDataset dataset : getDatasets()) {
+      AggDatasetOuter dod = (AggDatasetOuter) dataset;
+      AggregationCacheFile.Entry entry = entries.get(dod.getId());
+      if (entry == null) {
+        continue; // a new dataset
       }
 
       MFile mfile = dod.getMFile();
-      if (mfile != null && mfile.getLastModified() > lastWritten) { // skip datasets that have changed
+      if (mfile != null && mfile.getLastModified() != entry.lastModified) { // skip datasets that have changed
         if (logger.isDebugEnabled()) {
           logger.debug(" dataset was changed= {}", mfile);
         }
         continue;
       }
+      if (logger.isDebugEnabled()) {
+        logger.debug(" use cache for dataset= {}", entry.id);
+      }
 
       if (dod.ncoord == 0) {
-        String ncoordsS = netcdfElemNested.getAttributeValue("ncoords");
-        try {
-          dod.ncoord = Integer.parseInt(ncoordsS);
-          if (logger.isDebugEnabled()) {
-            logger.debug(" Read the cache; ncoords = {}", dod.ncoord);
-          }
-        } catch (NumberFormatException e) {
-          logger.error("bad ncoord attribute on dataset=" + id);
-        }
+        dod.ncoord = entry.ncoord;
       }
 
-      // if (dod.coordValue != null) continue; // allow ncml to override
-
-      List<Element> cacheElemList = netcdfElemNested.getChildren("cache", Catalog.ncmlNS);
-      for (Element cacheElemNested : cacheElemList) {
-        String varName = cacheElemNested.getAttributeValue("varName");
-        CacheVar pv = findCacheVariable(varName);
-        if (pv != null) {
-          String sdata = cacheElemNested.getText();
-          if (sdata.isEmpty()) {
-            continue;
-          }
-          if (logger.isDebugEnabled()) {
-            logger.debug(" read data for var = " + varName + " size= " + sdata.length());
-          }
-
-          // long start = System.nanoTime();
-          String[] vals = sdata.split(" ");
-
-          try {
-            Array data = Array.makeArray(pv.dtype, vals);
-            pv.putData(id, data);
-            countCacheUse++;
-
-          } catch (Exception e) {
-            logger.warn("Error reading cached data ", e);
-          }
-
+      for (Map.Entry<String, Array> value : entry.values.entrySet()) {
+        CacheVar pv = findCacheVariable(value.getKey());
+        if (pv == null) {
+          logger.warn("not a cache var=" + value.getKey());
+        } else if (pv.dtype != value.getValue().getDataType()) {
+          logger.warn("cached data for var=" + value.getKey() + " has the wrong type");
         } else {
-          logger.warn("not a cache var=" + varName);
+          pv.putData(entry.id, value.getValue());
+          countCacheUse++;
         }
       }
     }
+  }
 
+  @Nullable
+  private File getCacheFile() {
+    if (diskCache2 == null) {
+      return null;
+    }
+
+    String cacheName = getCacheName();
+    if (cacheName == null) {
+      return null;
+    }
+    if (cacheName.startsWith("file:")) { // LOOK HACK
+      cacheName = cacheName.substring(5);
+    }
+    File cacheFile = diskCache2.getCacheFile(cacheName);
+    if (cacheFile == null) {
+      throw new IllegalStateException();
+    }
+    return cacheFile;
   }
 
-  // name to use in the DiskCache2 for the persistent XML info.
+  // name to use in the DiskCache2 for the persistent info.
   // Document root is aggregation
 
   // has the name getCacheName()
@@ -8,9 +8,12 @@ package ucar.nc2.iosp;
 import ucar.unidata.io.RandomAccessFile;
 import java.io.EOFException;
 import java.io.IOException;
+import java.util.Arrays;
 
 /**
  * Helper for reading data that has been bit packed.
+ * Use readUInts() or readULongs() to read many values of the same width at once, which is much faster than calling
+ * bits2UInt() for each value.
  *
  * @author caron
  * @since Apr 7, 2008
@@ -30,9 +33,15 @@ public class BitReader {
   private byte bitBuf;
   private int bitPos; // Current bit position in bitBuf.
 
-  // for testing
-  public BitReader(byte[] test) {
-    this.data = test;
+  private byte[] buffer = new byte[0]; // bulk reads from raf
+
+  /**
+   * Read from bytes already in memory.
+   *
+   * @param data the packed data, starting at the first value
+   */
+  public BitReader(byte[] data) {
+    this.data = data;
     this.dataPos = 0;
   }
 
@@ -121,7 +130,7 @@ public class BitReader {
       assert shift >= 0;
 
       // put it there
-      result |= myBits << shift;
+      result |= (long) myBits << shift;
 
       // -- put bit to result ----------------------
       // update information on what we consumed
@@ -156,6 +165,185 @@ public class BitReader {
 
   }
 
+  /**
+   * Read the next n values of nb bits each, as unsigned ints. Reads the same bits as calling (int) bits2UInt(nb) n
+   * times, and leaves the reader at the same position.
+   *
+   * @param nb the number of bits in each value, must be 0 <= nb <= 64. Values of more than 31 bits are truncated to
+   *        an int, as the cast does.
+   * @param dest put the values here
+   * @param destPos starting at this index
+   * @param n number of values
+   * @throws java.io.IOException on read error
+   */
+  public void readUInts(int nb, int[] dest, int destPos, int n) throws IOException {
+    if (nb < 0 || nb > 64)
+      throw new IllegalArgumentException("nb must be between 0 and 64");
+    if (nb == 0) {
+      Arrays.fill(dest, destPos, destPos + n, 0);
+      return;
+    }
+    Unpacker unpacker = startBulk(nb, n);
+    if (nb <= 32) {
+      unpacker.unpack(nb, dest, destPos, n);
+    } else {
+      for (int i = 0; i < n; i++) {
+        unpacker.next(nb - 32); // only the low 32 bits are kept
+        dest[destPos + i] = (int) unpacker.next(32);
+      }
+    }
+    endBulk(unpacker);
+  }
+
+  /**
+   * Read the next n values of nb bits each, as unsigned longs. Reads the same bits as calling bits2UInt(nb) n times,
+   * and leaves the reader at the same position.
+   *
+   * @param nb the number of bits in each value, must be 0 <= nb <= 64.
+   * @param dest put the values here
+   * @param destPos starting at this index
+   * @param n number of values
+   * @throws java.io.IOException on read error
+   */
+  public void readULongs(int nb, long[] dest, int destPos, int n) throws IOException {
+    if (nb < 0 || nb > 64)
+      throw new IllegalArgumentException("nb must be between 0 and 64");
+    if (nb == 0) {
+      Arrays.fill(dest, destPos, destPos + n, 0);
+      return;
+    }
+    Unpacker unpacker = startBulk(nb, n);
+    for (int i = 0; i < n; i++) {
+      if (nb <= 32)
+        dest[destPos + i] = unpacker.next(nb);
+      else
+        dest[destPos + i] = (unpacker.next(nb - 32) << 32) | unpacker.next(32);
+    }
+    endBulk(unpacker);
+  }
+
+  // get the bytes holding the next n values into memory, and start unpacking at the current bit
+  private Unpacker startBulk(int nb, int n) throws IOException {
+    if (n < 0)
+      throw new IllegalArgumentException("n must be >= 0");
+    long need = (long) nb * n - bitPos; // bits still to be fetched after the current byte
+    int nbytes = (need <= 0) ? 0 : (int) ((need + 7) / 8);
+
+    if (raf != null) {
+      // the current byte, then the bytes that are needed
+      if (buffer.length < nbytes + 1)
+        buffer = new byte[nbytes + 1];
+      buffer[0] = bitBuf;
+      raf.readFully(buffer, 1, nbytes);
+      return new Unpacker(buffer, nbytes + 1, BIT_LENGTH - bitPos);
+
+    } else {
+      if (dataPos + (long) nbytes > data.length)
+        throw new EOFException();
+      long bitOffset = (bitPos == 0) ? dataPos * 8L : (dataPos - 1) * 8L + (BIT_LENGTH - bitPos);
+      dataPos += nbytes;
+      return new Unpacker(data, dataPos, bitOffset);
+    }
+  }
+
+  // leave the reader where bits2UInt() would have left it
+  private void endBulk(Unpacker unpacker) {
+    int rem = (int) (unpacker.bitOffset() % BIT_LENGTH);
+    if (rem == 0) {
+      bitPos = 0;
+    } else {
+      bitBuf = unpacker.src[(int) (unpacker.bitOffset() / BIT_LENGTH)];
+      bitPos = BIT_LENGTH - rem;
+    }
+  }
+
+  /**
+   * Unpacks values of up to 32 bits from a byte array. Bits are taken into a 64 bit word, 32 bits at a time, and
+   * values are shifted out of it. Values of 8, 12, 16 and 24 bits that start on a byte boundary are taken directly
+   * from the bytes.
+   */
+  private static class Unpacker {
+    private final byte[] src;
+    private final int srcLength; // bytes after this are not read
+    private int srcPos; // next byte to take into word
+    private long word; // the low wordBits are not yet used
+    private int wordBits;
+
+    Unpacker(byte[] src, int srcLength, long bitOffset) {
+      this.src = src;
+      this.srcLength = srcLength;
+      this.srcPos = (int) (bitOffset / BIT_LENGTH);
+      int skip = (int) (bitOffset % BIT_LENGTH);
+      if (skip != 0) {
+        word = src[srcPos++] & BYTE_BITMASK;
+        wordBits = BIT_LENGTH - skip;
+      }
+    }
+
+    // position of the next unused bit in src
+    long bitOffset() {
+      return (long) srcPos * BIT_LENGTH - wordBits;
+    }
+
+    // the next nb bits, 0 < nb <= 32
+    long next(int nb) {
+      if (wordBits < nb) {
+        if (srcPos + 4 <= srcLength) {
+          int next4 = ((src[srcPos] & BYTE_BITMASK) << 24) | ((src[srcPos + 1] & BYTE_BITMASK) << 16)
+              | ((src[srcPos + 2] & BYTE_BITMASK) << 8) | (src[srcPos + 3] & BYTE_BITMASK);
+          word = (word << 32) | (next4 & 0xFFFFFFFFL);
+          srcPos += 4;
+          wordBits += 32;
+        } else {
+          while (wordBits < nb) { // near the end; the caller has made sure the bits are there
+            word = (word << 8) | (src[srcPos++] & BYTE_BITMASK);
+            wordBits += 8;
+          }
+        }
+      }
+      wordBits -= nb;
+      return (word >>> wordBits) & (0xFFFFFFFFL >>> (32 - nb));
+    }
+
+    // the next n values of nb bits, 0 < nb <= 32
+    void unpack(int nb, int[] dest, int destPos, int n) {
+      if (wordBits == 0) {
+        int p = srcPos;
+        switch (nb) {
+          case 8:
+            for (int i = 0; i < n; i++)
+              dest[destPos + i] = src[p + i] & BYTE_BITMASK;
+            srcPos += n;
+            return;
+          case 16:
+            for (int i = 0; i < n; i++, p += 2)
+              dest[destPos + i] = ((src[p] & BYTE_BITMASK) << 8) | (src[p + 1] & BYTE_BITMASK);
+            srcPos = p;
+            return;
+          case 24:
+            for (int i = 0; i < n; i++, p += 3)
+              dest[destPos + i] =
+                  ((src[p] & BYTE_BITMASK) << 16) | ((src[p + 1] & BYTE_BITMASK) << 8) | (src[p + 2] & BYTE_BITMASK);
+            srcPos = p;
+            return;
+          case 12:
+            int i = 0;
+            for (; i + 1 < n; i += 2, p += 3) { // two values in three bytes
+              int b1 = src[p + 1] & BYTE_BITMASK;
+              dest[destPos + i] = ((src[p] & BYTE_BITMASK) << 4) | (b1 >> 4);
+              dest[destPos + i + 1] = ((b1 & 0x0F) << 8) | (src[p + 2] & BYTE_BITMASK);
+            }
+            srcPos = p;
+            if (i < n) // odd one out
+              dest[destPos + i] = (int) next(12);
+            return;
+        }
+      }
+      for (int i = 0; i < n; i++)
+        dest[destPos + i] = (int) next(nb);
+    }
+  }
+
   private byte nextByte() throws IOException {
     if (raf != null) {
       int result = raf.read();
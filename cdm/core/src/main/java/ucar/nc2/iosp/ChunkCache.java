@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 1998-2021 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.iosp;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.ExecutionError;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Formatter;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import ucar.unidata.io.RandomAccessFile;
+
+/**
+ * A memory cache of decoded (decompressed and unfiltered) data chunks, for chunked formats like HDF5 and Zarr.
+ * Chunks are keyed by file, variable and chunk offset, so the cache is shared by all NetcdfFile objects that open
+ * the same file, and by all threads. The cache is bounded by the total number of decoded bytes it holds, and evicts
+ * the least recently used chunks first.
+ * <p>
+ * Cached byte arrays are shared, and must not be modified by the caller.
+ * The global cache is off by default; turn it on with {@link #setGlobalCache}.
+ */
+@ThreadSafe
+public class ChunkCache {
+  private static ChunkCache globalCache;
+
+  /**
+   * Set the global chunk cache used by the chunked IOSPs.
+   *
+   * @param chunkCache use this cache, or null to turn off caching.
+   */
+  public static synchronized void setGlobalCache(@Nullable ChunkCache chunkCache) {
+    if (globalCache != null) {
+      globalCache.clearCache();
+    }
+    globalCache = chunkCache;
+  }
+
+  /** The global chunk cache, or null if not set. */
+  @Nullable
+  public static synchronized ChunkCache getGlobalCache() {
+    return globalCache;
+  }
+
+  /**
+   * Make the file part of a chunk key. Includes the file length and last modified time,
+   * so that chunks of a file that has been rewritten are not reused.
+   */
+  public static String fileKey(RandomAccessFile raf) throws IOException {
+    return raf.getLocation() + "#" + raf.length() + "#" + raf.getLastModified();
+  }
+
+  //////////////////////////////////////////////////////////////////////////////////
+
+  private final long maxBytes;
+  private final Cache<Key, byte[]> cache;
+
+  /** @param maxBytes maximum total size of the cached chunks, in bytes. */
+  public ChunkCache(long maxBytes) {
+    this.maxBytes = maxBytes;
+    this.cache = CacheBuilder.newBuilder().maximumWeight(maxBytes).weigher((Key k, byte[] v) -> v.length)
+        .recordStats().build();
+  }
+
+  /**
+   * Get the decoded chunk, decoding it if not already cached.
+   * Concurrent requests for the same chunk wait for a single decode.
+   *
+   * @param fileKey from {@link #fileKey}
+   * @param varName full name of the variable
+   * @param chunkOffset element offset of the chunk in the variable
+   * @param decoder reads and decodes the chunk
+   * @return decoded chunk, must not be modified
+   */
+  public byte[] get(String fileKey, String varName, int[] chunkOffset, Callable<byte[]> decoder) throws IOException {
+    try {
+      return cache.get(new Key(fileKey, varName, chunkOffset), decoder);
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException)
+        throw (IOException) cause;
+      if (cause instanceof RuntimeException)
+        throw (RuntimeException) cause;
+      throw new IOException(cause);
+    } catch (ExecutionError e) {
+      throw (Error) e.getCause();
+    }
+  }
+
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  /** Number of chunks in the cache. */
+  public long size() {
+    return cache.size();
+  }
+
+  /** Total size in bytes of the cached chunks. */
+  public long getCachedBytes() {
+    long total = 0;
+    for (byte[] b : cache.asMap().values())
+      total += b.length;
+    return total;
+  }
+
+  public long getHitCount() {
+    return cache.stats().hitCount();
+  }
+
+  public long getMissCount() {
+    return cache.stats().missCount();
+  }
+
+  public long getEvictionCount() {
+    return cache.stats().evictionCount();
+  }
+
+  public CacheStats getStats() {
+    return cache.stats();
+  }
+
+  public void clearCache() {
+    cache.invalidateAll();
+  }
+
+  public void showStats(Formatter f) {
+    CacheStats stats = cache.stats();
+    f.format("ChunkCache: %d chunks, %d / %d bytes, hits=%d misses=%d evictions=%d hitRate=%.3f%n", cache.size(),
+        getCachedBytes(), maxBytes, stats.hitCount(), stats.missCount(), stats.evictionCount(), stats.hitRate());
+  }
+
+  private static class Key {
+    private final String fileKey;
+    private final String varName;
+    private final int[] offset;
+    private final int hashCode;
+
+    Key(String fileKey, String varName, int[] offset) {
+      this.fileKey = fileKey;
+      this.varName = varName;
+      this.offset = offset.clone();
+      this.hashCode = Objects.hash(fileKey, varName, Arrays.hashCode(offset));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o)
+        return true;
+      if (!(o instanceof Key))
+        return false;
+      Key key = (Key) o;
+      return hashCode == key.hashCode && fileKey.equals(key.fileKey) && varName.equals(key.varName)
+          && Arrays.equals(offset, key.offset);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+}
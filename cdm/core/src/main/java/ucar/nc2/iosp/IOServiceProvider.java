@@ -7,6 +7,8 @@ package ucar.nc2.iosp;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.channels.WritableByteChannel;
+import java.util.Collections;
+import java.util.List;
 import javax.annotation.Nullable;
 import ucar.ma2.Section;
 import ucar.ma2.InvalidRangeException;
@@ -29,8 +31,9 @@ import ucar.unidata.io.RandomAccessFile;
  * When NetcdfFiles.open() is called:
  * <ol>
  * <li>the file is opened as a ucar.unidata.io.RandomAccessFile;</li>
- * <li>the file is handed to the isValidFile() method of each registered
- * IOServiceProvider class (until one returns true, which means it can read the file).</li>
+ * <li>the file is handed to the isValidFile() method of the registered IOServiceProvider classes whose
+ * signatures match the start of the file, then of each other registered IOServiceProvider class
+ * (until one returns true, which means it can read the file).</li>
  * <li>the open() method on the resulting IOServiceProvider class is handed the file.</li>
  *
  * @author caron
@@ -243,6 +246,17 @@ public interface IOServiceProvider extends Comparable<IOServiceProvider> {
    */
   String getFileTypeDescription();
 
+  /**
+   * The magic bytes that files of this type start with. When opening a file, an IOSP that declares signatures is only
+   * asked isValidFile() if the file may match one of them; IOSPs without signatures are always asked.
+   * So only declare signatures that every file accepted by isValidFile() has, and keep isValidFile() as the real check.
+   *
+   * @return signatures of this file type, empty by default.
+   */
+  default List<IospSignature> getSignatures() {
+    return Collections.emptyList();
+  }
+
   /**
    * Used to determine the ordering for dynamically loaded IOServiceProviders.
    */
@@ -168,6 +168,128 @@ public class IospHelper {
     throw new IllegalStateException("unknown type= " + dataType);
   }
 
+  /**
+   * Read data subset from RandomAccessFile using positional reads, create primitive array of size
+   * Layout.getTotalNelems. Reading is controlled by the Layout object.
+   * The file pointer and byte order of raf are not used or changed, so concurrent calls may share one raf.
+   *
+   * @param raf read from here.
+   * @param index handles skipping around in the file.
+   * @param dataType dataType of the variable
+   * @param fillValue must be Number if dataType.isNumeric(), or String for STRING, byte[] for Structure, or null for
+   *        none
+   * @param byteOrder byte order of the data in the file
+   * @param convertChar true if bytes should be converted to char for dataType CHAR
+   * @return primitive array with data read in
+   * @throws java.io.IOException on read error
+   */
+  public static Object readDataFill(RandomAccessFile raf, Layout index, DataType dataType, Object fillValue,
+      ByteOrder byteOrder, boolean convertChar) throws java.io.IOException {
+    Object arr = (fillValue == null) ? makePrimitiveArray((int) index.getTotalNelems(), dataType)
+        : makePrimitiveArray((int) index.getTotalNelems(), dataType, fillValue);
+    return readData(raf, index, dataType, arr, byteOrder, convertChar);
+  }
+
+  /**
+   * Read data subset from RandomAccessFile using positional reads, place in given primitive array.
+   * Reading is controlled by the Layout object.
+   * The file pointer and byte order of raf are not used or changed, so concurrent calls may share one raf.
+   *
+   * @param raf read from here.
+   * @param layout handles skipping around in the file.
+   * @param dataType dataType of the variable
+   * @param arr primitive array to read data into
+   * @param byteOrder byte order of the data in the file
+   * @param convertChar true if bytes should be converted to char for dataType CHAR
+   * @return primitive array with data read in
+   * @throws java.io.IOException on read error
+   */
+  public static Object readData(RandomAccessFile raf, Layout layout, DataType dataType, Object arr,
+      ByteOrder byteOrder, boolean convertChar) throws java.io.IOException {
+    if (showLayoutTypes)
+      System.out.println("***RAF positional LayoutType=" + layout.getClass().getName());
+
+    if (dataType.getPrimitiveClassType() == byte.class || dataType == DataType.CHAR) {
+      byte[] pa = (byte[]) arr;
+      while (layout.hasNext()) {
+        Layout.Chunk chunk = layout.next();
+        raf.readFully(chunk.getSrcPos(), pa, (int) chunk.getDestElem(), chunk.getNelems());
+      }
+      if (convertChar && dataType == DataType.CHAR)
+        return convertByteToChar(pa);
+      else
+        return pa;
+
+    } else if (dataType.getPrimitiveClassType() == short.class) {
+      short[] pa = (short[]) arr;
+      while (layout.hasNext()) {
+        Layout.Chunk chunk = layout.next();
+        raf.readShort(chunk.getSrcPos(), pa, (int) chunk.getDestElem(), chunk.getNelems(), byteOrder);
+      }
+      return pa;
+
+    } else if (dataType.getPrimitiveClassType() == int.class) {
+      int[] pa = (int[]) arr;
+      while (layout.hasNext()) {
+        Layout.Chunk chunk = layout.next();
+        raf.readInt(chunk.getSrcPos(), pa, (int) chunk.getDestElem(), chunk.getNelems(), byteOrder);
+      }
+      return pa;
+
+    } else if (dataType == DataType.FLOAT) {
+      float[] pa = (float[]) arr;
+      while (layout.hasNext()) {
+        Layout.Chunk chunk = layout.next();
+        raf.readFloat(chunk.getSrcPos(), pa, (int) chunk.getDestElem(), chunk.getNelems(), byteOrder);
+      }
+      return pa;
+
+    } else if (dataType == DataType.DOUBLE) {
+      double[] pa = (double[]) arr;
+      while (layout.hasNext()) {
+        Layout.Chunk chunk = layout.next();
+        raf.readDouble(chunk.getSrcPos(), pa, (int) chunk.getDestElem(), chunk.getNelems(), byteOrder);
+      }
+      return pa;
+
+    } else if (dataType.getPrimitiveClassType() == long.class) {
+      long[] pa = (long[]) arr;
+      while (layout.hasNext()) {
+        Layout.Chunk chunk = layout.next();
+        raf.readLong(chunk.getSrcPos(), pa, (int) chunk.getDestElem(), chunk.getNelems(), byteOrder);
+      }
+      return pa;
+
+    } else if (dataType == DataType.STRUCTURE) {
+      byte[] pa = (byte[]) arr;
+      int recsize = layout.getElemSize();
+      while (layout.hasNext()) {
+        Layout.Chunk chunk = layout.next();
+        raf.readFully(chunk.getSrcPos(), pa, (int) chunk.getDestElem() * recsize, chunk.getNelems() * recsize);
+      }
+      return pa;
+
+    } else if (dataType == DataType.STRING) {
+      int size = (int) layout.getTotalNelems();
+      int elemSize = layout.getElemSize();
+      StringBuilder sb = new StringBuilder(size);
+      byte[] b = new byte[elemSize];
+      while (layout.hasNext()) {
+        Layout.Chunk chunk = layout.next();
+        if (chunk == null) {
+          continue;
+        }
+        for (int i = 0; i < chunk.getNelems(); i++) {
+          raf.readFully(chunk.getSrcPos() + (long) i * elemSize, b, 0, elemSize);
+          sb.append(new String(b, StandardCharsets.UTF_8));
+        }
+      }
+      return sb.toString();
+    }
+
+    throw new IllegalStateException("unknown type= " + dataType);
+  }
+
   /**
    * Read data subset from PositioningDataInputStream, create primitive array of size Layout.getTotalNelems.
    * Reading is controlled by the Layout object.
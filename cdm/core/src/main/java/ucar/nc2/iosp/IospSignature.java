@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.nc2.iosp;
+
+import com.google.common.base.Preconditions;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * The magic bytes that a file type starts with, at one of some fixed offsets, or anywhere within the first bytes of
+ * the file. An IOServiceProvider declares these with IOServiceProvider.getSignatures(), so that NetcdfFiles.open()
+ * can find the IOSP for a file by looking at the start of the file, instead of calling isValidFile() of every IOSP.
+ * <p/>
+ * A signature is a hint, not a check: isValidFile() is still called on the IOSP whose signature matches. But an IOSP
+ * that declares signatures is not asked about files that cannot match any of them.
+ *
+ * @see IOServiceProvider#getSignatures()
+ */
+public class IospSignature {
+
+  /**
+   * The magic bytes are at one of the given offsets.
+   *
+   * @param magic the magic bytes
+   * @param offsets possible offsets from the start of the file
+   */
+  public static IospSignature at(byte[] magic, long... offsets) {
+    Preconditions.checkArgument(magic.length > 0);
+    Preconditions.checkArgument(offsets.length > 0);
+    return new IospSignature(magic, offsets, 0);
+  }
+
+  /** The ASCII magic string is at the start of the file. */
+  public static IospSignature at(String magic) {
+    return at(magic.getBytes(StandardCharsets.US_ASCII), 0);
+  }
+
+  /**
+   * The magic bytes start somewhere in the first searchLength bytes of the file.
+   *
+   * @param magic the magic bytes
+   * @param searchLength how far into the file the magic bytes may start
+   */
+  public static IospSignature within(byte[] magic, int searchLength) {
+    Preconditions.checkArgument(magic.length > 0);
+    Preconditions.checkArgument(searchLength > 0);
+    return new IospSignature(magic, null, searchLength);
+  }
+
+  /** The ASCII magic string starts somewhere in the first searchLength bytes of the file. */
+  public static IospSignature within(String magic, int searchLength) {
+    return within(magic.getBytes(StandardCharsets.US_ASCII), searchLength);
+  }
+
+  private final byte[] magic;
+  private final long[] offsets; // null if searching
+  private final int searchLength;
+
+  private IospSignature(byte[] magic, long[] offsets, int searchLength) {
+    this.magic = magic.clone();
+    this.offsets = offsets == null ? null : offsets.clone();
+    this.searchLength = searchLength;
+  }
+
+  /**
+   * Whether the start of a file matches this signature. Only the part of the signature that lies within the given
+   * prefix is looked at, so a file may still be of this type when this returns false.
+   *
+   * @param prefix the first bytes of the file
+   * @param length number of valid bytes in prefix
+   * @return true if the magic bytes were found in prefix
+   */
+  public boolean matches(byte[] prefix, int length) {
+    if (offsets != null) {
+      for (long offset : offsets) {
+        if (offset + magic.length <= length && matchesAt(prefix, (int) offset)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    int last = Math.min(searchLength - 1, length - magic.length);
+    for (int pos = 0; pos <= last; pos++) {
+      if (matchesAt(prefix, pos)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Whether a file may match this signature. Unlike matches(), this is also true when the magic bytes could be
+   * further into the file than the prefix reaches, so when this returns false the file is not of this type.
+   *
+   * @param prefix the first bytes of the file
+   * @param length number of valid bytes in prefix
+   * @param fileLength length of the file
+   * @return false if the file cannot match this signature
+   */
+  public boolean mayMatch(byte[] prefix, int length, long fileLength) {
+    if (matches(prefix, length)) {
+      return true;
+    }
+    if (offsets != null) {
+      for (long offset : offsets) {
+        if (offset + magic.length > length && offset + magic.length <= fileLength) {
+          return true;
+        }
+      }
+      return false;
+    }
+    // the last position that could be searched in the file, beyond the last one searched in prefix
+    long lastInFile = Math.min(searchLength - 1, fileLength - magic.length);
+    return lastInFile > length - magic.length;
+  }
+
+  private boolean matchesAt(byte[] prefix, int pos) {
+    for (int i = 0; i < magic.length; i++) {
+      if (prefix[pos + i] != magic[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public String toString() {
+    return "IospSignature{" + Arrays.toString(magic) + (offsets != null ? " at " + Arrays.toString(offsets)
+        : " within " + searchLength) + '}';
+  }
+}
@@ -6,8 +6,13 @@ package ucar.nc2.iosp;
 
 import ucar.ma2.InvalidRangeException;
 import ucar.ma2.Section;
+import ucar.nc2.util.BoundedExecutor;
 import java.io.IOException;
 import java.nio.*;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Executor;
+import javax.annotation.Nullable;
 
 /**
  * For datasets where the data are stored in chunks, and must be processed, eg compressed or filtered.
@@ -29,8 +34,30 @@ public class LayoutBBTiled implements LayoutBB {
   // track the overall iteration
   private long totalNelems, totalNelemsDone; // total number of elemens
 
+  // chunks being read and decoded ahead on the executor, in iteration order; null if not concurrent
+  private Deque<Section> sections;
+  private BoundedExecutor.Ordered<ByteBuffer> chunks;
+
   private static final boolean debug = false, debugIntersection = false;
 
+  // experimental multithreading
+  private static Executor executor;
+  private static int maxChunksInFlight = 16;
+
+  /**
+   * Read and decode chunks concurrently on the given executor. This is used only when the DataChunkIterator
+   * allows concurrent reads. Chunks are still returned in iteration order.
+   *
+   * @param exec decode chunks on this executor, or null to decode them on the calling thread (the default).
+   * @param maxInFlight maximum number of chunks that each layout reads and decodes ahead of the current one.
+   */
+  public static void setExecutor(@Nullable Executor exec, int maxInFlight) {
+    if (maxInFlight < 1)
+      throw new IllegalArgumentException("maxInFlight must be > 0");
+    executor = exec;
+    maxChunksInFlight = maxInFlight;
+  }
+
   /**
    * Constructor.
    *
@@ -49,6 +76,12 @@ public class LayoutBBTiled implements LayoutBB {
 
     this.totalNelems = this.want.computeSize();
     this.totalNelemsDone = 0;
+
+    Executor exec = executor;
+    if (exec != null && chunkIterator.allowsConcurrentReads()) {
+      this.sections = new ArrayDeque<>();
+      this.chunks = new BoundedExecutor.Ordered<>(exec, maxChunksInFlight);
+    }
   }
 
   public long getTotalNelems() {
@@ -68,29 +101,25 @@ public class LayoutBBTiled implements LayoutBB {
     if ((index == null) || !index.hasNext()) { // get new data node
       try {
         Section dataSection;
-        DataChunk dataChunk;
+        ByteBuffer bb;
 
-        while (true) { // look for intersecting sections
-          if (!chunkIterator.hasNext()) {
+        if (chunks != null) {
+          fillPending();
+          dataSection = sections.poll();
+          if (dataSection == null) {
             next = null;
             return false;
           }
+          bb = chunks.take();
 
-          // get next dataChunk
-          try {
-            dataChunk = chunkIterator.next();
-          } catch (IOException e) {
-            e.printStackTrace();
+        } else {
+          DataChunk dataChunk = nextIntersectingChunk();
+          if (dataChunk == null) {
             next = null;
             return false;
           }
-
-          // make the dataSection for this chunk
           dataSection = new Section(dataChunk.getOffset(), chunkSize);
-          if (debugIntersection)
-            System.out.println(" test intersecting: " + dataSection + " want: " + want);
-          if (dataSection.intersects(want)) // does it intersect ?
-            break;
+          bb = dataChunk.getByteBuffer(); // this does the uncompression
         }
 
         if (debug)
@@ -98,7 +127,7 @@ public class LayoutBBTiled implements LayoutBB {
               " found intersecting dataSection: " + dataSection + " intersect= " + dataSection.intersect(want));
 
         index = new IndexChunkerTiled(dataSection, want); // new indexer into this chunk
-        next = new Chunk(dataChunk.getByteBuffer()); // this does the uncompression
+        next = new Chunk(bb);
 
       } catch (InvalidRangeException | IOException e) {
         throw new IllegalStateException(e);
@@ -112,6 +141,42 @@ public class LayoutBBTiled implements LayoutBB {
     return true;
   }
 
+  // look for the next chunk intersecting the wanted section, return null if none
+  @Nullable
+  private DataChunk nextIntersectingChunk() throws InvalidRangeException {
+    while (true) {
+      if (!chunkIterator.hasNext())
+        return null;
+
+      // get next dataChunk
+      DataChunk dataChunk;
+      try {
+        dataChunk = chunkIterator.next();
+      } catch (IOException e) {
+        e.printStackTrace();
+        return null;
+      }
+
+      // make the dataSection for this chunk
+      Section dataSection = new Section(dataChunk.getOffset(), chunkSize);
+      if (debugIntersection)
+        System.out.println(" test intersecting: " + dataSection + " want: " + want);
+      if (dataSection.intersects(want)) // does it intersect ?
+        return dataChunk;
+    }
+  }
+
+  // keep up to maxChunksInFlight intersecting chunks being read and decoded
+  private void fillPending() throws InvalidRangeException {
+    while (!chunks.isFull()) {
+      DataChunk dataChunk = nextIntersectingChunk();
+      if (dataChunk == null)
+        return;
+      sections.add(new Section(dataChunk.getOffset(), chunkSize));
+      chunks.add(dataChunk::getByteBuffer);
+    }
+  }
+
   public LayoutBB.Chunk next() {
     return next;
   }
@@ -137,6 +202,15 @@ public class LayoutBBTiled implements LayoutBB {
     boolean hasNext();
 
     DataChunk next() throws IOException;
+
+    /**
+     * Whether DataChunk.getByteBuffer() may be called concurrently for the chunks of this iterator,
+     * and while next() is being called. If true, chunks may be decoded on the executor set with
+     * {@link LayoutBBTiled#setExecutor}.
+     */
+    default boolean allowsConcurrentReads() {
+      return false;
+    }
   }
 
   /**
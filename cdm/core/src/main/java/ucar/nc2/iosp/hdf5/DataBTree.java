@@ -5,6 +5,9 @@
 
 package ucar.nc2.iosp.hdf5;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import ucar.ma2.Section;
 import ucar.nc2.iosp.LayoutTiled;
@@ -141,6 +144,19 @@ public class DataBTree {
     }
   }
 
+  // header information is in le byte order
+  private ByteBuffer readNode(long filePos, int nbytes) throws IOException {
+    ByteBuffer bb = ByteBuffer.allocate(nbytes);
+    getRandomAccessFile().readFully(filePos, bb);
+    bb.flip();
+    bb.order(ByteOrder.LITTLE_ENDIAN);
+    return bb;
+  }
+
+  private long readOffset(ByteBuffer bb) {
+    return h5.isOffsetLong() ? bb.getLong() : (long) bb.getInt();
+  }
+
   // Btree nodes
   class Node {
     private long address;
@@ -161,28 +177,35 @@ public class DataBTree {
       if (debugDataBtree)
         debugOut.println("\n--> DataBTree read tree at address=" + address + " parent= " + parent + " owner= " + owner);
 
-      getRandomAccessFile().order(RandomAccessFile.LITTLE_ENDIAN); // header information is in le byte order
-      getRandomAccessFile().seek(h5.getFileOffset(address));
+      // read the node with positional reads, so that concurrent iterators can share the RandomAccessFile
+      long filePos = h5.getFileOffset(address);
+      ByteBuffer bb = readNode(filePos, 8);
       this.address = address;
 
-      String magic = getRandomAccessFile().readString(4);
-      if (!magic.equals("TREE"))
+      byte[] magic = new byte[4];
+      bb.get(magic);
+      if (!new String(magic, StandardCharsets.UTF_8).equals("TREE"))
         throw new IllegalStateException("DataBTree doesnt start with TREE");
 
-      int type = getRandomAccessFile().readByte();
-      level = getRandomAccessFile().readByte();
-      nentries = getRandomAccessFile().readShort();
+      int type = bb.get();
+      level = bb.get();
+      nentries = bb.getShort();
       if (type != wantType)
         throw new IllegalStateException("DataBTree must be type " + wantType);
 
+      int sizeOffsets = h5.getSizeOffsets();
       long size = 8 + 2 * h5.getSizeOffsets() + ((long) nentries) * (8 + h5.getSizeOffsets() + 8 + ndimStorage);
       if (memTracker != null)
         memTracker.addByLen("Data BTree (" + owner + ")", address, size);
       if (debugDataBtree)
         debugOut.println("    type=" + type + " level=" + level + " nentries=" + nentries + " size = " + size);
 
-      long leftAddress = h5.readOffset();
-      long rightAddress = h5.readOffset();
+      // nentries + 1 keys, nentries child pointers
+      long nodeSize = 2L * sizeOffsets + (nentries + 1L) * (8 + 8L * ndimStorage) + ((long) nentries) * sizeOffsets;
+      bb = readNode(filePos + 8, Math.toIntExact(nodeSize));
+
+      long leftAddress = readOffset(bb);
+      long rightAddress = readOffset(bb);
       if (debugDataBtree)
         debugOut.println("    leftAddress=" + leftAddress + " =0x" + Long.toHexString(leftAddress) + " rightAddress="
             + rightAddress + " =0x" + Long.toHexString(rightAddress));
@@ -191,7 +214,7 @@ public class DataBTree {
         // read all entries as a DataChunk
         myEntries = new ArrayList<>();
         for (int i = 0; i <= nentries; i++) {
-          DataChunk dc = new DataChunk(ndimStorage, (i == nentries));
+          DataChunk dc = new DataChunk(bb, ndimStorage, (i == nentries));
           myEntries.add(dc);
           if (debugDataChunk)
             debugOut.println(dc);
@@ -200,13 +223,13 @@ public class DataBTree {
         offset = new int[nentries + 1][ndimStorage];
         childPointer = new long[nentries + 1];
         for (int i = 0; i <= nentries; i++) {
-          getRandomAccessFile().skipBytes(8); // skip size, filterMask
+          bb.position(bb.position() + 8); // skip size, filterMask
           for (int j = 0; j < ndimStorage; j++) {
-            long loffset = getRandomAccessFile().readLong();
+            long loffset = bb.getLong();
             assert loffset < Integer.MAX_VALUE;
             offset[i][j] = (int) loffset;
           }
-          this.childPointer[i] = (i == nentries) ? -1 : h5.readOffset();
+          this.childPointer[i] = (i == nentries) ? -1 : readOffset(bb);
           if (debugDataBtree) {
             debugOut.print("    childPointer=" + childPointer[i] + " =0x" + Long.toHexString(childPointer[i]));
             for (long anOffset : offset[i])
@@ -302,16 +325,16 @@ public class DataBTree {
     public final int[] offset; // offset index of this chunk, relative to entire array
     public final long filePos; // filePos of a single raw data chunk, already shifted by the offset if needed
 
-    DataChunk(int ndim, boolean last) throws IOException {
-      this.size = getRandomAccessFile().readInt();
-      this.filterMask = getRandomAccessFile().readInt();
+    DataChunk(ByteBuffer bb, int ndim, boolean last) {
+      this.size = bb.getInt();
+      this.filterMask = bb.getInt();
       offset = new int[ndim];
       for (int i = 0; i < ndim; i++) {
-        long loffset = getRandomAccessFile().readLong();
+        long loffset = bb.getLong();
         assert loffset < Integer.MAX_VALUE;
         offset[i] = (int) loffset;
       }
-      this.filePos = last ? -1 : h5.readAddress(); //
+      this.filePos = last ? -1 : h5.getFileOffset(readOffset(bb)); //
       if (memTracker != null)
         memTracker.addByLen("Chunked Data (" + owner + ")", filePos, size);
     }
@@ -10,6 +10,7 @@ import ucar.ma2.DataType;
 import ucar.ma2.InvalidRangeException;
 import ucar.ma2.Section;
 import ucar.nc2.Variable;
+import ucar.nc2.iosp.ChunkCache;
 import ucar.nc2.iosp.LayoutBB;
 import ucar.nc2.iosp.LayoutBBTiled;
 import ucar.nc2.util.IO;
@@ -41,6 +42,9 @@ public class H5tiledLayoutBB implements LayoutBB {
   private RandomAccessFile raf;
   private H5header.Filter[] filters;
   private ByteOrder byteOrder;
+  private final String varName;
+  private final ChunkCache chunkCache; // null if not caching decoded chunks
+  private String fileKey;
 
   private Section want;
   private int[] chunkSize; // from the StorageLayout message (exclude the elemSize)
@@ -73,6 +77,11 @@ public class H5tiledLayoutBB implements LayoutBB {
     this.raf = raf;
     this.filters = filters;
     this.byteOrder = byteOrder;
+    this.varName = v2.getFullName();
+    this.chunkCache = ChunkCache.getGlobalCache();
+    if (chunkCache != null) {
+      this.fileKey = ChunkCache.fileKey(raf);
+    }
 
     // we have to translate the want section into the same rank as the storageSize, in order to be able to call
     // Section.intersect(). It appears that storageSize (actually msl.chunkSize) may have an extra dimension, relative
@@ -157,6 +166,12 @@ public class H5tiledLayoutBB implements LayoutBB {
     public LayoutBBTiled.DataChunk next() throws IOException {
       return new DataChunk(delegate.next());
     }
+
+    // chunks are read with positional reads, and filters are stateless
+    @Override
+    public boolean allowsConcurrentReads() {
+      return true;
+    }
   }
 
   private class DataChunk implements ucar.nc2.iosp.LayoutBBTiled.DataChunk {
@@ -199,11 +214,18 @@ public class H5tiledLayoutBB implements LayoutBB {
     }
 
     public ByteBuffer getByteBuffer() throws IOException {
+      // cached chunks are shared, the returned buffer is only read from
+      byte[] data = (chunkCache == null) ? decode() : chunkCache.get(fileKey, varName, delegate.offset, this::decode);
+      ByteBuffer result = ByteBuffer.wrap(data);
+      result.order(byteOrder);
+      return result;
+    }
+
+    private byte[] decode() throws IOException {
       try {
         // read the data
         byte[] data = new byte[delegate.size];
-        raf.seek(delegate.filePos);
-        raf.readFully(data);
+        raf.readFully(delegate.filePos, data, 0, data.length);
 
         // apply filters backwards
         for (int i = filters.length - 1; i >= 0; i--) {
@@ -227,9 +249,7 @@ public class H5tiledLayoutBB implements LayoutBB {
             throw new RuntimeException("Unknown filter type=" + f.id);
         }
 
-        ByteBuffer result = ByteBuffer.wrap(data);
-        result.order(byteOrder);
-        return result;
+        return data;
       } catch (OutOfMemoryError e) {
         Error oom = new OutOfMemoryError("Ran out of memory trying to read HDF5 filtered chunk. Either increase the "
             + "JVM's heap size (use the -Xmx switch) or reduce the size of the dataset's chunks (use nccopy -c).");
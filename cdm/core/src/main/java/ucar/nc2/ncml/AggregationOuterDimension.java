@@ -9,13 +9,11 @@ import java.util.Date;
 import java.util.EnumSet;
 import java.util.Formatter;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.StringTokenizer;
 import java.util.concurrent.Callable;
-import java.util.concurrent.CompletionService;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorCompletionService;
 import thredds.inventory.MFile;
 import ucar.ma2.Array;
 import ucar.ma2.DataType;
@@ -40,6 +38,7 @@ import ucar.nc2.time.CalendarDate;
 import ucar.nc2.time.CalendarDateUnit;
 import ucar.nc2.units.DateFromString;
 import ucar.nc2.units.DateUnit;
+import ucar.nc2.util.BoundedExecutor;
 import ucar.nc2.util.CancelTask;
 
 /**
@@ -390,17 +389,15 @@ public abstract class AggregationOuterDimension extends Aggregation implements P
     // return readAggCoord(mainv, section, cancelTask);
 
     Array sectionData = Array.factory(dtype, section.getShape());
-    int destPos = 0;
 
     List<Range> ranges = section.getRanges();
     Range joinRange = section.getRange(0);
-    List<Range> nestedSection = new ArrayList<>(ranges); // get copy
     List<Range> innerSection = ranges.subList(1, ranges.size());
 
     if (debug)
       System.out.println("   agg wants range=" + mainv.getFullName() + "(" + joinRange + ")");
 
-    // LOOK: could multithread here
+    List<Callable<Array>> reads = new ArrayList<>();
     List<Dataset> nestedDatasets = getDatasets();
     for (Dataset nested : nestedDatasets) {
       DatasetOuterDimension dod = (DatasetOuterDimension) nested;
@@ -408,22 +405,17 @@ public abstract class AggregationOuterDimension extends Aggregation implements P
       if (nestedJoinRange == null)
         continue;
 
-      Array varData;
       if ((type == Type.joinNew) || (type == Type.forecastModelRunCollection)) {
-        varData = dod.read(mainv, cancelTask, innerSection);
+        reads.add(() -> dod.read(mainv, cancelTask, innerSection));
       } else {
+        List<Range> nestedSection = new ArrayList<>(ranges); // get copy
         nestedSection.set(0, nestedJoinRange);
-        varData = dod.read(mainv, cancelTask, nestedSection);
+        reads.add(() -> dod.read(mainv, cancelTask, nestedSection));
       }
-
-      if ((cancelTask != null) && cancelTask.isCancel())
-        return null;
-      varData = MAMath.convert(varData, dtype); // just in case it need to be converted
-
-      Array.arraycopy(varData, 0, sectionData, destPos, (int) varData.getSize());
-      destPos += varData.getSize();
     }
 
+    if (!readNested(reads, sectionData, dtype, cancelTask))
+      return null;
     return sectionData;
   }
 
@@ -464,74 +456,49 @@ public abstract class AggregationOuterDimension extends Aggregation implements P
     // return readAggCoord(mainv, cancelTask);
 
     Array allData = Array.factory(dtype, mainv.getShape());
-    int destPos = 0;
-
-    List<Dataset> nestedDatasets = getDatasets();
-    if (executor != null) {
-      CompletionService<Result> completionService = new ExecutorCompletionService<>(executor);
 
-      int count = 0;
-      for (Dataset vnested : nestedDatasets)
-        completionService.submit(new ReaderTask(vnested, mainv, cancelTask, count++));
+    List<Callable<Array>> reads = new ArrayList<>();
+    for (Dataset vnested : getDatasets())
+      reads.add(() -> vnested.read(mainv, cancelTask));
 
-      try {
-        int n = nestedDatasets.size();
-        for (int i = 0; i < n; ++i) {
-          Result r = completionService.take().get();
-          if (r != null) {
-            r.data = MAMath.convert(r.data, dtype); // just in case it needs to be converted
-            int size = (int) r.data.getSize();
-            Array.arraycopy(r.data, 0, allData, size * r.index, size);
-          }
-        }
-      } catch (InterruptedException e) {
-        Thread.currentThread().interrupt();
-      } catch (ExecutionException e) {
-        throw new IOException(e.getMessage());
-      }
-
-    } else {
-
-      for (Dataset vnested : nestedDatasets) {
-        Array varData = vnested.read(mainv, cancelTask);
-        if ((cancelTask != null) && cancelTask.isCancel())
-          return null;
-        varData = MAMath.convert(varData, dtype); // just in case it need to be converted
-
-        Array.arraycopy(varData, 0, allData, destPos, (int) varData.getSize());
-        destPos += varData.getSize();
-      }
+    try {
+      if (!readNested(reads, allData, dtype, cancelTask))
+        return null;
+    } catch (InvalidRangeException e) {
+      logger.error("readAgg " + getLocation(), e);
+      throw new IllegalArgumentException("readAgg " + getLocation(), e);
     }
 
     return allData;
   }
 
-  private static class ReaderTask implements Callable<Result> {
-    Dataset ds;
-    Variable mainv;
-    CancelTask cancelTask;
-    int index;
-
-    ReaderTask(Dataset ds, Variable mainv, CancelTask cancelTask, int index) {
-      this.ds = ds;
-      this.mainv = mainv;
-      this.cancelTask = cancelTask;
-      this.index = index;
-    }
-
-    public Result call() throws Exception {
-      Array data = ds.read(mainv, cancelTask);
-      return new Result(data, index);
-    }
-  }
+  /**
+   * Read the nested datasets and copy their data into result, in order. If an executor has been set, the reads run
+   * on it, at most maxDatasetsInFlight ahead of the one being copied.
+   *
+   * @return false if cancelled
+   */
+  private boolean readNested(List<Callable<Array>> reads, Array result, DataType dtype, CancelTask cancelTask)
+      throws IOException, InvalidRangeException {
+    Iterator<Callable<Array>> iter = reads.iterator();
+    int destPos = 0;
+    try (BoundedExecutor.Ordered<Array> pending = new BoundedExecutor.Ordered<>(executor, maxDatasetsInFlight)) {
+      while (iter.hasNext() || !pending.isEmpty()) {
+        while (!pending.isFull() && iter.hasNext()) {
+          if ((cancelTask != null) && cancelTask.isCancel())
+            return false;
+          pending.add(iter.next());
+        }
 
-  private static class Result {
-    Array data;
-    int index;
+        Array varData = pending.take(InvalidRangeException.class);
+        if ((varData == null) || ((cancelTask != null) && cancelTask.isCancel()))
+          return false;
+        varData = MAMath.convert(varData, dtype); // just in case it need to be converted
 
-    Result(Array data, int index) {
-      this.data = data;
-      this.index = index;
+        Array.arraycopy(varData, 0, result, destPos, (int) varData.getSize());
+        destPos += varData.getSize();
+      }
+      return true;
     }
   }
 
@@ -5,6 +5,7 @@
 
 package ucar.nc2.stream;
 
+import com.google.common.collect.ImmutableList;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -30,6 +31,7 @@ import ucar.nc2.NetcdfFile;
 import ucar.nc2.Structure;
 import ucar.nc2.Variable;
 import ucar.nc2.iosp.AbstractIOServiceProvider;
+import ucar.nc2.iosp.IospSignature;
 import ucar.nc2.util.CancelTask;
 import ucar.nc2.util.IO;
 import ucar.unidata.io.RandomAccessFile;
@@ -41,6 +43,7 @@ import ucar.unidata.io.RandomAccessFile;
 public class NcStreamIosp extends AbstractIOServiceProvider {
   private static Logger logger = LoggerFactory.getLogger(NcStreamIosp.class);
   private static final boolean debug = false;
+  private static final List<IospSignature> signatures = ImmutableList.of(IospSignature.at(NcStream.MAGIC_START, 0));
 
   public boolean isValidFile(RandomAccessFile raf) throws IOException {
     // fail fast on directory
@@ -55,6 +58,11 @@ public class NcStreamIosp extends AbstractIOServiceProvider {
     return test(b, NcStream.MAGIC_HEADER) || test(b, NcStream.MAGIC_DATA); // immed followed by one of these
   }
 
+  @Override
+  public List<IospSignature> getSignatures() {
+    return signatures;
+  }
+
   public String getFileTypeId() {
     return "ncstream";
   }
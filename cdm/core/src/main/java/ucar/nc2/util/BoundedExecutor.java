@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.nc2.util;
+
+import com.google.common.base.Preconditions;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
+
+/**
+ * Runs tasks on another executor, at most maxRunning of them at a time. The others wait in a queue, and are started
+ * in order as running tasks finish. A task that the executor rejects is run on the thread that was starting it.
+ * Safe to use from multiple threads.
+ * <p/>
+ * {@link Ordered} hands back the results of a sequence of tasks in the order they were added.
+ */
+public class BoundedExecutor implements Executor {
+  private final Executor executor;
+  private final int maxRunning;
+  private final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger running = new AtomicInteger();
+
+  /**
+   * @param executor run tasks here
+   * @param maxRunning maximum number of tasks running on the executor at once
+   */
+  public BoundedExecutor(Executor executor, int maxRunning) {
+    Preconditions.checkNotNull(executor);
+    if (maxRunning < 1)
+      throw new IllegalArgumentException("maxRunning must be > 0");
+    this.executor = executor;
+    this.maxRunning = maxRunning;
+  }
+
+  @Override
+  public void execute(Runnable task) {
+    queue.add(task);
+    startQueued();
+  }
+
+  // start queued tasks while fewer than maxRunning are running
+  private void startQueued() {
+    while (!queue.isEmpty()) {
+      int n = running.get();
+      if (n >= maxRunning)
+        return; // the next task to finish will start another
+      if (!running.compareAndSet(n, n + 1))
+        continue;
+      Runnable task = queue.poll();
+      if (task == null) {
+        running.decrementAndGet();
+        continue; // another thread took it, look again
+      }
+      try {
+        executor.execute(() -> {
+          try {
+            task.run();
+          } finally {
+            running.decrementAndGet();
+            startQueued();
+          }
+        });
+      } catch (RejectedExecutionException e) {
+        running.decrementAndGet();
+        task.run(); // run in this thread
+      }
+    }
+  }
+
+  /**
+   * The results of a sequence of tasks, in the order the tasks were added, used on one thread:
+   *
+   * <pre>
+   * try (BoundedExecutor.Ordered&lt;Array&gt; results = new BoundedExecutor.Ordered&lt;&gt;(executor, maxInFlight)) {
+   *   while (iter.hasNext() || !results.isEmpty()) {
+   *     while (!results.isFull() &amp;&amp; iter.hasNext())
+   *       results.add(iter.next());
+   *     Array data = results.take();
+   *     ...
+   * </pre>
+   *
+   * Tasks are started on the executor when they are added, so at most maxPending results are made ahead of the
+   * one being used. A task that the executor has not started when its result is taken is run by the calling thread
+   * instead of waiting for it, so users that share an executor, e.g. nested reads, can't starve each other.
+   * Without an executor, each task runs when its result is taken.
+   * <p/>
+   * Closing cancels the tasks that have not started, and closes the results that are Closeable but were not taken.
+   */
+  public static class Ordered<T> implements Closeable {
+    private final Executor executor;
+    private final int maxPending;
+    private final Deque<FutureTask<T>> pending = new ArrayDeque<>();
+
+    /**
+     * @param executor run tasks here, or null to run each on the calling thread when its result is taken
+     * @param maxPending maximum number of tasks whose results have not been taken
+     */
+    public Ordered(@Nullable Executor executor, int maxPending) {
+      if (maxPending < 1)
+        throw new IllegalArgumentException("maxPending must be > 0");
+      this.executor = executor;
+      this.maxPending = maxPending;
+    }
+
+    /** Whether a result must be taken before another task is added. */
+    public boolean isFull() {
+      return pending.size() >= maxPending;
+    }
+
+    /** Whether all results have been taken. */
+    public boolean isEmpty() {
+      return pending.isEmpty();
+    }
+
+    /** Add a task, starting it on the executor. */
+    public void add(Callable<T> task) {
+      Preconditions.checkState(!isFull(), "take a result before adding more tasks");
+      FutureTask<T> future = new FutureTask<>(task);
+      pending.add(future);
+      if (executor != null) {
+        try {
+          executor.execute(future);
+        } catch (RejectedExecutionException e) {
+          // run in take(), on this thread
+        }
+      }
+    }
+
+    /**
+     * The result of the oldest task, waiting for it if needed. Throws what the task threw, wrapping checked
+     * exceptions other than IOException in an IOException.
+     */
+    @Nullable
+    public T take() throws IOException {
+      return take(IOException.class);
+    }
+
+    /**
+     * The result of the oldest task, waiting for it if needed. Throws what the task threw, wrapping checked
+     * exceptions other than IOException and X in an IOException.
+     *
+     * @param checked a checked exception that the tasks may throw
+     */
+    @Nullable
+    public <X extends Exception> T take(Class<X> checked) throws IOException, X {
+      FutureTask<T> future = pending.remove();
+      future.run(); // does nothing if the executor has already run it, or is running it
+      try {
+        return future.get();
+
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted waiting for a task");
+
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException)
+          throw (IOException) cause;
+        if (checked.isInstance(cause))
+          throw checked.cast(cause);
+        if (cause instanceof RuntimeException)
+          throw (RuntimeException) cause;
+        if (cause instanceof Error)
+          throw (Error) cause;
+        throw new IOException(cause);
+      }
+    }
+
+    /** Drop the result of the oldest task, cancelling it if it has not started. */
+    public void skip() {
+      FutureTask<T> future = pending.remove();
+      if (!future.cancel(false))
+        closeQuietly(future);
+    }
+
+    @Override
+    public void close() {
+      while (!pending.isEmpty())
+        skip();
+    }
+
+    // a result that was made but not used. if the task is still running, its result is not closed
+    private static void closeQuietly(FutureTask<?> future) {
+      if (!future.isDone())
+        return;
+      try {
+        Object result = future.get();
+        if (result instanceof Closeable)
+          ((Closeable) result).close();
+      } catch (Exception e) {
+        // ignore
+      }
+    }
+  }
+}
@@ -0,0 +1,466 @@
+/*
+ * Copyright (c) 1998-2021 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.util.cache;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Formatter;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.concurrent.ThreadSafe;
+import ucar.nc2.dataset.DatasetUrl;
+import ucar.nc2.time.CalendarDateFormatter;
+import ucar.nc2.util.CancelTask;
+
+/**
+ * A FileCache for heavily concurrent use. Same contract and constructor arguments as {@link FileCache}, but
+ * acquire() and release() never take a cache wide lock:
+ * <ul>
+ * <li>Each hashKey has a queue of idle (released) files. acquire() polls the queue and locks the file with a
+ * compare-and-set, release() pushes it back. Only adding to a queue locks, and then only its bin of the hash map.</li>
+ * <li>Eviction of the least recently used idle files is done asynchronously on a shared daemon thread, when the soft
+ * limit is exceeded or periodically. Only going over the hard limit evicts in the calling thread.</li>
+ * </ul>
+ * Hits, waits (all cached copies were checked out, so another was opened), opens and evictions are counted,
+ * see {@link #showStats(Formatter)}.
+ * <p/>
+ * Use it with NetcdfDatasets.setNetcdfFileCache() or GribCdmIndex.setGribCollectionCache().
+ * Call shutdown() when the application exits.
+ */
+@ThreadSafe
+public class FileCacheStriped implements FileCacheIF {
+  private static final org.slf4j.Logger log = org.slf4j.LoggerFactory.getLogger(FileCacheStriped.class);
+  private static final org.slf4j.Logger cacheLog = org.slf4j.LoggerFactory.getLogger("cacheLogger");
+
+  private static final Object lock = new Object();
+  private static ScheduledExecutorService exec;
+
+  /**
+   * Shut down the background eviction thread, shared by all instances.
+   */
+  public static void shutdown() {
+    synchronized (lock) {
+      if (exec != null) {
+        exec.shutdownNow();
+        cacheLog.info("FileCacheStriped.shutdown called");
+      }
+      exec = null;
+    }
+  }
+
+  private static ScheduledExecutorService getExecutor() {
+    synchronized (lock) {
+      if (exec == null) {
+        exec = Executors.newSingleThreadScheduledExecutor(r -> {
+          Thread t = new Thread(r, "FileCacheStriped");
+          t.setDaemon(true);
+          return t;
+        });
+      }
+      return exec;
+    }
+  }
+
+  /////////////////////////////////////////////////////////////////////////////////////////
+
+  private final String name;
+  private final int minElements, softLimit, hardLimit;
+  private final long period; // msecs
+
+  private final AtomicBoolean disabled = new AtomicBoolean(false);
+  private final AtomicBoolean evictScheduled = new AtomicBoolean(false);
+
+  private final ConcurrentHashMap<Object, ConcurrentLinkedDeque<CacheFile>> idle; // released files, by hashKey
+  private final ConcurrentHashMap<FileCacheable, CacheFile> files; // all files in the cache
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder waits = new LongAdder();
+  private final LongAdder opens = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+
+  /**
+   * Constructor.
+   *
+   * @param name of file cache
+   * @param minElementsInMemory keep this number in the cache
+   * @param softLimit trigger an asynchronous eviction if it goes over this number.
+   * @param hardLimit if > 0, never allow more than this many elements. This causes an eviction to be done in the
+   *        calling thread.
+   * @param period if > 0, do periodic evictions every this number of seconds.
+   */
+  public FileCacheStriped(String name, int minElementsInMemory, int softLimit, int hardLimit, int period) {
+    this.name = name;
+    this.minElements = minElementsInMemory;
+    this.softLimit = softLimit;
+    this.hardLimit = hardLimit;
+    this.period = (long) 1000 * period;
+
+    int capacity = Math.max(16, 2 * softLimit);
+    idle = new ConcurrentHashMap<>(capacity);
+    files = new ConcurrentHashMap<>(2 * capacity);
+
+    if (period > 0) {
+      getExecutor().scheduleAtFixedRate(this::evictInBackground, this.period, this.period, TimeUnit.MILLISECONDS);
+      if (cacheLog.isDebugEnabled())
+        cacheLog.debug("FileCacheStriped " + name + " cleanup every " + period + " secs");
+    }
+  }
+
+  @Override
+  public void enable() {
+    disabled.set(false);
+  }
+
+  /**
+   * Disable the cache, and force release all files.
+   */
+  @Override
+  public void disable() {
+    disabled.set(true);
+    clearCache(true);
+  }
+
+  @Override
+  public FileCacheable acquire(FileFactory factory, DatasetUrl durl) throws IOException {
+    return acquire(factory, durl.trueurl, durl, -1, null, null);
+  }
+
+  @Override
+  public FileCacheable acquire(FileFactory factory, Object hashKey, DatasetUrl location, int buffer_size,
+      CancelTask cancelTask, Object spiObject) throws IOException {
+    if (null == hashKey)
+      hashKey = location.trueurl;
+    if (null == hashKey)
+      throw new IllegalArgumentException();
+
+    if (!disabled.get()) {
+      FileCacheable ncfile = checkout(hashKey);
+      if (ncfile != null) {
+        hits.increment();
+        return ncfile;
+      }
+    }
+
+    FileCacheable ncfile = factory.open(location, buffer_size, cancelTask, spiObject);
+    opens.increment();
+    if (cacheLog.isDebugEnabled())
+      cacheLog.debug("FileCacheStriped " + name + " acquire " + hashKey + " " + ncfile.getLocation());
+
+    // user may have canceled
+    if ((cancelTask != null) && (cancelTask.isCancel())) {
+      ncfile.close();
+      return null;
+    }
+
+    if (disabled.get())
+      return ncfile;
+
+    files.put(ncfile, new CacheFile(hashKey, ncfile)); // starts out checked out
+    checkLimits();
+    return ncfile;
+  }
+
+  // take an idle file for hashKey, or null if there is none
+  private FileCacheable checkout(Object hashKey) {
+    ConcurrentLinkedDeque<CacheFile> queue = idle.get(hashKey);
+    if (queue == null)
+      return null;
+
+    CacheFile want;
+    while ((want = queue.pollFirst()) != null) {
+      if (!want.isLocked.compareAndSet(false, true))
+        continue; // being evicted
+
+      if (want.ncfile.getLastModified() != want.lastModified) {
+        if (cacheLog.isDebugEnabled())
+          cacheLog.debug("FileCacheStriped " + name + ": acquire from cache " + hashKey + " "
+              + want.ncfile.getLocation() + " was changed; discard");
+        close(want);
+        continue;
+      }
+
+      try {
+        want.ncfile.reacquire();
+        return want.ncfile;
+      } catch (IOException ioe) {
+        if (cacheLog.isDebugEnabled())
+          cacheLog.debug("FileCacheStriped " + name + " acquire from cache " + hashKey + " "
+              + want.ncfile.getLocation() + " failed: " + ioe.getMessage());
+        close(want);
+      }
+    }
+
+    waits.increment(); // in the cache, but every copy is checked out
+    return null;
+  }
+
+  private void checkLimits() {
+    int count = files.size();
+    if (hardLimit > 0 && count > hardLimit) {
+      evict(hardLimit);
+    } else if (softLimit > 0 && count > softLimit && evictScheduled.compareAndSet(false, true)) {
+      getExecutor().execute(this::evictInBackground);
+    }
+  }
+
+  private void evictInBackground() {
+    try {
+      if (!disabled.get())
+        evict(softLimit);
+    } catch (Throwable t) {
+      log.error("FileCacheStriped " + name + " eviction failed", t);
+    } finally {
+      evictScheduled.set(false);
+    }
+  }
+
+  @Override
+  public boolean release(FileCacheable ncfile) throws IOException {
+    if (ncfile == null)
+      return false;
+
+    if (disabled.get()) {
+      ncfile.setFileCache(null); // prevent infinite loops
+      ncfile.close();
+      return false;
+    }
+
+    CacheFile file = files.get(ncfile);
+    if (file == null)
+      return false;
+
+    if (!file.isLocked.get())
+      cacheLog.warn("FileCacheStriped " + name + " release " + ncfile.getLocation() + " not locked");
+    file.lastAccessed = System.currentTimeMillis();
+    file.countAccessed.incrementAndGet();
+
+    try {
+      ncfile.release();
+    } catch (IOException ioe) {
+      cacheLog.error("FileCacheStriped {} release failed on {} - will remove from cache. Failure due to:", name,
+          ncfile.getLocation(), ioe);
+      close(file);
+      return true;
+    }
+
+    file.isLocked.set(false);
+    // adding is done inside compute(), so an empty queue cannot be removed out from under us
+    idle.compute(file.hashKey, (k, queue) -> {
+      if (queue == null)
+        queue = new ConcurrentLinkedDeque<>();
+      if (files.containsKey(file.ncfile)) // not force closed meanwhile
+        queue.offerFirst(file); // most recently used comes out first
+      return queue;
+    });
+    return true;
+  }
+
+  @Override
+  public void eject(Object hashKey) {
+    if (disabled.get())
+      return;
+
+    idle.remove(hashKey);
+    for (CacheFile file : files.values()) {
+      if (file.hashKey.equals(hashKey))
+        close(file);
+    }
+  }
+
+  @Override
+  public void clearCache(boolean force) {
+    List<CacheFile> deleteList = new ArrayList<>(files.size());
+    for (CacheFile file : files.values()) {
+      if (file.isLocked.compareAndSet(false, true)) {
+        deleteList.add(file);
+      } else if (force) {
+        cacheLog.warn("FileCacheStriped " + name + " force close locked file= " + file);
+        deleteList.add(file);
+      }
+    }
+    for (CacheFile file : deleteList) {
+      removeIdle(file);
+      close(file);
+    }
+    if (cacheLog.isDebugEnabled())
+      cacheLog.debug("FileCacheStriped " + name + " clearCache force= " + force + " deleted= " + deleteList.size()
+          + " left=" + files.size());
+  }
+
+  /**
+   * Close the least recently used idle files, bringing the cache down to minElements if possible.
+   * Checked out files are never closed.
+   */
+  void evict(int maxElements) {
+    int size = files.size();
+    if (size <= minElements)
+      return;
+
+    List<CacheFileSorter> unlocked = new ArrayList<>();
+    for (CacheFile file : files.values()) {
+      if (!file.isLocked.get())
+        unlocked.add(new CacheFileSorter(file));
+    }
+    Collections.sort(unlocked); // oldest first
+
+    int need2delete = size - minElements;
+    int count = 0;
+    for (CacheFileSorter sorter : unlocked) {
+      if (count >= need2delete)
+        break;
+      CacheFile file = sorter.cacheFile;
+      if (file.isLocked.compareAndSet(false, true)) { // so acquire() wont hand it out
+        removeIdle(file);
+        close(file);
+        evictions.increment();
+        count++;
+      }
+    }
+
+    // drop queues of keys that have no idle files left
+    for (Object hashKey : idle.keySet()) {
+      idle.computeIfPresent(hashKey, (k, queue) -> queue.isEmpty() ? null : queue);
+    }
+
+    if (size - count > maxElements)
+      cacheLog.warn("FileCacheStriped " + name + " couldnt remove enough to keep under the maximum= " + maxElements
+          + " due to locked files; currently at = " + (size - count));
+  }
+
+  private void removeIdle(CacheFile file) {
+    idle.computeIfPresent(file.hashKey, (k, queue) -> {
+      queue.remove(file);
+      return queue.isEmpty() ? null : queue;
+    });
+  }
+
+  private void close(CacheFile file) {
+    if (files.remove(file.ncfile) == null)
+      return; // already closed
+    try {
+      file.ncfile.setFileCache(null); // unhook the caching
+      file.ncfile.close();
+    } catch (IOException e) {
+      log.error("FileCacheStriped " + name + " close failed on " + file.ncfile.getLocation(), e);
+    }
+  }
+
+  public long getHits() {
+    return hits.sum();
+  }
+
+  public long getWaits() {
+    return waits.sum();
+  }
+
+  public long getOpens() {
+    return opens.sum();
+  }
+
+  public long getEvictions() {
+    return evictions.sum();
+  }
+
+  /** Reset the hit, wait, open and eviction counts. */
+  @Override
+  public void resetTracking() {
+    hits.reset();
+    waits.reset();
+    opens.reset();
+    evictions.reset();
+  }
+
+  @Override
+  public void showTracking(Formatter format) {
+    showStats(format);
+  }
+
+  @Override
+  public void showCache(Formatter format) {
+    format.format("%nFileCacheStriped %s (min=%d softLimit=%d hardLimit=%d scour=%d secs):%n", name, minElements,
+        softLimit, hardLimit, period / 1000);
+    format.format(" isLocked  accesses lastAccess                   location %n");
+    for (CacheFile file : sortedFiles()) {
+      format.format("%8s %9d %s == %s %n", file.isLocked, file.countAccessed.get(),
+          CalendarDateFormatter.toDateTimeStringISO(file.lastAccessed), file.ncfile.getLocation());
+    }
+    showStats(format);
+  }
+
+  @Override
+  public List<String> showCache() {
+    List<String> result = new ArrayList<>(files.size());
+    for (CacheFile file : sortedFiles()) {
+      result.add(file.toString());
+    }
+    return result;
+  }
+
+  @Override
+  public void showStats(Formatter format) {
+    format.format("  hits= %d waits= %d opens= %d evictions= %d nfiles= %d elems= %d%n", hits.sum(), waits.sum(),
+        opens.sum(), evictions.sum(), files.size(), idle.size());
+  }
+
+  private List<CacheFile> sortedFiles() {
+    List<CacheFileSorter> sorters = new ArrayList<>(files.size());
+    for (CacheFile file : files.values()) {
+      sorters.add(new CacheFileSorter(file));
+    }
+    Collections.sort(sorters);
+    List<CacheFile> result = new ArrayList<>(sorters.size());
+    for (CacheFileSorter sorter : sorters) {
+      result.add(sorter.cacheFile);
+    }
+    return result;
+  }
+
+  private class CacheFile {
+    final Object hashKey;
+    final FileCacheable ncfile;
+    final long lastModified;
+    final AtomicBoolean isLocked = new AtomicBoolean(true);
+    final AtomicInteger countAccessed = new AtomicInteger();
+    volatile long lastAccessed;
+
+    CacheFile(Object hashKey, FileCacheable ncfile) {
+      this.hashKey = hashKey;
+      this.ncfile = ncfile;
+      this.lastModified = ncfile.getLastModified();
+      this.lastAccessed = System.currentTimeMillis();
+      ncfile.setFileCache(FileCacheStriped.this);
+    }
+
+    @Override
+    public String toString() {
+      return isLocked + " " + countAccessed + " " + CalendarDateFormatter.toDateTimeStringISO(lastAccessed) + "   "
+          + ncfile.getLocation();
+    }
+  }
+
+  // freeze lastAccessed for sorting, it may change concurrently
+  private static class CacheFileSorter implements Comparable<CacheFileSorter> {
+    private final CacheFile cacheFile;
+    private final long lastAccessed;
+
+    CacheFileSorter(CacheFile cacheFile) {
+      this.cacheFile = cacheFile;
+      this.lastAccessed = cacheFile.lastAccessed;
+    }
+
+    @Override
+    public int compareTo(CacheFileSorter o) {
+      return Long.compare(lastAccessed, o.lastAccessed);
+    }
+  }
+}
@@ -79,6 +79,17 @@ public class NetcdfFormatWriter implements Closeable {
     return builder().setNewFile(true).setFormat(format).setLocation(location).setChunker(chunker);
   }
 
+  /**
+   * Create a new Zarr store. Requires cdm-zarr on the classpath.
+   *
+   * @param location directory of the new store, or a zip file if it ends with ".zip". A directory must be empty.
+   * @param chunker chunking and compression of the variables, or null for the default chunking algorithm
+   * @return new NetcdfFormatWriter
+   */
+  public static NetcdfFormatWriter.Builder createNewZarr(String location, Nc4Chunking chunker) {
+    return builder().setNewFile(true).setFormat(NetcdfFileFormat.ZARR).setLocation(location).setChunker(chunker);
+  }
+
   /** Obtain a Builder to set custom options */
   public static Builder builder() {
     return new Builder();
@@ -157,7 +168,7 @@ public class NetcdfFormatWriter implements Closeable {
       return this;
     }
 
-    /** Nc4Chunking, used only for netcdf4 */
+    /** Nc4Chunking, used only for netcdf4 and zarr */
     public Builder setChunker(Nc4Chunking chunker) {
       this.chunker = chunker;
       return this;
@@ -299,6 +310,9 @@ public class NetcdfFormatWriter implements Closeable {
     this.rootGroup = this.ncout.getRootGroup();
 
     if (!isNewFile) {
+      if (format != null && format.isZarrFormat()) {
+        throw new IllegalArgumentException("Existing Zarr store at location " + location + " cannot be written to");
+      }
       existingRaf = new ucar.unidata.io.RandomAccessFile(location, "rw");
       NetcdfFileFormat existingVersion = NetcdfFileFormat.findNetcdfFormatType(existingRaf);
       if (format != null && format != existingVersion) {
@@ -310,7 +324,9 @@ public class NetcdfFormatWriter implements Closeable {
       existingRaf = null;
     }
 
-    if (useJna) {
+    if (format != null && format.isZarrFormat()) {
+      spiw = makeZarrWriter(chunker);
+    } else if (useJna) {
       String className = "ucar.nc2.jni.netcdf.Nc4Iosp";
       IOServiceProviderWriter spi;
       try {
@@ -343,6 +359,21 @@ public class NetcdfFormatWriter implements Closeable {
     }
   }
 
+  // cdm-zarr depends on cdm-core, so its writer is found at runtime
+  private static IOServiceProviderWriter makeZarrWriter(Nc4Chunking chunker) {
+    String className = "ucar.nc2.iosp.zarr.ZarrIospWriter";
+    try {
+      Class<?> iospClass = NetcdfFormatWriter.class.getClassLoader().loadClass(className);
+      IOServiceProviderWriter spi = (IOServiceProviderWriter) iospClass.getConstructor().newInstance();
+      Method method = iospClass.getMethod("setChunker", Nc4Chunking.class);
+      method.invoke(spi, chunker);
+      return spi;
+    } catch (Throwable e) {
+      throw new IllegalArgumentException(className + " is not available, cdm-zarr must be on the classpath. err= "
+          + e.getMessage());
+    }
+  }
+
   // Temporary bridge to NetcdfFileWriter.Version
   public static NetcdfFileWriter.Version convertToNetcdfFileWriterVersion(NetcdfFileFormat format) {
     switch (format) {
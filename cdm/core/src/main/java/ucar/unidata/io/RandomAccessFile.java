@@ -18,6 +18,7 @@ import ucar.nc2.util.cache.FileFactory;
 import ucar.unidata.util.StringUtil2;
 import javax.annotation.concurrent.NotThreadSafe;
 import java.io.*;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.WritableByteChannel;
 import java.util.*;
@@ -763,6 +764,184 @@ public class RandomAccessFile implements DataInput, DataOutput, FileCacheable, C
     return n;
   }
 
+  ///////////////////////////////////////////////////////////////////////////////////////////////
+  // positional reads
+
+  /**
+   * Read up to <code>dst.remaining()</code> bytes starting at the given file position.
+   * This does not use or change the file pointer, the read buffer, or the byte order of this file, so it may be
+   * called concurrently by multiple threads on one open file.
+   * <p/>
+   * For local files this uses {@link java.nio.channels.FileChannel#read(ByteBuffer, long)}.
+   * Note that interrupting a thread blocked in a channel read closes the channel (and so this file) for all threads.
+   * Subclasses that are not backed by a local file delegate to {@link #read_}, which must not depend on the
+   * file pointer.
+   *
+   * @param pos start here in the file
+   * @param dst read into this buffer, starting at its position; its position is advanced by the number of bytes read
+   * @return actual number of bytes read, or -1 if pos is at or past the end of file
+   * @throws IOException on io error
+   */
+  public int read(long pos, ByteBuffer dst) throws IOException {
+    if (pos < 0)
+      throw new IOException("Negative read offset");
+    if (bufferModified) {
+      flush(); // make sure pending writes are visible
+    }
+
+    int len = dst.remaining();
+    int n;
+    if (file != null) {
+      java.nio.channels.FileChannel channel = fileChannel;
+      if (channel == null)
+        channel = fileChannel = file.getChannel();
+      n = channel.read(dst, pos);
+
+    } else if (dst.hasArray()) {
+      n = read_(pos, dst.array(), dst.arrayOffset() + dst.position(), len);
+      if (n > 0)
+        dst.position(dst.position() + n);
+
+    } else {
+      byte[] b = new byte[len];
+      n = read_(pos, b, 0, len);
+      if (n > 0)
+        dst.put(b, 0, n);
+    }
+
+    if (debugAccess) {
+      if (showRead)
+        System.out.printf(" **read %s = %d bytes at %d (positional)%n", location, len, pos);
+      debug_nseeks.incrementAndGet();
+      debug_nbytes.addAndGet(len);
+    }
+    return (n == 0 && len > 0) ? -1 : n;
+  }
+
+  /**
+   * Read exactly <code>dst.remaining()</code> bytes starting at the given file position.
+   * Like {@link #read(long, ByteBuffer)}, this does not use or change the state of this file and is thread-safe.
+   *
+   * @param pos start here in the file
+   * @param dst read into this buffer, starting at its position
+   * @throws EOFException if the end of file is reached before dst is filled
+   * @throws IOException on io error
+   */
+  public void readFully(long pos, ByteBuffer dst) throws IOException {
+    long start = pos;
+    while (dst.hasRemaining()) {
+      int count = read(pos, dst);
+      if (count < 0) {
+        if (extendMode) { // truncated but valid file, missing bytes are zero
+          while (dst.hasRemaining())
+            dst.put((byte) 0);
+          return;
+        }
+        throw new EOFException("Reading " + location + " at " + start + " file length = " + length());
+      }
+      pos += count;
+    }
+  }
+
+  /**
+   * Read exactly <code>len</code> bytes starting at the given file position. Thread-safe, see
+   * {@link #readFully(long, ByteBuffer)}.
+   *
+   * @param pos start here in the file
+   * @param b put data into this array
+   * @param off starting at b[off]
+   * @param len read this many bytes
+   * @throws IOException on io error, or EOFException if the end of file is reached first
+   */
+  public void readFully(long pos, byte[] b, int off, int len) throws IOException {
+    readFully(pos, ByteBuffer.wrap(b, off, len));
+  }
+
+  private ByteBuffer readPositional(long pos, int nbytes, ByteOrder bo) throws IOException {
+    ByteBuffer bb = ByteBuffer.allocate(nbytes);
+    readFully(pos, bb);
+    bb.flip();
+    bb.order(bo);
+    return bb;
+  }
+
+  /**
+   * Read an array of shorts starting at the given file position. Thread-safe, see
+   * {@link #readFully(long, ByteBuffer)}.
+   *
+   * @param pos start here in the file
+   * @param pa read into this array
+   * @param start starting at pa[start]
+   * @param n read this many elements
+   * @param bo byte order of the data in the file
+   * @throws IOException on read error
+   */
+  public void readShort(long pos, short[] pa, int start, int n, ByteOrder bo) throws IOException {
+    readPositional(pos, 2 * n, bo).asShortBuffer().get(pa, start, n);
+  }
+
+  /**
+   * Read an array of ints starting at the given file position. Thread-safe, see
+   * {@link #readFully(long, ByteBuffer)}.
+   *
+   * @param pos start here in the file
+   * @param pa read into this array
+   * @param start starting at pa[start]
+   * @param n read this many elements
+   * @param bo byte order of the data in the file
+   * @throws IOException on read error
+   */
+  public void readInt(long pos, int[] pa, int start, int n, ByteOrder bo) throws IOException {
+    readPositional(pos, 4 * n, bo).asIntBuffer().get(pa, start, n);
+  }
+
+  /**
+   * Read an array of longs starting at the given file position. Thread-safe, see
+   * {@link #readFully(long, ByteBuffer)}.
+   *
+   * @param pos start here in the file
+   * @param pa read into this array
+   * @param start starting at pa[start]
+   * @param n read this many elements
+   * @param bo byte order of the data in the file
+   * @throws IOException on read error
+   */
+  public void readLong(long pos, long[] pa, int start, int n, ByteOrder bo) throws IOException {
+    readPositional(pos, 8 * n, bo).asLongBuffer().get(pa, start, n);
+  }
+
+  /**
+   * Read an array of floats starting at the given file position. Thread-safe, see
+   * {@link #readFully(long, ByteBuffer)}.
+   *
+   * @param pos start here in the file
+   * @param pa read into this array
+   * @param start starting at pa[start]
+   * @param n read this many elements
+   * @param bo byte order of the data in the file
+   * @throws IOException on read error
+   */
+  public void readFloat(long pos, float[] pa, int start, int n, ByteOrder bo) throws IOException {
+    readPositional(pos, 4 * n, bo).asFloatBuffer().get(pa, start, n);
+  }
+
+  /**
+   * Read an array of doubles starting at the given file position. Thread-safe, see
+   * {@link #readFully(long, ByteBuffer)}.
+   *
+   * @param pos start here in the file
+   * @param pa read into this array
+   * @param start starting at pa[start]
+   * @param n read this many elements
+   * @param bo byte order of the data in the file
+   * @throws IOException on read error
+   */
+  public void readDouble(long pos, double[] pa, int start, int n, ByteOrder bo) throws IOException {
+    readPositional(pos, 8 * n, bo).asDoubleBuffer().get(pa, start, n);
+  }
+
+  ///////////////////////////////////////////////////////////////////////////////////////////////
+
   /**
    * Read up to <code>len</code> bytes into an array, at a specified
    * offset. This will block until at least one byte has been read.
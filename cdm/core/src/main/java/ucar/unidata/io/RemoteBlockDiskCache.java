@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) 1998-2021 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.unidata.io;
+
+import com.google.common.hash.Hashing;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ucar.nc2.util.DiskCache2;
+
+/**
+ * A second tier for the read cache of RemoteRandomAccessFile, which keeps cache blocks in files under the root of
+ * a DiskCache2, so they survive restarts and are shared by the processes on a host.
+ * <p/>
+ * Blocks are stored in a directory for each remote file, named by a hash of its URL, its version (eg an ETag or last
+ * modified date) and the block size, so a changed remote file never gets old blocks. Block files are written to a
+ * temporary file and then renamed, so readers in other processes never see partial blocks. When the cache goes over
+ * its byte budget, the least recently used blocks are deleted, using the file modification time, which is updated
+ * on each read.
+ * <p/>
+ * Enable with RemoteRandomAccessFile.setDiskCache().
+ */
+@ThreadSafe
+public class RemoteBlockDiskCache {
+  private static final Logger logger = LoggerFactory.getLogger(RemoteBlockDiskCache.class);
+  private static final String subdir = "remoteBlocks";
+  private static final String tempSuffix = ".tmp";
+  // temp files older than this were left by a process that died
+  private static final long staleTempMillis = 60 * 60 * 1000;
+
+  private final Path root;
+  private final long maxBytes;
+  private final AtomicLong bytesUsed = new AtomicLong(); // estimate, other processes also write
+  private final AtomicBoolean evicting = new AtomicBoolean();
+
+  /**
+   * Constructor.
+   *
+   * @param diskCache blocks are kept in a subdirectory of its root directory.
+   * @param maxBytes evict blocks when they use more than this many bytes.
+   */
+  public RemoteBlockDiskCache(DiskCache2 diskCache, long maxBytes) {
+    if (maxBytes <= 0)
+      throw new IllegalArgumentException("maxBytes must be > 0");
+    this.root = Paths.get(diskCache.getRootDirectory(), subdir);
+    this.maxBytes = maxBytes;
+    bytesUsed.set(scan(new ArrayList<>()));
+  }
+
+  /**
+   * Make the key of a remote file, which names its directory.
+   *
+   * @param url location of the remote file
+   * @param version version of the remote file, eg its ETag
+   * @param blockSize size of the cache blocks
+   */
+  static String makeDatasetKey(String url, String version, int blockSize) {
+    String id = url + '\n' + version + '\n' + blockSize;
+    return Hashing.sha256().hashString(id, StandardCharsets.UTF_8).toString();
+  }
+
+  /**
+   * Read a block.
+   *
+   * @param datasetKey from makeDatasetKey()
+   * @param blockNumber which block
+   * @param expectedLength the size of the block
+   * @return the block, or null if not in the cache
+   */
+  @Nullable
+  byte[] read(String datasetKey, long blockNumber, int expectedLength) {
+    Path path = root.resolve(datasetKey).resolve(Long.toString(blockNumber));
+    try {
+      byte[] block = Files.readAllBytes(path);
+      if (block.length != expectedLength) {
+        logger.warn("Remote block cache {} has length {}, expected {}; deleting", path, block.length,
+            expectedLength);
+        Files.deleteIfExists(path);
+        return null;
+      }
+      Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis())); // for LRU
+      return block;
+    } catch (NoSuchFileException e) {
+      return null;
+    } catch (IOException e) {
+      logger.debug("Failed to read remote block cache {}", path, e);
+      return null;
+    }
+  }
+
+  /**
+   * Write a block. Failure is logged, and otherwise ignored.
+   *
+   * @param datasetKey from makeDatasetKey()
+   * @param blockNumber which block
+   * @param block the contents
+   */
+  void write(String datasetKey, long blockNumber, byte[] block) {
+    Path dir = root.resolve(datasetKey);
+    Path path = dir.resolve(Long.toString(blockNumber));
+    Path temp = null;
+    try {
+      Files.createDirectories(dir);
+      temp = Files.createTempFile(dir, Long.toString(blockNumber), tempSuffix);
+      Files.write(temp, block);
+      try {
+        Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+      }
+      temp = null;
+    } catch (IOException e) {
+      logger.debug("Failed to write remote block cache {}", path, e);
+      return;
+    } finally {
+      if (temp != null)
+        deleteQuietly(temp);
+    }
+
+    if (bytesUsed.addAndGet(block.length) > maxBytes)
+      evict();
+  }
+
+  /** Approximate number of bytes used by the cache, including blocks written by other processes. */
+  public long getBytesUsed() {
+    return bytesUsed.get();
+  }
+
+  /**
+   * Delete the least recently used blocks until the cache is under 90% of its budget.
+   * Only one thread of this process evicts at a time; others return immediately.
+   */
+  public void evict() {
+    if (!evicting.compareAndSet(false, true))
+      return;
+    try {
+      List<BlockFile> blocks = new ArrayList<>();
+      long total = scan(blocks);
+      long target = maxBytes - maxBytes / 10;
+      if (total > target) {
+        blocks.sort((b1, b2) -> Long.compare(b1.lastModified, b2.lastModified));
+        for (BlockFile block : blocks) {
+          if (total <= target)
+            break;
+          try {
+            Files.deleteIfExists(block.path);
+          } catch (IOException e) {
+            logger.debug("Failed to evict remote block cache {}", block.path, e);
+            continue;
+          }
+          total -= block.size;
+          deleteIfEmpty(block.path.getParent());
+        }
+      }
+      bytesUsed.set(total);
+    } finally {
+      evicting.set(false);
+    }
+  }
+
+  // find all the block files, return their total size
+  private long scan(List<BlockFile> blocks) {
+    if (!Files.isDirectory(root))
+      return 0;
+    long now = System.currentTimeMillis();
+    long total = 0;
+    try (Stream<Path> paths = Files.walk(root, 2)) {
+      for (Path path : (Iterable<Path>) paths::iterator) {
+        BasicFileAttributes attrs;
+        try {
+          attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException e) {
+          continue; // deleted by another process
+        }
+        if (!attrs.isRegularFile())
+          continue;
+        long lastModified = attrs.lastModifiedTime().toMillis();
+        if (path.getFileName().toString().endsWith(tempSuffix)) {
+          if (now - lastModified > staleTempMillis)
+            deleteQuietly(path);
+          continue;
+        }
+        blocks.add(new BlockFile(path, attrs.size(), lastModified));
+        total += attrs.size();
+      }
+    } catch (IOException | RuntimeException e) {
+      logger.warn("Failed to scan remote block cache {}", root, e);
+    }
+    return total;
+  }
+
+  private void deleteQuietly(Path path) {
+    try {
+      Files.deleteIfExists(path);
+    } catch (IOException e) {
+      logger.debug("Failed to delete {}", path, e);
+    }
+  }
+
+  private void deleteIfEmpty(Path dir) {
+    try {
+      Files.deleteIfExists(dir);
+    } catch (DirectoryNotEmptyException e) {
+      // still in use
+    } catch (IOException e) {
+      logger.debug("Failed to delete remote block cache directory {}", dir, e);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "RemoteBlockDiskCache{" + root + " maxBytes=" + maxBytes + '}';
+  }
+
+  private static class BlockFile {
+    final Path path;
+    final long size;
+    final long lastModified;
+
+    BlockFile(Path path, long size, long lastModified) {
+      this.path = path;
+      this.size = size;
+      this.lastModified = lastModified;
+    }
+  }
+}
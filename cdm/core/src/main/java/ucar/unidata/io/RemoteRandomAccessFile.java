@@ -11,9 +11,19 @@ import com.google.common.cache.LoadingCache;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.WritableByteChannel;
+import java.io.InterruptedIOException;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -30,16 +40,66 @@ public abstract class RemoteRandomAccessFile extends ucar.unidata.io.RandomAcces
   protected static final int defaultRemoteFileTimeout = 10 * 1000;
   // default cache time to live in milliseconds
   private static final long defaultReadCacheTimeToLive = 30 * 1000;
+  // most cache blocks fetched with one remote read
+  private static final int maxBlocksPerFetch = 16;
+  // most cache blocks read ahead of sequential reads
+  private static final int defaultMaxReadaheadBlocks = 16;
+
+  // fetch missing cache blocks concurrently; null to fetch them in the reading thread
+  private static Executor fetchExecutor;
+  private static int maxFetchesPerFile = 4;
+
+  /**
+   * Fetch missing cache blocks concurrently on the given executor, and read ahead of sequential reads in the
+   * background. Applies to remote files opened afterwards, whose readRemote() must then be thread safe.
+   *
+   * @param exec fetch on this executor, or null to fetch in the reading thread (the default).
+   * @param maxPerFile maximum number of concurrent remote reads for each open file.
+   */
+  public static synchronized void setExecutor(@Nullable Executor exec, int maxPerFile) {
+    if (maxPerFile < 1)
+      throw new IllegalArgumentException("maxPerFile must be > 0");
+    fetchExecutor = exec;
+    maxFetchesPerFile = maxPerFile;
+  }
+
+  // optional second tier of the read cache, on local disk
+  private static RemoteBlockDiskCache blockDiskCache;
+
+  /**
+   * Keep cache blocks on local disk as well as in memory, for remote files opened afterwards. Only used for files
+   * whose getRemoteVersion() is not null.
+   *
+   * @param diskCache the disk cache, or null to not use one (the default).
+   */
+  public static synchronized void setDiskCache(@Nullable RemoteBlockDiskCache diskCache) {
+    blockDiskCache = diskCache;
+  }
 
   protected final String url;
   private final boolean readCacheEnabled;
   private final int readCacheBlockSize;
   private final LoadingCache<Long, byte[]> readCache;
+  private final int maxReadaheadBlocks;
+  private final ConcurrentHashMap<Long, CompletableFuture<byte[]>> fetching = new ConcurrentHashMap<>();
+  private final Executor executor;
+  private final Semaphore fetchPermits;
+  private final RemoteBlockDiskCache diskCache;
+  private volatile String diskCacheKey; // empty if this file is not disk cached
+
+  // readahead state; only a heuristic, so racing readers do no harm
+  private volatile long lastBlockRead = -2; // so the first read is not sequential
+  private volatile int readaheadBlocks;
 
   protected RemoteRandomAccessFile(String url, int bufferSize, long maxRemoteCacheSize) {
     super(bufferSize);
 
     this.url = url;
+    synchronized (RemoteRandomAccessFile.class) {
+      this.executor = fetchExecutor;
+      this.fetchPermits = new Semaphore(maxFetchesPerFile);
+      this.diskCache = blockDiskCache;
+    }
     file = null;
     location = url;
 
@@ -55,9 +115,12 @@ public abstract class RemoteRandomAccessFile extends ucar.unidata.io.RandomAcces
       // total max cache size in bytes / size of one cache block, rounded up.
       long numberOfCacheBlocks = (maxRemoteCacheSize / readCacheBlockSize) + 1;
       this.readCache = initCache(numberOfCacheBlocks, Duration.ofMillis(defaultReadCacheTimeToLive));
+      // dont read ahead so far that it evicts what is being read
+      this.maxReadaheadBlocks = (int) Math.min(defaultMaxReadaheadBlocks, numberOfCacheBlocks / 4);
       readCacheEnabled = true;
     } else {
       this.readCacheBlockSize = -1;
+      this.maxReadaheadBlocks = 0;
       readCacheEnabled = false;
       readCache = null;
     }
@@ -99,127 +162,209 @@ public abstract class RemoteRandomAccessFile extends ucar.unidata.io.RandomAcces
   /**
    * Fill byte array with remote data.
    *
+   * We treat the entire remote file or object as a series of non-overlapping blocks of size readCacheBlockSize,
+   * numbered from position 0, and the block number is the key of the cache. Blocks of this read that are not in the
+   * cache are fetched together: adjacent missing blocks are coalesced into one remote read of up to
+   * maxBlocksPerFetch blocks, and if there is an executor, separate remote reads are done concurrently. When reads are
+   * sequential, an increasing number of blocks past the end of the read are also fetched.
+   *
    * @param pos position of remote file or object to start reading
    * @param buff put data into this buffer
    * @param offset buffer offset
    * @param len number of bytes to read
-   * @return actual number of bytes read
+   * @return actual number of bytes read, or -1 if pos is at or past the end of the file
    * @throws IOException error reading remote data
    */
   private int readFromCache(long pos, byte[] buff, int offset, int len) throws IOException {
-    // We basically treat the entire remote file or object as a series of non-overlapping blocks of size
-    // readCacheBlockSize. Each of these blocks are assigned a number (0 - N) starting from position 0 in the
-    // remote file or object, and that number is used as the key of the cache.
-    // Here, we compute the first and last cache block that we need to read from based on the desired position in the
-    // file and the length of read.
-    long firstCacheBlockNumber = pos / readCacheBlockSize;
-    long lastCacheBlockNumber = (pos + len) / readCacheBlockSize;
+    long fileLength = length();
+    if (pos >= fileLength)
+      return -1;
+    len = Math.toIntExact(Math.min(len, fileLength - pos));
+    if (len <= 0)
+      return 0;
+
+    long firstBlock = pos / readCacheBlockSize;
+    long lastBlock = (pos + len - 1) / readCacheBlockSize;
+    long lastFileBlock = (fileLength - 1) / readCacheBlockSize;
+
+    // adaptive readahead: double it while reads are sequential, drop it when they are not
+    long prevLastBlock = lastBlockRead;
+    int readahead = 0;
+    if (firstBlock == prevLastBlock || firstBlock == prevLastBlock + 1) {
+      readahead = (int) Math.min(Math.max(1, 2 * readaheadBlocks), maxReadaheadBlocks);
+    }
+    lastBlockRead = lastBlock;
+    readaheadBlocks = readahead;
+
+    fetchMissingBlocks(firstBlock, lastBlock, Math.min(lastBlock + readahead, lastFileBlock));
+
     int totalBytesRead = 0;
-    int currentOffsetIntoBuffer = offset;
-
-    // Read cacheBlock containing pos, and fill the buffer from the effective location of pos in the cache block
-    // up to the smaller of these three lengths: 1. bytes remaining in the cache block, 2. bytes remaining in the file,
-    // or 3. bytes remaining in the destination array.
-    totalBytesRead += readCacheBlockPartial(pos, buff, currentOffsetIntoBuffer, true);
-    currentOffsetIntoBuffer += totalBytesRead;
-    // If we have read everything we have been asked to read, skip the rest of the read logic.
-    // Otherwise, keep going.
-    if ((totalBytesRead < len) && (firstCacheBlockNumber != lastCacheBlockNumber)) {
-      // Now fill the buffer using whole cache blocks, up until the last cache block (as reading from the last cache
-      // block might be a partial read).
-      // LOOK: might benefit from concurrency? Need to see how often we end up inside this while statement.
-      // Initial testing shows this only happens for small readCacheBlockSize (which is equal to the read buffer size)
-      // when reading netCDF-4 files, but I think might depend on the specific IOSP in use.
-      long currentCacheBlockNumber = firstCacheBlockNumber + 1;
-      while (currentCacheBlockNumber < lastCacheBlockNumber) {
-        totalBytesRead += readCacheBlockFull(currentCacheBlockNumber, currentOffsetIntoBuffer, buff);
-        currentOffsetIntoBuffer += readCacheBlockSize;
-        currentCacheBlockNumber += 1;
-      }
-      logger.debug("Number of full cache block reads: {}", currentCacheBlockNumber - firstCacheBlockNumber - 1);
+    for (long blockNumber = firstBlock; blockNumber <= lastBlock && totalBytesRead < len; blockNumber++) {
+      byte[] src = getCacheBlock(blockNumber);
+      long posBlockStart = blockNumber * readCacheBlockSize;
+      int offsetIntoBlock = Math.toIntExact(Math.max(pos, posBlockStart) - posBlockStart);
+      int sizeToCopy = Math.min(src.length - offsetIntoBlock, len - totalBytesRead);
+      if (sizeToCopy <= 0)
+        break; // short read from the remote service
+      System.arraycopy(src, offsetIntoBlock, buff, offset + totalBytesRead, sizeToCopy);
+      totalBytesRead += sizeToCopy;
+    }
+    logger.debug("Read {} bytes from cache blocks {} - {}", totalBytesRead, firstBlock, lastBlock);
+    return totalBytesRead > 0 ? totalBytesRead : -1;
+  }
+
+  /**
+   * Start fetching the blocks in [firstBlock, fetchEnd] that are neither in the cache nor being fetched by another
+   * read. Blocks past lastBlock are readahead: they are only fetched in the background, or together with a wanted
+   * block. Returns once the wanted blocks are being fetched; getCacheBlock() waits for them.
+   */
+  private void fetchMissingBlocks(long firstBlock, long lastBlock, long fetchEnd) throws IOException {
+    Executor exec = executor;
 
-      // If there are still bytes to read, read last cacheBlock from the start of the cache block to the
-      // smaller of these two lengths: 1. bytes remaining in the file, or 2. bytes remaining in the destination array.
-      if (totalBytesRead < len) {
-        totalBytesRead += readCacheBlockPartial(pos + totalBytesRead, buff, currentOffsetIntoBuffer, false);
+    // claim the missing blocks, grouping adjacent ones
+    List<BlockFetch> fetches = new ArrayList<>();
+    BlockFetch current = null;
+    for (long blockNumber = firstBlock; blockNumber <= fetchEnd; blockNumber++) {
+      boolean adjacent = current != null && current.lastBlock() == blockNumber - 1;
+      if (blockNumber > lastBlock && exec == null && !adjacent)
+        break; // no background readahead without an executor
+      if (readCache.getIfPresent(blockNumber) != null || readFromDiskCache(blockNumber))
+        continue;
+      CompletableFuture<byte[]> future = new CompletableFuture<>();
+      if (fetching.putIfAbsent(blockNumber, future) != null)
+        continue; // another read is fetching it
+
+      if (!adjacent || current.futures.size() >= maxBlocksPerFetch) {
+        current = new BlockFetch(blockNumber);
+        fetches.add(current);
       }
+      current.futures.add(future);
     }
+    if (fetches.isEmpty())
+      return;
+
+    // the first fetch with wanted blocks is done in this thread, after the others have been started
+    BlockFetch inline = null;
+    for (BlockFetch fetch : fetches) {
+      boolean wanted = fetch.firstBlock <= lastBlock;
+      if (exec == null || (wanted && inline == null)) {
+        if (inline == null) {
+          inline = fetch;
+        } else {
+          fetch.run();
+        }
+        continue;
+      }
+
+      if (wanted) {
+        try {
+          fetchPermits.acquire();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          fetch.abandon();
+          throw new InterruptedIOException("Interrupted waiting to read " + location);
+        }
+      } else if (!fetchPermits.tryAcquire()) {
+        fetch.abandon(); // too busy for readahead
+        continue;
+      }
 
-    return totalBytesRead;
+      try {
+        exec.execute(() -> {
+          try {
+            fetch.run();
+          } finally {
+            fetchPermits.release();
+          }
+        });
+      } catch (RejectedExecutionException e) {
+        fetchPermits.release();
+        fetch.run();
+      }
+    }
+    if (inline != null)
+      inline.run();
   }
 
-  private int readCacheBlockPartial(long pos, byte[] buff, int positionInBuffer, boolean fillForward)
-      throws IOException {
+  // get a cache block, waiting for it if it is being fetched
+  private byte[] getCacheBlock(long blockNumber) throws IOException {
+    byte[] block = readCache.getIfPresent(blockNumber);
+    if (block != null)
+      return block;
 
-    long cacheBlockNumber = pos / readCacheBlockSize;
+    CompletableFuture<byte[]> future = fetching.get(blockNumber);
+    if (future != null) {
+      try {
+        block = future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted waiting to read " + location);
+      } catch (ExecutionException ee) {
+        throw new IOException("Error obtaining data from the remote data read cache.", ee.getCause());
+      }
+    }
+    if (block != null)
+      return block;
 
-    // read in the cache block
-    byte[] src;
+    // evicted, or the fetch was abandoned
     try {
-      src = readCache.get(cacheBlockNumber);
+      return readCache.get(blockNumber);
     } catch (ExecutionException ee) {
       throw new IOException("Error obtaining data from the remote data read cache.", ee);
     }
+  }
 
-    // Careful - we are doing a partial read from the cache block. The pos in the file is some offset into the cache
-    // block, so let's start by calculating the pos of the first block
-    long posCacheBlockStart = cacheBlockNumber * readCacheBlockSize;
-
-    // Now, there are two possible cases. We either need to read from this position in the cache block to the end of
-    // the cache block (i.e. "fill buffer forward from the offset into the cache block"), or read from the beginning
-    // of the cache block up to the offset in the cache block (useful if reading last cache block in a series of cache
-    // blocks). Basically,the question is where do we start reading in the cache block, and what size read do we use?
-    int offsetIntoCacheBlock;
-    int sizeToCopy;
-    if (fillForward) {
-      // .....size to copy (assuming we will want to read until the end of the cache block)
-      // .....<-------->
-      // X ---|------- X
-      // ^____^
-      // ..|
-      // Offset Into Cache Block
-      offsetIntoCacheBlock = Math.toIntExact(pos - posCacheBlockStart);
-      sizeToCopy = readCacheBlockSize - offsetIntoCacheBlock;
-    } else {
-      // size to copy
-      // <---->
-      // X ---|------- X
-      // ^
-      // Offset Into Cache Block
-      offsetIntoCacheBlock = 0;
-      sizeToCopy = Math.toIntExact(pos - posCacheBlockStart);
+  /** Adjacent cache blocks fetched with one remote read. */
+  private class BlockFetch {
+    final long firstBlock;
+    final List<CompletableFuture<byte[]>> futures = new ArrayList<>(maxBlocksPerFetch);
+
+    BlockFetch(long firstBlock) {
+      this.firstBlock = firstBlock;
     }
 
-    // We don't want to read past the end of the file, so let's check sizeToCopy against how much of the file
-    // is left to read
-    long toEof = length() - pos;
-    sizeToCopy = Math.toIntExact(Math.min(sizeToCopy, toEof));
-
-    // Finally, check to make sure we are not reading more than buff will hold
-    sizeToCopy = Math.toIntExact(Math.min(sizeToCopy, buff.length - positionInBuffer));
-
-    // Copy byte array fulfilling the request as obtained from the cache into the destination buffer
-    logger.debug("Requested {} bytes from the cache block (cache block size upper limit: {} bytes.)", sizeToCopy,
-        readCacheBlockSize);
-    logger.debug("Actual size of the cache block: {} bytes.", src.length);
-    logger.debug("Offset into cache block to begin copy: {} bytes.", offsetIntoCacheBlock);
-    logger.debug("Total size of the destination buffer: {} bytes.", buff.length);
-    logger.debug("Position in buffer to place the copy from the cache: {} bytes.", positionInBuffer);
-    logger.debug("Trying to fit {} bytes from the cache into {} bytes of the destination.",
-        src.length - offsetIntoCacheBlock, buff.length - positionInBuffer);
-    System.arraycopy(src, offsetIntoCacheBlock, buff, positionInBuffer, sizeToCopy);
-    return sizeToCopy;
-  }
+    long lastBlock() {
+      return firstBlock + futures.size() - 1;
+    }
 
-  private int readCacheBlockFull(long cacheBlockNumber, int positionInBuffer, byte[] buff) throws IOException {
-    byte[] src;
-    try {
-      src = readCache.get(cacheBlockNumber);
-    } catch (ExecutionException ee) {
-      throw new IOException("Error obtaining data from the remote data read cache.", ee);
+    void run() {
+      byte[] data;
+      boolean complete;
+      try {
+        long position = firstBlock * readCacheBlockSize;
+        int bytes = Math.toIntExact(Math.min((long) futures.size() * readCacheBlockSize, length() - position));
+        data = new byte[bytes];
+        complete = readRemote(position, data, 0, bytes) == bytes;
+      } catch (Throwable t) {
+        for (int i = 0; i < futures.size(); i++) {
+          fetching.remove(firstBlock + i, futures.get(i));
+          futures.get(i).completeExceptionally(t);
+        }
+        return;
+      }
+
+      for (int i = 0; i < futures.size(); i++) {
+        byte[] block = data;
+        if (futures.size() > 1) {
+          int start = i * readCacheBlockSize;
+          block = Arrays.copyOfRange(data, start, Math.min(data.length, start + readCacheBlockSize));
+        }
+        // put in the cache before it is removed from fetching, so readers always find it in one or the other
+        readCache.put(firstBlock + i, block);
+        fetching.remove(firstBlock + i, futures.get(i));
+        futures.get(i).complete(block);
+        if (complete)
+          writeToDiskCache(firstBlock + i, block);
+      }
+    }
+
+    // waiting readers will load the blocks themselves
+    void abandon() {
+      for (int i = 0; i < futures.size(); i++) {
+        fetching.remove(firstBlock + i, futures.get(i));
+        futures.get(i).complete(null);
+      }
     }
-    System.arraycopy(src, 0, buff, positionInBuffer, readCacheBlockSize);
-    return readCacheBlockSize;
   }
 
   /**
@@ -231,12 +376,64 @@ public abstract class RemoteRandomAccessFile extends ucar.unidata.io.RandomAcces
     // if size to EOF less than readCacheBlockSize, just read to EOF
     long bytesToRead = toEOF < readCacheBlockSize ? toEOF : readCacheBlockSize;
     int bytes = Math.toIntExact(bytesToRead);
-    byte[] buffer = new byte[bytes];
+    String key = getDiskCacheKey();
+    if (key != null) {
+      byte[] block = diskCache.read(key, cacheBlockNumber, bytes);
+      if (block != null)
+        return block;
+    }
 
-    readRemote(position, buffer, 0, bytes);
+    byte[] buffer = new byte[bytes];
+    if (readRemote(position, buffer, 0, bytes) == bytes)
+      writeToDiskCache(cacheBlockNumber, buffer);
     return buffer;
   }
 
+  /**
+   * Identifies the version of the remote file, such as its ETag or last modified date, so that cache blocks on disk
+   * are only used for the same version. Override to allow the disk cache to be used.
+   *
+   * @return version of the remote file, or null if not known, and the disk cache will not be used.
+   */
+  @Nullable
+  protected String getRemoteVersion() {
+    return null;
+  }
+
+  // key of this file in the disk cache, or null if it is not cached on disk
+  @Nullable
+  private String getDiskCacheKey() {
+    if (diskCache == null)
+      return null;
+    String key = diskCacheKey;
+    if (key == null) {
+      String version = getRemoteVersion(); // known once the subclass is constructed
+      key = (version == null) ? "" : RemoteBlockDiskCache.makeDatasetKey(url, version, readCacheBlockSize);
+      diskCacheKey = key;
+    }
+    return key.isEmpty() ? null : key;
+  }
+
+  // put the block in the memory cache if it is in the disk cache
+  private boolean readFromDiskCache(long blockNumber) throws IOException {
+    String key = getDiskCacheKey();
+    if (key == null)
+      return false;
+    long position = blockNumber * readCacheBlockSize;
+    int bytes = Math.toIntExact(Math.min(readCacheBlockSize, length() - position));
+    byte[] block = diskCache.read(key, blockNumber, bytes);
+    if (block == null)
+      return false;
+    readCache.put(blockNumber, block);
+    return true;
+  }
+
+  private void writeToDiskCache(long blockNumber, byte[] block) {
+    String key = getDiskCacheKey();
+    if (key != null)
+      diskCache.write(key, blockNumber, block);
+  }
+
   @Override
   public long readToByteChannel(WritableByteChannel dest, long offset, long nbytes) throws IOException {
     int n = (int) nbytes;
@@ -46,6 +46,7 @@ public final class HTTPRandomAccessFile extends RemoteRandomAccessFile {
 
   private HTTPSession session;
   private long total_length;
+  private String version; // ETag or Last-Modified, if the server sent one
 
   public HTTPRandomAccessFile(String url) throws IOException {
     this(url, httpBufferSize, httpMaxCacheSize);
@@ -84,6 +85,9 @@ public final class HTTPRandomAccessFile extends RemoteRandomAccessFile {
       } catch (NumberFormatException e) {
         throw new IOException("Server has malformed Content-Length header");
       }
+
+      this.version = method.getResponseHeaderValue("ETag")
+          .orElseGet(() -> method.getResponseHeaderValue("Last-Modified").orElse(null));
     }
 
     /*
@@ -218,6 +222,11 @@ public final class HTTPRandomAccessFile extends RemoteRandomAccessFile {
       return fileLength;
   }
 
+  @Override
+  protected String getRemoteVersion() {
+    return version;
+  }
+
   /**
    * Always returns {@code 0L}, as we cannot easily determine the last time that a remote file was modified.
    *
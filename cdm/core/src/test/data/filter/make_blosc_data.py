@@ -0,0 +1,29 @@
+#!/usr/bin/env python
+# coding: utf-8
+
+# Writes the blosc_<cname>_<shuffle> test files for TestBlosc: raw_data as little endian 4 byte ints,
+# compressed by c-blosc 1.x through numcodecs. Run from this directory.
+
+import numpy as np
+from numcodecs import Blosc
+
+data = np.fromfile('raw_data', dtype='<i4')
+
+shuffles = {'noshuffle': Blosc.NOSHUFFLE, 'shuffle': Blosc.SHUFFLE, 'bitshuffle': Blosc.BITSHUFFLE}
+containers = [
+    ('blosclz', 'noshuffle'),
+    ('blosclz', 'shuffle'),
+    ('lz4', 'shuffle'),
+    ('lz4', 'bitshuffle'),
+    ('lz4hc', 'shuffle'),
+    ('zlib', 'shuffle'),
+    ('zlib', 'bitshuffle'),
+    # not supported by the java filter, decoding must fail naming the codec
+    ('zstd', 'shuffle'),
+]
+
+for cname, shuffle in containers:
+    # 16k blocks, so the data is in several blocks
+    codec = Blosc(cname=cname, clevel=5, shuffle=shuffles[shuffle], blocksize=16 * 1024)
+    with open('blosc_%s_%s' % (cname, shuffle), 'wb') as f:
+        f.write(codec.encode(data))
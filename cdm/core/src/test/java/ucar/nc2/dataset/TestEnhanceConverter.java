@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 1998-2021 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.dataset;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.ma2.IndexIterator;
+import ucar.nc2.filter.Enhancement;
+import ucar.nc2.filter.UnsignedConversion;
+
+/** Test {@link EnhanceConverter} against a value by value conversion. */
+public class TestEnhanceConverter {
+
+  private static Array expected(Array data, DataType convertedType, List<Enhancement> enhancements) {
+    Array out = Array.factory(convertedType, data.getShape());
+    IndexIterator iterIn = data.getIndexIterator();
+    IndexIterator iterOut = out.getIndexIterator();
+    while (iterIn.hasNext()) {
+      double num = iterIn.getDoubleNext();
+      for (Enhancement e : enhancements) {
+        num = e.convert(num);
+      }
+      iterOut.setObjectNext(num);
+    }
+    return out;
+  }
+
+  private static void check(Array data, DataType convertedType, List<Enhancement> enhancements) {
+    Array result = EnhanceConverter.convert(data, convertedType, enhancements);
+    assertThat(result.getDataType()).isEqualTo(convertedType);
+    assertThat(result.getShape()).isEqualTo(data.getShape());
+    Object want = expected(data, convertedType, enhancements).getStorage();
+    assertThat(result.getStorage()).isEqualTo(want);
+  }
+
+  @Test
+  public void testPackedShort() {
+    List<Enhancement> enhancements = new ArrayList<>();
+    enhancements.add(new UnsignedConversion(DataType.UINT, DataType.Signedness.UNSIGNED));
+    enhancements.add(num -> num == 65535 ? Double.NaN : num); // missing
+    enhancements.add(num -> num * 0.01 + 100); // scale and offset
+
+    for (int n : new int[] {1, 1000, EnhanceConverter.PARALLEL_THRESHOLD + 7}) {
+      short[] values = new short[n];
+      for (int i = 0; i < n; i++) {
+        values[i] = (short) (i * 31);
+      }
+      values[0] = -1;
+      Array data = Array.factory(DataType.SHORT, new int[] {n}, values);
+      check(data, DataType.FLOAT, enhancements);
+      check(data, DataType.DOUBLE, enhancements);
+      check(data, DataType.UINT, enhancements.subList(0, 1));
+    }
+  }
+
+  @Test
+  public void testUnsignedAndSection() throws Exception {
+    byte[] values = new byte[600];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = (byte) i;
+    }
+    Array data = Array.factory(DataType.UBYTE, new int[] {20, 30}, values);
+    List<Enhancement> enhancements = new ArrayList<>();
+    enhancements.add(num -> num * 2);
+    check(data, DataType.DOUBLE, enhancements);
+    check(data, DataType.SHORT, enhancements);
+
+    // not in canonical order
+    Array section = data.section(new int[] {2, 3}, new int[] {9, 10}, new int[] {2, 1});
+    check(section, DataType.FLOAT, enhancements);
+    check(section.transpose(0, 1), DataType.LONG, enhancements);
+  }
+}
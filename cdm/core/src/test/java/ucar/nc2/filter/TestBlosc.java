@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2021 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.nc2.filter;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+import com.google.common.base.Stopwatch;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ucar.unidata.util.test.category.Slow;
+
+/** Test {@link Blosc} */
+public class TestBlosc {
+  private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+  private static final String DATA_DIR = "src/test/data/filter";
+
+  private static byte[] decoded_data;
+
+  @BeforeClass
+  public static void setUp() throws IOException {
+    decoded_data = Files.readAllBytes(Paths.get(DATA_DIR, "raw_data"));
+  }
+
+  private static Blosc blosc(String cname, int shuffle, int typesize, int blocksize) {
+    Map<String, Object> props = new HashMap<>();
+    props.put("id", "blosc");
+    props.put("cname", cname);
+    props.put("clevel", 5);
+    props.put("shuffle", shuffle);
+    props.put("typesize", typesize);
+    props.put("blocksize", blocksize);
+    return new Blosc(props);
+  }
+
+  // raw_data compressed by lz4 into a byte shuffled Blosc container with 64k blocks
+  @Test
+  public void testDecodeLz4Shuffle() throws IOException, UnknownFilterException {
+    byte[] encoded = Files.readAllBytes(Paths.get(DATA_DIR, "blosc_lz4"));
+    Filter filter = Filters.getFilter(new HashMap<String, Object>() {
+      {
+        put(Filters.Keys.NAME, "blosc");
+      }
+    });
+    assertThat(filter).isInstanceOf(Blosc.class);
+    assertThat(filter.decode(encoded)).isEqualTo(decoded_data);
+  }
+
+  // raw_data as 4 byte ints, compressed by c-blosc 1.x through numcodecs, see make_blosc_data.py
+  @Test
+  public void testDecodeCBlosc() throws IOException {
+    String[] names = {"blosc_blosclz_noshuffle", "blosc_blosclz_shuffle", "blosc_lz4_shuffle", "blosc_lz4_bitshuffle",
+        "blosc_lz4hc_shuffle", "blosc_zlib_shuffle", "blosc_zlib_bitshuffle"};
+    for (String name : names) {
+      Path path = Paths.get(DATA_DIR, name);
+      assumeTrue("make " + path + " with make_blosc_data.py", Files.exists(path));
+      byte[] encoded = Files.readAllBytes(path);
+      assertWithMessage(name).that(blosc("lz4", 1, 4, 0).decode(encoded)).isEqualTo(decoded_data);
+    }
+  }
+
+  @Test
+  public void testDecodeCBloscZstd() throws IOException {
+    Path path = Paths.get(DATA_DIR, "blosc_zstd_shuffle");
+    assumeTrue("make " + path + " with make_blosc_data.py", Files.exists(path));
+    try {
+      blosc("lz4", 1, 4, 0).decode(Files.readAllBytes(path));
+      fail();
+    } catch (IOException e) {
+      assertThat(e.getMessage()).contains("zstd");
+    }
+  }
+
+  @Test
+  public void testUnsupportedCodecs() {
+    int[] codes = {2, 4};
+    String[] cnames = {"snappy", "zstd"};
+    for (int i = 0; i < codes.length; i++) {
+      // one block, with a compressed stream of 8 bytes
+      byte[] encoded = new byte[16 + 4 + 4 + 8];
+      encoded[0] = 2;
+      encoded[1] = 1;
+      encoded[2] = (byte) ((codes[i] << 5) | 0x10); // not split
+      encoded[3] = 1;
+      encoded[4] = 10; // nbytes
+      encoded[8] = 10; // blocksize
+      encoded[12] = (byte) encoded.length;
+      encoded[16] = 20; // block start
+      encoded[20] = 8;
+      try {
+        blosc("lz4", 0, 1, 0).decode(encoded);
+        fail();
+      } catch (IOException e) {
+        assertThat(e.getMessage()).contains(cnames[i]);
+      }
+    }
+  }
+
+  @Test
+  public void testDecodeBlosclz() throws IOException {
+    // literal "abc", a match of 6 at distance 3, literal "x"
+    byte[] stream = {2, 'a', 'b', 'c', (byte) 0x80, 2, 0, 'x'};
+    byte[] encoded = new byte[16 + 4 + 4 + stream.length];
+    encoded[0] = 2;
+    encoded[1] = 1;
+    encoded[2] = 0x10; // blosclz, not split
+    encoded[3] = 1;
+    encoded[4] = 10; // nbytes
+    encoded[8] = 10; // blocksize
+    encoded[12] = (byte) encoded.length;
+    encoded[16] = 20; // block start
+    encoded[20] = (byte) stream.length;
+    System.arraycopy(stream, 0, encoded, 24, stream.length);
+
+    assertThat(new String(blosc("blosclz", 0, 1, 0).decode(encoded), "US-ASCII")).isEqualTo("abcabcabcx");
+  }
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    for (String cname : new String[] {"lz4", "zlib", "blosclz"}) {
+      for (int shuffle = 0; shuffle <= 2; shuffle++) {
+        for (int typesize : new int[] {1, 4, 8}) {
+          Blosc filter = blosc(cname, shuffle, typesize, 16 * 1024);
+          byte[] encoded = filter.encode(decoded_data);
+          assertThat(filter.decode(encoded)).isEqualTo(decoded_data);
+          // with an odd length, the last block is partial
+          byte[] odd = new byte[decoded_data.length - 3];
+          System.arraycopy(decoded_data, 0, odd, 0, odd.length);
+          assertThat(filter.decode(filter.encode(odd))).isEqualTo(odd);
+        }
+      }
+    }
+    Blosc filter = blosc("lz4", 1, 4, 0);
+    assertThat(filter.decode(filter.encode(new byte[0]))).isEmpty();
+    assertThat(filter.encode(decoded_data).length).isLessThan(decoded_data.length / 10);
+  }
+
+  @Test
+  public void testConcurrentDecode() throws IOException {
+    Blosc filter = blosc("lz4", 1, 4, 4096);
+    byte[] encoded = filter.encode(decoded_data);
+    ExecutorService exec = Executors.newFixedThreadPool(4);
+    try {
+      Blosc.setExecutor(exec);
+      assertThat(filter.decode(encoded)).isEqualTo(decoded_data);
+    } finally {
+      Blosc.setExecutor(null);
+      exec.shutdown();
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void testTruncated() throws IOException {
+    Blosc filter = blosc("lz4", 1, 4, 4096);
+    byte[] encoded = filter.encode(decoded_data);
+    byte[] truncated = new byte[encoded.length / 2];
+    System.arraycopy(encoded, 0, truncated, 0, truncated.length);
+    filter.decode(truncated);
+  }
+
+  @Test
+  @Category(Slow.class)
+  public void benchmarkDecodeAgainstDeflate() throws IOException {
+    byte[] data = new byte[16 * decoded_data.length];
+    for (int i = 0; i < 16; i++) {
+      System.arraycopy(decoded_data, 0, data, i * decoded_data.length, decoded_data.length);
+    }
+    Map<String, Object> props = new HashMap<>();
+    props.put("level", 5);
+    Filter[] filters = {new Deflate(props), blosc("lz4", 1, 4, 0), blosc("zlib", 1, 4, 0)};
+    for (Filter filter : filters) {
+      byte[] encoded = filter.encode(data);
+      for (int i = 0; i < 20; i++) { // warm up
+        filter.decode(encoded);
+      }
+      int n = 200;
+      Stopwatch stopwatch = Stopwatch.createStarted();
+      for (int i = 0; i < n; i++) {
+        filter.decode(encoded);
+      }
+      double rate = ((double) n * data.length) / stopwatch.elapsed(TimeUnit.MICROSECONDS);
+      logger.info("{} ratio = {} decode = {} MB/sec", filter, (double) encoded.length / data.length, rate);
+    }
+  }
+}
@@ -6,6 +6,7 @@
 package ucar.nc2.filter;
 
 import com.google.common.primitives.Ints;
+import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import ucar.unidata.io.RandomAccessFile;
@@ -52,6 +53,34 @@ public class TestFilters {
     testEncodeDecode(filter, "deflate_level9");
   }
 
+  @Test
+  public void testDeflateSizedAndByteBuffer() throws IOException {
+    Map<String, Object> props = new HashMap<>();
+    props.put("id", "zlib");
+    props.put("level", 1);
+    Filter filter = new Deflate(props);
+    byte[] encoded = readAsByteArray("deflate_level1");
+
+    // the decoded size is only a hint
+    assertThat(filter.decode(encoded, decoded_data.length)).isEqualTo(decoded_data);
+    assertThat(filter.decode(encoded, 1)).isEqualTo(decoded_data);
+    assertThat(filter.decode(encoded, 2 * decoded_data.length)).isEqualTo(decoded_data);
+
+    // buffer not starting at the beginning of its array
+    ByteBuffer in = ByteBuffer.allocate(encoded.length + 10);
+    in.position(10);
+    in.put(encoded);
+    in.position(10);
+    ByteBuffer out = filter.decode(in);
+    assertThat(in.position()).isEqualTo(10);
+    byte[] decoded = new byte[out.remaining()];
+    out.get(decoded);
+    assertThat(decoded).isEqualTo(decoded_data);
+
+    ByteBuffer reencoded = filter.encode(ByteBuffer.wrap(decoded_data));
+    assertThat(reencoded.remaining()).isEqualTo(encoded.length);
+  }
+
   @Test
   public void testShuffle() throws IOException {
     Map<String, Object> props = new HashMap<>();
@@ -156,4 +185,68 @@ public class TestFilters {
     assertThat(out).isEqualTo(expected);
   }
 
+  @Test
+  public void testGetFilterReusesStatelessFilters() throws UnknownFilterException {
+    Map<String, Object> props = new HashMap<>();
+    props.put(Filters.Keys.NAME, "zlib");
+    props.put("level", 4);
+    Filter filter = Filters.getFilter(props);
+    assertThat(filter).isInstanceOf(Deflate.class);
+
+    Map<String, Object> same = new HashMap<>(props);
+    assertThat(Filters.getFilter(same)).isSameInstanceAs(filter);
+
+    props.put("level", 5);
+    assertThat(Filters.getFilter(props)).isNotSameInstanceAs(filter);
+
+    // HDF5 style, by numeric id with array data
+    Map<String, Object> h5props = new HashMap<>();
+    h5props.put(Filters.Keys.ID, (short) 2);
+    h5props.put(Filters.Keys.DATA, new int[] {8});
+    Filter shuffle = Filters.getFilter(h5props);
+    assertThat(shuffle).isInstanceOf(Shuffle.class);
+    h5props.put(Filters.Keys.DATA, new int[] {8});
+    assertThat(Filters.getFilter(h5props)).isSameInstanceAs(shuffle);
+  }
+
+  @Test
+  public void testRegisterFilterProvider() throws UnknownFilterException {
+    FilterProvider provider = new FilterProvider() {
+      public String getName() {
+        return "testFilter";
+      }
+
+      public int getId() {
+        return 32999;
+      }
+
+      public Filter create(Map<String, Object> properties) {
+        return new Checksum32(Checksum32.CType.CRC);
+      }
+    };
+
+    Map<String, Object> props = new HashMap<>();
+    props.put(Filters.Keys.NAME, "testFilter");
+    try {
+      Filters.getFilter(props);
+      Assert.fail();
+    } catch (UnknownFilterException e) {
+      // expected
+    }
+
+    Filters.registerFilterProvider(provider);
+    try {
+      Filter filter = Filters.getFilter(props);
+      assertThat(filter).isInstanceOf(Checksum32.class);
+      // not stateless, so a new instance each time
+      assertThat(Filters.getFilter(props)).isNotSameInstanceAs(filter);
+
+      Map<String, Object> idProps = new HashMap<>();
+      idProps.put(Filters.Keys.ID, 32999);
+      assertThat(Filters.getFilter(idProps)).isInstanceOf(Checksum32.class);
+    } finally {
+      Filters.unregisterFilterProvider(provider);
+    }
+  }
+
 }
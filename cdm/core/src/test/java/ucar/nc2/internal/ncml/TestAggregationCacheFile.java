@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.internal.ncml;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.ncml.TestNcmlRead;
+import ucar.nc2.util.DiskCache2;
+
+/** Test the persistent cache file of joinExisting aggregations */
+public class TestAggregationCacheFile {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    List<AggregationCacheFile.Entry> entries = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      Map<String, Array> values = new HashMap<>();
+      values.put("time", Array.makeFromJavaArray(new double[] {i * 24.0, i * 24.0 + 12.0}));
+      values.put("run", Array.makeArray(DataType.STRING, new String[] {"run" + i, "run" + i}));
+      values.put("count", Array.makeFromJavaArray(new long[] {Long.MAX_VALUE - i, i}));
+      values.put("flag", Array.factory(DataType.CHAR, new int[] {1})); // not written
+      entries.add(new AggregationCacheFile.Entry("/data/file" + i + ".nc", 1000L * i, 2, values));
+    }
+    entries.add(new AggregationCacheFile.Entry("/data/notread.nc", 0, 5, new HashMap<>()));
+
+    File cacheFile = new File(tempFolder.getRoot(), "sub/agg.ncml");
+    AggregationCacheFile.write(cacheFile, entries);
+    assertThat(Arrays.asList(cacheFile.getParentFile().list())).containsExactly("agg.ncml"); // no temp file left
+
+    Map<String, AggregationCacheFile.Entry> read = AggregationCacheFile.read(cacheFile);
+    assertThat(read.keySet()).containsExactly("/data/file0.nc", "/data/file1.nc", "/data/file2.nc",
+        "/data/notread.nc").inOrder();
+
+    AggregationCacheFile.Entry entry = read.get("/data/file2.nc");
+    assertThat(entry.lastModified).isEqualTo(2000L);
+    assertThat(entry.ncoord).isEqualTo(2);
+    assertThat(entry.values.keySet()).containsExactly("time", "run", "count");
+    assertThat(entry.values.get("time").getDataType()).isEqualTo(DataType.DOUBLE);
+    assertThat(entry.values.get("time").getDouble(1)).isEqualTo(60.0);
+    assertThat(entry.values.get("run").getObject(0)).isEqualTo("run2");
+    assertThat(entry.values.get("count").getLong(0)).isEqualTo(Long.MAX_VALUE - 2);
+
+    entry = read.get("/data/notread.nc");
+    assertThat(entry.ncoord).isEqualTo(5);
+    assertThat(entry.values).isEmpty();
+  }
+
+  @Test(expected = IOException.class)
+  public void testOldXmlCacheIsRejected() throws IOException {
+    File cacheFile = tempFolder.newFile();
+    Files.write(cacheFile.toPath(),
+        "<?xml version='1.0' encoding='UTF-8'?>\n<aggregation version='3'/>".getBytes(StandardCharsets.UTF_8));
+    AggregationCacheFile.read(cacheFile);
+  }
+
+  @Test
+  public void testPersistedByAggregation() throws IOException {
+    String filename = "file:" + TestNcmlRead.topDir + "aggExistingPromote.ncml";
+    Aggregation.setPersistenceCache(new DiskCache2(tempFolder.getRoot().getPath(), false, 0, 0));
+    try {
+      Array time;
+      Array times;
+      AggregationExisting.countCacheUse = 0;
+      try (NetcdfFile ncfile = NcmlReader.readNcml(filename, null, null).build()) {
+        time = ncfile.findVariable("time").read();
+        times = ncfile.findVariable("times").read();
+      }
+      assertThat(AggregationExisting.countCacheUse).isEqualTo(0);
+
+      // the second time, the coordinates and the promoted attribute come from the cache
+      try (NetcdfFile ncfile = NcmlReader.readNcml(filename, null, null).build()) {
+        assertThat(AggregationExisting.countCacheUse).isGreaterThan(0);
+        assertThat(ncfile.findVariable("time").read().toString()).isEqualTo(time.toString());
+        assertThat(ncfile.findVariable("times").read().toString()).isEqualTo(times.toString());
+      }
+    } finally {
+      Aggregation.setPersistenceCache(null);
+    }
+  }
+}
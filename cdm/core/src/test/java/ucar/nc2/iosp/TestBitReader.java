@@ -6,13 +6,18 @@
 package ucar.nc2.iosp;
 
 import static org.junit.Assert.assertEquals;
+import java.io.EOFException;
+import java.io.File;
 import java.io.IOException;
 import java.lang.invoke.MethodHandles;
+import java.nio.file.Files;
+import java.util.Random;
 import org.junit.Ignore;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import ucar.nc2.util.Misc;
+import ucar.unidata.io.RandomAccessFile;
 
 /**
  * from https://github.com/lost-carrier 6/12/2014
@@ -63,4 +68,114 @@ public class TestBitReader {
     assertEquals(6, (int) bu.bits2UInt(8));
   }
 
+  @Test
+  public void testReadUIntsSameAsBits2UInt() throws IOException {
+    Random random = new Random(7);
+    byte[] bytes = new byte[1000];
+    random.nextBytes(bytes);
+
+    for (int nb = 0; nb <= 32; nb++) {
+      for (int lead = 0; lead < 8; lead++) { // start at every bit of a byte
+        int n = (bytes.length * 8 - lead - 20) / Math.max(nb, 1) / 2;
+        BitReader expected = new BitReader(bytes);
+        BitReader actual = new BitReader(bytes);
+        expected.bits2UInt(lead);
+        actual.bits2UInt(lead);
+
+        int[] values = new int[n + 1];
+        actual.readUInts(nb, values, 1, n);
+        for (int i = 0; i < n; i++)
+          assertEquals("nb=" + nb + " lead=" + lead + " i=" + i, (int) expected.bits2UInt(nb), values[i + 1]);
+
+        // left at the same position
+        assertEquals(expected.bits2UInt(13), actual.bits2UInt(13));
+        expected.incrByte();
+        actual.incrByte();
+        assertEquals(expected.getPos(), actual.getPos());
+        assertEquals(expected.bits2UInt(7), actual.bits2UInt(7));
+      }
+    }
+  }
+
+  @Test
+  public void testReadULongs() throws IOException {
+    Random random = new Random(11);
+    byte[] bytes = new byte[200];
+    random.nextBytes(bytes);
+
+    for (int nb = 1; nb <= 64; nb++) {
+      BitReader bitwise = new BitReader(bytes);
+      BitReader actual = new BitReader(bytes);
+      bitwise.bits2UInt(3);
+      actual.bits2UInt(3);
+      int n = (bytes.length * 8 - 3) / nb;
+
+      long[] values = new long[n];
+      actual.readULongs(nb, values, 0, n);
+      for (int i = 0; i < n; i++) {
+        long want = 0;
+        for (int b = 0; b < nb; b++)
+          want = (want << 1) | bitwise.bits2UInt(1);
+        assertEquals("nb=" + nb + " i=" + i, want, values[i]);
+      }
+    }
+  }
+
+  // values with the top bit set, which readUInts() returns as negative ints
+  @Test
+  public void testRead32BitValues() throws IOException {
+    long[] want = {0, 1, (1L << 31) - 1, 1L << 31, 3L << 30, 0xFFFFFFFFL};
+    byte[] bytes = new byte[4 * want.length];
+    for (int i = 0; i < want.length; i++) {
+      for (int b = 0; b < 4; b++)
+        bytes[4 * i + b] = (byte) (want[i] >>> (24 - 8 * b));
+    }
+
+    long[] longs = new long[want.length];
+    new BitReader(bytes).readULongs(32, longs, 0, want.length);
+    int[] ints = new int[want.length];
+    new BitReader(bytes).readUInts(32, ints, 0, want.length);
+    BitReader bitwise = new BitReader(bytes);
+    for (int i = 0; i < want.length; i++) {
+      assertEquals(want[i], longs[i]);
+      assertEquals(want[i], ints[i] & 0xFFFFFFFFL);
+      assertEquals(want[i], bitwise.bits2UInt(32));
+    }
+  }
+
+  @Test
+  public void testReadUIntsFromFile() throws IOException {
+    Random random = new Random(17);
+    byte[] bytes = new byte[5000];
+    random.nextBytes(bytes);
+    File file = File.createTempFile("TestBitReader", ".bin");
+    file.deleteOnExit();
+    Files.write(file.toPath(), bytes);
+
+    try (RandomAccessFile raf = new RandomAccessFile(file.getPath(), "r")) {
+      for (int nb : new int[] {1, 7, 8, 12, 16, 17, 24, 31, 32}) {
+        BitReader expected = new BitReader(bytes);
+        expected.bits2UInt(8 * 10 + 3);
+        BitReader actual = new BitReader(raf, 10);
+        actual.bits2UInt(3);
+
+        int n = 1001;
+        int[] values = new int[n];
+        actual.readUInts(nb, values, 0, n);
+        for (int i = 0; i < n; i++)
+          assertEquals("nb=" + nb + " i=" + i, (int) expected.bits2UInt(nb), values[i]);
+
+        // the file is left where bits2UInt would leave it
+        assertEquals(expected.getPos(), actual.getPos());
+        assertEquals(expected.bits2UInt(5), actual.bits2UInt(5));
+      }
+    }
+  }
+
+  @Test(expected = EOFException.class)
+  public void testReadUIntsPastEnd() throws IOException {
+    BitReader bu = new BitReader(new byte[] {1, 2, 3});
+    bu.readUInts(12, new int[3], 0, 3);
+  }
+
 }
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 1998-2021 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.iosp;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Test;
+
+/** Test {@link ChunkCache} */
+public class TestChunkCache {
+
+  @Test
+  public void testHitsAndMisses() throws IOException {
+    ChunkCache cache = new ChunkCache(1000);
+    AtomicInteger decodes = new AtomicInteger();
+
+    byte[] first = cache.get("file", "var", new int[] {0, 10}, () -> {
+      decodes.incrementAndGet();
+      return new byte[100];
+    });
+    byte[] second = cache.get("file", "var", new int[] {0, 10}, () -> {
+      decodes.incrementAndGet();
+      return new byte[100];
+    });
+    assertThat(second).isSameInstanceAs(first);
+    assertThat(decodes.get()).isEqualTo(1);
+
+    // different chunk, variable and file are all misses
+    cache.get("file", "var", new int[] {0, 20}, () -> new byte[100]);
+    cache.get("file", "other", new int[] {0, 10}, () -> new byte[100]);
+    cache.get("file2", "var", new int[] {0, 10}, () -> new byte[100]);
+
+    assertThat(cache.getHitCount()).isEqualTo(1);
+    assertThat(cache.getMissCount()).isEqualTo(4);
+    assertThat(cache.size()).isEqualTo(4);
+    assertThat(cache.getCachedBytes()).isEqualTo(400);
+
+    cache.clearCache();
+    assertThat(cache.size()).isEqualTo(0);
+  }
+
+  @Test
+  public void testByteBudget() throws IOException {
+    ChunkCache cache = new ChunkCache(1000);
+    for (int i = 0; i < 50; i++) {
+      cache.get("file", "var", new int[] {i}, () -> new byte[100]);
+    }
+    assertThat(cache.getCachedBytes()).isAtMost(1000);
+    assertThat(cache.getEvictionCount()).isAtLeast(40);
+  }
+
+  @Test
+  public void testDecoderException() {
+    ChunkCache cache = new ChunkCache(1000);
+    try {
+      cache.get("file", "var", new int[] {0}, () -> {
+        throw new IOException("bad chunk");
+      });
+      Assert.fail();
+    } catch (IOException e) {
+      assertThat(e.getMessage()).isEqualTo("bad chunk");
+    }
+    assertThat(cache.size()).isEqualTo(0);
+  }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.nc2.iosp;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableList;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ucar.ma2.Array;
+import ucar.ma2.Section;
+import ucar.nc2.Group;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.Variable;
+import ucar.nc2.util.CancelTask;
+import ucar.unidata.io.RandomAccessFile;
+import ucar.unidata.util.test.TestDir;
+
+/** Test finding the IOSP of a file by its signature */
+public class TestIospSignature {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  /** Reads files that start with "CNTX", and counts how often it is asked */
+  public static class CountingIosp extends AbstractIOServiceProvider {
+    static final AtomicInteger countIsValid = new AtomicInteger();
+
+    @Override
+    public boolean isValidFile(RandomAccessFile raf) throws IOException {
+      countIsValid.incrementAndGet();
+      raf.seek(0);
+      return raf.length() >= 4 && raf.readString(4).equals("CNTX");
+    }
+
+    @Override
+    public List<IospSignature> getSignatures() {
+      return ImmutableList.of(IospSignature.at("CNTX"));
+    }
+
+    @Override
+    public boolean isBuilder() {
+      return true;
+    }
+
+    @Override
+    public void build(RandomAccessFile raf, Group.Builder rootGroup, CancelTask cancelTask) throws IOException {
+      this.raf = raf;
+    }
+
+    @Override
+    public Array readData(Variable v2, Section section) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public String getFileTypeId() {
+      return "CNTX";
+    }
+
+    @Override
+    public String getFileTypeDescription() {
+      return "Counting test iosp";
+    }
+  }
+
+  /** Declares no signatures, and when asked to, claims netcdf3 and hdf5 files before the core IOSPs do */
+  public static class ClaimingIosp extends AbstractIOServiceProvider {
+    static volatile boolean claim;
+
+    @Override
+    public boolean isValidFile(RandomAccessFile raf) throws IOException {
+      if (!claim || raf.length() < 4)
+        return false;
+      byte[] start = new byte[4];
+      raf.seek(0);
+      raf.readFully(start);
+      return (start[0] == 'C' && start[1] == 'D' && start[2] == 'F')
+          || ((start[0] & 0xff) == 0x89 && start[1] == 'H' && start[2] == 'D' && start[3] == 'F');
+    }
+
+    @Override
+    public boolean isBuilder() {
+      return true;
+    }
+
+    @Override
+    public void build(RandomAccessFile raf, Group.Builder rootGroup, CancelTask cancelTask) throws IOException {
+      this.raf = raf;
+    }
+
+    @Override
+    public Array readData(Variable v2, Section section) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public String getFileTypeId() {
+      return "CLAIM";
+    }
+
+    @Override
+    public String getFileTypeDescription() {
+      return "Claiming test iosp";
+    }
+  }
+
+  @BeforeClass
+  public static void register() throws Exception {
+    NetcdfFiles.registerIOProvider(ClaimingIosp.class);
+    NetcdfFiles.registerIOProvider(CountingIosp.class);
+  }
+
+  @Test
+  public void testMatches() {
+    byte[] prefix = "xxGRIBxxCDF\001".getBytes(StandardCharsets.US_ASCII);
+    assertThat(IospSignature.at(new byte[] {'C', 'D', 'F', 1}, 0, 8).matches(prefix, prefix.length)).isTrue();
+    assertThat(IospSignature.at(new byte[] {'C', 'D', 'F', 1}, 0, 4).matches(prefix, prefix.length)).isFalse();
+    assertThat(IospSignature.at("xxG").matches(prefix, prefix.length)).isTrue();
+    // only the valid part of the prefix is looked at
+    assertThat(IospSignature.at(new byte[] {'C', 'D', 'F', 1}, 8).matches(prefix, 11)).isFalse();
+
+    assertThat(IospSignature.within("GRIB", 3).matches(prefix, prefix.length)).isTrue();
+    assertThat(IospSignature.within("GRIB", 2).matches(prefix, prefix.length)).isFalse();
+    assertThat(IospSignature.within("GRIB", 100).matches(prefix, 5)).isFalse();
+  }
+
+  @Test
+  public void testMayMatch() {
+    byte[] prefix = "xxGRIBxxCDF\001".getBytes(StandardCharsets.US_ASCII);
+    byte[] cdf1 = {'C', 'D', 'F', 1};
+    assertThat(IospSignature.at(cdf1, 8).mayMatch(prefix, prefix.length, prefix.length)).isTrue();
+    assertThat(IospSignature.at(cdf1, 0).mayMatch(prefix, prefix.length, prefix.length)).isFalse();
+    // the offset is beyond the prefix, but within the file
+    assertThat(IospSignature.at(cdf1, 0, 100).mayMatch(prefix, prefix.length, 1000)).isTrue();
+    assertThat(IospSignature.at(cdf1, 0, 100).mayMatch(prefix, prefix.length, 103)).isFalse();
+
+    assertThat(IospSignature.within("CDF", 100).mayMatch(prefix, 8, 8)).isFalse();
+    assertThat(IospSignature.within("CDF", 100).mayMatch(prefix, 8, 1000)).isTrue();
+    assertThat(IospSignature.within("CDF", 6).mayMatch(prefix, 8, 1000)).isFalse();
+  }
+
+  @Test
+  public void testOpenBySignature() throws IOException {
+    CountingIosp.countIsValid.set(0);
+
+    // the netcdf3 and hdf5 signatures match, the counting iosp is not asked
+    try (NetcdfFile ncfile = NetcdfFiles.open(TestDir.cdmLocalTestDataDir + "example1.nc")) {
+      assertThat(ncfile.getFileTypeId()).isEqualTo("NetCDF");
+    }
+    try (NetcdfFile ncfile = NetcdfFiles.open(TestDir.cdmLocalTestDataDir + "chunked.h5")) {
+      assertThat(ncfile.getFileTypeId()).isEqualTo("HDF5");
+    }
+    assertThat(CountingIosp.countIsValid.get()).isEqualTo(0);
+  }
+
+  // a registered IOSP without signatures is still tried before the core IOSPs
+  @Test
+  public void testRegisteredWithoutSignatures() throws IOException {
+    File netcdf3 = tempFolder.newFile("claimed.nc");
+    Files.copy(new File(TestDir.cdmLocalTestDataDir + "example1.nc").toPath(), netcdf3.toPath(),
+        StandardCopyOption.REPLACE_EXISTING);
+    File hdf5 = tempFolder.newFile("claimed.h5");
+    Files.copy(new File(TestDir.cdmLocalTestDataDir + "chunked.h5").toPath(), hdf5.toPath(),
+        StandardCopyOption.REPLACE_EXISTING);
+
+    ClaimingIosp.claim = true;
+    try {
+      try (NetcdfFile ncfile = NetcdfFiles.open(netcdf3.getPath())) {
+        assertThat(ncfile.getFileTypeId()).isEqualTo("CLAIM");
+      }
+      try (NetcdfFile ncfile = NetcdfFiles.open(hdf5.getPath())) {
+        assertThat(ncfile.getFileTypeId()).isEqualTo("CLAIM");
+      }
+    } finally {
+      ClaimingIosp.claim = false;
+    }
+  }
+
+  @Test
+  public void testDetectionIsCached() throws IOException {
+    File file = tempFolder.newFile("test.cntx");
+    Files.write(file.toPath(), "CNTX and some more".getBytes(StandardCharsets.US_ASCII));
+    CountingIosp.countIsValid.set(0);
+
+    try (NetcdfFile ncfile = NetcdfFiles.open(file.getPath())) {
+      assertThat(ncfile.getFileTypeId()).isEqualTo("CNTX");
+    }
+    assertThat(CountingIosp.countIsValid.get()).isEqualTo(1);
+
+    try (NetcdfFile ncfile = NetcdfFiles.open(file.getPath())) {
+      assertThat(ncfile.getFileTypeId()).isEqualTo("CNTX");
+    }
+    assertThat(CountingIosp.countIsValid.get()).isEqualTo(1);
+
+    // once the file is modified, it is checked again
+    assertThat(file.setLastModified(file.lastModified() + 10000)).isTrue();
+    try (NetcdfFile ncfile = NetcdfFiles.open(file.getPath())) {
+      assertThat(ncfile.getFileTypeId()).isEqualTo("CNTX");
+    }
+    assertThat(CountingIosp.countIsValid.get()).isEqualTo(2);
+  }
+}
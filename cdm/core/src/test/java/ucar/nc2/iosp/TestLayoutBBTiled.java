@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 1998-2021 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.iosp;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.Test;
+import ucar.ma2.DataType;
+import ucar.ma2.InvalidRangeException;
+import ucar.ma2.Section;
+
+/** Test {@link LayoutBBTiled}, with and without concurrent chunk decoding. */
+public class TestLayoutBBTiled {
+  private static final int nchunks = 50;
+  private static final int chunkLen = 10;
+
+  // 1D int array of length nchunks * chunkLen, value = index
+  private static class Chunks implements LayoutBBTiled.DataChunkIterator {
+    private final boolean concurrent;
+    private int count;
+
+    Chunks(boolean concurrent) {
+      this.concurrent = concurrent;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return count < nchunks;
+    }
+
+    @Override
+    public LayoutBBTiled.DataChunk next() {
+      final int start = chunkLen * count++;
+      return new LayoutBBTiled.DataChunk() {
+        public int[] getOffset() {
+          return new int[] {start};
+        }
+
+        public ByteBuffer getByteBuffer() {
+          ByteBuffer bb = ByteBuffer.allocate(4 * chunkLen);
+          for (int i = 0; i < chunkLen; i++)
+            bb.putInt(start + i);
+          bb.flip();
+          return bb;
+        }
+      };
+    }
+
+    @Override
+    public boolean allowsConcurrentReads() {
+      return concurrent;
+    }
+  }
+
+  private int[] read(boolean concurrent, Section want) throws IOException {
+    LayoutBBTiled layout = new LayoutBBTiled(new Chunks(concurrent), new int[] {chunkLen}, 4, want);
+    return (int[]) IospHelper.readDataFill(layout, DataType.INT, null);
+  }
+
+  @Test
+  public void testConcurrentMatchesSerial() throws IOException, InvalidRangeException {
+    Section want = new Section("15:484:3");
+    int[] serial = read(false, want);
+    assertThat(serial.length).isEqualTo(want.computeSize());
+    for (int i = 0; i < serial.length; i++) {
+      assertThat(serial[i]).isEqualTo(15 + 3 * i);
+    }
+
+    ExecutorService exec = Executors.newFixedThreadPool(4);
+    try {
+      LayoutBBTiled.setExecutor(exec, 3);
+      assertThat(read(true, want)).isEqualTo(serial);
+      assertThat(read(true, new Section("0:" + (nchunks * chunkLen - 1)))).hasLength(nchunks * chunkLen);
+    } finally {
+      LayoutBBTiled.setExecutor(null, 16);
+      exec.shutdown();
+    }
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.nc2.util;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+/** Test {@link BoundedExecutor} */
+public class TestBoundedExecutor {
+
+  @Test
+  public void testMaxRunning() throws Exception {
+    ExecutorService pool = Executors.newFixedThreadPool(8);
+    try {
+      BoundedExecutor exec = new BoundedExecutor(pool, 2);
+      AtomicInteger running = new AtomicInteger();
+      AtomicInteger maxRunning = new AtomicInteger();
+      int ntasks = 20;
+      CountDownLatch done = new CountDownLatch(ntasks);
+      for (int i = 0; i < ntasks; i++) {
+        exec.execute(() -> {
+          maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+          try {
+            Thread.sleep(5);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+          running.decrementAndGet();
+          done.countDown();
+        });
+      }
+      assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+      assertThat(maxRunning.get()).isEqualTo(2);
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testRejectedRunsOnCaller() {
+    BoundedExecutor exec = new BoundedExecutor(task -> {
+      throw new RejectedExecutionException();
+    }, 1);
+    Thread[] ranOn = new Thread[1];
+    exec.execute(() -> ranOn[0] = Thread.currentThread());
+    assertThat(ranOn[0]).isEqualTo(Thread.currentThread());
+  }
+
+  @Test
+  public void testOrderedResults() throws Exception {
+    ExecutorService pool = Executors.newFixedThreadPool(4);
+    try (BoundedExecutor.Ordered<Integer> results = new BoundedExecutor.Ordered<>(pool, 3)) {
+      List<Integer> taken = new ArrayList<>();
+      int next = 0;
+      while (next < 10 || !results.isEmpty()) {
+        while (!results.isFull() && next < 10) {
+          int value = next++;
+          results.add(() -> {
+            Thread.sleep(10 - value); // later tasks finish first
+            return value;
+          });
+        }
+        taken.add(results.take());
+      }
+      assertThat(taken).containsExactly(0, 1, 2, 3, 4, 5, 6, 7, 8, 9).inOrder();
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testWithoutExecutor() throws Exception {
+    AtomicInteger calls = new AtomicInteger();
+    try (BoundedExecutor.Ordered<Integer> results = new BoundedExecutor.Ordered<>(null, 2)) {
+      results.add(calls::incrementAndGet);
+      results.add(calls::incrementAndGet);
+      assertThat(results.isFull()).isTrue();
+      assertThat(calls.get()).isEqualTo(0);
+      assertThat(results.take()).isEqualTo(1);
+      assertThat(results.take()).isEqualTo(2);
+      assertThat(results.isEmpty()).isTrue();
+    }
+  }
+
+  @Test
+  public void testTaskException() {
+    try (BoundedExecutor.Ordered<Integer> results = new BoundedExecutor.Ordered<>(null, 2)) {
+      results.add(() -> {
+        throw new IOException("bad read");
+      });
+      results.take();
+      fail();
+    } catch (IOException e) {
+      assertThat(e.getMessage()).isEqualTo("bad read");
+    }
+  }
+
+  @Test
+  public void testCloseCancelsPending() {
+    AtomicInteger calls = new AtomicInteger();
+    try (BoundedExecutor.Ordered<Integer> results = new BoundedExecutor.Ordered<>(null, 2)) {
+      results.add(calls::incrementAndGet);
+    }
+    assertThat(calls.get()).isEqualTo(0);
+  }
+}
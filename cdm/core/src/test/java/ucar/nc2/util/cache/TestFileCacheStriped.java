@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 1998-2021 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.util.cache;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import ucar.nc2.dataset.DatasetUrl;
+
+/** Test {@link FileCacheStriped} with FileCacheables that dont need a file. */
+public class TestFileCacheStriped {
+
+  private static class Fake implements FileCacheable {
+    final String location;
+    FileCacheIF cache;
+    boolean closed;
+    volatile boolean inUse;
+
+    Fake(String location) {
+      this.location = location;
+    }
+
+    @Override
+    public String getLocation() {
+      return location;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+      if (cache != null && cache.release(this))
+        return;
+      closed = true;
+    }
+
+    @Override
+    public long getLastModified() {
+      return 0;
+    }
+
+    @Override
+    public void setFileCache(FileCacheIF fileCache) {
+      this.cache = fileCache;
+    }
+
+    @Override
+    public void release() {}
+
+    @Override
+    public void reacquire() {}
+  }
+
+  private final AtomicInteger opened = new AtomicInteger();
+  private final FileFactory factory = (location, buffer_size, cancelTask, iospMessage) -> {
+    opened.incrementAndGet();
+    return new Fake(location.trueurl);
+  };
+
+  private static DatasetUrl url(String location) {
+    return DatasetUrl.create(null, location);
+  }
+
+  @Test
+  public void testHitsAndOpens() throws IOException {
+    FileCacheStriped cache = new FileCacheStriped("test", 0, 100, -1, 0);
+    Fake a1 = (Fake) cache.acquire(factory, url("a"));
+    Fake a2 = (Fake) cache.acquire(factory, url("a")); // a1 is checked out
+    assertThat(a2).isNotSameInstanceAs(a1);
+    assertThat(cache.getOpens()).isEqualTo(2);
+    assertThat(cache.getHits()).isEqualTo(0);
+
+    a1.close();
+    assertThat(a1.closed).isFalse();
+    assertThat(cache.acquire(factory, url("a"))).isSameInstanceAs(a1);
+    assertThat(cache.getHits()).isEqualTo(1);
+    assertThat(cache.acquire(factory, url("a"))).isNotSameInstanceAs(a1);
+    assertThat(cache.getWaits()).isEqualTo(1);
+
+    cache.clearCache(true);
+    assertThat(a1.closed).isTrue();
+    assertThat(a2.closed).isTrue();
+    assertThat(cache.showCache()).isEmpty();
+  }
+
+  @Test
+  public void testHardLimitEvictsOldest() throws IOException {
+    FileCacheStriped cache = new FileCacheStriped("test", 0, 100, 3, 0);
+    List<Fake> all = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      Fake f = (Fake) cache.acquire(factory, url("f" + i));
+      f.close();
+      all.add(f);
+    }
+    Fake last = (Fake) cache.acquire(factory, url("f3")); // over the hard limit, evicts all idle files
+    assertThat(cache.getEvictions()).isEqualTo(3);
+    for (Fake f : all) {
+      assertThat(f.closed).isTrue();
+    }
+    assertThat(last.closed).isFalse();
+    assertThat(cache.showCache()).hasSize(1);
+
+    cache.eject("f3");
+    assertThat(last.closed).isTrue();
+  }
+
+  @Test
+  public void testConcurrentCheckout() throws Exception {
+    FileCacheStriped cache = new FileCacheStriped("test", 0, 100, -1, 0);
+    ExecutorService pool = Executors.newFixedThreadPool(16);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int t = 0; t < 16; t++) {
+        futures.add(pool.submit(() -> {
+          for (int i = 0; i < 1000; i++) {
+            Fake f = (Fake) cache.acquire(factory, url("hot" + (i % 4)));
+            assertThat(f.inUse).isFalse(); // never handed out twice
+            f.inUse = true;
+            f.inUse = false;
+            f.close();
+          }
+          return null;
+        }));
+      }
+      for (Future<?> f : futures) {
+        f.get();
+      }
+    } finally {
+      pool.shutdown();
+    }
+    assertThat(cache.getHits() + cache.getOpens()).isEqualTo(16 * 1000);
+    assertThat(opened.get()).isAtMost(4 * 16);
+    cache.disable();
+    assertThat(cache.showCache()).isEmpty();
+  }
+}
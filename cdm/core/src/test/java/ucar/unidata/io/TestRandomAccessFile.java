@@ -11,6 +11,11 @@ import java.nio.ByteOrder;
 import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static com.google.common.truth.Truth.assertThat;
 
@@ -394,6 +399,84 @@ public class TestRandomAccessFile {
     assertThat(compareDoubles(outDouble[1], DATA_AS_BE_DOUBLES[2])).isTrue();
   }
 
+  @Test
+  public void testReadFullyPositional() throws IOException {
+    testFile.seek(3);
+    int len = 11;
+    byte[] buff = new byte[len];
+    testFile.readFully(2, buff, 0, len);
+    assertThat(arraysMatch(buff, UTF8_BYTES, 0, 2, len)).isTrue();
+    // file pointer is not used or changed
+    assertThat(testFile.getFilePointer()).isEqualTo(3);
+
+    ByteBuffer bb = ByteBuffer.allocate(len);
+    testFile.readFully(2, bb);
+    assertThat(bb.hasRemaining()).isFalse();
+    assertThat(arraysMatch(bb.array(), UTF8_BYTES, 0, 2, len)).isTrue();
+
+    // past end of file
+    Assert.assertThrows(EOFException.class, () -> {
+      testFile.readFully(TEST_FILE_LENGTH - 2, new byte[4], 0, 4);
+    });
+    assertThat(testFile.read(TEST_FILE_LENGTH, ByteBuffer.allocate(4))).isEqualTo(-1);
+  }
+
+  @Test
+  public void testReadPositional() throws IOException {
+    testFile.order(ByteOrder.BIG_ENDIAN);
+
+    short[] outShort = new short[2];
+    testFile.readShort(2, outShort, 0, 2, ByteOrder.LITTLE_ENDIAN);
+    assertThat(outShort[0]).isEqualTo(DATA_AS_LE_SHORTS[1]);
+    assertThat(outShort[1]).isEqualTo(DATA_AS_LE_SHORTS[2]);
+    testFile.readShort(2, outShort, 0, 2, ByteOrder.BIG_ENDIAN);
+    assertThat(outShort[0]).isEqualTo(DATA_AS_BE_SHORTS[1]);
+    assertThat(outShort[1]).isEqualTo(DATA_AS_BE_SHORTS[2]);
+
+    int[] outInt = new int[3];
+    testFile.readInt(0, outInt, 0, 3, ByteOrder.LITTLE_ENDIAN);
+    assertThat(outInt).isEqualTo(DATA_AS_LE_INTS);
+    testFile.readInt(0, outInt, 0, 3, ByteOrder.BIG_ENDIAN);
+    assertThat(outInt).isEqualTo(DATA_AS_BE_INTS);
+
+    long[] outLong = new long[3];
+    testFile.readLong(0, outLong, 0, 3, ByteOrder.LITTLE_ENDIAN);
+    assertThat(outLong).isEqualTo(DATA_AS_LE_LONGS);
+    testFile.readLong(0, outLong, 0, 3, ByteOrder.BIG_ENDIAN);
+    assertThat(outLong).isEqualTo(DATA_AS_BE_LONGS);
+
+    float[] outFloat = new float[2];
+    testFile.readFloat(4, outFloat, 0, 2, ByteOrder.LITTLE_ENDIAN);
+    assertThat(compareFloats(outFloat[0], DATA_AS_LE_FLOATS[1])).isTrue();
+    assertThat(compareFloats(outFloat[1], DATA_AS_LE_FLOATS[2])).isTrue();
+
+    double[] outDouble = new double[2];
+    testFile.readDouble(8, outDouble, 0, 2, ByteOrder.BIG_ENDIAN);
+    assertThat(compareDoubles(outDouble[0], DATA_AS_BE_DOUBLES[1])).isTrue();
+    assertThat(compareDoubles(outDouble[1], DATA_AS_BE_DOUBLES[2])).isTrue();
+  }
+
+  @Test
+  public void testReadPositionalConcurrent() throws Exception {
+    ExecutorService pool = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Boolean>> results = new ArrayList<>();
+      for (int i = 0; i < 100; i++) {
+        final int pos = i % ((int) TEST_FILE_LENGTH - 8);
+        results.add(pool.submit(() -> {
+          byte[] buff = new byte[8];
+          testFile.readFully(pos, buff, 0, 8);
+          return arraysMatch(buff, UTF8_BYTES, 0, pos, 8);
+        }));
+      }
+      for (Future<Boolean> result : results) {
+        assertThat(result.get()).isTrue();
+      }
+    } finally {
+      pool.shutdown();
+    }
+  }
+
   @Test
   public void testReadStringUTF8() throws IOException {
     // read line
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 1998-2021 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.unidata.io;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ucar.nc2.util.DiskCache2;
+
+/** Test {@link RemoteBlockDiskCache}, with a remote file held in memory. */
+public class TestRemoteBlockDiskCache {
+  private static final int BLOCK = 1000;
+
+  @Rule
+  public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private static class InMemory extends RemoteRandomAccessFile {
+    final byte[] contents;
+    final String version;
+    final AtomicInteger remoteReads = new AtomicInteger();
+
+    InMemory(byte[] contents, String version) {
+      super("memory:test", BLOCK, 10L * BLOCK);
+      this.contents = contents;
+      this.version = version;
+    }
+
+    @Override
+    public int readRemote(long pos, byte[] buff, int offset, int len) {
+      remoteReads.incrementAndGet();
+      int count = (int) Math.min(len, contents.length - pos);
+      System.arraycopy(contents, (int) pos, buff, offset, count);
+      return count;
+    }
+
+    @Override
+    protected String getRemoteVersion() {
+      return version;
+    }
+
+    @Override
+    public long length() {
+      return contents.length;
+    }
+
+    @Override
+    public void closeRemote() {}
+  }
+
+  private static byte[] makeContents(int n, int seed) {
+    byte[] result = new byte[n];
+    for (int i = 0; i < n; i++) {
+      result[i] = (byte) (i * seed + i / 253);
+    }
+    return result;
+  }
+
+  private static void checkRead(InMemory raf, long pos, int len) throws IOException {
+    byte[] buff = new byte[len];
+    raf.readFully(pos, buff, 0, len);
+    assertThat(buff).isEqualTo(Arrays.copyOfRange(raf.contents, (int) pos, (int) pos + len));
+  }
+
+  private RemoteBlockDiskCache makeCache(long maxBytes) {
+    DiskCache2 diskCache = new DiskCache2(tempFolder.getRoot().getPath(), false, 0, 0);
+    return new RemoteBlockDiskCache(diskCache, maxBytes);
+  }
+
+  @Test
+  public void testSurvivesReopen() throws IOException {
+    RemoteBlockDiskCache cache = makeCache(100 * BLOCK);
+    RemoteRandomAccessFile.setDiskCache(cache);
+    try {
+      byte[] contents = makeContents(5 * BLOCK + 77, 7);
+      try (InMemory raf = new InMemory(contents, "v1")) {
+        checkRead(raf, 0, contents.length);
+        assertThat(raf.remoteReads.get()).isGreaterThan(0);
+      }
+      assertThat(cache.getBytesUsed()).isEqualTo(contents.length);
+
+      // same version is read from disk
+      try (InMemory raf = new InMemory(contents, "v1")) {
+        checkRead(raf, 0, contents.length);
+        checkRead(raf, 2 * BLOCK + 5, 2 * BLOCK + 70);
+        assertThat(raf.remoteReads.get()).isEqualTo(0);
+      }
+
+      // a new version is not
+      byte[] changed = makeContents(5 * BLOCK + 77, 11);
+      try (InMemory raf = new InMemory(changed, "v2")) {
+        checkRead(raf, 0, changed.length);
+        assertThat(raf.remoteReads.get()).isGreaterThan(0);
+      }
+
+      // nor is a file without a version
+      try (InMemory raf = new InMemory(contents, null)) {
+        checkRead(raf, 0, contents.length);
+        assertThat(raf.remoteReads.get()).isGreaterThan(0);
+      }
+    } finally {
+      RemoteRandomAccessFile.setDiskCache(null);
+    }
+  }
+
+  @Test
+  public void testEvictLeastRecentlyUsed() throws Exception {
+    RemoteBlockDiskCache cache = makeCache(10 * BLOCK);
+    String key = RemoteBlockDiskCache.makeDatasetKey("memory:test", "v1", BLOCK);
+    byte[] block = new byte[BLOCK];
+    for (int i = 0; i < 10; i++) {
+      cache.write(key, i, block);
+    }
+    assertThat(cache.getBytesUsed()).isEqualTo(10 * BLOCK);
+
+    // make block 0 the most recently used, then go over the budget
+    Thread.sleep(1100); // file times may only have a resolution of seconds
+    assertThat(cache.read(key, 0, BLOCK)).isNotNull();
+    cache.write(key, 10, block);
+
+    assertThat(cache.getBytesUsed()).isAtMost(9 * BLOCK);
+    assertThat(cache.read(key, 0, BLOCK)).isNotNull();
+    assertThat(cache.read(key, 10, BLOCK)).isNotNull();
+    int evicted = 0;
+    for (int i = 1; i < 10; i++) {
+      if (cache.read(key, i, BLOCK) == null)
+        evicted++;
+    }
+    assertThat(evicted).isEqualTo(2);
+
+    // wrong length is a miss
+    assertThat(cache.read(key, 0, BLOCK - 1)).isNull();
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 1998-2021 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.unidata.io;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+/** Test the block cache of {@link RemoteRandomAccessFile}, with a remote file held in memory. */
+public class TestRemoteRandomAccessFile {
+  private static final int BLOCK = 1000;
+
+  private static class InMemory extends RemoteRandomAccessFile {
+    final byte[] contents;
+    final AtomicInteger remoteReads = new AtomicInteger();
+    final AtomicInteger inFlight = new AtomicInteger();
+    volatile int maxInFlight;
+
+    InMemory(byte[] contents) {
+      super("memory:test", BLOCK, 100L * BLOCK);
+      this.contents = contents;
+    }
+
+    @Override
+    public int readRemote(long pos, byte[] buff, int offset, int len) throws IOException {
+      remoteReads.incrementAndGet();
+      int n = inFlight.incrementAndGet();
+      maxInFlight = Math.max(maxInFlight, n);
+      try {
+        Thread.sleep(5);
+      } catch (InterruptedException e) {
+        throw new IOException(e);
+      } finally {
+        inFlight.decrementAndGet();
+      }
+      int count = (int) Math.min(len, contents.length - pos);
+      System.arraycopy(contents, (int) pos, buff, offset, count);
+      return count;
+    }
+
+    @Override
+    public long length() {
+      return contents.length;
+    }
+
+    @Override
+    public void closeRemote() {}
+  }
+
+  private static byte[] makeContents(int n) {
+    byte[] result = new byte[n];
+    for (int i = 0; i < n; i++) {
+      result[i] = (byte) (i * 7 + i / 251);
+    }
+    return result;
+  }
+
+  private static void checkRead(InMemory raf, long pos, int len) throws IOException {
+    byte[] buff = new byte[len];
+    raf.readFully(pos, buff, 0, len);
+    assertThat(buff).isEqualTo(Arrays.copyOfRange(raf.contents, (int) pos, (int) pos + len));
+  }
+
+  @Test
+  public void testCoalescedRead() throws IOException {
+    try (InMemory raf = new InMemory(makeContents(20 * BLOCK + 123))) {
+      checkRead(raf, 1500, 10 * BLOCK); // spans 11 blocks
+      assertThat(raf.remoteReads.get()).isEqualTo(1);
+      checkRead(raf, 2000, 5 * BLOCK); // all cached
+      assertThat(raf.remoteReads.get()).isEqualTo(1);
+      checkRead(raf, 19 * BLOCK + 50, BLOCK + 73); // to the end of the file
+    }
+  }
+
+  @Test
+  public void testSequentialReadahead() throws IOException {
+    try (InMemory raf = new InMemory(makeContents(60 * BLOCK))) {
+      for (int i = 0; i < 60; i++) {
+        checkRead(raf, (long) i * BLOCK, BLOCK);
+      }
+      assertThat(raf.remoteReads.get()).isLessThan(60);
+    }
+  }
+
+  @Test
+  public void testConcurrentFetches() throws IOException {
+    ExecutorService exec = Executors.newFixedThreadPool(8);
+    try {
+      RemoteRandomAccessFile.setExecutor(exec, 3);
+      try (InMemory raf = new InMemory(makeContents(90 * BLOCK))) {
+        checkRead(raf, 0, 90 * BLOCK); // too many blocks for a single remote read
+        assertThat(raf.maxInFlight).isAtMost(3);
+        checkRead(raf, 45 * BLOCK + 17, 4000);
+      }
+    } finally {
+      RemoteRandomAccessFile.setExecutor(null, 4);
+      exec.shutdown();
+    }
+  }
+}
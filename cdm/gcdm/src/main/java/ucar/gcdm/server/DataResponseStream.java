@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 1998-2023 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.gcdm.server;
+
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import java.io.Closeable;
+import java.io.IOException;
+import ucar.gcdm.GcdmNetcdfProto;
+import ucar.gcdm.GcdmNetcdfProto.DataRequest;
+import ucar.gcdm.GcdmNetcdfProto.DataResponse;
+import ucar.ma2.InvalidRangeException;
+
+/**
+ * Sends the DataResponse messages of one getNetcdfData call, only as fast as the client takes them.
+ * <p/>
+ * When the observer is a ServerCallStreamObserver, messages are sent from its onReady handler while isReady(), so a
+ * slow client holds up the reading, instead of the server queueing messages for it. Right after a message is handed
+ * to gRPC the next one is read, while the previous one is being sent, and waits there until the client is ready.
+ * Otherwise, the messages are read and sent one after the other on the calling thread.
+ * <p/>
+ * The source is closed when the call is completed, fails, or is cancelled by the client.
+ */
+class DataResponseStream {
+  private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(DataResponseStream.class);
+
+  /** Makes the messages of one call, in order. */
+  interface Source extends Closeable {
+    /** The next message, or null when there are no more. */
+    DataResponse next() throws IOException, InvalidRangeException;
+  }
+
+  /**
+   * Start sending the messages of source to the observer. Must be called from the service method, before it returns.
+   *
+   * @param req the request being answered
+   * @param source makes the messages; closed when the call is done
+   * @param observer send the messages here
+   */
+  static void start(DataRequest req, Source source, StreamObserver<DataResponse> observer) {
+    DataResponseStream stream = new DataResponseStream(req, source, observer);
+    if (observer instanceof ServerCallStreamObserver) {
+      ServerCallStreamObserver<DataResponse> call = (ServerCallStreamObserver<DataResponse>) observer;
+      // gRPC calls these one at a time, and calls onReady once the service method returns if the call is ready
+      call.setOnCancelHandler(stream::cancel);
+      call.setOnReadyHandler(() -> stream.sendWhileReady(call));
+    } else {
+      stream.sendAll();
+    }
+  }
+
+  /** Send an error message for a request that could not be started. */
+  static void sendError(DataRequest req, Throwable t, StreamObserver<DataResponse> observer) {
+    logger.warn("GcdmServer getData failed ", t);
+    final DataResponse.Builder response =
+        DataResponse.newBuilder().setLocation(req.getLocation()).setVariableSpec(req.getVariableSpec());
+    response.setError(
+        GcdmNetcdfProto.Error.newBuilder().setMessage(t.getMessage() == null ? "N/A" : t.getMessage()).build());
+    try {
+      observer.onNext(response.build());
+      observer.onCompleted();
+    } catch (RuntimeException e) {
+      logger.debug("GcdmServer getData could not send error: {}", e.getMessage()); // eg client has cancelled
+    }
+  }
+
+  private final DataRequest req;
+  private final Source source;
+  private final StreamObserver<DataResponse> observer;
+  private final Metrics metrics = new Metrics();
+
+  private DataResponse pending; // read ahead, waiting for the client to be ready
+  private boolean exhausted; // source has no more messages
+  private boolean done;
+  private long waitStart; // when pending started to wait for the client, 0 if not waiting
+
+  private DataResponseStream(DataRequest req, Source source, StreamObserver<DataResponse> observer) {
+    this.req = req;
+    this.source = source;
+    this.observer = observer;
+  }
+
+  // the client can take more. runs on the gRPC executor, never at the same time as cancel()
+  private void sendWhileReady(ServerCallStreamObserver<DataResponse> call) {
+    if (done) {
+      return;
+    }
+    if (waitStart != 0) {
+      metrics.waitNanos += System.nanoTime() - waitStart;
+      waitStart = 0;
+    }
+    try {
+      while (call.isReady() && !call.isCancelled()) {
+        if (pending == null) {
+          pending = read();
+        }
+        if (pending == null) {
+          complete();
+          return;
+        }
+        send(pending);
+        pending = read(); // read ahead
+        if (pending == null) {
+          complete();
+          return;
+        }
+      }
+      waitStart = System.nanoTime();
+    } catch (Throwable t) {
+      fail(t);
+    }
+  }
+
+  private void sendAll() {
+    try {
+      DataResponse response;
+      while ((response = read()) != null) {
+        send(response);
+      }
+      complete();
+    } catch (Throwable t) {
+      fail(t);
+    }
+  }
+
+  // the next message, or null
+  private DataResponse read() throws IOException, InvalidRangeException {
+    if (exhausted) {
+      return null;
+    }
+    long start = System.nanoTime();
+    DataResponse response = source.next();
+    metrics.readNanos += System.nanoTime() - start;
+    if (response == null) {
+      exhausted = true;
+    }
+    return response;
+  }
+
+  private void send(DataResponse response) {
+    observer.onNext(response);
+    metrics.messages++;
+    metrics.bytes += response.getSerializedSize();
+  }
+
+  private void complete() {
+    finish("done");
+    observer.onCompleted();
+  }
+
+  private void cancel() {
+    if (!done) {
+      finish("cancelled by client");
+    }
+  }
+
+  private void fail(Throwable t) {
+    if (done) { // onCompleted() failed, eg client has cancelled
+      logger.debug("GcdmServer getData {} could not complete: {}", req.getLocation(), t.getMessage());
+      return;
+    }
+    finish("failed");
+    sendError(req, t, observer);
+  }
+
+  private void finish(String how) {
+    done = true;
+    pending = null;
+    try {
+      source.close();
+    } catch (IOException e) {
+      logger.warn("GcdmServer getData close failed ", e);
+    }
+    logger.info("GcdmServer getData {} {} {}: {}", req.getLocation(), req.getVariableSpec(), how, metrics);
+  }
+
+  /** What one call did. */
+  static class Metrics {
+    private final long startNanos = System.nanoTime();
+    int messages;
+    long bytes;
+    long readNanos; // reading and encoding the messages
+    long waitNanos; // a message was ready, but the client was not
+
+    @Override
+    public String toString() {
+      return String.format("%d messages, %d bytes, read %d ms, waited for client %d ms, took %d ms", messages, bytes,
+          readNanos / 1000000, waitNanos / 1000000, (System.nanoTime() - startNanos) / 1000000);
+    }
+  }
+}
@@ -4,7 +4,6 @@
  */
 package ucar.gcdm.server;
 
-import com.google.common.base.Stopwatch;
 import io.grpc.Server;
 import io.grpc.ServerBuilder;
 import io.grpc.stub.StreamObserver;
@@ -32,22 +31,34 @@ import ucar.nc2.NetcdfFile;
 import ucar.nc2.ParsedSectionSpec;
 import ucar.nc2.Sequence;
 import ucar.nc2.Variable;
+import ucar.nc2.dataset.DatasetUrl;
 import ucar.nc2.dataset.NetcdfDatasets;
 import ucar.nc2.write.ChunkingIndex;
 
-/** Server that manages startup/shutdown of a gCDM Server. */
+/**
+ * Server that manages startup/shutdown of a gCDM Server.
+ * <p/>
+ * Files are opened through the NetcdfDatasets file cache, which is enabled when the server starts if the application
+ * has not set one up. Data larger than the chunk size is sent as several messages; set the chunk size in bytes with
+ * the system property {@value #CHUNK_SIZE_PROPERTY}, default {@link #MAX_MESSAGE}.
+ */
 public class GcdmServer {
   private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(GcdmServer.class);
 
   // public for testing
   public static final int MAX_MESSAGE = 50 * 1000 * 1000; // 50 Mb LOOK could be tuned
+  public static final String CHUNK_SIZE_PROPERTY = "ucar.gcdm.chunkSize";
   private static final int SEQUENCE_CHUNK = 1000;
   private static final int PORT = 16111;
 
   private Server server;
 
   private void start() throws IOException {
-    server = ServerBuilder.forPort(PORT).addService(new GcdmImpl()).build().start();
+    int chunkSize = Integer.getInteger(CHUNK_SIZE_PROPERTY, MAX_MESSAGE);
+    if (NetcdfDatasets.getNetcdfFileCache() == null) {
+      NetcdfDatasets.initNetcdfFileCache(100, 150, 12 * 60);
+    }
+    server = ServerBuilder.forPort(PORT).addService(new GcdmImpl(chunkSize)).build().start();
     Runtime.getRuntime().addShutdownHook(new Thread(() -> {
       // Use stderr here since the logger may have been reset by its JVM shutdown hook.
       System.err.println("*** shutting down gRPC server since JVM is shutting down");
@@ -59,7 +70,7 @@ public class GcdmServer {
       System.err.println("*** server shut down");
     }));
 
-    logger.info("Server started, listening on " + PORT);
+    logger.info("Server started, listening on " + PORT + ", chunk size " + chunkSize);
     System.out.println("---> Server started, listening on " + PORT); // Used for gradle startDaemon
   }
 
@@ -67,6 +78,7 @@ public class GcdmServer {
     if (server != null) {
       server.shutdown().awaitTermination(30, TimeUnit.SECONDS);
     }
+    NetcdfDatasets.shutdown();
   }
 
   /** Await termination on the main thread since the grpc library uses daemon threads. */
@@ -84,11 +96,24 @@ public class GcdmServer {
   }
 
   static class GcdmImpl extends GcdmImplBase {
+    private final int chunkSize; // bytes
+
+    GcdmImpl(int chunkSize) {
+      if (chunkSize <= 0)
+        throw new IllegalArgumentException("chunkSize must be > 0");
+      this.chunkSize = chunkSize;
+    }
+
+    // through the file cache if enabled; close() releases it
+    private static NetcdfFile acquire(String location) throws IOException {
+      return NetcdfDatasets.acquireFile(DatasetUrl.findDatasetUrl(location), null);
+    }
+
     @Override
     public void getNetcdfHeader(HeaderRequest req, StreamObserver<HeaderResponse> responseObserver) {
       logger.info("GcdmServer getHeader " + req.getLocation());
       final HeaderResponse.Builder response = HeaderResponse.newBuilder();
-      try (NetcdfFile ncfile = NetcdfDatasets.openFile(req.getLocation(), null)) {
+      try (NetcdfFile ncfile = acquire(req.getLocation())) {
         final Header.Builder header = Header.newBuilder().setLocation(req.getLocation())
             .setRoot(GcdmConverter.encodeGroup(ncfile.getRootGroup(), 100).build());
         response.setHeader(header);
@@ -104,107 +129,141 @@ public class GcdmServer {
     @Override
     public void getNetcdfData(DataRequest req, StreamObserver<DataResponse> responseObserver) {
       logger.info("GcdmServer getData {} {}", req.getLocation(), req.getVariableSpec());
-      final Stopwatch stopwatch = Stopwatch.createStarted();
-      long size = -1;
-
-      try (NetcdfFile ncfile = NetcdfDatasets.openFile(req.getLocation(), null)) { // LOOK cache ncfile?
+      NetcdfFile ncfile = null;
+      try {
+        ncfile = acquire(req.getLocation());
         final ParsedSectionSpec varSection = ParsedSectionSpec.parseVariableSection(ncfile, req.getVariableSpec());
         final Variable var = varSection.getVariable();
+        DataResponseStream.Source source;
         if (var instanceof Sequence) {
-          size = getSequenceData(ncfile, varSection, responseObserver);
+          source = new SequenceSource(ncfile, varSection);
         } else {
-          final Section wantSection = varSection.getArraySection();
-          size = var.getElementSize() * wantSection.computeSize();
-          getNetcdfData(ncfile, varSection, responseObserver);
+          source = new ArraySource(ncfile, varSection, chunkSize);
         }
-        responseObserver.onCompleted();
+        DataResponseStream.start(req, source, responseObserver); // source closes ncfile
       } catch (Throwable t) {
-        logger.warn("GcdmServer getData failed ", t);
-        t.printStackTrace();
-        final DataResponse.Builder response =
-            DataResponse.newBuilder().setLocation(req.getLocation()).setVariableSpec(req.getVariableSpec());
-        response.setError(
-            GcdmNetcdfProto.Error.newBuilder().setMessage(t.getMessage() == null ? "N/A" : t.getMessage()).build());
-        responseObserver.onNext(response.build());
+        closeQuietly(ncfile);
+        DataResponseStream.sendError(req, t, responseObserver);
       }
-
-      logger.debug(" ** size={} took={}", size, stopwatch.stop());
     }
 
-    private void getNetcdfData(NetcdfFile ncfile, ParsedSectionSpec varSection,
-        StreamObserver<DataResponse> responseObserver) throws IOException, InvalidRangeException {
-      final Variable var = varSection.getVariable();
-      final Section wantSection = varSection.getArraySection();
-      long size = var.getElementSize() * wantSection.computeSize();
-      if (size > MAX_MESSAGE) {
-        getDataInChunks(ncfile, varSection, responseObserver);
-      } else {
-        getOneChunk(ncfile, varSection, responseObserver);
+    private static void closeQuietly(NetcdfFile ncfile) {
+      if (ncfile != null) {
+        try {
+          ncfile.close();
+        } catch (IOException e) {
+          logger.warn("GcdmServer close failed ", e);
+        }
       }
     }
 
+    /**
+     * The data of an array variable, in one message, or if it's larger than chunkSize, in messages of at most
+     * chunkSize bytes.
+     */
     // TODO this returns structure member data in one chunk no matter the size, see testDataChunkingForStructures
-    private void getDataInChunks(NetcdfFile ncfile, ParsedSectionSpec varSection,
-        StreamObserver<DataResponse> responseObserver) throws IOException, InvalidRangeException {
-
-      final Variable var = varSection.getVariable();
-      final Section section = varSection.getArraySection();
-      long maxChunkElems = MAX_MESSAGE / var.getElementSize();
-      final ChunkingIndex index = new ChunkingIndex(section.getShape());
-      while (index.currentElement() < index.getSize()) {
+    private static class ArraySource implements DataResponseStream.Source {
+      private final NetcdfFile ncfile;
+      private final ParsedSectionSpec varSection;
+      private final Variable var;
+      private final long maxChunkElems;
+      private final ChunkingIndex index; // null if one message
+      private boolean done;
+
+      ArraySource(NetcdfFile ncfile, ParsedSectionSpec varSection, int chunkSize) {
+        this.ncfile = ncfile;
+        this.varSection = varSection;
+        this.var = varSection.getVariable();
+        final Section wantSection = varSection.getArraySection();
+        long size = var.getElementSize() * wantSection.computeSize();
+        this.maxChunkElems = Math.max(1, chunkSize / var.getElementSize());
+        this.index = (size > chunkSize) ? new ChunkingIndex(wantSection.getShape()) : null;
+      }
+
+      @Override
+      public DataResponse next() throws IOException, InvalidRangeException {
+        if (index == null) {
+          if (done) {
+            return null;
+          }
+          done = true;
+          return getOneChunk(varSection);
+        }
+
+        if (index.currentElement() >= index.getSize()) {
+          return null;
+        }
         final int[] chunkOrigin = index.getCurrentCounter();
         final int[] chunkShape = index.computeChunkShape(maxChunkElems);
         final Section chunkSection = new Section(chunkOrigin, chunkShape);
         final ParsedSectionSpec spec = new ParsedSectionSpec(var, chunkSection);
-        getOneChunk(ncfile, spec, responseObserver);
         index.setCurrentCounter(index.currentElement() + (int) Index.computeSize(chunkShape));
+        return getOneChunk(spec);
       }
-    }
-
-    private void getOneChunk(NetcdfFile ncfile, ParsedSectionSpec varSection,
-        StreamObserver<DataResponse> responseObserver) throws IOException, InvalidRangeException {
 
-      final String spec = varSection.makeSectionSpecString();
-      final Variable var = varSection.getVariable();
-      final Section wantSection = varSection.getArraySection();
+      private DataResponse getOneChunk(ParsedSectionSpec varSection) throws IOException, InvalidRangeException {
+        final String spec = varSection.makeSectionSpecString();
+        final Variable var = varSection.getVariable();
+        final Section wantSection = varSection.getArraySection();
 
-      final DataResponse.Builder response = DataResponse.newBuilder().setLocation(ncfile.getLocation())
-          .setVariableSpec(spec).setVarFullName(var.getFullName());
+        final DataResponse.Builder response = DataResponse.newBuilder().setLocation(ncfile.getLocation())
+            .setVariableSpec(spec).setVarFullName(var.getFullName());
 
-      final Array data = var.read(wantSection);
-      response.setData(GcdmConverter.encodeData(data.getDataType(), data));
+        final Array data = var.read(wantSection);
+        response.setData(GcdmConverter.encodeData(data.getDataType(), data));
+        logger.debug("Send one chunk {} size={} bytes", spec, data.getSize() * var.getElementSize());
+        return response.build();
+      }
 
-      responseObserver.onNext(response.build());
-      logger.debug("Send one chunk {} size={} bytes", spec, data.getSize() * varSection.getVariable().getElementSize());
+      @Override
+      public void close() throws IOException {
+        ncfile.close();
+      }
     }
 
+    /** The structures of a sequence, SEQUENCE_CHUNK in each message. */
     // TODO count >= SEQUENCE_CHUNK is not covered in tests
-    private long getSequenceData(NetcdfFile ncfile, ParsedSectionSpec varSection,
-        StreamObserver<DataResponse> responseObserver) throws IOException {
-
-      final String spec = varSection.makeSectionSpecString();
-      final Sequence seq = (Sequence) varSection.getVariable();
-      final StructureMembers members = seq.makeStructureMembers();
-
-      StructureData[] structureData = new StructureData[SEQUENCE_CHUNK];
-      int start = 0;
-      int count = 0;
-      StructureDataIterator it = seq.getStructureIterator();
-      while (it.hasNext()) {
-        structureData[count++] = it.next();
-
-        if (count >= SEQUENCE_CHUNK || !it.hasNext()) {
-          final StructureData[] correctSizeArray = Arrays.copyOf(structureData, count);
-          final ArrayStructureW arrayStructure = new ArrayStructureW(members, new int[] {count}, correctSizeArray);
-          final DataResponse.Builder response = DataResponse.newBuilder().setLocation(ncfile.getLocation())
-              .setVariableSpec(spec).setVarFullName(seq.getFullName());
-          response.setData(GcdmConverter.encodeData(DataType.SEQUENCE, arrayStructure));
-          responseObserver.onNext(response.build());
-          start = count;
-          count = 0;
+    private static class SequenceSource implements DataResponseStream.Source {
+      private final NetcdfFile ncfile;
+      private final String spec;
+      private final Sequence seq;
+      private final StructureMembers members;
+      private final StructureDataIterator it;
+      private final StructureData[] structureData = new StructureData[SEQUENCE_CHUNK];
+
+      SequenceSource(NetcdfFile ncfile, ParsedSectionSpec varSection) throws IOException {
+        this.ncfile = ncfile;
+        this.spec = varSection.makeSectionSpecString();
+        this.seq = (Sequence) varSection.getVariable();
+        this.members = seq.makeStructureMembers();
+        this.it = seq.getStructureIterator();
+      }
+
+      @Override
+      public DataResponse next() throws IOException {
+        int count = 0;
+        while (count < SEQUENCE_CHUNK && it.hasNext()) {
+          structureData[count++] = it.next();
+        }
+        if (count == 0) {
+          return null;
+        }
+        final StructureData[] correctSizeArray = Arrays.copyOf(structureData, count);
+        final ArrayStructureW arrayStructure = new ArrayStructureW(members, new int[] {count}, correctSizeArray);
+        final DataResponse.Builder response = DataResponse.newBuilder().setLocation(ncfile.getLocation())
+            .setVariableSpec(spec).setVarFullName(seq.getFullName());
+        response.setData(GcdmConverter.encodeData(DataType.SEQUENCE, arrayStructure));
+        return response.build();
+      }
+
+      @Override
+      public void close() throws IOException {
+        try {
+          it.close();
+        } finally {
+          ncfile.close();
         }
       }
-      return (long) (start + count) * members.getStructureSize();
     }
   } // GcdmImpl
 }
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 1998-2023 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.gcdm.server;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.grpc.stub.ServerCallStreamObserver;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import ucar.gcdm.GcdmNetcdfProto.DataRequest;
+import ucar.gcdm.GcdmNetcdfProto.DataResponse;
+
+/** Test that DataResponseStream only sends when the client is ready, and always closes its source. */
+public class TestDataResponseStream {
+  private final DataRequest req = DataRequest.newBuilder().setLocation("test").setVariableSpec("var").build();
+
+  private ServerCallStreamObserver<DataResponse> call;
+  private final List<DataResponse> sent = new ArrayList<>();
+  private boolean ready;
+  private boolean readyAfterSend;
+
+  @Before
+  @SuppressWarnings("unchecked")
+  public void setup() {
+    call = mock(ServerCallStreamObserver.class);
+    when(call.isReady()).thenAnswer(invocation -> ready);
+    doAnswer(invocation -> {
+      sent.add(invocation.getArgument(0));
+      ready = readyAfterSend;
+      return null;
+    }).when(call).onNext(any());
+  }
+
+  @Test
+  public void testSendsOnlyWhenReady() {
+    FakeSource source = new FakeSource(3, false);
+    DataResponseStream.start(req, source, call);
+    Runnable onReady = captureOnReady();
+
+    onReady.run(); // not ready
+    assertThat(source.reads).isEqualTo(0);
+    assertThat(sent).isEmpty();
+
+    ready = true;
+    onReady.run(); // sends one, then reads ahead
+    assertThat(sent).hasSize(1);
+    assertThat(source.reads).isEqualTo(2);
+    verify(call, never()).onCompleted();
+
+    ready = true;
+    onReady.run();
+    assertThat(sent).hasSize(2);
+    assertThat(source.reads).isEqualTo(3);
+    assertThat(source.closed).isFalse();
+
+    ready = true;
+    onReady.run(); // sends the last one, and finds there are no more
+    assertThat(sent).hasSize(3);
+    assertThat(sent.get(2).getVariableSpec()).isEqualTo("2");
+    assertThat(source.closed).isTrue();
+    verify(call).onCompleted();
+  }
+
+  @Test
+  public void testSendsAllWhileReady() {
+    readyAfterSend = true;
+    FakeSource source = new FakeSource(5, false);
+    DataResponseStream.start(req, source, call);
+
+    ready = true;
+    captureOnReady().run();
+    assertThat(sent).hasSize(5);
+    assertThat(source.closed).isTrue();
+    verify(call).onCompleted();
+  }
+
+  @Test
+  public void testCancel() {
+    FakeSource source = new FakeSource(3, false);
+    DataResponseStream.start(req, source, call);
+    Runnable onReady = captureOnReady();
+    ArgumentCaptor<Runnable> onCancel = ArgumentCaptor.forClass(Runnable.class);
+    verify(call).setOnCancelHandler(onCancel.capture());
+
+    ready = true;
+    onReady.run();
+    onCancel.getValue().run();
+    assertThat(source.closed).isTrue();
+
+    ready = true;
+    onReady.run(); // nothing more after cancel
+    assertThat(sent).hasSize(1);
+    verify(call, never()).onCompleted();
+  }
+
+  @Test
+  public void testReadFails() {
+    readyAfterSend = true;
+    FakeSource source = new FakeSource(3, true);
+    DataResponseStream.start(req, source, call);
+
+    ready = true;
+    captureOnReady().run();
+    assertThat(source.closed).isTrue();
+    DataResponse last = sent.get(sent.size() - 1);
+    assertThat(last.hasError()).isTrue();
+    assertThat(last.getError().getMessage()).isEqualTo("read failed");
+    verify(call).onCompleted();
+  }
+
+  private Runnable captureOnReady() {
+    ArgumentCaptor<Runnable> onReady = ArgumentCaptor.forClass(Runnable.class);
+    verify(call).setOnReadyHandler(onReady.capture());
+    return onReady.getValue();
+  }
+
+  private static class FakeSource implements DataResponseStream.Source {
+    private final int count;
+    private final boolean fail;
+    int reads;
+    boolean closed;
+
+    FakeSource(int count, boolean fail) {
+      this.count = count;
+      this.fail = fail;
+    }
+
+    @Override
+    public DataResponse next() throws IOException {
+      int i = reads++;
+      if (fail && i == count - 1) {
+        throw new IOException("read failed");
+      }
+      return i < count ? DataResponse.newBuilder().setLocation("test").setVariableSpec(Integer.toString(i)).build()
+          : null;
+    }
+
+    @Override
+    public void close() {
+      closed = true;
+    }
+  }
+}
@@ -11,13 +11,18 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URISyntaxException;
-import software.amazon.awssdk.core.ResponseBytes;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import software.amazon.awssdk.core.sync.ResponseTransformer;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
 import software.amazon.awssdk.services.s3.model.GetObjectResponse;
 import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
 import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
 import thredds.inventory.MFiles;
+import ucar.nc2.util.BoundedExecutor;
 import ucar.unidata.io.RandomAccessFile;
 import ucar.unidata.io.ReadableRemoteFile;
 import ucar.unidata.io.RemoteRandomAccessFile;
@@ -41,10 +46,25 @@ public final class S3RandomAccessFile extends RemoteRandomAccessFile implements
   private static final long s3MaxReadCacheSize = Long
       .parseLong(System.getProperty("ucar.unidata.io.s3.maxReadCacheSize", String.valueOf(defaultMaxReadCacheSize)));
 
+  // maximum number of readAsync() requests in progress for each object; more are queued
+  private static final int maxOutstandingReads =
+      Integer.parseInt(System.getProperty("ucar.unidata.io.s3.maxOutstandingReads", "16"));
+
+  // readAsync() requests are run here, by default
+  private static final ExecutorService defaultAsyncExecutor = Executors.newCachedThreadPool(r -> {
+    Thread t = new Thread(r, "S3RandomAccessFile-read");
+    t.setDaemon(true);
+    return t;
+  });
+
   private final CdmS3Uri uri;
   private S3Client client;
 
   private HeadObjectResponse objectHeadResponse;
+  private final S3ReadMetrics metrics;
+
+  // runs readAsync() requests, at most maxOutstandingReads at a time
+  private volatile BoundedExecutor asyncReads = new BoundedExecutor(defaultAsyncExecutor, maxOutstandingReads);
 
   private S3RandomAccessFile(String url) throws IOException {
     this(url, s3BufferSize);
@@ -67,6 +87,7 @@ public final class S3RandomAccessFile extends RemoteRandomAccessFile implements
 
     // create client that will make S3 API requests
     client = CdmS3Client.acquire(uri);
+    metrics = S3ReadMetrics.get(uri.getBucket());
 
     // request HEAD for the object
     HeadObjectRequest headObjectRequest =
@@ -83,6 +104,7 @@ public final class S3RandomAccessFile extends RemoteRandomAccessFile implements
 
   /**
    * Read directly from the remote service All reading goes through here or readToByteChannel;
+   * The response is read directly into buff, without an intermediate copy.
    *
    * 1. https://docs.aws.amazon.com/AmazonS3/latest/dev/RetrievingObjectUsingJava.html
    *
@@ -95,26 +117,70 @@ public final class S3RandomAccessFile extends RemoteRandomAccessFile implements
    */
   @Override
   public int readRemote(long pos, byte[] buff, int offset, int len) throws IOException {
+    if (len <= 0)
+      return 0;
 
-    String range = String.format("bytes=%d-%d", pos, pos + len);
+    // the end of the range is inclusive
+    String range = String.format("bytes=%d-%d", pos, pos + len - 1);
     GetObjectRequest rangeObjectRequest =
         GetObjectRequest.builder().bucket(uri.getBucket()).key(uri.getKey().get()).range(range).build();
 
-    ResponseBytes<GetObjectResponse> objectPortion = client.getObjectAsBytes(rangeObjectRequest);
+    long start = System.nanoTime();
+    int totalBytes = -1;
+    try {
+      ResponseTransformer<GetObjectResponse, Integer> intoBuffer =
+          (response, in) -> readFully(in, buff, offset, len);
+      totalBytes = client.getObject(rangeObjectRequest, intoBuffer);
+      return totalBytes;
+    } finally {
+      metrics.record(totalBytes, System.nanoTime() - start);
+    }
+  }
 
-    int bytes;
+  // read into buff until it is full or the stream ends
+  private static int readFully(InputStream in, byte[] buff, int offset, int len) throws IOException {
     int totalBytes = 0;
-    // read response into buff
-    try (InputStream objectData = objectPortion.asInputStream()) {
-      bytes = objectData.read(buff, offset + totalBytes, len - totalBytes);
-      while ((bytes > 0) && ((len - totalBytes) > 0)) {
-        totalBytes += bytes;
-        bytes = objectData.read(buff, offset + totalBytes, len - totalBytes);
-      }
+    while (totalBytes < len) {
+      int bytes = in.read(buff, offset + totalBytes, len - totalBytes);
+      if (bytes < 0)
+        break;
+      totalBytes += bytes;
     }
     return totalBytes;
   }
 
+  /**
+   * Read directly from the remote service, without blocking. Many requests may be outstanding at once. For each object,
+   * up to ucar.unidata.io.s3.maxOutstandingReads (a system property, default 16) are run concurrently, and the rest
+   * are queued. Does not use or fill the read cache, or change the file position.
+   *
+   * @param pos start here in the file
+   * @param buff put data into this buffer
+   * @param offset buffer offset
+   * @param len this number of bytes
+   * @return future number of bytes read, completed exceptionally with an IOException on error
+   */
+  public CompletableFuture<Integer> readAsync(long pos, byte[] buff, int offset, int len) {
+    CompletableFuture<Integer> result = new CompletableFuture<>();
+    asyncReads.execute(() -> {
+      try {
+        result.complete(readRemote(pos, buff, offset, len));
+      } catch (Throwable t) {
+        result.completeExceptionally(t);
+      }
+    });
+    return result;
+  }
+
+  /**
+   * Run readAsync() requests on this executor, instead of a shared cached thread pool.
+   *
+   * @param executor run requests here
+   */
+  public void setAsyncExecutor(Executor executor) {
+    this.asyncReads = new BoundedExecutor(executor, maxOutstandingReads);
+  }
+
   static int getDefaultRemoteFileTimeout() {
     return defaultRemoteFileTimeout;
   }
@@ -129,6 +195,12 @@ public final class S3RandomAccessFile extends RemoteRandomAccessFile implements
     return objectHeadResponse.lastModified().toEpochMilli();
   }
 
+  @Override
+  protected String getRemoteVersion() {
+    HeadObjectResponse head = objectHeadResponse;
+    return head == null ? null : head.eTag() + " " + head.lastModified();
+  }
+
   @Override
   public String getLocation() {
     return uri.toString();
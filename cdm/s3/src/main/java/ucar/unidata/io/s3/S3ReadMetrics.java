@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 1998-2021 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.unidata.io.s3;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Formatter;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Counts of the ranged GET requests made by S3RandomAccessFile, kept for each bucket: number of requests, errors,
+ * bytes read, and a histogram of request latency.
+ */
+@ThreadSafe
+public class S3ReadMetrics {
+  // latency histogram bin i counts requests taking less than 2^i msecs; the last bin counts all the rest
+  static final int NBINS = 16;
+
+  private static final ConcurrentHashMap<String, S3ReadMetrics> byBucket = new ConcurrentHashMap<>();
+
+  /**
+   * Get the metrics of a bucket.
+   *
+   * @param bucket name of the bucket
+   * @return metrics, created if needed
+   */
+  public static S3ReadMetrics get(String bucket) {
+    return byBucket.computeIfAbsent(bucket, S3ReadMetrics::new);
+  }
+
+  /** Names of the buckets that have been read from, sorted. */
+  public static List<String> getBuckets() {
+    List<String> result = new ArrayList<>(byBucket.keySet());
+    Collections.sort(result);
+    return result;
+  }
+
+  /** Forget the metrics of all buckets. */
+  public static void resetAll() {
+    byBucket.clear();
+  }
+
+  /** Show the metrics of all buckets. */
+  public static void showAll(Formatter f) {
+    for (String bucket : getBuckets()) {
+      get(bucket).show(f);
+    }
+  }
+
+  /////////////////////////////////////////////////////////////////////////////
+
+  private final String bucket;
+  private final LongAdder requests = new LongAdder();
+  private final LongAdder errors = new LongAdder();
+  private final LongAdder bytes = new LongAdder();
+  private final AtomicLongArray latency = new AtomicLongArray(NBINS);
+
+  private S3ReadMetrics(String bucket) {
+    this.bucket = bucket;
+  }
+
+  /**
+   * Record a finished request.
+   *
+   * @param nbytes bytes read, or -1 if the request failed.
+   * @param nanos how long the request took.
+   */
+  void record(long nbytes, long nanos) {
+    requests.increment();
+    if (nbytes < 0) {
+      errors.increment();
+    } else {
+      bytes.add(nbytes);
+    }
+    latency.incrementAndGet(bin(nanos / 1000000));
+  }
+
+  static int bin(long msecs) {
+    int bin = 64 - Long.numberOfLeadingZeros(msecs); // smallest i with msecs < 2^i
+    return Math.min(bin, NBINS - 1);
+  }
+
+  public String getBucket() {
+    return bucket;
+  }
+
+  public long getRequests() {
+    return requests.sum();
+  }
+
+  public long getErrors() {
+    return errors.sum();
+  }
+
+  public long getBytes() {
+    return bytes.sum();
+  }
+
+  /**
+   * The latency histogram.
+   *
+   * @return count of requests for each bin. Bin i counts requests that took less than 2^i msecs, and at least 2^(i-1)
+   *         msecs; the last bin counts all longer requests.
+   */
+  public long[] getLatencyHistogram() {
+    long[] result = new long[NBINS];
+    for (int i = 0; i < NBINS; i++) {
+      result[i] = latency.get(i);
+    }
+    return result;
+  }
+
+  public void show(Formatter f) {
+    f.format("S3 bucket %s: requests= %d errors= %d bytes= %d%n", bucket, getRequests(), getErrors(), getBytes());
+    f.format("  latency (msecs):");
+    long[] hist = getLatencyHistogram();
+    for (int i = 0; i < NBINS; i++) {
+      if (hist[i] > 0) {
+        f.format(" %s%d=%d", i == NBINS - 1 ? ">=" : "<", 1L << (i == NBINS - 1 ? i - 1 : i), hist[i]);
+      }
+    }
+    f.format("%n");
+  }
+}
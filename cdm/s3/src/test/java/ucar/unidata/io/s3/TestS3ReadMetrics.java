@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) 1998-2021 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.unidata.io.s3;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.util.Formatter;
+import org.junit.Test;
+
+/** Test {@link S3ReadMetrics}, without going to a remote service. */
+public class TestS3ReadMetrics {
+
+  @Test
+  public void testLatencyBins() {
+    assertThat(S3ReadMetrics.bin(0)).isEqualTo(0);
+    assertThat(S3ReadMetrics.bin(1)).isEqualTo(1);
+    assertThat(S3ReadMetrics.bin(3)).isEqualTo(2);
+    assertThat(S3ReadMetrics.bin(4)).isEqualTo(3);
+    assertThat(S3ReadMetrics.bin(Long.MAX_VALUE)).isEqualTo(S3ReadMetrics.NBINS - 1);
+  }
+
+  @Test
+  public void testRecord() {
+    S3ReadMetrics metrics = S3ReadMetrics.get("test-bucket");
+    assertThat(S3ReadMetrics.get("test-bucket")).isSameInstanceAs(metrics);
+    long requests = metrics.getRequests();
+    long bytes = metrics.getBytes();
+    long errors = metrics.getErrors();
+
+    metrics.record(1000, 40_000_000); // 40 msecs
+    metrics.record(-1, 500_000);
+    assertThat(metrics.getRequests()).isEqualTo(requests + 2);
+    assertThat(metrics.getBytes()).isEqualTo(bytes + 1000);
+    assertThat(metrics.getErrors()).isEqualTo(errors + 1);
+    assertThat(metrics.getLatencyHistogram()[6]).isAtLeast(1); // 32 <= 40 < 64
+    assertThat(S3ReadMetrics.getBuckets()).contains("test-bucket");
+
+    Formatter f = new Formatter();
+    S3ReadMetrics.showAll(f);
+    assertThat(f.toString()).contains("S3 bucket test-bucket");
+  }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2021 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.nc2.iosp.zarr;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * A ZarrStore in a local directory, where each key is a file path relative to the directory.
+ * It can also be written to, as the files of different keys are independent.
+ */
+public class DirectoryZarrStore implements ZarrStore, ZarrStoreWriter {
+
+  private final Path root;
+  private final String location;
+
+  public DirectoryZarrStore(String location) throws IOException {
+    this.root = Paths.get(location);
+    if (!Files.isDirectory(root)) {
+      throw new IOException(location + " is not a directory");
+    }
+    this.location = location;
+  }
+
+  /**
+   * Create a new, empty store. The directory is created if needed, and must be empty if it already exists.
+   *
+   * @param location the directory
+   * @return the store
+   */
+  public static DirectoryZarrStore create(String location) throws IOException {
+    Path root = Paths.get(location);
+    if (Files.isDirectory(root)) {
+      try (DirectoryStream<Path> children = Files.newDirectoryStream(root)) {
+        if (children.iterator().hasNext()) {
+          throw new IOException(location + " already exists and is not empty");
+        }
+      }
+    } else {
+      Files.createDirectories(root);
+    }
+    return new DirectoryZarrStore(location);
+  }
+
+  private Path resolve(String key) {
+    return root.resolve(key);
+  }
+
+  @Override
+  public String getLocation() {
+    return location;
+  }
+
+  @Nullable
+  @Override
+  public byte[] get(String key) throws IOException {
+    try {
+      return Files.readAllBytes(resolve(key));
+    } catch (NoSuchFileException e) {
+      return null;
+    }
+  }
+
+  @Nullable
+  @Override
+  public byte[] getRange(String key, long offset, int length) throws IOException {
+    try (FileChannel channel = FileChannel.open(resolve(key), StandardOpenOption.READ)) {
+      ByteBuffer bb = ByteBuffer.allocate((int) Math.max(0, Math.min(length, channel.size() - offset)));
+      while (bb.hasRemaining()) {
+        if (channel.read(bb, offset + bb.position()) < 0) {
+          break;
+        }
+      }
+      return bb.position() == bb.capacity() ? bb.array() : Arrays.copyOf(bb.array(), bb.position());
+    } catch (NoSuchFileException e) {
+      return null;
+    }
+  }
+
+  @Override
+  public long getSize(String key) throws IOException {
+    try {
+      return Files.size(resolve(key));
+    } catch (NoSuchFileException e) {
+      return -1;
+    }
+  }
+
+  @Override
+  public boolean exists(String key) {
+    return Files.isRegularFile(resolve(key));
+  }
+
+  @Override
+  public List<String> list(String prefix) throws IOException {
+    Path dir = prefix.isEmpty() ? root : resolve(prefix);
+    if (!Files.isDirectory(dir)) {
+      return Collections.emptyList();
+    }
+    List<String> names = new ArrayList<>();
+    try (DirectoryStream<Path> children = Files.newDirectoryStream(dir)) {
+      for (Path child : children) {
+        names.add(child.getFileName().toString());
+      }
+    }
+    Collections.sort(names);
+    return names;
+  }
+
+  @Override
+  public void put(String key, byte[] value) throws IOException {
+    Path path = resolve(key);
+    Files.createDirectories(path.getParent());
+    Files.write(path, value);
+  }
+
+  @Override
+  public long getLastModified() {
+    return root.toFile().lastModified();
+  }
+
+  @Override
+  public long getLastModified(String key) throws IOException {
+    try {
+      return Files.getLastModifiedTime(resolve(key)).toMillis();
+    } catch (NoSuchFileException e) {
+      return -1;
+    }
+  }
+
+  @Override
+  public void close() {} // NO-OP
+
+  @Override
+  public String toString() {
+    return "DirectoryZarrStore{" + location + '}';
+  }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2021 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.nc2.iosp.zarr;
+
+import com.google.common.io.ByteStreams;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeSet;
+import javax.annotation.Nullable;
+import thredds.inventory.CollectionConfig;
+import thredds.inventory.MController;
+import thredds.inventory.MControllers;
+import thredds.inventory.MFile;
+
+/**
+ * A ZarrStore on top of an MFile and its children, used for object stores such as S3 ("cdms3:" locations,
+ * with cdm-s3 on the classpath). Keys are resolved with MFile.getChild(), so finding an object takes a
+ * request for that object only; listing uses a delimited listing of a single level.
+ */
+public class MFileZarrStore implements ZarrStore {
+
+  private final MFile root;
+
+  public MFileZarrStore(MFile root) {
+    this.root = root;
+  }
+
+  @Nullable
+  private MFile getChild(String key) {
+    return key.isEmpty() ? root : root.getChild(key);
+  }
+
+  @Override
+  public String getLocation() {
+    return root.getPath();
+  }
+
+  @Nullable
+  @Override
+  public byte[] get(String key) throws IOException {
+    MFile mfile = getChild(key);
+    if (mfile == null || !mfile.exists()) {
+      return null;
+    }
+    try (InputStream in = mfile.getInputStream()) {
+      return ByteStreams.toByteArray(in);
+    }
+  }
+
+  @Nullable
+  @Override
+  public byte[] getRange(String key, long offset, int length) throws IOException {
+    MFile mfile = getChild(key);
+    if (mfile == null || !mfile.exists()) {
+      return null;
+    }
+    ByteArrayOutputStream out = new ByteArrayOutputStream(length);
+    mfile.writeToStream(out, offset, length);
+    return out.toByteArray();
+  }
+
+  @Override
+  public long getSize(String key) {
+    MFile mfile = getChild(key);
+    return mfile == null || !mfile.exists() ? -1 : mfile.getLength();
+  }
+
+  @Override
+  public boolean exists(String key) {
+    MFile mfile = getChild(key);
+    return mfile != null && mfile.exists();
+  }
+
+  @Override
+  public List<String> list(String prefix) throws IOException {
+    MFile dir = getChild(prefix);
+    if (dir == null) {
+      return new ArrayList<>();
+    }
+    String location = dir.getPath();
+    MController controller = MControllers.create(location);
+    CollectionConfig cc = new CollectionConfig("children", location, false, null, null);
+    TreeSet<String> names = new TreeSet<>();
+    try {
+      addNames(controller.getInventoryTop(cc, false), names);
+      addNames(controller.getSubdirs(cc, false), names);
+    } finally {
+      controller.close();
+    }
+    return new ArrayList<>(names);
+  }
+
+  private static void addNames(@Nullable Iterator<MFile> mfiles, TreeSet<String> names) {
+    if (mfiles == null) {
+      return;
+    }
+    while (mfiles.hasNext()) {
+      String name = mfiles.next().getName();
+      if (name.endsWith("/")) {
+        name = name.substring(0, name.length() - 1);
+      }
+      int slash = name.lastIndexOf('/');
+      if (slash >= 0) {
+        name = name.substring(slash + 1);
+      }
+      if (!name.isEmpty()) {
+        names.add(name);
+      }
+    }
+  }
+
+  @Override
+  public long getLastModified() {
+    long lastModified = root.getLastModified();
+    if (lastModified > 0) {
+      return lastModified;
+    }
+    // object stores dont have directories, use the root metadata object instead
+    for (String key : new String[] {ZarrKeys.ZGROUP, ZarrKeys.ZARRAY}) {
+      MFile mfile = getChild(key);
+      if (mfile != null && mfile.exists()) {
+        return mfile.getLastModified();
+      }
+    }
+    return -1;
+  }
+
+  @Override
+  public long getLastModified(String key) {
+    MFile mfile = getChild(key);
+    return mfile == null || !mfile.exists() ? -1 : mfile.getLastModified();
+  }
+
+  @Override
+  public void close() {} // NO-OP
+
+  @Override
+  public String toString() {
+    return "MFileZarrStore{" + root.getPath() + '}';
+  }
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright (c) 2021 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.nc2.iosp.zarr;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.Nullable;
+import ucar.ma2.DataType;
+
+/**
+ * Java representation of the zarr.json metadata of a Zarr v3 array.
+ * <p/>
+ * Only the regular chunk grid is supported. Chunks are decoded by {@link ZarrCodecs}; when the array has the
+ * sharding_indexed codec, the chunks of the grid are shards, and the inner chunks of the shards are read and
+ * decoded instead.
+ */
+public class ZArrayV3 {
+
+  static final JsonNode DEFAULT_INDEX_CODECS;
+
+  // maps zarr v3 data types to CDM datatypes
+  private static final Map<String, DataType> dataTypeMap = new HashMap<>();
+
+  static {
+    dataTypeMap.put("bool", DataType.BOOLEAN);
+    dataTypeMap.put("int8", DataType.BYTE);
+    dataTypeMap.put("uint8", DataType.UBYTE);
+    dataTypeMap.put("int16", DataType.SHORT);
+    dataTypeMap.put("uint16", DataType.USHORT);
+    dataTypeMap.put("int32", DataType.INT);
+    dataTypeMap.put("uint32", DataType.UINT);
+    dataTypeMap.put("int64", DataType.LONG);
+    dataTypeMap.put("uint64", DataType.ULONG);
+    dataTypeMap.put("float32", DataType.FLOAT);
+    dataTypeMap.put("float64", DataType.DOUBLE);
+
+    try {
+      DEFAULT_INDEX_CODECS = new ObjectMapper()
+          .readTree("[{\"name\": \"bytes\", \"configuration\": {\"endian\": \"little\"}}, {\"name\": \"crc32c\"}]");
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private final int[] shape;
+  private final int[] chunks; // shape of the chunks of the grid, which are shards if sharded
+  private final DataType dataType;
+  private final Object fillValue;
+  private final ZarrCodecs codecs; // null if sharded
+  private final ZarrSharding sharding; // null if not sharded
+  private final boolean defaultKeys; // default chunk key encoding, else v2
+  private final String separator;
+  private final String[] dimensionNames;
+
+  private ZArrayV3(int[] shape, int[] chunks, DataType dataType, Object fillValue, ZarrCodecs codecs,
+      ZarrSharding sharding, boolean defaultKeys, String separator, String[] dimensionNames) {
+    this.shape = shape;
+    this.chunks = chunks;
+    this.dataType = dataType;
+    this.fillValue = fillValue;
+    this.codecs = codecs;
+    this.sharding = sharding;
+    this.defaultKeys = defaultKeys;
+    this.separator = separator;
+    this.dimensionNames = dimensionNames;
+  }
+
+  public int[] getShape() {
+    return shape;
+  }
+
+  /** Shape of the chunks of the grid, i.e. of the shards if sharded. */
+  public int[] getChunks() {
+    return chunks;
+  }
+
+  public DataType getDataType() {
+    return dataType;
+  }
+
+  public Object getFillValue() {
+    return fillValue;
+  }
+
+  /** The sharding codec, or null if the array is not sharded. */
+  @Nullable
+  public ZarrSharding getSharding() {
+    return sharding;
+  }
+
+  /** Codecs of the chunks that are read and decoded, i.e. of the inner chunks if sharded. */
+  public ZarrCodecs getCodecs() {
+    return sharding != null ? sharding.getCodecs() : codecs;
+  }
+
+  /** Shape of the chunks that are read and decoded, i.e. of the inner chunks if sharded. */
+  public int[] getReadChunks() {
+    return sharding != null ? sharding.getInnerChunks() : chunks;
+  }
+
+  public ByteOrder getByteOrder() {
+    return getCodecs().getByteOrder();
+  }
+
+  /** Names of the dimensions, or null if not all dimensions are named. */
+  @Nullable
+  public String[] getDimensionNames() {
+    return dimensionNames;
+  }
+
+  /**
+   * The key of a chunk of the grid, relative to the array.
+   *
+   * @param chunk index of the chunk along each dimension
+   */
+  public String getChunkKey(int[] chunk) {
+    StringBuilder key = new StringBuilder();
+    if (defaultKeys) {
+      key.append('c');
+      for (int i : chunk) {
+        key.append(separator).append(i);
+      }
+      return key.toString();
+    }
+    if (chunk.length == 0) {
+      return "0";
+    }
+    for (int i = 0; i < chunk.length; i++) {
+      if (i > 0) {
+        key.append(separator);
+      }
+      key.append(chunk[i]);
+    }
+    return key.toString();
+  }
+
+  /**
+   * Read the metadata of an array.
+   *
+   * @param node contents of the zarr.json of the array
+   */
+  static ZArrayV3 fromJson(JsonNode node) throws ZarrFormatException {
+    int[] shape = parseShape(node.path(ZarrKeys.SHAPE), ZarrKeys.SHAPE);
+
+    String dtype = node.path(ZarrKeys.DATA_TYPE).asText();
+    DataType dataType = dataTypeMap.get(dtype);
+    if (dataType == null) {
+      throw new ZarrFormatException(ZarrKeys.DATA_TYPE, dtype);
+    }
+    int elemSize = dataType.getSize();
+
+    JsonNode grid = node.path(ZarrKeys.CHUNK_GRID);
+    if (!"regular".equals(grid.path(ZarrKeys.NAME).asText())) {
+      throw new ZarrFormatException(ZarrKeys.CHUNK_GRID, grid.toString());
+    }
+    int[] chunks = parseShape(grid.path(ZarrKeys.CONFIGURATION).path(ZarrKeys.CHUNK_SHAPE), ZarrKeys.CHUNK_SHAPE);
+    if (chunks.length != shape.length) {
+      throw new ZarrFormatException(ZarrKeys.CHUNK_SHAPE, grid.toString());
+    }
+    for (int size : chunks) {
+      if (size <= 0) {
+        throw new ZarrFormatException(ZarrKeys.CHUNK_SHAPE, grid.toString());
+      }
+    }
+
+    JsonNode encoding = node.path(ZarrKeys.CHUNK_KEY_ENCODING);
+    String encodingName = encoding.path(ZarrKeys.NAME).asText("default");
+    boolean defaultKeys;
+    if (encodingName.equals("default")) {
+      defaultKeys = true;
+    } else if (encodingName.equals("v2")) {
+      defaultKeys = false;
+    } else {
+      throw new ZarrFormatException(ZarrKeys.CHUNK_KEY_ENCODING, encodingName);
+    }
+    String separator =
+        encoding.path(ZarrKeys.CONFIGURATION).path(ZarrKeys.SEPARATOR).asText(defaultKeys ? "/" : ".");
+    if (!separator.equals("/") && !separator.equals(".")) {
+      throw new ZarrFormatException(ZarrKeys.SEPARATOR, separator);
+    }
+
+    // a sharded array has only the sharding codec, whose inner chunks have their own codecs
+    JsonNode codecsNode = node.path(ZarrKeys.CODECS);
+    ZarrCodecs codecs = null;
+    ZarrSharding sharding = null;
+    if (codecsNode.size() == 1 && ZarrCodecs.SHARDING.equals(ZarrCodecs.codecName(codecsNode.get(0)))) {
+      sharding = ZarrSharding.parse(codecsNode.get(0).path(ZarrKeys.CONFIGURATION), chunks, elemSize);
+    } else {
+      codecs = ZarrCodecs.parse(codecsNode, shape.length, elemSize);
+    }
+
+    String[] dimensionNames = null;
+    JsonNode names = node.path(ZarrKeys.DIMENSION_NAMES);
+    if (names.isArray() && names.size() == shape.length) {
+      dimensionNames = new String[shape.length];
+      for (int i = 0; i < shape.length; i++) {
+        if (!names.get(i).isTextual()) {
+          dimensionNames = null; // unnamed dimensions are not shared
+          break;
+        }
+        dimensionNames[i] = names.get(i).asText();
+      }
+    }
+
+    Object fillValue = parseFillValue(node.path(ZarrKeys.FILL_VALUE), dataType);
+    return new ZArrayV3(shape, chunks, dataType, fillValue, codecs, sharding, defaultKeys, separator,
+        dimensionNames);
+  }
+
+  static int[] parseShape(JsonNode node, String field) throws ZarrFormatException {
+    if (!node.isArray()) {
+      throw new ZarrFormatException(field, node.toString());
+    }
+    int[] result = new int[node.size()];
+    for (int i = 0; i < result.length; i++) {
+      JsonNode size = node.get(i);
+      if (!size.canConvertToInt() || size.asInt() < 0) {
+        throw new ZarrFormatException(field, node.toString());
+      }
+      result[i] = size.asInt();
+    }
+    return result;
+  }
+
+  /*
+   * Numbers are returned as the Number type of the data type. The special float values "NaN", "Infinity" and
+   * "-Infinity" are returned as Strings, as for v2; floats given by their bits as hex strings are converted.
+   */
+  private static Object parseFillValue(JsonNode node, DataType dataType) throws ZarrFormatException {
+    if (node.isBoolean()) {
+      return node.asBoolean() ? 1 : 0;
+    }
+    if (node.isNumber()) {
+      switch (dataType) {
+        case FLOAT:
+          return node.floatValue();
+        case DOUBLE:
+          return node.doubleValue();
+        case LONG:
+        case ULONG:
+          return node.longValue(); // uint64 values above Long.MAX_VALUE wrap, as the stored bits do
+        default:
+          return node.intValue();
+      }
+    }
+    if (node.isTextual()) {
+      String value = node.asText();
+      if (value.startsWith("0x") && dataType.isFloatingPoint()) {
+        long bits;
+        try {
+          bits = Long.parseUnsignedLong(value.substring(2), 16);
+        } catch (NumberFormatException e) {
+          throw new ZarrFormatException(ZarrKeys.FILL_VALUE, value);
+        }
+        return dataType == DataType.FLOAT ? (Object) Float.intBitsToFloat((int) bits) : Double.longBitsToDouble(bits);
+      }
+      return value;
+    }
+    if (node.isNull() || node.isMissingNode()) {
+      return 0;
+    }
+    throw new ZarrFormatException(ZarrKeys.FILL_VALUE, node.toString());
+  }
+}
@@ -0,0 +1,357 @@
+/*
+ * Copyright (c) 2021 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.nc2.iosp.zarr;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.google.common.primitives.Bytes;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import ucar.nc2.filter.Filter;
+import ucar.nc2.filter.Filters;
+import ucar.nc2.filter.UnknownFilterException;
+
+/**
+ * The codecs of a Zarr v3 array, or of the inner chunks of a shard. A chunk is encoded by the array to array codecs
+ * (transpose), then one array to bytes codec (bytes), then the bytes to bytes codecs (e.g. gzip, blosc, zstd, crc32c),
+ * and decoded in the reverse order.
+ * <p/>
+ * Bytes to bytes codecs are Filters. gzip and crc32c are implemented here, blosc uses the Blosc filter, and any other
+ * codec, e.g. zstd, is found by its name from the FilterProviders.
+ * The sharding_indexed codec is handled by {@link ZarrSharding}, and is not part of a ZarrCodecs.
+ */
+public class ZarrCodecs {
+
+  static final String SHARDING = "sharding_indexed";
+  private static final String BYTES = "bytes";
+  private static final String ENDIAN = "endian"; // name of the bytes codec in early drafts of the spec
+  private static final String TRANSPOSE = "transpose";
+
+  private static final ObjectMapper objectMapper = new ObjectMapper();
+
+  private final List<int[]> transposes; // array to array codecs, as permutations of the dimensions
+  private final ByteOrder byteOrder;
+  private final List<Filter> filters; // bytes to bytes codecs, in encoding order
+
+  private ZarrCodecs(List<int[]> transposes, ByteOrder byteOrder, List<Filter> filters) {
+    this.transposes = transposes;
+    this.byteOrder = byteOrder;
+    this.filters = filters;
+  }
+
+  /** Byte order of the decoded chunks. */
+  public ByteOrder getByteOrder() {
+    return byteOrder;
+  }
+
+  /** The bytes to bytes codecs, in encoding order. */
+  public List<Filter> getFilters() {
+    return filters;
+  }
+
+  /**
+   * Decode a chunk.
+   *
+   * @param data encoded chunk
+   * @param chunkShape shape of the chunk
+   * @param elemSize size of an element in bytes
+   * @return the elements of the chunk in C order
+   */
+  public byte[] decode(byte[] data, int[] chunkShape, int elemSize) throws IOException {
+    long nbytes = elemSize;
+    for (int size : chunkShape) {
+      nbytes *= size;
+    }
+    int decodedSize = nbytes <= Integer.MAX_VALUE ? (int) nbytes : -1;
+    for (int i = filters.size() - 1; i >= 0; i--) {
+      data = filters.get(i).decode(data, decodedSize);
+    }
+    if (transposes.isEmpty()) {
+      return data;
+    }
+
+    // the shape of the chunk before each transpose
+    List<int[]> shapes = new ArrayList<>();
+    int[] shape = chunkShape;
+    for (int[] order : transposes) {
+      shapes.add(shape);
+      shape = permute(shape, order);
+    }
+    for (int i = transposes.size() - 1; i >= 0; i--) {
+      data = untranspose(data, shapes.get(i), transposes.get(i), elemSize);
+    }
+    return data;
+  }
+
+  private static int[] permute(int[] shape, int[] order) {
+    int[] result = new int[shape.length];
+    for (int i = 0; i < shape.length; i++) {
+      result[i] = shape[order[i]];
+    }
+    return result;
+  }
+
+  /*
+   * data has the dimensions of shape permuted by order, put it back in C order of shape
+   */
+  private static byte[] untranspose(byte[] data, int[] shape, int[] order, int elemSize) throws IOException {
+    int rank = shape.length;
+    int[] encodedShape = permute(shape, order);
+    long[] encodedStride = new long[rank];
+    long stride = elemSize;
+    for (int i = rank - 1; i >= 0; i--) {
+      encodedStride[i] = stride;
+      stride *= encodedShape[i];
+    }
+    if (stride != data.length) {
+      throw new IOException("transposed chunk has " + data.length + " bytes, expected " + stride);
+    }
+    // stride in the encoded data of each dimension of shape
+    long[] srcStride = new long[rank];
+    for (int i = 0; i < rank; i++) {
+      srcStride[order[i]] = encodedStride[i];
+    }
+
+    byte[] result = new byte[data.length];
+    int[] index = new int[rank];
+    long src = 0;
+    for (int dest = 0; dest < result.length; dest += elemSize) {
+      System.arraycopy(data, (int) src, result, dest, elemSize);
+      // odometer over shape, innermost dimension fastest
+      for (int d = rank - 1; d >= 0; d--) {
+        index[d]++;
+        src += srcStride[d];
+        if (index[d] < shape[d]) {
+          break;
+        }
+        src -= srcStride[d] * index[d];
+        index[d] = 0;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Make the codecs from their metadata.
+   *
+   * @param codecs list of codec metadata, without the sharding_indexed codec
+   * @param rank number of dimensions of the chunks
+   * @param elemSize size of an element in bytes
+   */
+  static ZarrCodecs parse(JsonNode codecs, int rank, int elemSize) throws ZarrFormatException {
+    if (codecs == null || !codecs.isArray()) {
+      throw new ZarrFormatException(ZarrKeys.CODECS, String.valueOf(codecs));
+    }
+    List<int[]> transposes = new ArrayList<>();
+    ByteOrder byteOrder = null;
+    List<Filter> filters = new ArrayList<>();
+    for (JsonNode codec : codecs) {
+      String name = codecName(codec);
+      JsonNode config = codec.path(ZarrKeys.CONFIGURATION);
+      if (TRANSPOSE.equals(name)) {
+        if (byteOrder != null) {
+          throw new ZarrFormatException(ZarrKeys.CODECS, "transpose after " + BYTES);
+        }
+        transposes.add(parseOrder(config.path("order"), rank));
+      } else if (BYTES.equals(name) || ENDIAN.equals(name)) {
+        if (byteOrder != null) {
+          throw new ZarrFormatException(ZarrKeys.CODECS, "more than one " + BYTES);
+        }
+        byteOrder = "big".equals(config.path("endian").asText()) ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN;
+      } else if (SHARDING.equals(name)) {
+        throw new ZarrFormatException(ZarrKeys.CODECS, "nested or combined " + SHARDING);
+      } else {
+        if (byteOrder == null) {
+          throw new ZarrFormatException(ZarrKeys.CODECS, name + " before " + BYTES);
+        }
+        filters.add(makeFilter(name, config, elemSize));
+      }
+    }
+    if (byteOrder == null) {
+      throw new ZarrFormatException(ZarrKeys.CODECS, "no " + BYTES + " codec");
+    }
+    return new ZarrCodecs(transposes, byteOrder, filters);
+  }
+
+  static String codecName(JsonNode codec) {
+    // codecs without a configuration may be given as just their name
+    return codec.isTextual() ? codec.asText() : codec.path(ZarrKeys.NAME).asText();
+  }
+
+  private static int[] parseOrder(JsonNode order, int rank) throws ZarrFormatException {
+    int[] result = new int[rank];
+    if (order.isTextual()) { // "C" or "F" in early drafts of the spec
+      boolean reverse = "F".equals(order.asText());
+      for (int i = 0; i < rank; i++) {
+        result[i] = reverse ? rank - i - 1 : i;
+      }
+      return result;
+    }
+    if (!order.isArray() || order.size() != rank) {
+      throw new ZarrFormatException("transpose order", order.toString());
+    }
+    boolean[] seen = new boolean[rank];
+    for (int i = 0; i < rank; i++) {
+      int dim = order.get(i).asInt(-1);
+      if (dim < 0 || dim >= rank || seen[dim]) {
+        throw new ZarrFormatException("transpose order", order.toString());
+      }
+      seen[dim] = true;
+      result[i] = dim;
+    }
+    return result;
+  }
+
+  private static Filter makeFilter(String name, JsonNode config, int elemSize) throws ZarrFormatException {
+    switch (name) {
+      case Gzip.name:
+        return new Gzip(config.path("level").asInt(Deflater.DEFAULT_COMPRESSION));
+      case Crc32c.name:
+        return new Crc32c();
+      default:
+        Map<String, Object> properties = new HashMap<>();
+        if (config.isObject()) {
+          properties.putAll(objectMapper.convertValue(config, HashMap.class));
+        }
+        if ("blosc".equals(name)) {
+          // v3 names the shuffle, the Blosc filter takes the numcodecs value
+          Object shuffle = properties.get("shuffle");
+          if ("noshuffle".equals(shuffle)) {
+            properties.put("shuffle", 0);
+          } else if ("shuffle".equals(shuffle)) {
+            properties.put("shuffle", 1);
+          } else if ("bitshuffle".equals(shuffle)) {
+            properties.put("shuffle", 2);
+          }
+        }
+        properties.put(Filters.Keys.NAME, name);
+        properties.put(Filters.Keys.ELEM_SIZE, elemSize);
+        try {
+          return Filters.getFilter(properties);
+        } catch (UnknownFilterException e) {
+          throw new ZarrFormatException(ZarrKeys.CODECS, name);
+        }
+    }
+  }
+
+  /**
+   * The gzip codec: a gzip (RFC 1952) stream, not the zlib stream of the v2 "zlib" compressor.
+   */
+  static class Gzip extends Filter {
+    static final String name = "gzip";
+
+    private final int level;
+
+    Gzip(int level) {
+      this.level = level;
+    }
+
+    @Override
+    public String getName() {
+      return name;
+    }
+
+    @Override
+    public int getId() {
+      return -1;
+    }
+
+    @Override
+    public byte[] encode(byte[] dataIn) throws IOException {
+      ByteArrayOutputStream out = new ByteArrayOutputStream(dataIn.length / 2 + 32);
+      try (OutputStream gzip = new GZIPOutputStream(out) {
+        {
+          def.setLevel(level);
+        }
+      }) {
+        gzip.write(dataIn);
+      }
+      return out.toByteArray();
+    }
+
+    @Override
+    public byte[] decode(byte[] dataIn) throws IOException {
+      return decode(dataIn, -1);
+    }
+
+    @Override
+    public byte[] decode(byte[] dataIn, int decodedSize) throws IOException {
+      try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(dataIn))) {
+        if (decodedSize < 0) {
+          return ByteStreams.toByteArray(in);
+        }
+        // the size is only a hint
+        byte[] result = new byte[decodedSize];
+        int n = ByteStreams.read(in, result, 0, decodedSize);
+        if (n < decodedSize) {
+          return Arrays.copyOf(result, n);
+        }
+        byte[] rest = ByteStreams.toByteArray(in);
+        return rest.length == 0 ? result : Bytes.concat(result, rest);
+      }
+    }
+  }
+
+  /**
+   * The crc32c codec: a CRC-32C checksum of the data, appended as 4 little endian bytes.
+   */
+  static class Crc32c extends Filter {
+    static final String name = "crc32c";
+    static final int nbytes = 4;
+
+    @Override
+    public String getName() {
+      return name;
+    }
+
+    @Override
+    public int getId() {
+      return -1;
+    }
+
+    @Override
+    public byte[] encode(byte[] dataIn) {
+      ByteBuffer bb = ByteBuffer.allocate(dataIn.length + nbytes).order(ByteOrder.LITTLE_ENDIAN);
+      bb.put(dataIn);
+      bb.putInt(checksum(dataIn, dataIn.length));
+      return bb.array();
+    }
+
+    @Override
+    public byte[] decode(byte[] dataIn) throws IOException {
+      if (dataIn.length < nbytes) {
+        throw new IOException("crc32c: data is shorter than the checksum");
+      }
+      int n = dataIn.length - nbytes;
+      int expected = ByteBuffer.wrap(dataIn, n, nbytes).order(ByteOrder.LITTLE_ENDIAN).getInt();
+      if (checksum(dataIn, n) != expected) {
+        throw new IOException("crc32c: checksum invalid");
+      }
+      byte[] dataOut = new byte[n];
+      System.arraycopy(dataIn, 0, dataOut, 0, n);
+      return dataOut;
+    }
+
+    private static int checksum(byte[] data, int length) {
+      return Hashing.crc32c().hashBytes(data, 0, length).asInt();
+    }
+  }
+}
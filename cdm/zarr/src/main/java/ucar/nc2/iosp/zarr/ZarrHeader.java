@@ -5,9 +5,11 @@
 
 package ucar.nc2.iosp.zarr;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import ucar.ma2.ArrayObject;
+import ucar.ma2.DataType;
 import ucar.nc2.Attribute;
 import ucar.nc2.Dimension;
 import ucar.nc2.Group;
@@ -23,25 +25,44 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.nio.ByteOrder;
 import java.util.*;
+import java.util.stream.Collectors;
 
 /**
- * Class to read Zarr metadata from a RandomAccessDirectory and map it to a CDM Object
+ * Class to read Zarr metadata from a RandomAccessDirectory or a ZarrStore and map it to a CDM Object.
+ * Zarr v3 metadata (zarr.json) is only read from a ZarrStore.
  */
 public class ZarrHeader {
 
   private static final Logger logger = LoggerFactory.getLogger(ZarrHeader.class);
 
   private final RandomAccessDirectory rootRaf;
+  private final ZarrStore store;
   private final Group.Builder rootGroup;
   private final String rootLocation;
   private static final ObjectMapper objectMapper = new ObjectMapper();
 
+  // Zarr v3 node types
+  private static final String NODE_GROUP = "group";
+  private static final String NODE_ARRAY = "array";
+
   public ZarrHeader(RandomAccessDirectory raf, Group.Builder rootGroup) {
     this.rootRaf = raf;
+    this.store = null;
     this.rootGroup = rootGroup;
     this.rootLocation = ZarrUtils.trimLocation(this.rootRaf.getLocation());
   }
 
+  /**
+   * Read the metadata from a ZarrStore. Only the metadata objects are read, found from the keys of groups and
+   * variables, so the chunks are never listed. Consolidated metadata (.zmetadata) is used when it exists.
+   */
+  public ZarrHeader(ZarrStore store, Group.Builder rootGroup) {
+    this.rootRaf = null;
+    this.store = store;
+    this.rootGroup = rootGroup;
+    this.rootLocation = ZarrUtils.trimLocation(store.getLocation());
+  }
+
 
   /**
    * class used to delay the creation of a variable until other files related to the variable have been read
@@ -112,7 +133,7 @@ public class ZarrHeader {
         return; // do nothing if no variable is in progress
       }
       try {
-        makeVariable(var, dataOffset, zarray, initializedChunks, attrs);
+        makeVariable(ZarrUtils.trimLocation(var.getLocation()), zarray, attrs, dataOffset, initializedChunks, null);
       } catch (ZarrFormatException ex) {
         logger.error(ex.getMessage());
       }
@@ -126,6 +147,10 @@ public class ZarrHeader {
    * @throws IOException
    */
   public void read() throws IOException {
+    if (store != null) {
+      readStore();
+      return;
+    }
     List<RandomAccessDirectoryItem> items = this.rootRaf.getFilesInPath(this.rootLocation);
     DelayedVarMaker delayedVarMaker = new DelayedVarMaker();
 
@@ -152,7 +177,8 @@ public class ZarrHeader {
       } else if (filepath.endsWith(ZarrKeys.ZGROUP)) { // groups
         // build any vars in progress
         delayedVarMaker.makeVar();
-        makeGroup(item, grp_attrs); // .zattrs will always be processed before .zgroup, so we can make group immediately
+        // .zattrs will always be processed before .zgroup, so we can make group immediately
+        makeGroup(ZarrUtils.trimLocation(item.getLocation()), grp_attrs);
         grp_attrs = null; // reset
 
       } else if (filepath.endsWith(ZarrKeys.ZARRAY)) { // variables
@@ -169,11 +195,165 @@ public class ZarrHeader {
     delayedVarMaker.makeVar();
   }
 
-  private void makeGroup(RandomAccessDirectoryItem item, List<Attribute> attrs) {
+  private void readStore() throws IOException {
+    byte[] consolidated = store.get(ZarrKeys.ZMETADATA);
+    if (consolidated != null) {
+      JsonNode metadata = objectMapper.readTree(consolidated).path("metadata");
+      if (metadata.isObject()) {
+        readConsolidated(metadata);
+        return;
+      }
+      logger.warn("{} in {} has no metadata, ignoring", ZarrKeys.ZMETADATA, store);
+    }
+    // not a v2 group, look for a v3 one
+    if (!store.exists(ZarrKeys.ZGROUP)) {
+      byte[] root = store.get(ZarrKeys.ZARR_JSON);
+      if (root != null) {
+        readV3(objectMapper.readTree(root));
+        return;
+      }
+    }
+    readStoreGroup("");
+  }
+
+  /*
+   * .zmetadata holds the contents of all the metadata objects, keyed by their keys
+   */
+  private void readConsolidated(JsonNode metadata) {
+    List<String> groups = new ArrayList<>();
+    List<String> arrays = new ArrayList<>();
+    metadata.fieldNames().forEachRemaining(key -> {
+      if (key.endsWith(ZarrKeys.ZGROUP)) {
+        groups.add(key.substring(0, key.length() - ZarrKeys.ZGROUP.length()));
+      } else if (key.endsWith(ZarrKeys.ZARRAY)) {
+        arrays.add(key.substring(0, key.length() - ZarrKeys.ZARRAY.length()));
+      }
+    });
+    // parents before children
+    groups.sort(Comparator.comparingInt((String prefix) -> prefix.split("/").length)
+        .thenComparing(Comparator.naturalOrder()));
+    Collections.sort(arrays);
+
+    for (String prefix : groups) {
+      makeGroup(rootLocation + '/' + prefix + ZarrKeys.ZGROUP, makeAttributes(metadata.get(prefix + ZarrKeys.ZATTRS)));
+    }
+    for (String prefix : arrays) {
+      makeStoreVariable(prefix, metadata.get(prefix + ZarrKeys.ZARRAY), metadata.get(prefix + ZarrKeys.ZATTRS));
+    }
+  }
+
+  /*
+   * read a group and its children, which are variables if they have a .zarray and groups if they have a .zgroup
+   */
+  private void readStoreGroup(String prefix) throws IOException {
+    makeGroup(rootLocation + '/' + prefix + ZarrKeys.ZGROUP, makeAttributes(readJson(prefix + ZarrKeys.ZATTRS)));
+
+    for (String name : store.list(prefix)) {
+      if (name.startsWith(".")) {
+        continue; // metadata of this group
+      }
+      String child = prefix + name + '/';
+      JsonNode zarray = readJson(child + ZarrKeys.ZARRAY);
+      if (zarray != null) {
+        makeStoreVariable(child, zarray, readJson(child + ZarrKeys.ZATTRS));
+      } else if (store.exists(child + ZarrKeys.ZGROUP)) {
+        readStoreGroup(child);
+      }
+    }
+  }
+
+  /*
+   * Zarr v3: each group and array has a zarr.json, which holds its attributes. The zarr.json of the root group may
+   * also hold the metadata of all the nodes below it, as consolidated metadata.
+   */
+  private void readV3(JsonNode root) throws IOException {
+    if (root.path(ZarrKeys.ZARR_FORMAT).asInt() != 3 || !NODE_GROUP.equals(root.path(ZarrKeys.NODE_TYPE).asText())) {
+      throw new IOException("The root of " + store + " is not a Zarr v3 group");
+    }
+    makeGroup(rootLocation + '/' + ZarrKeys.ZARR_JSON, makeAttributes(root.get(ZarrKeys.ATTRIBUTES)));
+
+    JsonNode consolidated = root.path(ZarrKeys.CONSOLIDATED_METADATA).path("metadata");
+    if (consolidated.isObject()) {
+      // keyed by the paths of the nodes
+      List<String> paths = new ArrayList<>();
+      consolidated.fieldNames().forEachRemaining(paths::add);
+      // parents before children
+      paths.sort(Comparator.comparingInt((String path) -> path.split("/").length)
+          .thenComparing(Comparator.naturalOrder()));
+      for (String path : paths) {
+        makeNodeV3(path + '/', consolidated.get(path));
+      }
+    } else {
+      readStoreGroupV3("");
+    }
+  }
+
+  private void readStoreGroupV3(String prefix) throws IOException {
+    for (String name : store.list(prefix)) {
+      if (name.equals(ZarrKeys.ZARR_JSON)) {
+        continue; // metadata of this group
+      }
+      String child = prefix + name + '/';
+      JsonNode node = readJson(child + ZarrKeys.ZARR_JSON);
+      if (node != null && makeNodeV3(child, node)) {
+        readStoreGroupV3(child);
+      }
+    }
+  }
+
+  /*
+   * make the group or variable of a zarr.json, return true if it is a group
+   */
+  private boolean makeNodeV3(String prefix, JsonNode node) {
+    String location = rootLocation + '/' + prefix + ZarrKeys.ZARR_JSON;
+    List<Attribute> attrs = makeAttributes(node.get(ZarrKeys.ATTRIBUTES));
+    String nodeType = node.path(ZarrKeys.NODE_TYPE).asText();
+    if (NODE_GROUP.equals(nodeType)) {
+      makeGroup(location, attrs);
+      return true;
+    }
+    if (!NODE_ARRAY.equals(nodeType)) {
+      logger.warn("{} in {} has unknown {} '{}', skipping", prefix, store, ZarrKeys.NODE_TYPE, nodeType);
+      return false;
+    }
+    try {
+      ZArrayV3 zarray = ZArrayV3.fromJson(node);
+      List<Filter> filters = zarray.getCodecs().getFilters();
+      String compressor =
+          filters.isEmpty() ? "none" : filters.stream().map(Filter::getName).collect(Collectors.joining(","));
+      addVariable(location, zarray.getDataType(), zarray.getShape(), zarray.getDimensionNames(), attrs, compressor,
+          new VInfo(zarray, prefix));
+    } catch (ZarrFormatException ex) {
+      logger.error(ex.getMessage());
+    }
+    return false;
+  }
+
+  private JsonNode readJson(String key) throws IOException {
+    byte[] contents = store.get(key);
+    return contents == null ? null : objectMapper.readTree(contents);
+  }
+
+  private void makeStoreVariable(String prefix, JsonNode zarrayNode, JsonNode attrsNode) {
+    ZArray zarray;
+    try {
+      zarray = objectMapper.readValue(objectMapper.treeAsTokens(zarrayNode), ZArray.class);
+    } catch (IOException | ClassCastException ex) {
+      logger.error(new ZarrFormatException(ex.getMessage()).getMessage());
+      return; // skip var if metadata invalid
+    }
+    try {
+      makeVariable(rootLocation + '/' + prefix + ZarrKeys.ZARRAY, zarray, makeAttributes(attrsNode), -1, null, prefix);
+    } catch (ZarrFormatException ex) {
+      logger.error(ex.getMessage());
+    }
+  }
+
+  private void makeGroup(String location, List<Attribute> attrs) {
     // make new Group
     Group.Builder group = Group.builder();
-    String location = ZarrUtils.trimLocation(item.getLocation());
-    if (location.equals(this.rootLocation + '/' + ZarrKeys.ZGROUP)) {
+    if (location.equals(this.rootLocation + '/' + ZarrKeys.ZGROUP)
+        || location.equals(this.rootLocation + '/' + ZarrKeys.ZARR_JSON)) {
       group = this.rootGroup;
     }
     // set Group name
@@ -196,16 +376,9 @@ public class ZarrHeader {
     }
   }
 
-  private void makeVariable(RandomAccessDirectoryItem item, long dataOffset, ZArray zarray,
-      Map<Integer, Long> initializedChunks, List<Attribute> attrs) throws ZarrFormatException {
-    // make new Variable
-    Variable.Builder<?> var = Variable.builder();
-    String location = ZarrUtils.trimLocation(item.getLocation());
-
-    // set var name
+  private void makeVariable(String location, ZArray zarray, List<Attribute> attrs, long dataOffset,
+      Map<Integer, Long> initializedChunks, String keyPrefix) throws ZarrFormatException {
     String vname = ZarrUtils.getObjectNameFromPath(location);
-    var.setName(vname);
-    logger.trace("evaluating {}", vname);
 
     // Check if var has named dimensions by looking for _ARRAY_DIMENSIONS attribute.
     // This is the convention followed by xarray and geozarr.
@@ -213,7 +386,6 @@ public class ZarrHeader {
     // See under "Client Parameters" on https://docs.unidata.ucar.edu/nug/current/nczarr_head.html
     // We do nothing to check how that's set.
     String[] dimNames = null;
-    boolean hasNamedDimensions = false;
 
     if (attrs != null) {
 
@@ -230,23 +402,50 @@ public class ZarrHeader {
             for (int i = 0; i < aodSize; ++i) {
               dimNames[i] = (String) aod1.get(i);
             }
-            hasNamedDimensions = true;
           } catch (final Exception exc) {
+            dimNames = null;
             logger.debug("  Could not extract _ARRAY_DIMENSIONS for {}, {}", vname, exc.getMessage());
           }
         }
       }
     }
 
+    // check that dimensions and chunks match
+    int[] shape = zarray.getShape();
+    int[] chunks = zarray.getChunks();
+    if (shape.length != chunks.length) {
+      throw new ZarrFormatException();
+    }
+
+    // create VInfo
+    VInfo vinfo = new VInfo(chunks, zarray.getFillValue(), zarray.getCompressor(), zarray.getByteOrder(),
+        zarray.getOrder(), zarray.getSeparator(), zarray.getFilters(), dataOffset, initializedChunks, keyPrefix);
+
+    final Filter compressor = zarray.getCompressor();
+    addVariable(location, zarray.getDataType(), shape, dimNames, attrs,
+        compressor == null ? "none" : compressor.getName(), vinfo);
+  }
+
+  private void addVariable(String location, DataType dataType, int[] shape, String[] dimNames, List<Attribute> attrs,
+      String compressorName, VInfo vinfo) throws ZarrFormatException {
+    // make new Variable
+    Variable.Builder<?> var = Variable.builder();
+
+    // set var name
+    String vname = ZarrUtils.getObjectNameFromPath(location);
+    var.setName(vname);
+    logger.trace("evaluating {}", vname);
+
+    boolean hasNamedDimensions = dimNames != null;
+
     // set variable datatype
-    var.setDataType(zarray.getDataType());
+    var.setDataType(dataType);
 
     // find variable's group or throw if non-existent.
     final Group.Builder parentGroup = findGroup(location);
 
     // create and set dimensions
     // If hasNamedDimensions set above, we will want to share var's dimensions with the group.
-    int[] shape = zarray.getShape();
 
     if (hasNamedDimensions && shape.length != dimNames.length) {
       throw new ZarrFormatException("Array " + vname + " has dimensions attribute count that does not match its rank.");
@@ -283,15 +482,6 @@ public class ZarrHeader {
     }
     var.addDimensions(dims);
 
-    // check that dimensions and chunks match
-    int[] chunks = zarray.getChunks();
-    if (shape.length != chunks.length) {
-      throw new ZarrFormatException();
-    }
-
-    // create VInfo
-    VInfo vinfo = new VInfo(chunks, zarray.getFillValue(), zarray.getCompressor(), zarray.getByteOrder(),
-        zarray.getOrder(), zarray.getSeparator(), zarray.getFilters(), dataOffset, initializedChunks);
     var.setSPobject(vinfo);
 
     // Include some info from .zarray file in attributes for display when showing variable detail.
@@ -299,12 +489,7 @@ public class ZarrHeader {
     if (attrs == null) {
       attrs = new ArrayList<>();
     }
-    final Filter compressor = zarray.getCompressor();
-    if (compressor == null) {
-      attrs.add(new Attribute("_Compressor", "none"));
-    } else {
-      attrs.add(new Attribute("_Compressor", zarray.getCompressor().getName()));
-    }
+    attrs.add(new Attribute("_Compressor", compressorName));
 
     // add current attributes, if any exist
     var.addAttributes(attrs);
@@ -319,29 +504,43 @@ public class ZarrHeader {
       RandomAccessFile raf = item.getOrOpenRaf();
       // read attributes from file
       raf.seek(0);
-      Map<String, Object> attrMap = objectMapper.readValue(raf, HashMap.class);
-
-      // create Attribute objects
-      List<Attribute> attrs = new ArrayList<>();
-      attrMap.keySet().forEach(key -> {
-        Attribute.Builder attr = Attribute.builder(key);
-        Object val = attrMap.get(key);
-        if (val instanceof Collection<?>) {
-          attr.setValues(Arrays.asList(((Collection) val).toArray()), false);
-        } else if (val instanceof Number) {
-          attr.setNumericValue((Number) val, false);
-        } else {
-          attr.setStringValue((String) val);
-        }
-        attrs.add(attr.build());
-      });
-      return attrs;
+      return makeAttributes((Map<String, Object>) objectMapper.readValue(raf, HashMap.class));
     } catch (IOException ioe) {
       ZarrIosp.logger.error(new ZarrFormatException().getMessage());
     }
     return null;
   }
 
+  private List<Attribute> makeAttributes(JsonNode node) {
+    if (node == null) {
+      return null;
+    }
+    try {
+      return makeAttributes((Map<String, Object>) objectMapper.convertValue(node, HashMap.class));
+    } catch (IllegalArgumentException ex) {
+      ZarrIosp.logger.error(new ZarrFormatException().getMessage());
+    }
+    return null;
+  }
+
+  private static List<Attribute> makeAttributes(Map<String, Object> attrMap) {
+    // create Attribute objects
+    List<Attribute> attrs = new ArrayList<>();
+    attrMap.keySet().forEach(key -> {
+      Attribute.Builder attr = Attribute.builder(key);
+      Object val = attrMap.get(key);
+      if (val instanceof Collection<?>) {
+        attr.setValues(Arrays.asList(((Collection) val).toArray()), false);
+      } else if (val instanceof Number) {
+        attr.setNumericValue((Number) val, false);
+      } else {
+        attr.setStringValue((String) val);
+      }
+      attrs.add(attr.build());
+    });
+    return attrs;
+  }
+
   /**
    * Get chunk number from file name
    */
@@ -368,7 +567,7 @@ public class ZarrHeader {
     int[] shape = zarray.getShape();
     int[] chunkSize = zarray.getChunks();
     for (int i = 0; i < nDims; i++) {
-      nChunks[i] = (int) Math.ceil(shape[i] / chunkSize[i]);
+      nChunks[i] = (shape[i] + chunkSize[i] - 1) / chunkSize[i]; // round up
     }
     return ZarrUtils.subscriptsToIndex(subs, nChunks);
   }
@@ -397,9 +596,11 @@ public class ZarrHeader {
     private final List<Filter> filters;
     private final long offset;
     private final Map<Integer, Long> initializedChunks;
+    private final String keyPrefix;
+    private final ZArrayV3 zarrayV3;
 
     VInfo(int[] chunks, Object fillValue, Filter compressor, ByteOrder byteOrder, ZArray.Order order, String separator,
-        List<Filter> filters, long offset, Map<Integer, Long> initializedChunks) {
+        List<Filter> filters, long offset, Map<Integer, Long> initializedChunks, String keyPrefix) {
       this.chunks = chunks;
       this.fillValue = fillValue;
       this.byteOrder = byteOrder;
@@ -409,6 +610,25 @@ public class ZarrHeader {
       this.filters = filters;
       this.offset = offset;
       this.initializedChunks = initializedChunks;
+      this.keyPrefix = keyPrefix;
+      this.zarrayV3 = null;
+    }
+
+    /*
+     * a Zarr v3 array, whose chunks are decoded by its codecs; the chunks are the inner chunks if sharded
+     */
+    VInfo(ZArrayV3 zarray, String keyPrefix) {
+      this.chunks = zarray.getReadChunks();
+      this.fillValue = zarray.getFillValue();
+      this.byteOrder = zarray.getByteOrder();
+      this.compressor = null;
+      this.order = ZArray.Order.C; // transposes are undone by the codecs
+      this.separator = null;
+      this.filters = Collections.emptyList();
+      this.offset = -1;
+      this.initializedChunks = null;
+      this.keyPrefix = keyPrefix;
+      this.zarrayV3 = zarray;
     }
 
     public int[] getChunks() {
@@ -447,6 +667,20 @@ public class ZarrHeader {
       return this.initializedChunks;
     }
 
+    /**
+     * @return key prefix of the chunks in the ZarrStore, or null if read from a RandomAccessDirectory
+     */
+    public String getKeyPrefix() {
+      return this.keyPrefix;
+    }
+
+    /**
+     * @return the Zarr v3 array metadata, or null for Zarr v2
+     */
+    public ZArrayV3 getZArrayV3() {
+      return this.zarrayV3;
+    }
+
   }
 
 }
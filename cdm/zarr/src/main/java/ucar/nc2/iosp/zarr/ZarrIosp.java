@@ -22,16 +22,17 @@ import java.io.IOException;
 import java.lang.invoke.MethodHandles;
 
 /**
- * IOSP for reading/writing Zarr/NCZarr formats
+ * IOSP for reading/writing Zarr/NCZarr formats. Zarr v3 is read, including sharded arrays.
  */
 public class ZarrIosp extends AbstractIOServiceProvider {
 
   static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
-  private static final String fileTypeId = "Zarr";
-  private static final String fileTypeDescription = "Zarr v2 formatted dataset";
+  static final String fileTypeId = "Zarr";
+  static final String fileTypeDescription = "Zarr v2 or v3 formatted dataset";
 
   private ZarrHeader header;
+  private ZarrStore store; // null if reading through the RandomAccessDirectory
 
   @Override
   public boolean isValidFile(RandomAccessFile raf) {
@@ -66,7 +67,17 @@ public class ZarrIosp extends AbstractIOServiceProvider {
   @Override
   public void build(RandomAccessFile raf, Group.Builder rootGroup, CancelTask cancelTask) throws IOException {
     super.open(raf, null, cancelTask);
-    header = new ZarrHeader((RandomAccessDirectory) raf, rootGroup);
+    // find metadata and chunks from their keys, so the store is never listed as a whole
+    try {
+      store = ZarrStore.open(raf.getLocation());
+    } catch (IOException | UnsupportedOperationException e) {
+      logger.debug("Cannot open {} as a ZarrStore, reading it as a directory", raf.getLocation(), e);
+    }
+    if (store != null) {
+      header = new ZarrHeader(store, rootGroup);
+    } else {
+      header = new ZarrHeader((RandomAccessDirectory) raf, rootGroup);
+    }
     header.read(); // build CDM from Zarr
   }
 
@@ -74,7 +85,7 @@ public class ZarrIosp extends AbstractIOServiceProvider {
   public void buildFinish(NetcdfFile ncfile) {} // NO-OP
 
   @Override
-  public Array readData(Variable v2, Section section) {
+  public Array readData(Variable v2, Section section) throws IOException {
     // find variable in RAF
     ZarrHeader.VInfo vinfo = (ZarrHeader.VInfo) v2.getSPobject();
     DataType dataType = v2.getDataType();
@@ -83,7 +94,8 @@ public class ZarrIosp extends AbstractIOServiceProvider {
     Object fillValue = getFillValue(vinfo, dataType);
 
     // create layout object
-    Layout layout = new ZarrLayoutBB(v2, section, this.raf);
+    Layout layout = (vinfo.getKeyPrefix() != null) ? new ZarrLayoutBB(v2, section, store)
+        : new ZarrLayoutBB(v2, section, this.raf);
     Object data = IospHelper.readDataFill((LayoutBB) layout, dataType, fillValue);
 
     Array array = Array.factory(dataType, section.getShape(), data);
@@ -150,8 +162,22 @@ public class ZarrIosp extends AbstractIOServiceProvider {
     return fillValue;
   }
 
+  @Override
+  public void close() throws IOException {
+    try {
+      if (store != null) {
+        store.close();
+      }
+    } finally {
+      super.close();
+    }
+  }
+
   @Override
   public long getLastModified() {
+    if (store != null) {
+      return store.getLastModified();
+    }
     if (raf == null) {
       try {
         reacquire();
@@ -0,0 +1,716 @@
+/*
+ * Copyright (c) 2021 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.nc2.iosp.zarr;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableSet;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.annotation.Nullable;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.ma2.Index;
+import ucar.ma2.InvalidRangeException;
+import ucar.ma2.MAMath;
+import ucar.ma2.Range;
+import ucar.ma2.Section;
+import ucar.ma2.StructureData;
+import ucar.nc2.Attribute;
+import ucar.nc2.Dimension;
+import ucar.nc2.Group;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.Structure;
+import ucar.nc2.Variable;
+import ucar.nc2.constants.CDM;
+import ucar.nc2.filter.Filter;
+import ucar.nc2.filter.Filters;
+import ucar.nc2.filter.UnknownFilterException;
+import ucar.nc2.iosp.AbstractIOServiceProvider;
+import ucar.nc2.iosp.IOServiceProviderWriter;
+import ucar.nc2.iosp.IospHelper;
+import ucar.nc2.iosp.netcdf3.N3iosp;
+import ucar.nc2.util.BoundedExecutor;
+import ucar.nc2.util.CancelTask;
+import ucar.nc2.write.Nc4Chunking;
+import ucar.nc2.write.Nc4ChunkingDefault;
+import ucar.unidata.io.RandomAccessFile;
+
+/**
+ * Writes Zarr v2 stores, to a local directory, or to a zip file when the location ends with ".zip".
+ * Use through NetcdfFormatWriter with NetcdfFileFormat.ZARR.
+ * <p/>
+ * Variables are chunked following an {@link Nc4Chunking}, and compressed with the zlib compressor and shuffle filter
+ * of {@link ucar.nc2.filter}. A chunk is encoded and written once all of its values have been written, so partly
+ * written chunks are kept in memory until then, or until the store is closed. Chunks are encoded and written
+ * concurrently if an executor has been set with {@link #setExecutor}.
+ * <p/>
+ * The metadata, including consolidated metadata (.zmetadata), is written when the store is closed, after any
+ * unlimited dimensions have reached their final length.
+ */
+public class ZarrIospWriter extends AbstractIOServiceProvider implements IOServiceProviderWriter {
+  private static final ObjectMapper objectMapper = new ObjectMapper();
+  private static final int ZARR_FORMAT = 2;
+  // attributes that describe how the data was stored, not the data
+  private static final Set<String> skipAttributes = ImmutableSet.of("_Compressor", CDM.CHUNK_SIZES);
+
+  // experimental multithreading
+  private static Executor executor;
+  private static int maxChunksInFlight = 16;
+
+  /**
+   * Encode and write chunks concurrently on the given executor.
+   *
+   * @param exec encode chunks on this executor, or null to encode them on the writing thread (the default).
+   * @param maxInFlight maximum number of chunks that each writer has waiting to be encoded or written. Writes block
+   *        when it is reached, which bounds the memory used.
+   */
+  public static void setExecutor(@Nullable Executor exec, int maxInFlight) {
+    if (maxInFlight < 1)
+      throw new IllegalArgumentException("maxInFlight must be > 0");
+    executor = exec;
+    maxChunksInFlight = maxInFlight;
+  }
+
+  private Nc4Chunking chunker = new Nc4ChunkingDefault();
+  private boolean fill = true;
+
+  private ZarrStoreWriter store;
+  private final Map<String, VarWriter> varWriters = new HashMap<>(); // keyed by full name
+  private final Map<String, Map<String, Attribute>> updatedAttributes = new HashMap<>(); // keyed by full name
+
+  // chunks being encoded and written on the executor; null if not concurrent
+  private BoundedExecutor.Ordered<Void> chunks;
+  private final Set<String> writtenKeys = ConcurrentHashMap.newKeySet();
+  private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+  /** Set the chunking strategy, also used for the compression level and shuffling. */
+  public void setChunker(@Nullable Nc4Chunking chunker) {
+    if (chunker != null) {
+      this.chunker = chunker;
+    }
+  }
+
+  @Override
+  public void create(String filename, NetcdfFile ncfile, int extra, long preallocateSize, boolean largeFile)
+      throws IOException {
+    this.ncfile = ncfile;
+    this.location = filename;
+
+    // check all variables can be written before making the store
+    addVarWriters(ncfile.getRootGroup(), "");
+    this.store = ZarrStoreWriter.create(filename);
+
+    Executor exec = executor;
+    if (exec != null) {
+      this.chunks = new BoundedExecutor.Ordered<>(exec, maxChunksInFlight);
+    }
+  }
+
+  private void addVarWriters(Group group, String prefix) throws IOException {
+    for (Variable v : group.getVariables()) {
+      varWriters.put(v.getFullName(), new VarWriter(v, prefix + v.getShortName() + '/'));
+    }
+    for (Group nested : group.getGroups()) {
+      addVarWriters(nested, prefix + nested.getShortName() + '/');
+    }
+  }
+
+  @Override
+  public void openForWriting(RandomAccessFile raf, NetcdfFile ncfile, CancelTask cancelTask) {
+    throw new UnsupportedOperationException("Existing Zarr stores cannot be opened for writing");
+  }
+
+  @Override
+  public void setFill(boolean fill) {
+    this.fill = fill;
+  }
+
+  @Override
+  public synchronized void writeData(Variable v2, Section section, Array values)
+      throws IOException, InvalidRangeException {
+    checkFailure();
+    VarWriter vw = varWriters.get(v2.getFullName());
+    if (vw == null) {
+      throw new IllegalArgumentException("Variable " + v2.getFullName() + " is not in " + location);
+    }
+    if (section.computeSize() == 0) {
+      return;
+    }
+    for (Range r : section.getRanges()) {
+      if (r.stride() != 1) {
+        throw new InvalidRangeException("Zarr writer does not support strided sections: " + section);
+      }
+    }
+    if (v2.isUnlimited()) {
+      extendUnlimited(v2, section);
+    }
+    String err = section.checkInRange(v2.getShape());
+    if (err != null) {
+      throw new InvalidRangeException(err);
+    }
+    vw.write(section, values);
+  }
+
+  private void extendUnlimited(Variable v2, Section section) {
+    boolean extended = false;
+    for (int i = 0; i < v2.getRank(); i++) {
+      Dimension dim = v2.getDimension(i);
+      int n = section.getRange(i).last() + 1;
+      if (dim.isUnlimited() && n > dim.getLength()) {
+        dim.setLength(n);
+        extended = true;
+      }
+    }
+    // let all unlimited variables know of their new shape
+    if (extended) {
+      for (Variable v : ncfile.getVariables()) {
+        if (v.isUnlimited()) {
+          v.resetShape();
+        }
+      }
+    }
+  }
+
+  @Override
+  public int appendStructureData(Structure s, StructureData sdata) {
+    throw new UnsupportedOperationException("Zarr writer does not support Structures");
+  }
+
+  @Override
+  public boolean rewriteHeader(boolean largeFile) {
+    return false; // metadata is written on close
+  }
+
+  @Override
+  public synchronized void updateAttribute(Variable v2, Attribute att) {
+    String name = (v2 == null) ? "" : v2.getFullName();
+    updatedAttributes.computeIfAbsent(name, k -> new LinkedHashMap<>()).put(att.getShortName(), att);
+  }
+
+  /** Wait for the chunks being written. Partly written chunks stay in memory. */
+  @Override
+  public synchronized void flush() throws IOException {
+    waitForChunks();
+    checkFailure();
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    if (store == null) {
+      return;
+    }
+    try {
+      if (failure.get() == null) {
+        for (VarWriter vw : varWriters.values()) {
+          vw.writePartialChunks();
+        }
+        waitForChunks();
+        if (failure.get() == null) {
+          writeMetadata();
+        }
+      }
+    } finally {
+      waitForChunks();
+      store.close();
+      store = null;
+      super.close();
+    }
+    checkFailure();
+  }
+
+  @Override
+  public boolean isValidFile(RandomAccessFile raf) {
+    return false; // only writes
+  }
+
+  @Override
+  public Array readData(Variable v2, Section section) {
+    throw new UnsupportedOperationException("Close and reopen " + location + " to read the data written to it");
+  }
+
+  @Override
+  public String getFileTypeId() {
+    return ZarrIosp.fileTypeId;
+  }
+
+  @Override
+  public String getFileTypeDescription() {
+    return ZarrIosp.fileTypeDescription;
+  }
+
+  ////////////////////////////////////////////////////////////////////////////////////
+  // chunks
+
+  private void put(String key, VarWriter vw, Array chunk) throws IOException {
+    if (!writtenKeys.add(key)) {
+      waitForChunks(); // the chunk was written before, dont race with it
+    }
+    if (chunks == null) {
+      store.put(key, vw.encode(chunk));
+      return;
+    }
+    if (chunks.isFull()) {
+      takeChunk();
+    }
+    chunks.add(() -> {
+      store.put(key, vw.encode(chunk));
+      return null;
+    });
+  }
+
+  // wait for the oldest chunk being written, or write it on this thread if it has not started
+  private void takeChunk() {
+    try {
+      chunks.take();
+    } catch (Throwable t) {
+      failure.compareAndSet(null, t);
+    }
+  }
+
+  private void waitForChunks() {
+    while (chunks != null && !chunks.isEmpty()) {
+      takeChunk();
+    }
+  }
+
+  private void checkFailure() throws IOException {
+    Throwable t = failure.get();
+    if (t != null) {
+      throw new IOException("Failed to write a chunk to " + location, t);
+    }
+  }
+
+  /** A chunk that has not had all of its values written yet. */
+  private static class PartialChunk {
+    final Array data;
+    final long expected;
+    long count;
+
+    PartialChunk(Array data, long expected) {
+      this.data = data;
+      this.expected = expected;
+    }
+  }
+
+  /** Chunking, encoding and metadata of a variable. */
+  private class VarWriter {
+    final Variable var;
+    final String keyPrefix;
+    final DataType dataType;
+    final String dtype;
+    final int elemSize;
+    final int[] chunks;
+    final Map<String, Object> compressorConfig; // null for no compression
+    final List<Map<String, Object>> filterConfigs = new ArrayList<>();
+    final Filter compressor;
+    final List<Filter> filters = new ArrayList<>();
+    final Map<String, PartialChunk> partials = new HashMap<>();
+
+    VarWriter(Variable var, String keyPrefix) throws IOException {
+      if (var instanceof Structure || var.isVariableLength()) {
+        throw new IllegalArgumentException("Zarr writer cannot write variable " + var.getFullName());
+      }
+      this.var = var;
+      this.keyPrefix = keyPrefix;
+      this.dataType = var.getDataType();
+      this.dtype = getDtype(dataType);
+      this.elemSize = dataType.getSize();
+      this.chunks = computeChunks(var);
+
+      int deflateLevel = chunker.getDeflateLevel(var);
+      if (deflateLevel > 0) {
+        // shuffle is ignored without compression
+        if (chunker.isShuffle(var) && elemSize > 1) {
+          Map<String, Object> shuffle = new LinkedHashMap<>();
+          shuffle.put(Filters.Keys.NAME, "shuffle");
+          shuffle.put(Filters.Keys.ELEM_SIZE, elemSize);
+          filterConfigs.add(shuffle);
+        }
+        compressorConfig = new LinkedHashMap<>();
+        compressorConfig.put(Filters.Keys.NAME, "zlib");
+        compressorConfig.put("level", deflateLevel);
+      } else {
+        compressorConfig = null;
+      }
+
+      try {
+        this.compressor = compressorConfig == null ? null : Filters.getFilter(compressorConfig);
+        for (Map<String, Object> config : filterConfigs) {
+          filters.add(Filters.getFilter(config));
+        }
+      } catch (UnknownFilterException e) {
+        throw new IOException(e.getMessage(), e);
+      }
+    }
+
+    private int[] computeChunks(Variable v) {
+      int[] shape = v.getShape();
+      long[] computed = chunker.isChunked(v) ? chunker.computeChunking(v) : null;
+      int[] result = new int[shape.length];
+      for (int i = 0; i < shape.length; i++) {
+        long size = (computed != null && i < computed.length) ? computed[i] : shape[i];
+        if (!v.getDimension(i).isUnlimited()) {
+          size = Math.min(size, shape[i]);
+        }
+        result[i] = (int) Math.max(1, Math.min(size, Integer.MAX_VALUE));
+      }
+      return result;
+    }
+
+    void write(Section section, Array values) throws IOException, InvalidRangeException {
+      int rank = chunks.length;
+      int[] origin = section.getOrigin();
+      int[] shape = section.getShape();
+      int[] first = new int[rank];
+      int[] last = new int[rank];
+      for (int i = 0; i < rank; i++) {
+        first[i] = origin[i] / chunks[i];
+        last[i] = (origin[i] + shape[i] - 1) / chunks[i];
+      }
+
+      // visit each chunk that intersects the section
+      int[] chunkIndex = first.clone();
+      while (true) {
+        writeChunk(chunkIndex, origin, shape, values);
+        int i = rank - 1;
+        while (i >= 0 && chunkIndex[i] == last[i]) {
+          chunkIndex[i] = first[i];
+          i--;
+        }
+        if (i < 0) {
+          break;
+        }
+        chunkIndex[i]++;
+      }
+    }
+
+    private void writeChunk(int[] chunkIndex, int[] origin, int[] shape, Array values)
+        throws IOException, InvalidRangeException {
+      int rank = chunks.length;
+      int[] srcOrigin = new int[rank];
+      int[] dstOrigin = new int[rank];
+      int[] interShape = new int[rank];
+      boolean whole = true;
+      for (int i = 0; i < rank; i++) {
+        int chunkStart = chunkIndex[i] * chunks[i];
+        int start = Math.max(origin[i], chunkStart);
+        int end = Math.min(origin[i] + shape[i], chunkStart + chunks[i]);
+        srcOrigin[i] = start - origin[i];
+        dstOrigin[i] = start - chunkStart;
+        interShape[i] = end - start;
+        whole &= interShape[i] == chunks[i];
+      }
+      String key = keyPrefix + chunkKey(chunkIndex);
+      Array src = values.sectionNoReduce(srcOrigin, interShape, null);
+
+      PartialChunk partial = partials.get(key);
+      if (whole && partial == null) {
+        Array data = Array.factory(dataType, chunks);
+        MAMath.copy(data, src);
+        put(key, this, data);
+        return;
+      }
+
+      if (partial == null) {
+        partial = new PartialChunk(startChunk(key), expectedCount(chunkIndex));
+        partials.put(key, partial);
+      }
+      MAMath.copy(partial.data.sectionNoReduce(dstOrigin, interShape, null), src);
+      partial.count += Index.computeSize(interShape);
+      if (partial.count >= partial.expected) {
+        partials.remove(key);
+        put(key, this, partial.data);
+      }
+    }
+
+    // number of values in the chunk that are inside the variable; chunks grow along unlimited dimensions
+    private long expectedCount(int[] chunkIndex) {
+      int[] shape = var.getShape();
+      long count = 1;
+      for (int i = 0; i < chunks.length; i++) {
+        if (var.getDimension(i).isUnlimited()) {
+          count *= chunks[i];
+        } else {
+          count *= Math.min(chunks[i], shape[i] - chunkIndex[i] * chunks[i]);
+        }
+      }
+      return count;
+    }
+
+    private Array startChunk(String key) throws IOException {
+      if (writtenKeys.contains(key)) {
+        // update the chunk that was written
+        waitForChunks();
+        byte[] encoded = (store instanceof ZarrStore) ? ((ZarrStore) store).get(key) : null;
+        if (encoded == null) {
+          throw new IOException("Cannot update chunk " + key + " once it has been written to " + store);
+        }
+        return decode(encoded);
+      }
+      Number fillValue = getFillValue();
+      if (fillValue == null || dataType == DataType.CHAR || dataType == DataType.BOOLEAN) {
+        return Array.factory(dataType, chunks);
+      }
+      int size = (int) Index.computeSize(chunks);
+      return Array.factory(dataType, chunks, IospHelper.makePrimitiveArray(size, dataType, fillValue));
+    }
+
+    void writePartialChunks() throws IOException {
+      for (Map.Entry<String, PartialChunk> entry : partials.entrySet()) {
+        put(entry.getKey(), this, entry.getValue().data);
+      }
+      partials.clear();
+    }
+
+    @Nullable
+    Number getFillValue() {
+      Attribute att = var.findAttribute(CDM.FILL_VALUE);
+      if (att != null && !att.isString()) {
+        return att.getNumericValue();
+      }
+      if (!fill || dataType == DataType.CHAR || dataType == DataType.BOOLEAN) {
+        return null;
+      }
+      return N3iosp.getFillValueDefault(dataType);
+    }
+
+    byte[] encode(Array chunk) throws IOException {
+      byte[] bytes = toBytes(chunk);
+      for (Filter filter : filters) {
+        bytes = filter.encode(bytes);
+      }
+      if (compressor != null) {
+        bytes = compressor.encode(bytes);
+      }
+      return bytes;
+    }
+
+    private Array decode(byte[] bytes) throws IOException {
+      if (compressor != null) {
+        bytes = compressor.decode(bytes);
+      }
+      for (int i = filters.size() - 1; i >= 0; i--) {
+        bytes = filters.get(i).decode(bytes);
+      }
+      if (dataType == DataType.BOOLEAN) {
+        Array result = Array.factory(dataType, chunks);
+        for (int i = 0; i < bytes.length; i++) {
+          result.setBoolean(i, bytes[i] != 0);
+        }
+        return result;
+      }
+      return Array.factory(dataType, chunks, ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN));
+    }
+
+    // chunks are made by Array.factory, so their storage is in index order
+    private byte[] toBytes(Array chunk) {
+      Object storage = chunk.getStorage();
+      if (storage instanceof byte[]) {
+        return (byte[]) storage;
+      }
+      int n = (int) chunk.getSize();
+      if (storage instanceof boolean[]) {
+        boolean[] pa = (boolean[]) storage;
+        byte[] result = new byte[n];
+        for (int i = 0; i < n; i++) {
+          result[i] = (byte) (pa[i] ? 1 : 0);
+        }
+        return result;
+      }
+      if (storage instanceof char[]) {
+        char[] pa = (char[]) storage;
+        byte[] result = new byte[n];
+        for (int i = 0; i < n; i++) {
+          result[i] = (byte) pa[i];
+        }
+        return result;
+      }
+      ByteBuffer bb = ByteBuffer.allocate(n * elemSize).order(ByteOrder.LITTLE_ENDIAN);
+      if (storage instanceof short[]) {
+        bb.asShortBuffer().put((short[]) storage);
+      } else if (storage instanceof int[]) {
+        bb.asIntBuffer().put((int[]) storage);
+      } else if (storage instanceof long[]) {
+        bb.asLongBuffer().put((long[]) storage);
+      } else if (storage instanceof float[]) {
+        bb.asFloatBuffer().put((float[]) storage);
+      } else if (storage instanceof double[]) {
+        bb.asDoubleBuffer().put((double[]) storage);
+      } else {
+        throw new IllegalStateException("Unexpected storage " + storage.getClass());
+      }
+      return bb.array();
+    }
+
+    Map<String, Object> getZarray() {
+      Map<String, Object> zarray = new LinkedHashMap<>();
+      zarray.put(ZarrKeys.CHUNKS, chunks);
+      zarray.put(ZarrKeys.COMPRESSOR, compressorConfig);
+      zarray.put(ZarrKeys.DIMENSION_SEPARATOR, ZArray.DEFAULT_SEPARATOR);
+      zarray.put(ZarrKeys.DTYPE, dtype);
+      zarray.put(ZarrKeys.FILL_VALUE, toJsonFillValue(getFillValue()));
+      zarray.put(ZarrKeys.FILTERS, filterConfigs.isEmpty() ? null : filterConfigs);
+      zarray.put(ZarrKeys.ORDER, ZArray.Order.C.name());
+      zarray.put(ZarrKeys.SHAPE, var.getShape());
+      zarray.put("zarr_format", ZARR_FORMAT);
+      return zarray;
+    }
+
+    @Nullable
+    private Object toJsonFillValue(@Nullable Number fillValue) {
+      if (fillValue == null) {
+        return null;
+      }
+      if (dataType.isUnsigned()) {
+        return DataType.widenNumberIfNegative(fillValue);
+      }
+      double d = fillValue.doubleValue();
+      if (dataType.isFloatingPoint() && (Double.isNaN(d) || Double.isInfinite(d))) {
+        // not allowed in JSON, zarr uses these strings
+        return Double.isNaN(d) ? "NaN" : (d > 0 ? "Infinity" : "-Infinity");
+      }
+      return fillValue;
+    }
+
+    Map<String, Object> getZattrs() {
+      Map<String, Object> zattrs = new LinkedHashMap<>();
+      // named dimensions, as used by xarray
+      List<String> dimNames = new ArrayList<>();
+      for (Dimension dim : var.getDimensions()) {
+        if (!dim.isShared()) {
+          dimNames = null;
+          break;
+        }
+        dimNames.add(dim.getShortName());
+      }
+      if (dimNames != null) {
+        zattrs.put("_ARRAY_DIMENSIONS", dimNames);
+      }
+      zattrs.putAll(makeAttributes(var.attributes(), var.getFullName()));
+      return zattrs;
+    }
+  }
+
+  private static String chunkKey(int[] chunkIndex) {
+    if (chunkIndex.length == 0) {
+      return "0"; // scalar
+    }
+    StringBuilder key = new StringBuilder();
+    for (int i = 0; i < chunkIndex.length; i++) {
+      if (i > 0) {
+        key.append(ZArray.DEFAULT_SEPARATOR);
+      }
+      key.append(chunkIndex[i]);
+    }
+    return key.toString();
+  }
+
+  private static String getDtype(DataType dataType) {
+    switch (dataType) {
+      case BOOLEAN:
+        return "|b1";
+      case BYTE:
+      case ENUM1:
+        return "|i1";
+      case UBYTE:
+        return "|u1";
+      case CHAR:
+        return "|S1";
+      case SHORT:
+      case ENUM2:
+        return "<i2";
+      case USHORT:
+        return "<u2";
+      case INT:
+      case ENUM4:
+        return "<i4";
+      case UINT:
+        return "<u4";
+      case LONG:
+        return "<i8";
+      case ULONG:
+        return "<u8";
+      case FLOAT:
+        return "<f4";
+      case DOUBLE:
+        return "<f8";
+      default:
+        throw new IllegalArgumentException("Zarr writer cannot write data type " + dataType);
+    }
+  }
+
+  ////////////////////////////////////////////////////////////////////////////////////
+  // metadata
+
+  private void writeMetadata() throws IOException {
+    Map<String, Object> metadata = new LinkedHashMap<>();
+    writeGroupMetadata(ncfile.getRootGroup(), "", metadata);
+
+    Map<String, Object> consolidated = new LinkedHashMap<>();
+    consolidated.put("metadata", metadata);
+    consolidated.put("zarr_consolidated_format", 1);
+    store.put(ZarrKeys.ZMETADATA, objectMapper.writerWithDefaultPrettyPrinter().writeValueAsBytes(consolidated));
+  }
+
+  private void writeGroupMetadata(Group group, String prefix, Map<String, Object> metadata) throws IOException {
+    putJson(prefix + ZarrKeys.ZGROUP, Collections.singletonMap("zarr_format", ZARR_FORMAT), metadata);
+    Map<String, Object> zattrs = makeAttributes(group.attributes(), group.isRoot() ? "" : group.getFullName());
+    if (!zattrs.isEmpty()) {
+      putJson(prefix + ZarrKeys.ZATTRS, zattrs, metadata);
+    }
+
+    for (Variable v : group.getVariables()) {
+      VarWriter vw = varWriters.get(v.getFullName());
+      putJson(vw.keyPrefix + ZarrKeys.ZARRAY, vw.getZarray(), metadata);
+      putJson(vw.keyPrefix + ZarrKeys.ZATTRS, vw.getZattrs(), metadata);
+    }
+    for (Group nested : group.getGroups()) {
+      writeGroupMetadata(nested, prefix + nested.getShortName() + '/', metadata);
+    }
+  }
+
+  private void putJson(String key, Object json, Map<String, Object> metadata) throws IOException {
+    metadata.put(key, json);
+    store.put(key, objectMapper.writerWithDefaultPrettyPrinter().writeValueAsBytes(json));
+  }
+
+  private Map<String, Object> makeAttributes(Iterable<Attribute> attributes, String fullName) {
+    Map<String, Attribute> atts = new LinkedHashMap<>();
+    for (Attribute att : attributes) {
+      atts.put(att.getShortName(), att);
+    }
+    atts.putAll(updatedAttributes.getOrDefault(fullName, Collections.emptyMap()));
+
+    Map<String, Object> result = new LinkedHashMap<>();
+    for (Attribute att : atts.values()) {
+      if (Attribute.isspecial(att) || skipAttributes.contains(att.getShortName()) || att.getLength() == 0) {
+        continue;
+      }
+      List<Object> values = new ArrayList<>();
+      for (int i = 0; i < att.getLength(); i++) {
+        if (att.isString()) {
+          values.add(att.getStringValue(i));
+        } else {
+          Number value = att.getNumericValue(i);
+          values.add(att.getDataType().isUnsigned() ? DataType.widenNumberIfNegative(value) : value);
+        }
+      }
+      result.put(att.getShortName(), values.size() == 1 ? values.get(0) : values);
+    }
+    return result;
+  }
+}
@@ -5,6 +5,7 @@ import ucar.ma2.Section;
 import ucar.nc2.Dimension;
 import ucar.nc2.Variable;
 import ucar.nc2.filter.Filter;
+import ucar.nc2.iosp.ChunkCache;
 import ucar.nc2.iosp.LayoutBB;
 import ucar.nc2.iosp.LayoutBBTiled;
 import ucar.unidata.io.RandomAccessFile;
@@ -12,39 +13,83 @@ import ucar.unidata.io.RandomAccessFile;
 import java.io.IOException;
 import java.nio.*;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nullable;
 
 /**
- * A tiled layout for Zarr formats that accommodates uncompressing and filtering data before returning
+ * A tiled layout for Zarr formats that accommodates uncompressing and filtering data before returning.
+ * Chunks are read either from a RandomAccessDirectory, by their position in the directory, or from a ZarrStore,
+ * by their keys.
+ * <p/>
+ * The chunks of a sharded Zarr v3 array are the inner chunks of its shards. Only the wanted inner chunks are read,
+ * with range requests, and wanted inner chunks that are next to each other in a shard are read together.
  */
 public class ZarrLayoutBB implements LayoutBB {
 
   private LayoutBBTiled delegate;
 
-  private RandomAccessFile raf;
+  private RandomAccessFile raf; // null if reading from a store
+  private final ZarrStore store; // null if reading from raf
+  private final String keyPrefix; // key prefix of the chunks in the store
+  private final String separator; // dimension separator in chunk keys
   private ByteOrder byteOrder;
   private final long varOffset; // start of variable data in raf
   private final Section want;
 
   private int[] chunkSize; // number of elements per chunks
   private int elemSize; // size of elements in bytes
+  private int chunkBytes = -1; // size of a decoded chunk, if it fits in an array
   private int nChunks[]; // number of chunks per dimension
   private int totalNChunks; // total number of chunks
   private boolean F_order = false; // F order storage?
   private Map<Integer, Long> initializedChunks; // set of chunks that exist as files and their compressed size
   private Filter compressor;
   private List<Filter> filters;
+  private final String varName;
+  private final ZArrayV3 zarrayV3; // null for Zarr v2
+  private final ShardReader shardReader; // null if not a sharded Zarr v3 array
+  private final ChunkCache chunkCache; // null if not caching decoded chunks
+  private String fileKey; // identifies the raf version in the ChunkCache
+  private final Map<String, Long> versions = new ConcurrentHashMap<>(); // last modified of store objects, by key
+
+  public ZarrLayoutBB(Variable v2, Section wantSection, RandomAccessFile raf) throws IOException {
+    this(v2, wantSection, raf, null);
+  }
+
+  /**
+   * Read the chunks of a variable from a ZarrStore, finding each chunk from its key.
+   *
+   * @param v2 the variable, made by ZarrHeader from the store
+   * @param wantSection the wanted section
+   * @param store the store
+   */
+  public ZarrLayoutBB(Variable v2, Section wantSection, ZarrStore store) throws IOException {
+    this(v2, wantSection, null, store);
+  }
 
-  public ZarrLayoutBB(Variable v2, Section wantSection, RandomAccessFile raf) {
+  private ZarrLayoutBB(Variable v2, Section wantSection, RandomAccessFile raf, ZarrStore store) throws IOException {
     // var data info
     this.raf = raf;
+    this.store = store;
     ZarrHeader.VInfo vinfo = (ZarrHeader.VInfo) v2.getSPobject();
+    this.keyPrefix = vinfo.getKeyPrefix();
+    this.separator = vinfo.getSeparator();
     this.byteOrder = vinfo.getByteOrder();
     this.varOffset = vinfo.getOffset();
     this.compressor = vinfo.getCompressor();
     this.filters = vinfo.getFilters();
-
+    this.varName = v2.getFullName();
+    this.zarrayV3 = vinfo.getZArrayV3();
+    this.shardReader = (zarrayV3 != null && zarrayV3.getSharding() != null) ? new ShardReader() : null;
+    this.chunkCache = ChunkCache.getGlobalCache();
+    if (chunkCache != null && raf != null) {
+      this.fileKey = ChunkCache.fileKey(raf);
+    }
 
     // fill in chunk info
     this.chunkSize = vinfo.getChunks();
@@ -55,7 +100,7 @@ public class ZarrLayoutBB implements LayoutBB {
     for (int i = 0; i < ndims; i++) {
       Dimension dim = v2.getDimension(i);
       // round up nchunks if not evenly divisible by chunk size
-      this.nChunks[i] = (int) Math.ceil(dim.getLength() / this.chunkSize[i]);
+      this.nChunks[i] = (dim.getLength() + this.chunkSize[i] - 1) / this.chunkSize[i];
       this.totalNChunks *= nChunks[i];
     }
 
@@ -76,12 +121,29 @@ public class ZarrLayoutBB implements LayoutBB {
     }
 
     this.elemSize = v2.getDataType().getSize();
+    long nbytes = elemSize;
+    for (int size : chunkSize) {
+      nbytes *= size;
+    }
+    if (nbytes <= Integer.MAX_VALUE) {
+      this.chunkBytes = (int) nbytes;
+    }
 
     // create delegate and chunk iterator
     ZarrLayoutBB.DataChunkIterator iter = new ZarrLayoutBB.DataChunkIterator();
     delegate = new LayoutBBTiled(iter, chunkSize, elemSize, this.want);
   }
 
+  // objects are versioned one by one, so that a chunk rewritten in place is not taken from a cache
+  private long getVersion(String key) throws IOException {
+    Long version = versions.get(key);
+    if (version == null) {
+      version = store.getLastModified(key);
+      versions.put(key, version);
+    }
+    return version;
+  }
+
   @Override
   public long getTotalNelems() {
     return delegate.getTotalNelems();
@@ -119,6 +181,11 @@ public class ZarrLayoutBB implements LayoutBB {
       return this.chunkNum < totalNChunks;
     }
 
+    @Override
+    public boolean allowsConcurrentReads() {
+      return store != null; // stores are thread safe, the RandomAccessDirectory is not
+    }
+
     public LayoutBBTiled.DataChunk next() {
       DataChunk chunk = new ZarrLayoutBB.DataChunk(this.currChunk, this.chunkNum, this.currOffset);
       incrementChunk();
@@ -126,6 +193,10 @@ public class ZarrLayoutBB implements LayoutBB {
     }
 
     private void incrementChunk() {
+      if (this.currChunk.length == 0) { // scalar, only one chunk
+        this.chunkNum++;
+        return;
+      }
       // increment index from inner dimension outward
       int i = this.currChunk.length - 1;
       while (this.currChunk[i] + 1 >= nChunks[i] && i > 0) {
@@ -133,7 +204,9 @@ public class ZarrLayoutBB implements LayoutBB {
         i--;
       }
       this.currChunk[i]++;
-      this.currOffset += initializedChunks.getOrDefault(this.chunkNum, (long) 0);
+      if (initializedChunks != null) {
+        this.currOffset += initializedChunks.getOrDefault(this.chunkNum, (long) 0);
+      }
       this.chunkNum = ZarrUtils.subscriptsToIndex(this.currChunk, nChunks);
     }
   }
@@ -143,9 +216,13 @@ public class ZarrLayoutBB implements LayoutBB {
     private int[] offset; // start indices of chunk in elements
     private long rafOffset; // start position of chunk in bytes
     private int chunkNum;
+    private int[] index; // chunk in subscript coords, only kept when reading from a store
 
     DataChunk(int[] index, int chunkNum, long rafOffset) {
       this.rafOffset = rafOffset;
+      if (store != null) {
+        this.index = index.clone();
+      }
       this.offset = new int[index.length];
       for (int i = 0; i < index.length; i++) {
         int j = F_order ? index.length - i - 1 : i;
@@ -159,8 +236,17 @@ public class ZarrLayoutBB implements LayoutBB {
     }
 
     public ByteBuffer getByteBuffer() throws IOException {
-      // read the data
-      byte[] data;
+      if (store != null) {
+        // missing chunks are cached as empty arrays, and read as fill values
+        String key = getStoreKey();
+        byte[] data = (chunkCache == null) ? readFromStore(key)
+            : chunkCache.get(store.getLocation() + "#" + getVersion(key), varName, this.offset,
+                () -> readFromStore(key));
+        ByteBuffer result = ByteBuffer.wrap(data);
+        result.order(byteOrder);
+        return result;
+      }
+
       // if chunk does not exist as file, return empty buffer
       long dataLength = initializedChunks.getOrDefault(chunkNum, (long) 0);
       if (dataLength == 0) {
@@ -169,20 +255,183 @@ public class ZarrLayoutBB implements LayoutBB {
         return result;
       }
 
-      data = new byte[(int) dataLength];
+      // cached chunks are shared, the returned buffer is only read from
+      byte[] data = (chunkCache == null) ? decode(dataLength)
+          : chunkCache.get(fileKey, varName, this.offset, () -> decode(dataLength));
+      ByteBuffer result = ByteBuffer.wrap(data);
+      result.order(byteOrder);
+      return result;
+    }
+
+    // key of the object holding the chunk, the shard if the array is sharded
+    private String getStoreKey() {
+      if (zarrayV3 != null) {
+        return keyPrefix + zarrayV3.getChunkKey((shardReader != null) ? shardReader.getShard(index) : index);
+      }
+      StringBuilder key = new StringBuilder(keyPrefix);
+      if (index.length == 0) {
+        key.append('0'); // scalar
+      }
+      for (int i = 0; i < index.length; i++) {
+        if (i > 0) {
+          key.append(separator);
+        }
+        key.append(index[i]);
+      }
+      return key.toString();
+    }
+
+    private byte[] readFromStore(String key) throws IOException {
+      byte[] data = (shardReader != null) ? shardReader.read(index, key) : store.get(key);
+      if (data == null) {
+        return new byte[0];
+      }
+      return (zarrayV3 != null) ? zarrayV3.getCodecs().decode(data, chunkSize, elemSize) : decode(data);
+    }
+
+    private byte[] decode(long dataLength) throws IOException {
+      // read the data
+      byte[] data = new byte[(int) dataLength];
       raf.seek(this.rafOffset);
       // raf.read(data, 0, (int)dataLength);
       raf.readFully(data);
+      return decode(data);
+    }
 
+    private byte[] decode(byte[] data) throws IOException {
       // apply compressor
-      data = compressor.decode(data);
+      data = compressor.decode(data, chunkBytes);
       // apply filters in reverse order
       for (int i = filters.size() - 1; i >= 0; i--) {
-        data = filters.get(i).decode(data);
+        data = filters.get(i).decode(data, chunkBytes);
       }
+      return data;
+    }
+  }
 
-      ByteBuffer result = ByteBuffer.wrap(data);
-      result.order(byteOrder);
+
+  /**
+   * Reads the inner chunks of the shards of a Zarr v3 array. When the first wanted inner chunk of a shard is read,
+   * the wanted inner chunks of the shard are grouped into runs that are next to each other in the shard,
+   * and each run is then read with one range request.
+   */
+  private class ShardReader {
+    // keep runs small enough that their requests can still be made in parallel
+    private static final int MAX_RUN_BYTES = 8 * 1024 * 1024;
+
+    private final ZarrSharding sharding = zarrayV3.getSharding();
+    private final Map<String, Map<Integer, Run>> runs = new ConcurrentHashMap<>(); // by shard key and inner chunk
+
+    /** Index of the shard holding an inner chunk. */
+    int[] getShard(int[] index) {
+      int[] perShard = sharding.getChunksPerShard();
+      int[] shard = new int[index.length];
+      for (int i = 0; i < index.length; i++) {
+        shard[i] = index[i] / perShard[i];
+      }
+      return shard;
+    }
+
+    /**
+     * Read an inner chunk.
+     *
+     * @param index index of the inner chunk in the array
+     * @param key key of the shard holding the inner chunk
+     * @return the encoded inner chunk, or null if it is empty
+     */
+    @Nullable
+    byte[] read(int[] index, String key) throws IOException {
+      int[] perShard = sharding.getChunksPerShard();
+      int[] shard = getShard(index);
+      int[] inner = new int[index.length];
+      for (int i = 0; i < index.length; i++) {
+        inner[i] = index[i] % perShard[i];
+      }
+      long[] shardIndex = sharding.getIndex(store, key, getVersion(key));
+      if (shardIndex == null) {
+        return null;
+      }
+      int n = ZarrUtils.subscriptsToIndex(inner, perShard);
+      long offset = shardIndex[2 * n];
+      int length = (int) shardIndex[2 * n + 1];
+      if (offset < 0) {
+        return null;
+      }
+      Run run = runs.computeIfAbsent(key, k -> makeRuns(shard, shardIndex)).get(n);
+      return (run != null) ? run.get(key, offset, length) : store.getRange(key, offset, length);
+    }
+
+    // group the wanted inner chunks of a shard into runs
+    private Map<Integer, Run> makeRuns(int[] shard, long[] shardIndex) {
+      int[] perShard = sharding.getChunksPerShard();
+      int rank = perShard.length;
+      List<Integer> wanted = new ArrayList<>();
+      int[] inner = new int[rank];
+      for (int n = 0; n < shardIndex.length / 2; n++) {
+        if (shardIndex[2 * n] >= 0 && intersectsWant(shard, inner)) {
+          wanted.add(n);
+        }
+        // next inner chunk, in C order
+        for (int d = rank - 1; d >= 0; d--) {
+          if (++inner[d] < perShard[d]) {
+            break;
+          }
+          inner[d] = 0;
+        }
+      }
+      wanted.sort(Comparator.comparingLong(n -> shardIndex[2 * n]));
+
+      Map<Integer, Run> result = new HashMap<>();
+      Run run = null;
+      for (int n : wanted) {
+        long offset = shardIndex[2 * n];
+        long length = shardIndex[2 * n + 1];
+        if (run == null || offset != run.offset + run.length || run.length + length > MAX_RUN_BYTES) {
+          run = new Run(offset);
+        }
+        run.length += length;
+        run.remaining++;
+        result.put(n, run);
+      }
+      return result;
+    }
+
+    private boolean intersectsWant(int[] shard, int[] inner) {
+      int[] perShard = sharding.getChunksPerShard();
+      for (int i = 0; i < inner.length; i++) {
+        long first = (long) (shard[i] * perShard[i] + inner[i]) * chunkSize[i];
+        Range range = want.getRange(i);
+        if (first > range.last() || first + chunkSize[i] <= range.first()) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  /** Inner chunks that are next to each other in a shard, read together when the first of them is needed. */
+  private class Run {
+    private final long offset;
+    private int length;
+    private int remaining; // number of inner chunks not yet taken
+    private byte[] data;
+
+    Run(long offset) {
+      this.offset = offset;
+    }
+
+    synchronized byte[] get(String key, long chunkOffset, int chunkLength) throws IOException {
+      if (data == null) {
+        data = store.getRange(key, offset, length);
+        if (data == null || data.length < length) {
+          throw new IOException("shard " + key + " is shorter than its index");
+        }
+      }
+      int start = (int) (chunkOffset - offset);
+      byte[] result = Arrays.copyOfRange(data, start, start + chunkLength);
+      if (--remaining == 0) {
+        data = null; // all taken
+      }
       return result;
     }
   }
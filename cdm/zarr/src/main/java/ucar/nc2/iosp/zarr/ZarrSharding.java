@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2021 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.nc2.iosp.zarr;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutionException;
+import javax.annotation.Nullable;
+import ucar.nc2.filter.Filter;
+
+/**
+ * The sharding_indexed codec of a Zarr v3 array. Each chunk of the array (a shard) is stored as one object holding
+ * a grid of inner chunks, and an index of the offset and size of each inner chunk. Inner chunks are read with
+ * range requests, so only the index and the wanted inner chunks of a shard are fetched.
+ * <p/>
+ * Shard indexes are kept in a small cache, so that a shard is not asked for its index on every read.
+ */
+public class ZarrSharding {
+
+  private static final int INDEX_CACHE_SIZE = 1000;
+  private static final long EMPTY = -1; // 2^64 - 1 as an unsigned long, marks an empty inner chunk
+
+  private final int[] innerChunks; // shape of the inner chunks
+  private final int[] chunksPerShard; // number of inner chunks along each dimension of a shard
+  private final int nInner; // number of inner chunks in a shard
+  private final ZarrCodecs codecs; // codecs of the inner chunks
+  private final ZarrCodecs indexCodecs;
+  private final boolean indexAtEnd;
+  private final int indexBytes; // size of the encoded index
+
+  private final Cache<String, long[]> indexCache =
+      CacheBuilder.newBuilder().maximumSize(INDEX_CACHE_SIZE).build();
+
+  private ZarrSharding(int[] shardShape, int[] innerChunks, ZarrCodecs codecs, ZarrCodecs indexCodecs,
+      boolean indexAtEnd) throws ZarrFormatException {
+    this.innerChunks = innerChunks;
+    this.chunksPerShard = new int[shardShape.length];
+    long n = 1;
+    for (int i = 0; i < shardShape.length; i++) {
+      if (innerChunks[i] <= 0 || shardShape[i] % innerChunks[i] != 0) {
+        throw new ZarrFormatException(ZarrKeys.CHUNK_SHAPE, "inner chunks must divide the shard shape");
+      }
+      chunksPerShard[i] = shardShape[i] / innerChunks[i];
+      n *= chunksPerShard[i];
+    }
+    // the index must have a fixed size, so only checksums may follow the bytes codec
+    int overhead = 0;
+    for (Filter filter : indexCodecs.getFilters()) {
+      if (!(filter instanceof ZarrCodecs.Crc32c)) {
+        throw new ZarrFormatException(ZarrKeys.INDEX_CODECS, filter.getName());
+      }
+      overhead += ZarrCodecs.Crc32c.nbytes;
+    }
+    if (16 * n + overhead > Integer.MAX_VALUE) {
+      throw new ZarrFormatException(ZarrKeys.CHUNK_SHAPE, "too many inner chunks in a shard");
+    }
+    this.nInner = (int) n;
+    this.codecs = codecs;
+    this.indexCodecs = indexCodecs;
+    this.indexAtEnd = indexAtEnd;
+    this.indexBytes = 16 * nInner + overhead;
+  }
+
+  /** Shape of the inner chunks. */
+  public int[] getInnerChunks() {
+    return innerChunks;
+  }
+
+  /** Number of inner chunks along each dimension of a shard. */
+  public int[] getChunksPerShard() {
+    return chunksPerShard;
+  }
+
+  /** Codecs of the inner chunks. */
+  public ZarrCodecs getCodecs() {
+    return codecs;
+  }
+
+  /**
+   * Get the index of a shard.
+   *
+   * @param store the store
+   * @param key key of the shard
+   * @param version last modified time of the shard, so that the index of a rewritten shard is read again
+   * @return offset and size of each inner chunk, in C order of the inner chunks, offset -1 for an empty inner
+   *         chunk; or null if the shard does not exist
+   */
+  @Nullable
+  long[] getIndex(ZarrStore store, String key, long version) throws IOException {
+    try {
+      long[] index = indexCache.get(key + "#" + version, () -> readIndex(store, key));
+      return index.length == 0 ? null : index;
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      throw new IOException(cause);
+    }
+  }
+
+  // a missing shard is cached as an empty index
+  private long[] readIndex(ZarrStore store, String key) throws IOException {
+    long offset = 0;
+    if (indexAtEnd) {
+      long size = store.getSize(key);
+      if (size < 0) {
+        return new long[0];
+      }
+      offset = size - indexBytes;
+      if (offset < 0) {
+        throw new IOException("shard " + key + " is smaller than its index");
+      }
+    }
+    byte[] encoded = store.getRange(key, offset, indexBytes);
+    if (encoded == null) {
+      return new long[0];
+    }
+    if (encoded.length != indexBytes) {
+      throw new IOException("shard " + key + " is smaller than its index");
+    }
+    byte[] decoded = indexCodecs.decode(encoded, new int[] {nInner, 2}, 8);
+    ByteBuffer bb = ByteBuffer.wrap(decoded).order(indexCodecs.getByteOrder());
+    long[] index = new long[2 * nInner];
+    for (int i = 0; i < index.length; i++) {
+      index[i] = bb.getLong();
+    }
+    for (int i = 0; i < nInner; i++) {
+      if (index[2 * i] == EMPTY && index[2 * i + 1] == EMPTY) {
+        continue;
+      }
+      if (index[2 * i] < 0 || index[2 * i + 1] < 0 || index[2 * i + 1] > Integer.MAX_VALUE) {
+        throw new IOException("shard " + key + " has an invalid index");
+      }
+    }
+    return index;
+  }
+
+  /**
+   * Make the sharding codec from its configuration.
+   *
+   * @param config configuration of the sharding_indexed codec
+   * @param shardShape shape of the chunks of the array, i.e. of the shards
+   * @param elemSize size of an element in bytes
+   */
+  static ZarrSharding parse(JsonNode config, int[] shardShape, int elemSize) throws ZarrFormatException {
+    int[] inner = ZArrayV3.parseShape(config.path(ZarrKeys.CHUNK_SHAPE), ZarrKeys.CHUNK_SHAPE);
+    if (inner.length != shardShape.length) {
+      throw new ZarrFormatException(ZarrKeys.CHUNK_SHAPE, config.path(ZarrKeys.CHUNK_SHAPE).toString());
+    }
+    ZarrCodecs codecs = ZarrCodecs.parse(config.path(ZarrKeys.CODECS), inner.length, elemSize);
+
+    JsonNode indexCodecsNode = config.path(ZarrKeys.INDEX_CODECS);
+    ZarrCodecs indexCodecs = indexCodecsNode.isMissingNode() ? ZarrCodecs.parse(ZArrayV3.DEFAULT_INDEX_CODECS, 2, 8)
+        : ZarrCodecs.parse(indexCodecsNode, 2, 8);
+
+    String location = config.path(ZarrKeys.INDEX_LOCATION).asText("end");
+    if (!location.equals("end") && !location.equals("start")) {
+      throw new ZarrFormatException(ZarrKeys.INDEX_LOCATION, location);
+    }
+    return new ZarrSharding(shardShape, inner, codecs, indexCodecs, location.equals("end"));
+  }
+}
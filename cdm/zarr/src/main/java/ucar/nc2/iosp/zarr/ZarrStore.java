@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2021 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.nc2.iosp.zarr;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import javax.annotation.Nullable;
+import thredds.inventory.MFile;
+import thredds.inventory.MFiles;
+
+/**
+ * Key-value access to the objects of a Zarr store, so that metadata and chunks can be found from their keys without
+ * listing the whole store. Keys are relative to the root of the store and use '/' as the delimiter,
+ * e.g. "group/var/.zarray" or "group/var/0.0".
+ * <p/>
+ * Implementations must be safe to use from multiple threads.
+ */
+public interface ZarrStore extends Closeable {
+
+  /** Location of the root of the store. */
+  String getLocation();
+
+  /**
+   * Get an object.
+   *
+   * @param key key of the object
+   * @return contents of the object, or null if it does not exist
+   */
+  @Nullable
+  byte[] get(String key) throws IOException;
+
+  /**
+   * Get part of an object.
+   *
+   * @param key key of the object
+   * @param offset start of the range, in bytes
+   * @param length size of the range, in bytes
+   * @return contents of the range, shorter if the object ends first, or null if the object does not exist
+   */
+  @Nullable
+  byte[] getRange(String key, long offset, int length) throws IOException;
+
+  /**
+   * Size of an object, e.g. to find an index at its end.
+   *
+   * @param key key of the object
+   * @return size in bytes, or -1 if the object does not exist
+   */
+  default long getSize(String key) throws IOException {
+    byte[] contents = get(key);
+    return contents == null ? -1 : contents.length;
+  }
+
+  /** Whether an object exists. */
+  boolean exists(String key) throws IOException;
+
+  /**
+   * List the names directly under a prefix, like the files and subdirectories of a directory. Only this level is
+   * listed, so the chunks of nested variables are never visited.
+   *
+   * @param prefix key prefix, "" for the root, else ending with '/'
+   * @return names relative to the prefix, without a trailing '/'
+   */
+  List<String> list(String prefix) throws IOException;
+
+  /**
+   * Last modified time (in ms) of the metadata of the store, or -1 if unknown. Chunks may be rewritten without
+   * changing it, see getLastModified(String).
+   */
+  long getLastModified();
+
+  /**
+   * Last modified time of an object, used as its version when its decoded contents are cached.
+   *
+   * @param key key of the object
+   * @return last modified time in ms, or -1 if the object does not exist
+   */
+  long getLastModified(String key) throws IOException;
+
+  /**
+   * Open the store at a location: a local directory, a zip file, or anything else with an MFile provider,
+   * e.g. an object store such as S3 ("cdms3:") when cdm-s3 is on the classpath.
+   *
+   * @param location location of the root of the store
+   * @return the store
+   */
+  static ZarrStore open(String location) throws IOException {
+    File file = new File(location);
+    if (file.isDirectory()) {
+      return new DirectoryZarrStore(location);
+    }
+    if (location.endsWith(ZipZarrStore.ext) && file.isFile()) {
+      return new ZipZarrStore(location);
+    }
+    MFile root = MFiles.create(location);
+    return new MFileZarrStore(root);
+  }
+}
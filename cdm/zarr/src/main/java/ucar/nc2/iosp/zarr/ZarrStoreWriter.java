@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2021 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.nc2.iosp.zarr;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Write access to the objects of a Zarr store, using the same keys as {@link ZarrStore}.
+ * <p/>
+ * Implementations must allow different keys to be put from multiple threads at once.
+ */
+public interface ZarrStoreWriter extends Closeable {
+
+  /** Location of the root of the store. */
+  String getLocation();
+
+  /**
+   * Create or replace an object.
+   *
+   * @param key key of the object
+   * @param value contents of the object
+   */
+  void put(String key, byte[] value) throws IOException;
+
+  /**
+   * Create a new store at a location: a zip file if the location ends with ".zip", else a local directory.
+   *
+   * @param location location of the root of the store
+   * @return the store
+   */
+  static ZarrStoreWriter create(String location) throws IOException {
+    if (location.endsWith(ZipZarrStore.ext)) {
+      return new ZipZarrStoreWriter(location);
+    }
+    return DirectoryZarrStore.create(location);
+  }
+}
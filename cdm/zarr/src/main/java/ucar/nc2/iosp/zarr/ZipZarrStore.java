@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2021 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.nc2.iosp.zarr;
+
+import com.google.common.io.ByteStreams;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import javax.annotation.Nullable;
+
+/**
+ * A ZarrStore in a zip file, where each key is the name of a zip entry.
+ * Only the central directory at the end of the zip file is read when the store is opened.
+ */
+public class ZipZarrStore implements ZarrStore {
+  static final String ext = ".zip";
+
+  private final ZipFile zipFile;
+  private final String location;
+
+  public ZipZarrStore(String location) throws IOException {
+    this.zipFile = new ZipFile(location);
+    this.location = location;
+  }
+
+  @Override
+  public String getLocation() {
+    return location;
+  }
+
+  @Nullable
+  private ZipEntry getEntry(String key) {
+    ZipEntry entry = zipFile.getEntry(key);
+    return entry == null || entry.isDirectory() ? null : entry;
+  }
+
+  @Nullable
+  @Override
+  public byte[] get(String key) throws IOException {
+    ZipEntry entry = getEntry(key);
+    if (entry == null) {
+      return null;
+    }
+    try (InputStream in = zipFile.getInputStream(entry)) {
+      return ByteStreams.toByteArray(in);
+    }
+  }
+
+  @Nullable
+  @Override
+  public byte[] getRange(String key, long offset, int length) throws IOException {
+    ZipEntry entry = getEntry(key);
+    if (entry == null) {
+      return null;
+    }
+    // entries may be compressed, so the range can only be found by reading through the entry
+    try (InputStream in = zipFile.getInputStream(entry)) {
+      ByteStreams.skipFully(in, offset);
+      return ByteStreams.toByteArray(ByteStreams.limit(in, length));
+    } catch (EOFException e) {
+      return new byte[0];
+    }
+  }
+
+  @Override
+  public long getSize(String key) throws IOException {
+    ZipEntry entry = getEntry(key);
+    if (entry == null) {
+      return -1;
+    }
+    // the size is in the central directory, unless the entry was streamed
+    return entry.getSize() >= 0 ? entry.getSize() : ZarrStore.super.getSize(key);
+  }
+
+  @Override
+  public boolean exists(String key) {
+    return getEntry(key) != null;
+  }
+
+  @Override
+  public List<String> list(String prefix) {
+    // entry names are held in memory, from the central directory
+    TreeSet<String> names = new TreeSet<>();
+    Enumeration<? extends ZipEntry> entries = zipFile.entries();
+    while (entries.hasMoreElements()) {
+      String name = entries.nextElement().getName();
+      if (name.length() > prefix.length() && name.startsWith(prefix)) {
+        String rest = name.substring(prefix.length());
+        int slash = rest.indexOf('/');
+        names.add(slash < 0 ? rest : rest.substring(0, slash));
+      }
+    }
+    return new ArrayList<>(names);
+  }
+
+  @Override
+  public long getLastModified() {
+    return new File(location).lastModified();
+  }
+
+  @Override
+  public long getLastModified(String key) {
+    // entries are only rewritten by rewriting the zip file
+    return getEntry(key) == null ? -1 : getLastModified();
+  }
+
+  @Override
+  public void close() throws IOException {
+    zipFile.close();
+  }
+
+  @Override
+  public String toString() {
+    return "ZipZarrStore{" + location + '}';
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2021 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.nc2.iosp.zarr;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes a Zarr store to a new zip file, one entry per key. A zip file is written sequentially, so puts are
+ * serialized, and each key can only be put once.
+ * <p/>
+ * Entries are stored without compression, as zarr-python does: chunks are already compressed, and stored entries
+ * can be read from without inflating everything before them.
+ */
+public class ZipZarrStoreWriter implements ZarrStoreWriter {
+
+  private final String location;
+  private final ZipOutputStream zout;
+
+  public ZipZarrStoreWriter(String location) throws IOException {
+    this.location = location;
+    this.zout = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(location)));
+  }
+
+  @Override
+  public String getLocation() {
+    return location;
+  }
+
+  @Override
+  public synchronized void put(String key, byte[] value) throws IOException {
+    // stored entries need their size and crc up front
+    CRC32 crc = new CRC32();
+    crc.update(value);
+    ZipEntry entry = new ZipEntry(key);
+    entry.setMethod(ZipEntry.STORED);
+    entry.setSize(value.length);
+    entry.setCompressedSize(value.length);
+    entry.setCrc(crc.getValue());
+    zout.putNextEntry(entry); // throws ZipException if the key was already put
+    zout.write(value);
+    zout.closeEntry();
+  }
+
+  @Override
+  public synchronized void close() throws IOException {
+    zout.close();
+  }
+
+  @Override
+  public String toString() {
+    return "ZipZarrStoreWriter{" + location + '}';
+  }
+}
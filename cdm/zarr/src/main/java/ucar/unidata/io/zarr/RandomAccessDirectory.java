@@ -20,12 +20,15 @@ import java.util.*;
  * This class allows a directory structure to be read in memory as a single file.
  * RandomAccessDirectory implemented a tree structure with files as leaves.
  * It is read-only - writes should use the leaf RandomAccessFile write methods
+ * <p/>
+ * The directory is listed the first time its contents are needed, not when it is opened, so a ZarrStore opened on
+ * the same location does not pay for a listing it doesn't use.
  */
 public class RandomAccessDirectory extends ucar.unidata.io.RandomAccessFile implements FileCacheable, Closeable {
 
   private static final Logger logger = LoggerFactory.getLogger(RandomAccessDirectory.class);
 
-  protected List<RandomAccessDirectoryItem> children; // all files within the store
+  protected List<RandomAccessDirectoryItem> children; // all files within the store, null until listed
 
   private RandomAccessFile currentFile; // file currently containing the file pointer
 
@@ -47,22 +50,34 @@ public class RandomAccessDirectory extends ucar.unidata.io.RandomAccessFile impl
     this.bufferSize = bufferSize;
     this.location = location.replace("\\", DELIMITER); // standardize path
     this.readonly = true; // RandomAccessDirectory does not support writes
+  }
 
+  /**
+   * List the files within the store, the first time it is called
+   *
+   * @return all files within the store
+   */
+  protected synchronized List<RandomAccessDirectoryItem> getChildren() {
+    if (this.children != null) {
+      return this.children;
+    }
     // build children list
-    this.children = new ArrayList<>();
+    List<RandomAccessDirectoryItem> items = new ArrayList<>();
     MController controller = MControllers.create(location);
     CollectionConfig cc = new CollectionConfig("children", location, false, null, null);
-    List<MFile> files = sortIterator(controller.getInventoryAll(cc, false)); // standardize order
-    if (files == null) {
-      return;
-    }
-    long index = 0; // track file position in directory
-    for (MFile mfile : files) {
-      long length = mfile.getLength();
-      this.children.add(new VirtualRandomAccessFile(mfile.getPath().replace("\\", DELIMITER), index, length,
-          mfile.getLastModified(), this.bufferSize));
-      index += length;
+    Iterator<MFile> inventory = controller.getInventoryAll(cc, false);
+    if (inventory != null) {
+      List<MFile> files = sortIterator(inventory); // standardize order
+      long index = 0; // track file position in directory
+      for (MFile mfile : files) {
+        long length = mfile.getLength();
+        items.add(new VirtualRandomAccessFile(mfile.getPath().replace("\\", DELIMITER), index, length,
+            mfile.getLastModified(), this.bufferSize));
+        index += length;
+      }
     }
+    this.children = items;
+    return items;
   }
 
   /**
@@ -88,7 +103,7 @@ public class RandomAccessDirectory extends ucar.unidata.io.RandomAccessFile impl
    */
   public RandomAccessDirectoryItem getFileAtPos(int pos) {
     long tempPos = 0;
-    for (RandomAccessDirectoryItem item : this.children) {
+    for (RandomAccessDirectoryItem item : getChildren()) {
       long rafLength = item.length();
       if (tempPos + rafLength > pos) {
         return item;
@@ -110,7 +125,7 @@ public class RandomAccessDirectory extends ucar.unidata.io.RandomAccessFile impl
     path = path.replace("\\", DELIMITER);
 
     List<RandomAccessDirectoryItem> files = new ArrayList<>();
-    for (RandomAccessDirectoryItem item : this.children) {
+    for (RandomAccessDirectoryItem item : getChildren()) {
       String location = item.getLocation();
       if (location.contains(path)) {
         files.add(item);
@@ -128,7 +143,7 @@ public class RandomAccessDirectory extends ucar.unidata.io.RandomAccessFile impl
    */
   protected void setFileToPos(long pos) throws IOException {
     long tempPos = 0;
-    for (RandomAccessDirectoryItem item : this.children) {
+    for (RandomAccessDirectoryItem item : getChildren()) {
       long rafLength = item.length();
       if (tempPos + rafLength > pos) {
         this.currentFile = item.getOrOpenRaf();
@@ -144,6 +159,9 @@ public class RandomAccessDirectory extends ucar.unidata.io.RandomAccessFile impl
 
   @Override
   public synchronized void close() throws IOException {
+    if (this.children == null) {
+      return; // never listed, so nothing was opened
+    }
     for (RandomAccessDirectoryItem item : this.children) {
       RandomAccessFile raf = item.getRaf();
       if (raf != null) {
@@ -154,7 +172,7 @@ public class RandomAccessDirectory extends ucar.unidata.io.RandomAccessFile impl
 
   @Override
   public long getLastModified() {
-    return children.stream().mapToLong(RandomAccessDirectoryItem::getLastModified).max().orElse(-1);
+    return getChildren().stream().mapToLong(RandomAccessDirectoryItem::getLastModified).max().orElse(-1);
   }
 
   @Override
@@ -164,7 +182,7 @@ public class RandomAccessDirectory extends ucar.unidata.io.RandomAccessFile impl
 
   @Override
   public long length() {
-    return children.stream().mapToLong(RandomAccessDirectoryItem::length).sum();
+    return getChildren().stream().mapToLong(RandomAccessDirectoryItem::length).sum();
   }
 
   @Override
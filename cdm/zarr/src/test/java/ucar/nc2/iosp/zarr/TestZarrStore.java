@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2021 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.nc2.iosp.zarr;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.nc2.Group;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.Variable;
+import ucar.nc2.iosp.ChunkCache;
+
+/**
+ * Test the ZarrStore implementations, and that metadata and chunks are found from their keys
+ */
+public class TestZarrStore {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private static final String DIRECTORY_STORE_URI = ZarrTestsCommon.LOCAL_TEST_DATA_PATH + "zarr_test_data.zarr";
+  private static final String ZIP_STORE_URI = ZarrTestsCommon.LOCAL_TEST_DATA_PATH + "zarr_test_data.zip";
+
+  private static final String CONSOLIDATED = "{\"metadata\": {\".zgroup\": {\"zarr_format\": 2}, "
+      + "\"var/.zarray\": {\"chunks\": [2], \"compressor\": null, \"dtype\": \"<i4\", \"fill_value\": 7, "
+      + "\"filters\": null, \"order\": \"C\", \"shape\": [4], \"zarr_format\": 2}, "
+      + "\"var/.zattrs\": {\"_ARRAY_DIMENSIONS\": [\"x\"], \"units\": \"m\"}}, \"zarr_consolidated_format\": 1}";
+
+  /** Records the keys that are asked for */
+  private static class CountingStore implements ZarrStore {
+    final ZarrStore delegate;
+    final List<String> keys = new ArrayList<>();
+    int lists;
+
+    CountingStore(ZarrStore delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public String getLocation() {
+      return delegate.getLocation();
+    }
+
+    @Override
+    public synchronized byte[] get(String key) throws IOException {
+      keys.add(key);
+      return delegate.get(key);
+    }
+
+    @Override
+    public synchronized byte[] getRange(String key, long offset, int length) throws IOException {
+      keys.add(key);
+      return delegate.getRange(key, offset, length);
+    }
+
+    @Override
+    public synchronized boolean exists(String key) throws IOException {
+      keys.add(key);
+      return delegate.exists(key);
+    }
+
+    @Override
+    public synchronized List<String> list(String prefix) throws IOException {
+      lists++;
+      return delegate.list(prefix);
+    }
+
+    @Override
+    public long getLastModified() {
+      return delegate.getLastModified();
+    }
+
+    @Override
+    public long getLastModified(String key) throws IOException {
+      return delegate.getLastModified(key);
+    }
+
+    @Override
+    public void close() throws IOException {
+      delegate.close();
+    }
+  }
+
+  @Test
+  public void testOpen() throws IOException {
+    try (ZarrStore store = ZarrStore.open(DIRECTORY_STORE_URI)) {
+      assertThat(store).isInstanceOf(DirectoryZarrStore.class);
+    }
+    try (ZarrStore store = ZarrStore.open(ZIP_STORE_URI)) {
+      assertThat(store).isInstanceOf(ZipZarrStore.class);
+    }
+  }
+
+  @Test
+  public void testKeys() throws IOException {
+    for (String uri : new String[] {DIRECTORY_STORE_URI, ZIP_STORE_URI}) {
+      try (ZarrStore store = ZarrStore.open(uri)) {
+        assertThat(store.list("")).containsExactly(".zgroup", "group_with_attrs", "group_with_dims");
+        assertThat(store.list("group_with_attrs/")).containsAtLeast(".zattrs", ".zgroup", "F_order_array", "nested");
+        assertThat(store.list("group_with_attrs/nested/")).containsExactly(".zarray", "0", "1");
+        assertThat(store.list("no_such_group/")).isEmpty();
+
+        assertThat(store.exists("group_with_attrs/F_order_array/.zarray")).isTrue();
+        assertThat(store.exists("group_with_attrs/F_order_array")).isFalse();
+        assertThat(store.exists("group_with_attrs/uninitialized/0.0")).isFalse();
+        assertThat(store.get("group_with_attrs/uninitialized/0.0")).isNull();
+
+        byte[] zgroup = store.get(ZarrKeys.ZGROUP);
+        assertThat(new String(zgroup, StandardCharsets.UTF_8)).contains("zarr_format");
+        assertThat(store.getRange(ZarrKeys.ZGROUP, 2, 5)).isEqualTo(Arrays.copyOfRange(zgroup, 2, 7));
+        assertThat(store.getRange(ZarrKeys.ZGROUP, zgroup.length - 3, 100))
+            .isEqualTo(Arrays.copyOfRange(zgroup, zgroup.length - 3, zgroup.length));
+        assertThat(store.getRange("no_such_key", 0, 10)).isNull();
+      }
+    }
+  }
+
+  @Test
+  public void testChunksAreNotListed() throws IOException {
+    CountingStore store = new CountingStore(ZarrStore.open(DIRECTORY_STORE_URI));
+    Group.Builder rootGroup = Group.builder();
+    new ZarrHeader(store, rootGroup).read();
+
+    assertThat(rootGroup.findGroupNested("group_with_dims").get().findVariableLocal("var4D").isPresent()).isTrue();
+    // only the groups are listed, and only metadata is read
+    assertThat(store.lists).isEqualTo(3);
+    for (String key : store.keys) {
+      assertThat(key).matches(".*/?\\.z(group|array|attrs|metadata)");
+    }
+  }
+
+  private File writeConsolidated() throws IOException {
+    File dir = tempFolder.newFolder("consolidated.zarr");
+    Files.write(new File(dir, ZarrKeys.ZMETADATA).toPath(), CONSOLIDATED.getBytes(StandardCharsets.UTF_8));
+    File var = new File(dir, "var");
+    assertThat(var.mkdir()).isTrue();
+    writeChunk(new File(var, "0"), 1, 2); // chunk 1 is missing
+    return dir;
+  }
+
+  private static void writeChunk(File file, int... values) throws IOException {
+    ByteBuffer chunk = ByteBuffer.allocate(4 * values.length).order(ByteOrder.LITTLE_ENDIAN);
+    for (int value : values) {
+      chunk.putInt(value);
+    }
+    Files.write(file.toPath(), chunk.array());
+  }
+
+  @Test
+  public void testConsolidatedMetadata() throws IOException {
+    File dir = writeConsolidated();
+
+    CountingStore store = new CountingStore(ZarrStore.open(dir.getPath()));
+    Group.Builder rootGroup = Group.builder();
+    new ZarrHeader(store, rootGroup).read();
+    assertThat(store.keys).containsExactly(ZarrKeys.ZMETADATA);
+    assertThat(store.lists).isEqualTo(0);
+
+    try (NetcdfFile ncfile = NetcdfFiles.open(dir.getPath())) {
+      Variable v = ncfile.findVariable("var");
+      assertThat((Object) v).isNotNull();
+      assertThat(v.getShape()).isEqualTo(new int[] {4});
+      assertThat(ncfile.findDimension("x")).isNotNull();
+      assertThat(v.findAttribute("units").getStringValue()).isEqualTo("m");
+      Array data = v.read();
+      assertThat(data.get1DJavaArray(DataType.INT)).isEqualTo(new int[] {1, 2, 7, 7});
+    }
+  }
+
+  @Test
+  public void testRewrittenChunkIsNotCached() throws IOException {
+    File dir = writeConsolidated();
+    File chunk0 = new File(dir, "var/0");
+    File chunk1 = new File(dir, "var/1");
+    ChunkCache.setGlobalCache(new ChunkCache(1000));
+    try {
+      long lastModified;
+      try (NetcdfFile ncfile = NetcdfFiles.open(dir.getPath())) {
+        assertThat(ncfile.findVariable("var").read().get1DJavaArray(DataType.INT)).isEqualTo(new int[] {1, 2, 7, 7});
+        lastModified = ncfile.getLastModified();
+      }
+
+      // rewrite a chunk in place, and write the missing one; the metadata is not changed
+      writeChunk(chunk0, 3, 4);
+      Files.setLastModifiedTime(chunk0.toPath(), FileTime.fromMillis(chunk0.lastModified() + 2000));
+      writeChunk(chunk1, 5, 6);
+      try (NetcdfFile ncfile = NetcdfFiles.open(dir.getPath())) {
+        assertThat(ncfile.getLastModified()).isEqualTo(lastModified);
+        assertThat(ncfile.findVariable("var").read().get1DJavaArray(DataType.INT)).isEqualTo(new int[] {3, 4, 5, 6});
+      }
+    } finally {
+      ChunkCache.setGlobalCache(null);
+    }
+  }
+}
@@ -0,0 +1,250 @@
+/*
+ * Copyright (c) 2021 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.nc2.iosp.zarr;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.ma2.InvalidRangeException;
+import ucar.ma2.Section;
+import ucar.nc2.Group;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.Variable;
+import ucar.nc2.iosp.IospHelper;
+
+/**
+ * Test reading Zarr v3 stores, with their codecs and sharding
+ */
+public class TestZarrV3 {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private static final String ROOT =
+      "{\"zarr_format\": 3, \"node_type\": \"group\", \"attributes\": {\"title\": \"v3\"}}";
+
+  // 5 x 6, in 2 x 4 chunks that are transposed and gzipped; chunk c/2/1 is missing
+  private static final String PLAIN = "{\"zarr_format\": 3, \"node_type\": \"array\", \"shape\": [5, 6], "
+      + "\"data_type\": \"int16\", "
+      + "\"chunk_grid\": {\"name\": \"regular\", \"configuration\": {\"chunk_shape\": [2, 4]}}, "
+      + "\"chunk_key_encoding\": {\"name\": \"default\", \"configuration\": {\"separator\": \"/\"}}, "
+      + "\"fill_value\": 7, "
+      + "\"codecs\": [{\"name\": \"transpose\", \"configuration\": {\"order\": [1, 0]}}, "
+      + "{\"name\": \"bytes\", \"configuration\": {\"endian\": \"big\"}}, "
+      + "{\"name\": \"gzip\", \"configuration\": {\"level\": 1}}], "
+      + "\"dimension_names\": [\"y\", \"x\"], \"attributes\": {\"units\": \"m\"}}";
+
+  // 8 x 8 in 4 x 8 shards of 2 x 2 inner chunks; the second shard is missing, and one inner chunk is empty
+  private static final String SHARDED = "{\"zarr_format\": 3, \"node_type\": \"array\", \"shape\": [8, 8], "
+      + "\"data_type\": \"float32\", "
+      + "\"chunk_grid\": {\"name\": \"regular\", \"configuration\": {\"chunk_shape\": [4, 8]}}, "
+      + "\"chunk_key_encoding\": {\"name\": \"v2\", \"configuration\": {\"separator\": \".\"}}, "
+      + "\"fill_value\": \"NaN\", "
+      + "\"codecs\": [{\"name\": \"sharding_indexed\", \"configuration\": {\"chunk_shape\": [2, 2], "
+      + "\"codecs\": [{\"name\": \"bytes\", \"configuration\": {\"endian\": \"little\"}}, {\"name\": \"crc32c\"}], "
+      + "\"index_codecs\": [{\"name\": \"bytes\", \"configuration\": {\"endian\": \"little\"}}, "
+      + "{\"name\": \"crc32c\"}], "
+      + "\"index_location\": \"end\"}}], \"dimension_names\": [\"row\", \"col\"]}";
+
+  private static final int EMPTY_INNER = 5; // inner chunk [1, 1] of the shard
+
+  /** Counts the range requests */
+  private static class CountingStore extends DirectoryZarrStore {
+    final List<String> ranges = new ArrayList<>();
+
+    CountingStore(String location) throws IOException {
+      super(location);
+    }
+
+    @Override
+    public synchronized byte[] getRange(String key, long offset, int length) throws IOException {
+      ranges.add(key + '@' + offset + '+' + length);
+      return super.getRange(key, offset, length);
+    }
+  }
+
+  private static float sharded(int row, int col) {
+    return row * 10 + col;
+  }
+
+  private static boolean isFill(int row, int col) {
+    return row >= 4 || (row / 2 == 1 && col / 2 == 1); // missing shard, or the empty inner chunk
+  }
+
+  private static void write(File file, String contents) throws IOException {
+    write(file, contents.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static void write(File file, byte[] contents) throws IOException {
+    file.getParentFile().mkdirs();
+    Files.write(file.toPath(), contents);
+  }
+
+  private File makeStore() throws IOException {
+    File dir = tempFolder.newFolder("test.zarr");
+    write(new File(dir, ZarrKeys.ZARR_JSON), ROOT);
+
+    // plain: chunks of [y][x] stored as [x][y], big endian
+    write(new File(dir, "plain/zarr.json"), PLAIN);
+    ZarrCodecs.Gzip gzip = new ZarrCodecs.Gzip(1);
+    for (int cy = 0; cy < 3; cy++) {
+      for (int cx = 0; cx < 2; cx++) {
+        if (cy == 2 && cx == 1) {
+          continue;
+        }
+        ByteBuffer bb = ByteBuffer.allocate(2 * 2 * 4).order(ByteOrder.BIG_ENDIAN);
+        for (int x = 0; x < 4; x++) {
+          for (int y = 0; y < 2; y++) {
+            bb.putShort((short) ((cy * 2 + y) * 10 + cx * 4 + x));
+          }
+        }
+        write(new File(dir, "plain/c/" + cy + "/" + cx), gzip.encode(bb.array()));
+      }
+    }
+
+    // sharded: one shard, whose inner chunks are stored in reverse order
+    write(new File(dir, "sharded/zarr.json"), SHARDED);
+    ZarrCodecs.Crc32c crc = new ZarrCodecs.Crc32c();
+    ByteArrayOutputStream shard = new ByteArrayOutputStream();
+    ByteBuffer index = ByteBuffer.allocate(8 * 16).order(ByteOrder.LITTLE_ENDIAN);
+    long[] offsets = new long[8];
+    long[] sizes = new long[8];
+    for (int n = 7; n >= 0; n--) {
+      if (n == EMPTY_INNER) {
+        offsets[n] = -1;
+        sizes[n] = -1;
+        continue;
+      }
+      int r0 = (n / 4) * 2;
+      int c0 = (n % 4) * 2;
+      ByteBuffer bb = ByteBuffer.allocate(4 * 4).order(ByteOrder.LITTLE_ENDIAN);
+      for (int r = r0; r < r0 + 2; r++) {
+        for (int c = c0; c < c0 + 2; c++) {
+          bb.putFloat(sharded(r, c));
+        }
+      }
+      byte[] encoded = crc.encode(bb.array());
+      offsets[n] = shard.size();
+      sizes[n] = encoded.length;
+      shard.write(encoded);
+    }
+    for (int n = 0; n < 8; n++) {
+      index.putLong(offsets[n]).putLong(sizes[n]);
+    }
+    shard.write(crc.encode(index.array()));
+    write(new File(dir, "sharded/0.0"), shard.toByteArray());
+    return dir;
+  }
+
+  @Test
+  public void testRead() throws IOException, InvalidRangeException {
+    File dir = makeStore();
+    try (NetcdfFile ncfile = NetcdfFiles.open(dir.getPath())) {
+      assertThat(ncfile.getRootGroup().findAttributeString("title", null)).isEqualTo("v3");
+
+      Variable plain = ncfile.findVariable("plain");
+      assertThat((Object) plain).isNotNull();
+      assertThat(plain.getDataType()).isEqualTo(DataType.SHORT);
+      assertThat(ncfile.findDimension("y").getLength()).isEqualTo(5);
+      assertThat(plain.findAttributeString("units", null)).isEqualTo("m");
+      assertThat(plain.findAttributeString("_Compressor", null)).isEqualTo("gzip");
+      Array data = plain.read();
+      int count = 0;
+      for (int y = 0; y < 5; y++) {
+        for (int x = 0; x < 6; x++) {
+          int expected = (y == 4 && x >= 4) ? 7 : y * 10 + x;
+          assertThat(data.getShort(count++)).isEqualTo((short) expected);
+        }
+      }
+
+      Variable sharded = ncfile.findVariable("sharded");
+      assertThat((Object) sharded).isNotNull();
+      assertThat(sharded.getShape()).isEqualTo(new int[] {8, 8});
+      data = sharded.read();
+      count = 0;
+      for (int row = 0; row < 8; row++) {
+        for (int col = 0; col < 8; col++) {
+          float value = data.getFloat(count++);
+          if (isFill(row, col)) {
+            assertThat(value).isNaN();
+          } else {
+            assertThat(value).isEqualTo(sharded(row, col));
+          }
+        }
+      }
+
+      data = sharded.read("1:2,3:6");
+      assertThat(data.getFloat(0)).isEqualTo(sharded(1, 3));
+      assertThat(data.getFloat(7)).isEqualTo(sharded(2, 6));
+      assertThat(data.getFloat(4)).isNaN(); // [2, 3] is in the empty inner chunk
+    }
+  }
+
+  @Test
+  public void testShardReadsAreCoalesced() throws Exception {
+    File dir = makeStore();
+    try (NetcdfFile ncfile = NetcdfFiles.open(dir.getPath())) {
+      Variable sharded = ncfile.findVariable("sharded");
+      CountingStore store = new CountingStore(dir.getPath());
+
+      // the 4 inner chunks of rows 0-1 are next to each other in the shard, read them with one request
+      Section section = new Section("0:1,0:7");
+      ZarrLayoutBB layout = new ZarrLayoutBB(sharded, section, store);
+      float[] data = (float[]) IospHelper.readDataFill(layout, DataType.FLOAT, Float.NaN);
+      for (int i = 0; i < data.length; i++) {
+        assertThat(data[i]).isEqualTo(sharded(i / 8, i % 8));
+      }
+      assertThat(store.ranges).hasSize(2); // the index and the inner chunks
+      assertThat(store.ranges.get(1)).isEqualTo("sharded/0.0@60+80"); // inner chunks 3, 2, 1, 0
+
+      // the index is cached, and only the wanted inner chunk is read
+      store.ranges.clear();
+      layout = new ZarrLayoutBB(sharded, new Section("3:3,0:0"), store);
+      data = (float[]) IospHelper.readDataFill(layout, DataType.FLOAT, Float.NaN);
+      assertThat(data[0]).isEqualTo(sharded(3, 0));
+      assertThat(store.ranges).hasSize(1);
+      assertThat(store.ranges.get(0)).endsWith("+20");
+    }
+  }
+
+  @Test
+  public void testConsolidatedMetadata() throws IOException {
+    File dir = makeStore();
+    String consolidated = "{\"zarr_format\": 3, \"node_type\": \"group\", \"attributes\": {\"title\": \"v3\"}, "
+        + "\"consolidated_metadata\": {\"kind\": \"inline\", \"must_understand\": false, \"metadata\": {"
+        + "\"plain\": " + PLAIN + ", \"sub\": {\"zarr_format\": 3, \"node_type\": \"group\"}, "
+        + "\"sub/sharded\": " + SHARDED + "}}}";
+    write(new File(dir, ZarrKeys.ZARR_JSON), consolidated);
+
+    CountingStore store = new CountingStore(dir.getPath()) {
+      @Override
+      public List<String> list(String prefix) {
+        throw new AssertionError("listed " + prefix);
+      }
+    };
+    Group.Builder rootGroup = Group.builder();
+    new ZarrHeader(store, rootGroup).read();
+    assertThat(rootGroup.findVariableLocal("plain").isPresent()).isTrue();
+    Group.Builder sub = rootGroup.findGroupNested("sub").orElse(null);
+    assertThat(sub).isNotNull();
+    assertThat(sub.findVariableLocal("sharded").isPresent()).isTrue();
+    assertThat(sub.findDimensionLocal("row").isPresent()).isTrue();
+  }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2021 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.nc2.iosp.zarr;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ucar.ma2.Array;
+import ucar.ma2.ArrayChar;
+import ucar.ma2.DataType;
+import ucar.ma2.InvalidRangeException;
+import ucar.nc2.Attribute;
+import ucar.nc2.Group;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.Variable;
+import ucar.nc2.write.Nc4Chunking;
+import ucar.nc2.write.Nc4ChunkingDefault;
+import ucar.nc2.write.NetcdfFormatWriter;
+
+/**
+ * Write Zarr stores with NetcdfFormatWriter and read them back
+ */
+public class TestZarrWriter {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private static final int NT = 3, NY = 5, NX = 7;
+
+  // small chunks, so that variables have many chunks and writes cross them
+  private static Nc4Chunking smallChunks() {
+    Nc4ChunkingDefault chunker = new Nc4ChunkingDefault(5, true);
+    chunker.setDefaultChunkSize(64);
+    chunker.setMinVariableSize(0);
+    chunker.setMinChunksize(32);
+    return chunker;
+  }
+
+  private static Array makeTemp(int t, int y0, int ny) {
+    Array data = Array.factory(DataType.FLOAT, new int[] {1, ny, NX});
+    int count = 0;
+    for (int y = y0; y < y0 + ny; y++) {
+      for (int x = 0; x < NX; x++) {
+        data.setFloat(count++, t * 100 + y * 10 + x);
+      }
+    }
+    return data;
+  }
+
+  private static void writeTestData(String location) throws IOException, InvalidRangeException {
+    NetcdfFormatWriter.Builder writerb = NetcdfFormatWriter.createNewZarr(location, smallChunks());
+    writerb.addAttribute(new Attribute("title", "zarr writer test"));
+    writerb.addUnlimitedDimension("time");
+    writerb.addDimension("y", NY);
+    writerb.addDimension("x", NX);
+    writerb.addDimension("strlen", 8);
+    writerb.addVariable("temp", DataType.FLOAT, "time y x").addAttribute(new Attribute("units", "K"));
+    writerb.addVariable("counts", DataType.INT, "y x").addAttribute(new Attribute("_FillValue", -1));
+    writerb.addVariable("name", DataType.CHAR, "strlen");
+    writerb.addVariable("scale", DataType.DOUBLE, "");
+
+    Group.Builder root = writerb.getRootGroup();
+    Group.Builder sub = Group.builder().setName("sub").setParentGroup(root);
+    root.addGroup(sub);
+    sub.addVariable(Variable.builder().setName("nested").setDataType(DataType.SHORT).setParentGroupBuilder(sub)
+        .setDimensionsByName("x"));
+
+    try (NetcdfFormatWriter writer = writerb.build()) {
+      Variable temp = writer.findVariable("temp");
+      for (int t = 0; t < NT; t++) {
+        // each record is written in two parts, which split some chunks
+        writer.write(temp, new int[] {t, 0, 0}, makeTemp(t, 0, 3));
+        writer.write(temp, new int[] {t, 3, 0}, makeTemp(t, 3, NY - 3));
+      }
+
+      // only part of counts is written, the rest is fill
+      Array counts = Array.factory(DataType.INT, new int[] {3, 4});
+      for (int i = 0; i < counts.getSize(); i++) {
+        counts.setInt(i, i);
+      }
+      writer.write(writer.findVariable("counts"), new int[] {1, 2}, counts);
+
+      writer.write(writer.findVariable("name"), ArrayChar.makeFromString("zarr", 8));
+      writer.write(writer.findVariable("scale"), Array.factory(DataType.DOUBLE, new int[0], new double[] {2.5}));
+
+      Array nested = Array.makeArray(DataType.SHORT, NX, 0, 1);
+      writer.write(writer.findVariable("sub/nested"), nested);
+    }
+  }
+
+  private static void checkTestData(String location) throws IOException {
+    try (NetcdfFile ncfile = NetcdfFiles.open(location)) {
+      assertThat(ncfile.getRootGroup().findAttributeString("title", null)).isEqualTo("zarr writer test");
+
+      Variable temp = ncfile.findVariable("temp");
+      assertThat((Object) temp).isNotNull();
+      assertThat(temp.getShape()).isEqualTo(new int[] {NT, NY, NX});
+      assertThat(temp.findAttributeString("units", null)).isEqualTo("K");
+      Array data = temp.read();
+      int count = 0;
+      for (int t = 0; t < NT; t++) {
+        for (int y = 0; y < NY; y++) {
+          for (int x = 0; x < NX; x++) {
+            assertThat(data.getFloat(count++)).isEqualTo((float) (t * 100 + y * 10 + x));
+          }
+        }
+      }
+
+      Array counts = ncfile.findVariable("counts").read();
+      count = 0;
+      for (int y = 0; y < NY; y++) {
+        for (int x = 0; x < NX; x++) {
+          boolean written = y >= 1 && y < 4 && x >= 2 && x < 6;
+          assertThat(counts.getInt(count++)).isEqualTo(written ? (y - 1) * 4 + (x - 2) : -1);
+        }
+      }
+
+      assertThat(((ArrayChar) ncfile.findVariable("name").read()).getString()).isEqualTo("zarr");
+      assertThat(ncfile.findVariable("scale").read().getDouble(0)).isEqualTo(2.5);
+
+      Array nested = ncfile.findVariable("sub/nested").read();
+      assertThat(nested.get1DJavaArray(DataType.SHORT)).isEqualTo(new short[] {0, 1, 2, 3, 4, 5, 6});
+    }
+  }
+
+  @Test
+  public void testWriteDirectory() throws IOException, InvalidRangeException {
+    File dir = new File(tempFolder.getRoot(), "written.zarr");
+    writeTestData(dir.getPath());
+    checkTestData(dir.getPath());
+
+    // chunked and compressed as asked
+    String zarray = new String(Files.readAllBytes(new File(dir, "temp/.zarray").toPath()), StandardCharsets.UTF_8);
+    assertThat(zarray).contains("zlib");
+    assertThat(zarray).contains("shuffle");
+    assertThat(new File(dir, "temp/0.0.0").exists()).isTrue();
+    assertThat(new File(dir, ZarrKeys.ZMETADATA).exists()).isTrue();
+    // chunks of counts that were never written are not stored
+    assertThat(new File(dir, "counts/1.0").exists()).isTrue();
+    assertThat(new File(dir, "counts/2.0").exists()).isFalse();
+  }
+
+  @Test
+  public void testWriteZipConcurrently() throws IOException, InvalidRangeException {
+    ExecutorService exec = Executors.newFixedThreadPool(4);
+    ZarrIospWriter.setExecutor(exec, 2);
+    try {
+      String location = new File(tempFolder.getRoot(), "written.zip").getPath();
+      writeTestData(location);
+      checkTestData(location);
+    } finally {
+      ZarrIospWriter.setExecutor(null, 16);
+      exec.shutdown();
+    }
+  }
+
+  @Test(expected = IOException.class)
+  public void testDirectoryMustBeEmpty() throws IOException, InvalidRangeException {
+    File dir = tempFolder.newFolder("notempty.zarr");
+    assertThat(new File(dir, "other").createNewFile()).isTrue();
+    writeTestData(dir.getPath());
+  }
+}
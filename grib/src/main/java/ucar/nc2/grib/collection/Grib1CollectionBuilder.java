@@ -68,23 +68,19 @@ public class Grib1CollectionBuilder extends GribCollectionBuilder {
     logger.debug(" dcm={}", dcm);
 
     // place each record into its group
-    try (CloseableIterator<MFile> iter = dcm.getFileIterator()) { // not sorted
+    // the gbx9 indexes may be read or created concurrently, but are used in the order of the files
+    try (CloseableIterator<MFile> iter = dcm.getFileIterator(); // not sorted
+        GribIndexPipeline.Ordered<MFile, Grib1Index> indexes = GribIndexPipeline.start(iter, this::readIndex)) {
       if (iter == null)
         return new ArrayList<>(); // empty
 
-      while (iter.hasNext()) {
-        MFile mfile = iter.next();
+      while (indexes.hasNext()) {
+        MFile mfile = indexes.next();
         Grib1Index index;
         try {
-          if (Grib.debugGbxIndexOnly) {
-            index = (Grib1Index) GribIndex.open(true, mfile);
-            if (index == null)
-              continue;
-          } else {
-            // here is where gbx9 files get recreated
-            index =
-                (Grib1Index) GribIndex.readOrCreateIndexFromSingleFile(true, mfile, CollectionUpdateType.test, logger);
-          }
+          index = indexes.get();
+          if (Grib.debugGbxIndexOnly && index == null)
+            continue;
           allFiles.add(mfile); // add on success
 
         } catch (IOException ioe) {
@@ -132,6 +128,7 @@ public class Grib1CollectionBuilder extends GribCollectionBuilder {
         }
         fileno++;
         statsAll.recordsTotal += index.getRecords().size();
+        GribIndexPipeline.fileIndexed(index.getNRecords(), logger);
       }
     }
 
@@ -154,6 +151,14 @@ public class Grib1CollectionBuilder extends GribCollectionBuilder {
     return groups;
   }
 
+  // read the gbx9 index of a data file, creating it if needed. may run on the index executor
+  private Grib1Index readIndex(MFile mfile) throws IOException {
+    if (Grib.debugGbxIndexOnly)
+      return (Grib1Index) GribIndex.open(true, mfile);
+    // this is where gbx9 files get recreated
+    return (Grib1Index) GribIndex.readOrCreateIndexFromSingleFile(true, mfile, CollectionUpdateType.test, logger);
+  }
+
   // true means remove
   private boolean filterIntervals(Grib1Record gr, FeatureCollectionConfig.GribIntvFilter intvFilter) {
     Grib1SectionProductDefinition pdss = gr.getPDSsection();
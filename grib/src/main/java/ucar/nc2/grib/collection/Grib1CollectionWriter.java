@@ -121,8 +121,8 @@ class Grib1CollectionWriter extends GribCollectionWriter {
           if (first == null) {
             first = vb.first;
           }
-          GribCollectionProto.SparseArray vr = writeSparseArray(vb, g.fileSet);
-          byte[] b = vr.toByteArray();
+          byte[] b = GribCdmIndex.isWriteRecordColumns() ? writeRecordColumns(vb, g.fileSet)
+              : writeSparseArray(vb, g.fileSet).toByteArray();
           vb.pos = raf.getFilePointer();
           vb.length = b.length;
           raf.write(b);
@@ -279,6 +279,22 @@ class Grib1CollectionWriter extends GribCollectionWriter {
     return b.build();
   }
 
+  // the same as writeSparseArray, as primitive columns
+  private byte[] writeRecordColumns(Grib1CollectionBuilder.VariableBag vb, Set<Integer> fileSet) {
+    SparseArray<Grib1Record> sa = vb.coordND.getSparseArray();
+    List<Grib1Record> records = sa.getContent();
+    int n = records.size();
+    int[] fileno = new int[n];
+    long[] pos = new long[n];
+    for (int i = 0; i < n; i++) {
+      Grib1Record gr = records.get(i);
+      fileno[i] = gr.getFile();
+      fileSet.add(gr.getFile());
+      pos[i] = gr.getIs().getStartPos(); // start of entire message
+    }
+    return GribRecordColumns.write(sa.getShape(), sa.getTrack(), sa.getNdups(), fileno, pos, new int[n], new int[n]);
+  }
+
   /*
    * message Dataset {
    * Type type = 1;
@@ -5,16 +5,19 @@
 
 package ucar.nc2.grib.collection;
 
+import com.google.common.collect.ImmutableList;
 import ucar.nc2.constants.DataFormatType;
 import thredds.featurecollection.FeatureCollectionConfig;
 import ucar.nc2.grib.grib1.*;
 import ucar.nc2.grib.grib1.tables.Grib1Customizer;
 import ucar.nc2.grib.grib1.tables.Grib1ParamTables;
 import ucar.nc2.grib.*;
+import ucar.nc2.iosp.IospSignature;
 import ucar.unidata.io.RandomAccessFile;
 import ucar.unidata.io.http.HTTPRandomAccessFile;
 import java.io.IOException;
 import java.util.Formatter;
+import java.util.List;
 
 /**
  * Grib-1 Collection IOSP.
@@ -186,6 +189,16 @@ public class Grib1Iosp extends GribIosp {
     return Grib1RecordScanner.isValidFile(raf);
   }
 
+  // a GRIB1 data file, or a GRIB1 collection index
+  private static final List<IospSignature> signatures =
+      ImmutableList.of(IospSignature.within("GRIB", 16000), IospSignature.at(Grib1CollectionWriter.MAGIC_START),
+          IospSignature.at(Grib1PartitionBuilder.MAGIC_START));
+
+  @Override
+  public List<IospSignature> getSignatures() {
+    return signatures;
+  }
+
   @Override
   public String getFileTypeId() {
     return DataFormatType.GRIB1.getDescription();
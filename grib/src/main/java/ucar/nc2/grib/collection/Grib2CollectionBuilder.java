@@ -78,22 +78,18 @@ class Grib2CollectionBuilder extends GribCollectionBuilder {
 
     // place each record into its group
     int totalRecords = 0;
-    try (CloseableIterator<MFile> iter = dcm.getFileIterator()) { // not sorted
+    // the gbx9 indexes may be read or created concurrently, but are used in the order of the files
+    try (CloseableIterator<MFile> iter = dcm.getFileIterator(); // not sorted
+        GribIndexPipeline.Ordered<MFile, Grib2Index> indexes = GribIndexPipeline.start(iter, this::readIndex)) {
       if (iter == null)
         return new ArrayList<>(); // empty
 
-      while (iter.hasNext()) {
-        MFile mfile = iter.next();
+      while (indexes.hasNext()) {
+        MFile mfile = indexes.next();
         Grib2Index index;
 
         try {
-          if (Grib.debugGbxIndexOnly) {
-            index = (Grib2Index) GribIndex.open(false, mfile);
-          } else {
-            // this is where gbx9 files get recreated
-            index =
-                (Grib2Index) GribIndex.readOrCreateIndexFromSingleFile(false, mfile, CollectionUpdateType.test, logger);
-          }
+          index = indexes.get();
           allFiles.add(mfile); // add on success
 
         } catch (IOException ioe) {
@@ -141,6 +137,7 @@ class Grib2CollectionBuilder extends GribCollectionBuilder {
         }
         fileno++;
         statsAll.recordsTotal += index.getRecords().size();
+        GribIndexPipeline.fileIndexed(index.getNRecords(), logger);
       }
     }
 
@@ -168,6 +165,14 @@ class Grib2CollectionBuilder extends GribCollectionBuilder {
     return groups;
   }
 
+  // read the gbx9 index of a data file, creating it if needed. may run on the index executor
+  private Grib2Index readIndex(MFile mfile) throws IOException {
+    if (Grib.debugGbxIndexOnly)
+      return (Grib2Index) GribIndex.open(false, mfile);
+    // this is where gbx9 files get recreated
+    return (Grib2Index) GribIndex.readOrCreateIndexFromSingleFile(false, mfile, CollectionUpdateType.test, logger);
+  }
+
   // true means discard
   private boolean filterIntervals(Grib2Record gr, FeatureCollectionConfig.GribIntvFilter intvFilter) {
     // hack a whack - filter out records with unknown time units
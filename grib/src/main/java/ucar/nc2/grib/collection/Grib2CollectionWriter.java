@@ -119,8 +119,8 @@ class Grib2CollectionWriter extends GribCollectionWriter {
         for (Grib2CollectionBuilder.VariableBag vb : g.gribVars) {
           if (first == null)
             first = vb.first;
-          GribCollectionProto.SparseArray vr = writeSparseArray(vb, g.fileSet);
-          byte[] b = vr.toByteArray();
+          byte[] b = GribCdmIndex.isWriteRecordColumns() ? writeRecordColumns(vb, g.fileSet)
+              : writeSparseArray(vb, g.fileSet).toByteArray();
           vb.pos = raf.getFilePointer();
           vb.length = b.length;
           raf.write(b);
@@ -280,6 +280,32 @@ class Grib2CollectionWriter extends GribCollectionWriter {
     return b.build();
   }
 
+  // the same as writeSparseArray, as primitive columns
+  private byte[] writeRecordColumns(Grib2CollectionBuilder.VariableBag vb, Set<Integer> fileSet) {
+    SparseArray<Grib2Record> sa = vb.coordND.getSparseArray();
+    List<Grib2Record> records = sa.getContent();
+    int n = records.size();
+    int[] fileno = new int[n];
+    long[] pos = new long[n];
+    int[] bmsOffset = new int[n];
+    int[] drsOffset = new int[n];
+    for (int i = 0; i < n; i++) {
+      Grib2Record gr = records.get(i);
+      fileno[i] = gr.getFile();
+      fileSet.add(gr.getFile());
+      pos[i] = gr.getIs().getStartPos();
+
+      if (gr.isBmsReplaced()) {
+        Grib2SectionBitMap bms = gr.getBitmapSection();
+        bmsOffset[i] = (int) (bms.getStartingPosition() - pos[i]);
+      }
+
+      Grib2SectionDataRepresentation drs = gr.getDataRepresentationSection();
+      drsOffset[i] = (int) (drs.getStartingPosition() - pos[i]);
+    }
+    return GribRecordColumns.write(sa.getShape(), sa.getTrack(), sa.getNdups(), fileno, pos, bmsOffset, drsOffset);
+  }
+
   /*
    * message Dataset {
    * required Type type = 1;
@@ -5,14 +5,17 @@
 
 package ucar.nc2.grib.collection;
 
+import com.google.common.collect.ImmutableList;
 import ucar.nc2.constants.DataFormatType;
 import ucar.nc2.grib.grib2.*;
 import ucar.nc2.grib.*;
 import ucar.nc2.grib.grib2.table.Grib2Tables;
+import ucar.nc2.iosp.IospSignature;
 import ucar.unidata.io.RandomAccessFile;
 import ucar.unidata.io.http.HTTPRandomAccessFile;
 import java.io.IOException;
 import java.util.Formatter;
+import java.util.List;
 
 /**
  * Grib-2 Collection IOSP.
@@ -204,6 +207,16 @@ public class Grib2Iosp extends GribIosp {
     return Grib2RecordScanner.isValidFile(raf);
   }
 
+  // a GRIB2 data file, or a GRIB2 collection index
+  private static final List<IospSignature> signatures =
+      ImmutableList.of(IospSignature.within("GRIB", 16000), IospSignature.at(Grib2CollectionWriter.MAGIC_START),
+          IospSignature.at(Grib2PartitionBuilder.MAGIC_START));
+
+  @Override
+  public List<IospSignature> getSignatures() {
+    return signatures;
+  }
+
   @Override
   public String getFileTypeId() {
     return DataFormatType.GRIB2.getDescription();
@@ -33,10 +33,12 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Formatter;
 import java.util.List;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
@@ -55,6 +57,34 @@ public class GribCdmIndex implements IndexReader {
   private static final Logger classLogger = LoggerFactory.getLogger(GribCdmIndex.class);
 
 
+  private static volatile boolean writeRecordColumns;
+
+  /**
+   * Write the records of each variable in new ncx files as columns that are memory mapped when read,
+   * instead of as protobuf SparseArray messages. Uses much less heap for collections with many records, but the
+   * ncx files can't be read by versions before this one. Off by default.
+   */
+  public static void setWriteRecordColumns(boolean b) {
+    writeRecordColumns = b;
+  }
+
+  static boolean isWriteRecordColumns() {
+    return writeRecordColumns;
+  }
+
+  /**
+   * Build indexes concurrently on the given executor: the gbx9 indexes of the data files of a collection, the child
+   * collections of a partition, and the reading of the child indexes when a partition index is written.
+   * The index files written are the same as when built on one thread.
+   *
+   * @param exec build on this executor, or null to build on the calling thread (the default).
+   * @param maxInFlight maximum number of files or child collections that each collection or partition works on
+   *        ahead of the one it is merging, which bounds the memory used.
+   */
+  public static void setIndexExecutor(@Nullable Executor exec, int maxInFlight) {
+    GribIndexPipeline.setExecutor(exec, maxInFlight);
+  }
+
   // object cache for ncx files - these are opened only as GribCollection
   public static FileCacheIF gribCollectionCache;
 
@@ -302,6 +332,7 @@ public class GribCdmIndex implements IndexReader {
       logger = classLogger;
 
     long start = System.currentTimeMillis();
+    GribIndexPipeline.Progress before = GribIndexPipeline.Progress.now();
 
     Formatter errlog = new Formatter();
     CollectionSpecParserAbstract specp = config.getCollectionSpecParserAbstract(errlog);
@@ -341,7 +372,8 @@ public class GribCdmIndex implements IndexReader {
     }
 
     long took = System.currentTimeMillis() - start;
-    logger.info("updateGribCollection {} changed {} took {} msecs", config.collectionName, changed, took);
+    logger.info("updateGribCollection {} changed {} took {} msecs; {}", config.collectionName, changed, took,
+        GribIndexPipeline.Progress.now().since(before));
     return changed;
   }
 
@@ -362,9 +394,24 @@ public class GribCdmIndex implements IndexReader {
       Grib2CollectionBuilder builder = new Grib2CollectionBuilder(dcm.getCollectionName(), dcm, logger);
       changed = builder.updateNeeded(updateType) && builder.createIndex(ptype, errlog);
     }
+    if (changed)
+      GribIndexPipeline.collectionWritten(logger);
     return changed;
   }
 
+  // updateGribCollection for a child of a partition, which may run at the same time as its siblings
+  private static boolean updateChildCollection(boolean isGrib1, MCollection part, CollectionUpdateType updateType,
+      FeatureCollectionConfig.PartitionType ptype, Logger logger, Formatter errlog) throws IOException {
+    Formatter partlog = new Formatter();
+    try {
+      return updateGribCollection(isGrib1, part, updateType, ptype, logger, partlog);
+    } finally {
+      synchronized (errlog) {
+        errlog.format("%s", partlog);
+      }
+    }
+  }
+
   // return true if changed, exception on failure
   private static boolean updatePartition(boolean isGrib1, PartitionManager dcm, CollectionUpdateType updateType,
       Logger logger, Formatter errlog) throws IOException {
@@ -379,6 +426,8 @@ public class GribCdmIndex implements IndexReader {
           new Grib2PartitionBuilder(dcm.getCollectionName(), new File(dcm.getRoot()), dcm, logger);
       changed = builder.updateNeeded(updateType) && builder.createPartitionedIndex(updateType, errlog);
     }
+    if (changed)
+      GribIndexPipeline.collectionWritten(logger);
     return changed;
   }
 
@@ -394,14 +443,18 @@ public class GribCdmIndex implements IndexReader {
     long start = System.currentTimeMillis();
     Formatter errlog = new Formatter();
 
-    for (MCollection part : tp.makePartitions(updateType)) {
-      try {
-        updateGribCollection(isGrib1, part, updateType, FeatureCollectionConfig.PartitionType.timePeriod, logger,
-            errlog);
+    try (GribIndexPipeline.Ordered<MCollection, Boolean> parts = GribIndexPipeline.start(
+        tp.makePartitions(updateType).iterator(), part -> updateChildCollection(isGrib1, part, updateType,
+            FeatureCollectionConfig.PartitionType.timePeriod, logger, errlog))) {
+      while (parts.hasNext()) {
+        MCollection part = parts.next();
+        try {
+          parts.get();
 
-      } catch (Throwable t) {
-        logger.warn("Error making partition " + part.getRoot(), t);
-        tp.removePartition(part); // keep on truckin; can happen if directory is empty
+        } catch (Throwable t) {
+          logger.warn("Error making partition " + part.getRoot(), t);
+          tp.removePartition(part); // keep on truckin; can happen if directory is empty
+        }
       }
     } // loop over component grib collections
 
@@ -467,23 +520,30 @@ public class GribCdmIndex implements IndexReader {
 
     // check the children partitions first
     if (updateType != CollectionUpdateType.testIndexOnly) { // skip children on testIndexOnly
-      for (MCollection part : dpart.makePartitions(updateType)) {
-        part.putAuxInfo(FeatureCollectionConfig.AUX_CONFIG, config);
-        try {
-          if (part instanceof DirectoryPartition) { // LOOK if child partition fails, the parent partition doesnt know
-                                                    // that - suckage
-            updateDirectoryCollectionRecurse(isGrib1, (DirectoryPartition) part, config, updateType, logger);
-          } else {
-            Path partPath = Paths.get(part.getRoot());
-            updateLeafCollection(isGrib1, config, updateType, false, logger, partPath); // LOOK why not using part ??
-          }
-        } catch (IllegalStateException t) {
-          logger.warn("Error making partition {} '{}'", part.getRoot(), t.getMessage());
-          dpart.removePartition(part); // keep on truckin; can happen if directory is empty
+      try (GribIndexPipeline.Ordered<MCollection, Boolean> parts =
+          GribIndexPipeline.start(dpart.makePartitions(updateType).iterator(), part -> {
+            part.putAuxInfo(FeatureCollectionConfig.AUX_CONFIG, config);
+            if (part instanceof DirectoryPartition) { // LOOK if child partition fails, the parent partition doesnt
+                                                      // know that - suckage
+              return updateDirectoryCollectionRecurse(isGrib1, (DirectoryPartition) part, config, updateType, logger);
+            } else {
+              Path partPath = Paths.get(part.getRoot()); // LOOK why not using part ??
+              return updateLeafCollection(isGrib1, config, updateType, false, logger, partPath);
+            }
+          })) {
+        while (parts.hasNext()) {
+          MCollection part = parts.next();
+          try {
+            parts.get();
 
-        } catch (Throwable t) {
-          logger.error("Error making partition " + part.getRoot(), t);
-          dpart.removePartition(part);
+          } catch (IllegalStateException t) {
+            logger.warn("Error making partition {} '{}'", part.getRoot(), t.getMessage());
+            dpart.removePartition(part); // keep on truckin; can happen if directory is empty
+
+          } catch (Throwable t) {
+            logger.error("Error making partition " + part.getRoot(), t);
+            dpart.removePartition(part);
+          }
         }
       } // loop over partitions
     }
@@ -571,25 +631,33 @@ public class GribCdmIndex implements IndexReader {
 
       // redo the children here
       if (updateType != CollectionUpdateType.testIndexOnly) { // skip children on testIndexOnly
+        List<MCollection> fileParts = new ArrayList<>();
         partition.iterateOverMFileCollection(mfile -> {
           MCollection part = new CollectionSingleFile(mfile, logger);
           part.putAuxInfo(FeatureCollectionConfig.AUX_CONFIG, config);
+          fileParts.add(part);
+        });
 
-          try {
-            boolean changed = updateGribCollection(isGrib1, part, updateType,
-                FeatureCollectionConfig.PartitionType.file, logger, errlog);
-            if (changed)
-              anyChange.set(true);
-
-          } catch (IllegalStateException t) {
-            logger.warn("Error making partition {} '{}'", part.getRoot(), t.getMessage());
-            partition.removePartition(part); // keep on truckin; can happen if directory is empty
-
-          } catch (Throwable t) {
-            logger.error("Error making partition " + part.getRoot(), t);
-            partition.removePartition(part);
+        try (GribIndexPipeline.Ordered<MCollection, Boolean> parts =
+            GribIndexPipeline.start(fileParts.iterator(), part -> updateChildCollection(isGrib1, part, updateType,
+                FeatureCollectionConfig.PartitionType.file, logger, errlog))) {
+          while (parts.hasNext()) {
+            MCollection part = parts.next();
+            try {
+              boolean changed = parts.get();
+              if (changed)
+                anyChange.set(true);
+
+            } catch (IllegalStateException t) {
+              logger.warn("Error making partition {} '{}'", part.getRoot(), t.getMessage());
+              partition.removePartition(part); // keep on truckin; can happen if directory is empty
+
+            } catch (Throwable t) {
+              logger.error("Error making partition " + part.getRoot(), t);
+              partition.removePartition(part);
+            }
           }
-        });
+        }
       }
 
       // LOOK what if theres only one file?
@@ -488,10 +488,17 @@ public abstract class GribCollectionImmutable implements Closeable, FileCacheabl
 
       if (recordsLen == 0)
         return;
-      byte[] b = new byte[recordsLen];
 
       try (RandomAccessFile indexRaf = RandomAccessFile.acquire(indexFilename)) {
 
+        indexRaf.seek(recordsPos);
+        if (GribRecordColumns.isRecordColumns(indexRaf, recordsLen)) {
+          // read in place, see GribCdmIndex.setWriteRecordColumns()
+          this.sa = GribRecordColumns.map(indexFilename, recordsPos, recordsLen);
+          return;
+        }
+
+        byte[] b = new byte[recordsLen];
         indexRaf.seek(recordsPos);
         indexRaf.readFully(b);
 
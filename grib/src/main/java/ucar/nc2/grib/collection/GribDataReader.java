@@ -23,10 +23,13 @@ import ucar.nc2.grib.grib1.tables.Grib1Customizer;
 import ucar.nc2.grib.grib2.Grib2Record;
 import ucar.nc2.grib.grib2.Grib2RecordScanner;
 import ucar.nc2.grib.grib2.table.Grib2Tables;
+import ucar.nc2.util.BoundedExecutor;
 import ucar.unidata.io.RandomAccessFile;
 import javax.annotation.concurrent.Immutable;
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.Executor;
+import javax.annotation.Nullable;
 
 /**
  * Grib Data Reader.
@@ -50,6 +53,31 @@ public abstract class GribDataReader {
 
   protected abstract float[] readData(RandomAccessFile rafData, DataRecord dr) throws IOException;
 
+  /**
+   * Read the bytes of the record, but dont decode them yet. The default reads and decodes in one step.
+   * Subclasses that can separate the two return a RecordData that no longer uses rafData, so it can be decoded
+   * on another thread, after rafData is closed.
+   */
+  protected RecordData readRecordData(RandomAccessFile rafData, DataRecord dr) throws IOException {
+    float[] data = readData(rafData, dr);
+    return () -> data;
+  }
+
+  /** The bytes of one record, read from the file and waiting to be decoded. */
+  protected interface RecordData {
+    /** Decode the full (x, y) field. */
+    float[] decode() throws IOException;
+
+    /**
+     * Decode only the wanted part of the (x, y) field, in row-major order.
+     * Return null if the record does not support this, then decode() is called.
+     */
+    @Nullable
+    default float[] decodeSubset(RangeIterator yRange, RangeIterator xRange) throws IOException {
+      return null;
+    }
+  }
+
   protected abstract void show(RandomAccessFile rafData, long dataPos) throws IOException;
 
   /////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
@@ -58,6 +86,27 @@ public abstract class GribDataReader {
   public static String currentDataRafFilename;
   private static final boolean show = false; // debug
 
+  // experimental multithreading
+  private static BoundedExecutor executor;
+  private static int maxRecordsInFlight = 8;
+
+  /**
+   * Decode the records of a request concurrently on the given executor. The records are still read in order of
+   * file and position on the calling thread, and their data is still added to the result in that order; only the
+   * decoding is done on the executor. Currently only GRIB2 records are decoded concurrently.
+   *
+   * @param exec decode records on this executor, or null to decode them on the calling thread (the default).
+   * @param maxPerRequest maximum number of records that one request reads and decodes ahead of the current one.
+   * @param maxTotal maximum number of records being decoded on the executor, over all requests. A record that
+   *        has not started when the request needs it is decoded on the calling thread.
+   */
+  public static synchronized void setExecutor(@Nullable Executor exec, int maxPerRequest, int maxTotal) {
+    if (maxPerRequest < 1 || maxTotal < 1)
+      throw new IllegalArgumentException("maxPerRequest and maxTotal must be > 0");
+    executor = (exec == null) ? null : new BoundedExecutor(exec, maxTotal);
+    maxRecordsInFlight = maxPerRequest;
+  }
+
   protected final GribCollectionImmutable gribCollection;
   private final GribCollectionImmutable.VariableIndex vindex;
   private final List<DataRecord> records = new ArrayList<>();
@@ -238,6 +287,7 @@ public abstract class GribDataReader {
 
     int currFile = -1;
     RandomAccessFile rafData = null;
+    RecordDecoder decoder = new RecordDecoder(dataReceiver);
     try {
       for (DataRecord dr : records) {
         if (Grib.debugIndexOnly || Grib.debugGbxIndexOnly) {
@@ -269,10 +319,10 @@ public abstract class GribDataReader {
           show(rafData, dr.record.pos + dr.record.drsOffset);
         }
 
-        float[] data = readData(rafData, dr);
         GdsHorizCoordSys hcs = vindex.group.getGdsHorizCoordSys();
-        dataReceiver.addData(data, dr.resultIndex, hcs.nx);
+        decoder.add(readRecordData(rafData, dr), dr.resultIndex, hcs.nx);
       }
+      decoder.finish();
 
     } finally {
       if (rafData != null)
@@ -291,6 +341,7 @@ public abstract class GribDataReader {
 
     PartitionCollectionImmutable.DataRecord lastRecord = null;
     RandomAccessFile rafData = null;
+    RecordDecoder decoder = new RecordDecoder(dataReceiver);
     try {
 
       for (DataRecord dr : records) {
@@ -321,10 +372,10 @@ public abstract class GribDataReader {
           show(rafData, dr.record.pos + dr.record.drsOffset);
         }
 
-        float[] data = readData(rafData, dr);
         GdsHorizCoordSys hcs = dr.hcs;
-        dataReceiver.addData(data, dr.resultIndex, hcs.nx);
+        decoder.add(readRecordData(rafData, dr), dr.resultIndex, hcs.nx);
       }
+      decoder.finish();
 
     } finally {
       if (rafData != null)
@@ -332,6 +383,78 @@ public abstract class GribDataReader {
     }
   }
 
+  /**
+   * Decodes the records of one request and adds them to the DataReceiver, in the order they are added.
+   * If an executor is set, up to maxRecordsInFlight records are decoded ahead on it.
+   */
+  private static class RecordDecoder {
+    private final DataReceiverIF dataReceiver;
+    private final RangeIterator yRange, xRange; // if not null, try to decode only these
+    private final BoundedExecutor.Ordered<Slab> pending; // null if decoding on the calling thread
+
+    RecordDecoder(DataReceiverIF dataReceiver) {
+      this.dataReceiver = dataReceiver;
+      if (dataReceiver instanceof DataReceiver) {
+        this.yRange = ((DataReceiver) dataReceiver).yRange;
+        this.xRange = ((DataReceiver) dataReceiver).xRange;
+      } else {
+        this.yRange = null;
+        this.xRange = null;
+      }
+      synchronized (GribDataReader.class) {
+        boolean debugging = Grib.debugIndexOnly || Grib.debugGbxIndexOnly || GribDataReader.validator != null || show;
+        this.pending =
+            (debugging || executor == null) ? null : new BoundedExecutor.Ordered<>(executor, maxRecordsInFlight);
+      }
+    }
+
+    void add(RecordData recordData, int resultIndex, int nx) throws IOException {
+      if (pending == null) {
+        addData(decode(recordData, resultIndex, nx));
+        return;
+      }
+      if (pending.isFull())
+        addData(pending.take());
+      pending.add(() -> decode(recordData, resultIndex, nx));
+    }
+
+    void finish() throws IOException {
+      while (pending != null && !pending.isEmpty())
+        addData(pending.take());
+    }
+
+    private Slab decode(RecordData recordData, int resultIndex, int nx) throws IOException {
+      if (yRange != null) {
+        float[] subset = recordData.decodeSubset(yRange, xRange);
+        if (subset != null)
+          return new Slab(subset, true, resultIndex, nx);
+      }
+      return new Slab(recordData.decode(), false, resultIndex, nx);
+    }
+
+    private void addData(Slab slab) {
+      if (slab.isSubset)
+        ((DataReceiver) dataReceiver).addSubsetData(slab.data, slab.resultIndex);
+      else
+        dataReceiver.addData(slab.data, slab.resultIndex, slab.nx);
+    }
+  }
+
+  // decoded data of one record, either the full field or only the wanted part of it
+  private static class Slab {
+    final float[] data;
+    final boolean isSubset;
+    final int resultIndex;
+    final int nx;
+
+    Slab(float[] data, boolean isSubset, int resultIndex, int nx) {
+      this.data = data;
+      this.isSubset = isSubset;
+      this.resultIndex = resultIndex;
+      this.nx = nx;
+    }
+  }
+
   public static class DataRecord implements Comparable<DataRecord> {
     int resultIndex; // index into the result array
     final GribCollectionImmutable.Record record;
@@ -402,6 +525,12 @@ public abstract class GribDataReader {
       }
     }
 
+    // data has already been subset to yRange, xRange
+    void addSubsetData(float[] data, int resultIndex) {
+      Object storage = dataArray.getStorage();
+      System.arraycopy(data, 0, storage, resultIndex * horizSize, horizSize);
+    }
+
     // optimization
     @Override
     public void setDataToZero() {
@@ -474,6 +603,27 @@ public abstract class GribDataReader {
           hcs.nyRaw, hcs.nptsInLine);
     }
 
+    @Override
+    protected RecordData readRecordData(RandomAccessFile rafData, GribDataReader.DataRecord dr) throws IOException {
+      if (Grib2Record.getlastRecordRead) // debugging, needs rafData
+        return super.readRecordData(rafData, dr);
+      GdsHorizCoordSys hcs = dr.hcs;
+      long dataPos = dr.record.pos + dr.record.drsOffset;
+      long bmsPos = (dr.record.bmsOffset > 0) ? dr.record.pos + dr.record.bmsOffset : 0;
+      Grib2Record.RawData raw = Grib2Record.readRawData(rafData, dataPos, bmsPos);
+      return new RecordData() {
+        @Override
+        public float[] decode() throws IOException {
+          return raw.decode(hcs.gdsNumberPoints, hcs.getScanMode(), hcs.nxRaw, hcs.nyRaw, hcs.nptsInLine);
+        }
+
+        @Override
+        public float[] decodeSubset(RangeIterator yRange, RangeIterator xRange) throws IOException {
+          return raw.decodeSubset(hcs.gdsNumberPoints, hcs.getScanMode(), hcs.nxRaw, hcs.nptsInLine, yRange, xRange);
+        }
+      };
+    }
+
     @Override
     protected void show(RandomAccessFile rafData, long pos) throws IOException {
       Grib2Record gr = Grib2RecordScanner.findRecordByDrspos(rafData, pos);
@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.nc2.grib.collection;
+
+import com.google.common.base.Preconditions;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.annotation.Nullable;
+import org.slf4j.Logger;
+import ucar.nc2.util.BoundedExecutor;
+
+/**
+ * Runs the independent steps of building GRIB indexes concurrently, if an executor has been set with
+ * GribCdmIndex.setIndexExecutor(): reading or writing the gbx9 index of each data file, updating the child
+ * collections of a partition, and opening the child indexes when the partition index is written.
+ * <p/>
+ * The results are handed back on the calling thread by a {@link BoundedExecutor.Ordered}, in the order of the
+ * sources, so the index files that are written do not depend on the number of threads.
+ * <p/>
+ * Also keeps count of the files and collections that were indexed, over all updates, to log progress and throughput.
+ */
+class GribIndexPipeline {
+  private static final long reportEveryMsecs = 30 * 1000;
+
+  // experimental multithreading
+  private static volatile Executor executor;
+  private static volatile int maxTasksInFlight = 8;
+
+  static synchronized void setExecutor(@Nullable Executor exec, int maxInFlight) {
+    if (maxInFlight < 1)
+      throw new IllegalArgumentException("maxInFlight must be > 0");
+    executor = exec;
+    maxTasksInFlight = maxInFlight;
+  }
+
+  /** Makes the result for one source; runs on the executor. */
+  interface Task<S, T> {
+    @Nullable
+    T call(S source) throws IOException;
+  }
+
+  /**
+   * Start running the task on each source, keeping at most maxInFlight tasks ahead of the one being used.
+   * Without an executor, each task runs on the calling thread when its source is reached.
+   */
+  static <S, T> Ordered<S, T> start(Iterator<S> sources, Task<S, T> task) {
+    Executor exec = executor;
+    return new Ordered<>(sources, task, exec, (exec == null) ? 1 : maxTasksInFlight);
+  }
+
+  /**
+   * The results of the tasks, in the order of the sources, used on one thread.
+   *
+   * <pre>
+   * try (Ordered&lt;MFile, GribIndex&gt; indexes = GribIndexPipeline.start(iter, this::readIndex)) {
+   *   while (indexes.hasNext()) {
+   *     MFile mfile = indexes.next();
+   *     try {
+   *       GribIndex index = indexes.get();
+   *       ...
+   * </pre>
+   *
+   * A failed task does not stop the others. Closing cancels the tasks that have not started, and closes the
+   * results that are Closeable but were not used.
+   */
+  static class Ordered<S, T> implements Closeable {
+    private final Iterator<S> sources;
+    private final Task<S, T> task;
+    private final BoundedExecutor.Ordered<T> results;
+    private final Deque<S> pending = new ArrayDeque<>(); // the sources of the results not yet taken
+    private boolean taken = true; // whether the result for the current source was taken
+
+    private Ordered(Iterator<S> sources, Task<S, T> task, @Nullable Executor exec, int maxInFlight) {
+      this.sources = sources;
+      this.task = task;
+      this.results = new BoundedExecutor.Ordered<>(exec, maxInFlight);
+    }
+
+    boolean hasNext() {
+      return !pending.isEmpty() || sources.hasNext();
+    }
+
+    /** Move to the next source, and return it. Its result is available from get(). */
+    S next() {
+      if (!taken)
+        results.skip();
+      while (!results.isFull() && sources.hasNext()) {
+        S source = sources.next();
+        pending.add(source);
+        results.add(() -> task.call(source));
+      }
+      taken = false;
+      return pending.remove();
+    }
+
+    /** The result of the task for the current source, waiting for it if needed. Throws what the task threw. */
+    @Nullable
+    T get() throws IOException {
+      Preconditions.checkState(!taken, "get() may only be called once for each source");
+      taken = true;
+      return results.take();
+    }
+
+    @Override
+    public void close() {
+      results.close();
+      pending.clear();
+    }
+  }
+
+  /////////////////////////////////////////////////////////////////////////////
+  // progress
+
+  private static final AtomicLong filesIndexed = new AtomicLong();
+  private static final AtomicLong recordsIndexed = new AtomicLong();
+  private static final AtomicLong collectionsWritten = new AtomicLong();
+  private static final AtomicReference<Progress> lastReport = new AtomicReference<>(Progress.now());
+
+  /** The gbx9 index of a data file was read or written. */
+  static void fileIndexed(int nrecords, Logger logger) {
+    filesIndexed.incrementAndGet();
+    recordsIndexed.addAndGet(nrecords);
+    maybeReport(logger);
+  }
+
+  /** An ncx index was written. */
+  static void collectionWritten(Logger logger) {
+    collectionsWritten.incrementAndGet();
+    maybeReport(logger);
+  }
+
+  private static void maybeReport(Logger logger) {
+    Progress last = lastReport.get();
+    Progress now = Progress.now();
+    if (now.time - last.time >= reportEveryMsecs && lastReport.compareAndSet(last, now))
+      logger.info("GRIB indexing in the last {} secs: {}", (now.time - last.time) / 1000, now.since(last));
+  }
+
+  /** Counts of the files and collections indexed so far, over all updates. */
+  static class Progress {
+    final long files, records, collections, time;
+
+    private Progress(long files, long records, long collections, long time) {
+      this.files = files;
+      this.records = records;
+      this.collections = collections;
+      this.time = time;
+    }
+
+    static Progress now() {
+      return new Progress(filesIndexed.get(), recordsIndexed.get(), collectionsWritten.get(),
+          System.currentTimeMillis());
+    }
+
+    /**
+     * Describe the work done between before and this. When several collections are updated at the same time, the
+     * counts include the work on all of them.
+     */
+    String since(Progress before) {
+      long files = this.files - before.files;
+      long records = this.records - before.records;
+      long msecs = Math.max(1, this.time - before.time);
+      return String.format("%d files (%.1f/sec), %d records (%.0f/sec), %d ncx indexes written", files,
+          files * 1000.0 / msecs, records, records * 1000.0 / msecs, this.collections - before.collections);
+    }
+  }
+}
@@ -119,11 +119,19 @@ abstract class GribPartitionBuilder {
     if (errlog == null)
       errlog = new Formatter(); // info will be discarded
 
-    // create partitions from the partitionManager
-    for (MCollection dcmp : partitionManager.makePartitions(forcePartition)) {
-      dcmp.putAuxInfo(FeatureCollectionConfig.AUX_CONFIG,
-          partitionManager.getAuxInfo(FeatureCollectionConfig.AUX_CONFIG));
-      result.addPartition(dcmp);
+    // create partitions from the partitionManager; the children are opened concurrently
+    Object config = partitionManager.getAuxInfo(FeatureCollectionConfig.AUX_CONFIG);
+    try (GribIndexPipeline.Ordered<MCollection, PartitionCollectionMutable.Partition> parts =
+        GribIndexPipeline.start(partitionManager.makePartitions(forcePartition).iterator(), dcmp -> {
+          dcmp.putAuxInfo(FeatureCollectionConfig.AUX_CONFIG, config);
+          return result.openPartition(dcmp);
+        })) {
+      while (parts.hasNext()) {
+        parts.next();
+        PartitionCollectionMutable.Partition partition = parts.get();
+        if (partition != null)
+          result.addPartition(partition);
+      }
     }
     result.sortPartitions(); // after this the partition list is immutable
 
@@ -219,62 +227,68 @@ abstract class GribPartitionBuilder {
     int countPartition = 0;
     CalendarDateRange dateRangeAll = null;
     boolean rangeOverlaps = false;
-    for (PartitionCollectionMutable.Partition tpp : result.getPartitions()) {
-      try (GribCollectionMutable gc = tpp.makeGribCollection()) { // LOOK open/close each child partition. could leave
-                                                                  // open ? they are NOT in cache
-        if (gc == null)
-          continue; // skip if they dont exist
-
-        // note its not recursive, maybe leave open, or cache; actually we keep a pointer to the partition's group in
-        // the GroupPartitions
-        CoordinateRuntime partRuntime = gc.masterRuntime;
-        runtimeAllBuilder.addAll(partRuntime); // make a complete set of runtime Coordinates
-        masterRuntimes.add(partRuntime); // make master runtimes
-
-        GribCollectionMutable.Dataset ds2dp = gc.getDatasetCanonical(); // the twoD or GC dataset
-
-        // date ranges must not overlap in order to use MRUTP
-        if (dateRangeAll == null) {
-          // System.out.printf(" %s = %s%n", gc.name, gc.dateRange);
-          dateRangeAll = gc.dateRange;
-        } else if (!rangeOverlaps) {
-          rangeOverlaps = dateRangeAll.intersects(gc.dateRange);
-          dateRangeAll = dateRangeAll.extend(gc.dateRange);
-        }
+    // the child indexes are read concurrently, but are used in the order of the partitions
+    try (GribIndexPipeline.Ordered<PartitionCollectionMutable.Partition, GribCollectionMutable> partCollections =
+        GribIndexPipeline.start(result.getPartitions().iterator(),
+            PartitionCollectionMutable.Partition::makeGribCollection)) {
+      while (partCollections.hasNext()) {
+        partCollections.next();
+        try (GribCollectionMutable gc = partCollections.get()) { // LOOK open/close each child partition. could leave
+                                                                 // open ? they are NOT in cache
+          if (gc == null)
+            continue; // skip if they dont exist
+
+          // note its not recursive, maybe leave open, or cache; actually we keep a pointer to the partition's group in
+          // the GroupPartitions
+          CoordinateRuntime partRuntime = gc.masterRuntime;
+          runtimeAllBuilder.addAll(partRuntime); // make a complete set of runtime Coordinates
+          masterRuntimes.add(partRuntime); // make master runtimes
+
+          GribCollectionMutable.Dataset ds2dp = gc.getDatasetCanonical(); // the twoD or GC dataset
+
+          // date ranges must not overlap in order to use MRUTP
+          if (dateRangeAll == null) {
+            // System.out.printf(" %s = %s%n", gc.name, gc.dateRange);
+            dateRangeAll = gc.dateRange;
+          } else if (!rangeOverlaps) {
+            rangeOverlaps = dateRangeAll.intersects(gc.dateRange);
+            dateRangeAll = dateRangeAll.extend(gc.dateRange);
+          }
 
-        /*
-         * see if its only got one time coord
-         * if (ds2dp.gctype == GribCollectionImmutable.Type.SRC) {
-         * for (GribCollectionMutable.GroupGC group : ds2dp.getGroups()) {
-         * for (Coordinate coord : group.getCoordinates()) { // all time coords must have only one time
-         * if (coord instanceof CoordinateTime2D) {
-         * CoordinateTime2D coord2D = (CoordinateTime2D) coord;
-         * if (coord2D.getNtimes() > 1)
-         * allAre1D = false;
-         * 
-         * } else if (coord instanceof CoordinateTimeAbstract && coord.getSize() > 1)
-         * allAre1D = false;
-         * }
-         * }
-         * } else if (ds2dp.gctype == GribCollectionImmutable.Type.MRC || ds2dp.gctype ==
-         * GribCollectionImmutable.Type.TwoD) {
-         * allAre1D = false;
-         * }
-         */
-
-        int groupIdx = 0;
-        for (GribCollectionMutable.GroupGC g : ds2dp.groups) { // for each group in the partition
-          GroupPartitions gs = groupMap.get(g.getGdsHash());
-          if (gs == null) {
-            gs = new GroupPartitions(ds2D.addGroupCopy(g), npart);
-            groupMap.put(g.getGdsHash(), gs);
+          /*
+           * see if its only got one time coord
+           * if (ds2dp.gctype == GribCollectionImmutable.Type.SRC) {
+           * for (GribCollectionMutable.GroupGC group : ds2dp.getGroups()) {
+           * for (Coordinate coord : group.getCoordinates()) { // all time coords must have only one time
+           * if (coord instanceof CoordinateTime2D) {
+           * CoordinateTime2D coord2D = (CoordinateTime2D) coord;
+           * if (coord2D.getNtimes() > 1)
+           * allAre1D = false;
+           * 
+           * } else if (coord instanceof CoordinateTimeAbstract && coord.getSize() > 1)
+           * allAre1D = false;
+           * }
+           * }
+           * } else if (ds2dp.gctype == GribCollectionImmutable.Type.MRC || ds2dp.gctype ==
+           * GribCollectionImmutable.Type.TwoD) {
+           * allAre1D = false;
+           * }
+           */
+
+          int groupIdx = 0;
+          for (GribCollectionMutable.GroupGC g : ds2dp.groups) { // for each group in the partition
+            GroupPartitions gs = groupMap.get(g.getGdsHash());
+            if (gs == null) {
+              gs = new GroupPartitions(ds2D.addGroupCopy(g), npart);
+              groupMap.put(g.getGdsHash(), gs);
+            }
+            gs.componentGroups[countPartition] = g;
+            gs.componentGroupIndex[countPartition] = groupIdx++;
           }
-          gs.componentGroups[countPartition] = g;
-          gs.componentGroupIndex[countPartition] = groupIdx++;
-        }
-      } // close the gc
-      countPartition++;
-    } // loop over partition
+        } // close the gc
+        countPartition++;
+      } // loop over partition
+    }
 
     List<GroupPartitions> groupPartitions = new ArrayList<>(groupMap.values());
     result.masterRuntime = (CoordinateRuntime) runtimeAllBuilder.finish();
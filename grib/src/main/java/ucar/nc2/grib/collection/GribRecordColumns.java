@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.nc2.grib.collection;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import javax.annotation.concurrent.Immutable;
+import ucar.nc2.grib.coord.SparseArray;
+import ucar.unidata.io.RandomAccessFile;
+
+/**
+ * The records of one variable in a GRIB collection index, kept as primitive columns instead of a protobuf
+ * SparseArray message. The section is memory mapped and read in place, so reading a variable does not make an object
+ * for each GRIB message, and the pages are shared and can be dropped by the OS.
+ *
+ * <pre>
+ * MAGIC ("GRC1")
+ * int rank, int[rank] shape
+ * int ndups
+ * int nrecords
+ * long[nrecords] pos        offset in GRIB file of the start of entire message
+ * int[nrecords] fileno      which GRIB file
+ * int[nrecords] bmsOffset   if non-zero, offset where bms starts (grib2)
+ * int[nrecords] drsOffset   if non-zero, offset where drs starts (grib2)
+ * int[product of shape] track   1-based index into the records, 0 == missing
+ * </pre>
+ *
+ * All big endian. The magic can't start a protobuf SparseArray message, so readers can tell the two apart.
+ */
+@Immutable
+class GribRecordColumns implements SparseArray.Storage<GribCollectionImmutable.Record> {
+  private static final byte[] MAGIC = "GRC1".getBytes(StandardCharsets.US_ASCII);
+
+  /** Is the section at the current position of raf a columnar record section? Moves the file pointer. */
+  static boolean isRecordColumns(RandomAccessFile raf, int length) throws IOException {
+    if (length < MAGIC.length)
+      return false;
+    byte[] b = new byte[MAGIC.length];
+    raf.readFully(b);
+    for (int i = 0; i < MAGIC.length; i++) {
+      if (b[i] != MAGIC[i])
+        return false;
+    }
+    return true;
+  }
+
+  /**
+   * Memory map a columnar record section of an index file.
+   *
+   * @param indexFilename the index file
+   * @param pos start of the section
+   * @param length size of the section
+   * @return SparseArray of the records, reading from the mapped file
+   */
+  static SparseArray<GribCollectionImmutable.Record> map(String indexFilename, long pos, int length)
+      throws IOException {
+    ByteBuffer bb;
+    try (FileChannel channel = FileChannel.open(Paths.get(indexFilename), StandardOpenOption.READ)) {
+      bb = channel.map(FileChannel.MapMode.READ_ONLY, pos, length); // stays valid after the channel is closed
+    }
+    return read(bb);
+  }
+
+  /** Read a columnar record section in place, starting at the position of bb. */
+  static SparseArray<GribCollectionImmutable.Record> read(ByteBuffer bb) throws IOException {
+    bb = bb.slice(); // big endian, positions are relative to the start of the section
+    for (byte b : MAGIC) {
+      if (bb.get() != b)
+        throw new IOException("Not a GRIB record section");
+    }
+    int rank = bb.getInt();
+    int[] shape = new int[rank];
+    for (int i = 0; i < rank; i++)
+      shape[i] = bb.getInt();
+    int ndups = bb.getInt();
+    int nrecords = bb.getInt();
+    GribRecordColumns columns = new GribRecordColumns(bb, bb.position(), nrecords, totalSize(shape));
+    if (columns.trackStart + 4L * columns.ntrack > bb.limit())
+      throw new IOException("GRIB record section is truncated");
+    return new SparseArray<>(shape, columns, ndups);
+  }
+
+  /**
+   * Write a columnar record section.
+   *
+   * @param shape multidim sizes of the SparseArray
+   * @param track 1-based index into the records, 0 == missing
+   * @param ndups duplicates found when creating
+   * @param fileno which GRIB file, for each record
+   * @param pos offset in GRIB file of the start of each message
+   * @param bmsOffset offset of the bms from pos, or 0
+   * @param drsOffset offset of the drs from pos, or 0
+   * @return the section
+   */
+  static byte[] write(int[] shape, int[] track, int ndups, int[] fileno, long[] pos, int[] bmsOffset,
+      int[] drsOffset) {
+    int nrecords = pos.length;
+    ByteBuffer bb = ByteBuffer.allocate(MAGIC.length + 4 * (shape.length + 3) + 20 * nrecords + 4 * track.length);
+    bb.put(MAGIC);
+    bb.putInt(shape.length);
+    for (int size : shape)
+      bb.putInt(size);
+    bb.putInt(ndups);
+    bb.putInt(nrecords);
+    for (long p : pos)
+      bb.putLong(p);
+    for (int f : fileno)
+      bb.putInt(f);
+    for (int b : bmsOffset)
+      bb.putInt(b);
+    for (int d : drsOffset)
+      bb.putInt(d);
+    for (int t : track)
+      bb.putInt(t);
+    return bb.array();
+  }
+
+  private static int totalSize(int[] shape) {
+    int total = 1;
+    for (int size : shape)
+      total *= size;
+    return total;
+  }
+
+  /////////////////////////////////////////////////////////////////////////
+
+  private final ByteBuffer bb; // only absolute gets, so can be shared between threads
+  private final int nrecords, ntrack;
+  private final int posStart, filenoStart, bmsStart, drsStart, trackStart;
+
+  private GribRecordColumns(ByteBuffer bb, int start, int nrecords, int ntrack) {
+    this.bb = bb;
+    this.nrecords = nrecords;
+    this.ntrack = ntrack;
+    this.posStart = start;
+    this.filenoStart = posStart + 8 * nrecords;
+    this.bmsStart = filenoStart + 4 * nrecords;
+    this.drsStart = bmsStart + 4 * nrecords;
+    this.trackStart = drsStart + 4 * nrecords;
+  }
+
+  @Override
+  public int getTrackSize() {
+    return ntrack;
+  }
+
+  @Override
+  public int getTrack(int idx) {
+    return bb.getInt(trackStart + 4 * idx);
+  }
+
+  @Override
+  public int getContentSize() {
+    return nrecords;
+  }
+
+  @Override
+  public GribCollectionImmutable.Record getContent(int contentIdx) {
+    return new GribCollectionImmutable.Record(bb.getInt(filenoStart + 4 * contentIdx),
+        bb.getLong(posStart + 8 * contentIdx), bb.getInt(bmsStart + 4 * contentIdx),
+        bb.getInt(drsStart + 4 * contentIdx));
+  }
+}
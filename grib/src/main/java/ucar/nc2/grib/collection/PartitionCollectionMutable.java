@@ -333,14 +333,29 @@ public class PartitionCollectionMutable extends GribCollectionMutable {
   }
 
   public void addPartition(MCollection dcm) {
+    Partition partition = openPartition(dcm);
+    if (partition != null)
+      partitions.add(partition);
+  }
+
+  /** Add a partition made by openPartition(). */
+  void addPartition(Partition partition) {
+    partitions.add(partition);
+  }
+
+  /** Make a Partition for dcm, if its collection can be opened. Does not add it; may be called on any thread. */
+  @Nullable
+  Partition openPartition(MCollection dcm) {
     Partition partition = new Partition(dcm);
     try (GribCollectionMutable gc = partition.makeGribCollection()) { // make sure we can open the collection
-      if (gc == null)
+      if (gc == null) {
         logger.warn("failed to open partition {} =skipping", dcm.getCollectionName());
-      else
-        partitions.add(partition);
+        return null;
+      }
+      return partition;
     } catch (Exception e) {
       logger.warn("failed to open partition {} -skipping", dcm.getCollectionName(), e);
+      return null;
     }
   }
 
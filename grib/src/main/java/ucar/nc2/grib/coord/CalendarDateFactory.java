@@ -5,8 +5,8 @@
 package ucar.nc2.grib.coord;
 
 import ucar.nc2.time.CalendarDate;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Reuse immutable calendar date objects.
@@ -16,10 +16,10 @@ import java.util.Map;
  * @since 4/3/2015
  */
 public class CalendarDateFactory {
-  private Map<Long, CalendarDate> map;
+  private final Map<Long, CalendarDate> map; // used by all threads building indexes
 
   public CalendarDateFactory(CoordinateRuntime master) {
-    map = new HashMap<>(master.getSize() * 2);
+    map = new ConcurrentHashMap<>(master.getSize() * 2);
     for (Object valo : master.getValues()) {
       CalendarDate cd = CalendarDate.of((Long) valo);
       map.put(cd.getMillis(), cd);
@@ -27,10 +27,7 @@ public class CalendarDateFactory {
   }
 
   public CalendarDate get(CalendarDate cd) {
-    CalendarDate cdc = map.get(cd.getMillis());
-    if (cdc != null)
-      return cdc;
-    map.put(cd.getMillis(), cd);
-    return cd;
+    CalendarDate cdc = map.putIfAbsent(cd.getMillis(), cd);
+    return (cdc != null) ? cdc : cd;
   }
 }
@@ -10,6 +10,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import ucar.nc2.util.Misc;
 import javax.annotation.concurrent.Immutable;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Formatter;
@@ -20,6 +21,8 @@ import java.util.List;
  * Conceptually a multidim array with shape[n] and totalsize.
  * Stored as track[totalsize] = {0 = missing, else = index+1 into List<T> content}
  * So we dont have to store missing Ts.
+ * The track and content are kept in a Storage: on the heap, or read in place from somewhere else, eg a memory mapped
+ * GRIB index.
  *
  * @author caron
  * @since 11/24/13
@@ -32,21 +35,69 @@ public class SparseArray<T> {
   private final int[] stride; // for index calculation
   private final int totalSize; // product of sizes
 
-  private final int[] track; // index into content, size totalSize. LOOK could use byte, short to save memory ??
-  private final List<T> content; // keep the things in a List.
+  private final Storage<T> storage;
   private final int ndups;
 
+  /**
+   * Where the track and the content of a SparseArray are kept. Must be safe for concurrent reads.
+   */
+  public interface Storage<T> {
+    /** Size of the track, must equal the total size of the SparseArray. */
+    int getTrackSize();
+
+    /** 1-based index into the content, 0 = missing. */
+    int getTrack(int idx);
+
+    int getContentSize();
+
+    /** The thing at a 0-based index into the content. */
+    T getContent(int contentIdx);
+  }
+
+  private static class HeapStorage<T> implements Storage<T> {
+    private final int[] track; // index into content, size totalSize. LOOK could use byte, short to save memory ??
+    private final List<T> content; // keep the things in a List.
+
+    HeapStorage(int[] track, List<T> content) {
+      this.track = track;
+      this.content = Collections.unmodifiableList(content);
+    }
+
+    @Override
+    public int getTrackSize() {
+      return track.length;
+    }
+
+    @Override
+    public int getTrack(int idx) {
+      return track[idx];
+    }
+
+    @Override
+    public int getContentSize() {
+      return content.size();
+    }
+
+    @Override
+    public T getContent(int contentIdx) {
+      return content.get(contentIdx);
+    }
+  }
+
   public SparseArray(int[] shape, int[] track, List<T> content, int ndups) {
+    this(shape, new HeapStorage<>(track, content), ndups);
+  }
+
+  public SparseArray(int[] shape, Storage<T> storage, int ndups) {
     this.shape = shape;
     this.totalSize = calcTotalSize(shape);
     this.stride = calcStrides(shape);
 
-    this.track = track;
-    this.content = Collections.unmodifiableList(content);
+    this.storage = storage;
     this.ndups = ndups;
 
-    if (track.length != totalSize)
-      throw new IllegalStateException("track len " + track.length + " != totalSize " + totalSize);
+    if (storage.getTrackSize() != totalSize)
+      throw new IllegalStateException("track len " + storage.getTrackSize() + " != totalSize " + totalSize);
   }
 
   static int calcTotalSize(int[] shape) {
@@ -77,12 +128,12 @@ public class SparseArray<T> {
 
   @Nullable
   public T getContent(int idx) {
-    if (idx >= track.length || idx < 0)
-      logger.error("BAD index get=" + idx + " max= " + track.length, new Throwable());
-    int contentIdx = track[idx] - 1;
+    if (idx >= totalSize || idx < 0)
+      logger.error("BAD index get=" + idx + " max= " + totalSize, new Throwable());
+    int contentIdx = storage.getTrack(idx) - 1;
     if (contentIdx < 0)
       return null; // missing
-    return content.get(contentIdx);
+    return storage.getContent(contentIdx);
   }
 
   public T getContent(int[] index) {
@@ -102,30 +153,49 @@ public class SparseArray<T> {
     return totalSize;
   }
 
+  /** The track; a copy unless kept on the heap. */
   public int[] getTrack() {
-    return track;
+    if (storage instanceof HeapStorage)
+      return ((HeapStorage<T>) storage).track;
+    int[] result = new int[totalSize];
+    for (int i = 0; i < totalSize; i++)
+      result[i] = storage.getTrack(i);
+    return result;
   }
 
   public int getTrack(int idx) {
-    return track[idx];
+    return storage.getTrack(idx);
   }
 
+  /** The content; a view unless kept on the heap, whose elements are made as they are asked for. */
   public List<T> getContent() {
-    return content;
+    if (storage instanceof HeapStorage)
+      return ((HeapStorage<T>) storage).content;
+    return new AbstractList<T>() {
+      @Override
+      public T get(int index) {
+        return storage.getContent(index);
+      }
+
+      @Override
+      public int size() {
+        return storage.getContentSize();
+      }
+    };
   }
 
   public int countNotMissing() { // LOOK could use content.size()
     int result = 0;
-    for (int idx : track)
-      if (idx > 0)
+    for (int i = 0; i < totalSize; i++)
+      if (storage.getTrack(i) > 0)
         result++;
     return result;
   }
 
   public int countMissing() {
     int result = 0;
-    for (int idx : track)
-      if (idx == 0)
+    for (int i = 0; i < totalSize; i++)
+      if (storage.getTrack(i) == 0)
         result++;
     return result;
   }
@@ -169,7 +239,7 @@ public class SparseArray<T> {
     if (sizes.size() == 1) {
       int len = sizes.get(0);
       for (int i = 0; i < len; i++) {
-        boolean hasRecord = track[offset + i] > 0;
+        boolean hasRecord = storage.getTrack(offset + i) > 0;
         if (hasRecord)
           f.format("X");
         else
@@ -194,15 +264,15 @@ public class SparseArray<T> {
   public void showContent(Formatter f) {
     int count = 0;
     f.format("Content%n");
-    for (T record : content)
+    for (T record : getContent())
       f.format(" %d %s %n", count++, record);
   }
 
   public void showTracks(Formatter f) {
     int count = 0;
     f.format("Track%n");
-    for (int t : track)
-      f.format(" %4d %5d %n", count++, t);
+    for (int i = 0; i < totalSize; i++)
+      f.format(" %4d %5d %n", count++, storage.getTrack(i));
   }
 
   ////////////////////////////////////////////////////////////////////////////////////
@@ -122,12 +122,20 @@ public class Grib1DataReader {
             raf.getLocation());
         throw new IllegalStateException("Bitmap section length!= grid length");
       }
-      BitReader reader = new BitReader(raf, startPos + 11);
       values = new float[nPts];
-      for (int i = 0; i < nPts; i++) {
+      int k = 0; // packed values are at the start of values; spread them out from the end
+      if (!isConstant) {
+        for (int i = 0; i < nPts; i++) {
+          if (GribNumbers.testBitIsSet(bitmap[i / 8], i % 8))
+            k++;
+        }
+        BitReader reader = new BitReader(raf, startPos + 11);
+        readUnsigned(reader, info.numberOfBits, values, k);
+      }
+      for (int i = nPts - 1; i >= 0; i--) {
         if (GribNumbers.testBitIsSet(bitmap[i / 8], i % 8)) {
           if (!isConstant) {
-            values[i] = ref + scale * reader.bits2UInt(info.numberOfBits);
+            values[i] = ref + scale * values[--k];
           } else { // rdg - added this to handle a constant valued parameter
             values[i] = ref;
           }
@@ -148,8 +156,9 @@ public class Grib1DataReader {
           values = new float[nPts];
         }
         BitReader reader = new BitReader(raf, startPos + 11);
+        readUnsigned(reader, info.numberOfBits, values, values.length);
         for (int i = 0; i < values.length; i++) {
-          values[i] = ref + scale * reader.bits2UInt(info.numberOfBits);
+          values[i] = ref + scale * values[i];
         }
         scanningModeCheck(values, scanMode, nxRaw);
 
@@ -164,6 +173,21 @@ public class Grib1DataReader {
     return values;
   }
 
+  // n unsigned values of nb bits, as floats. Values of 32 bits or more do not fit in an int, so are read as longs.
+  private static void readUnsigned(BitReader reader, int nb, float[] dest, int n) throws IOException {
+    if (nb < 32) {
+      int[] packed = new int[n];
+      reader.readUInts(nb, packed, 0, n);
+      for (int i = 0; i < n; i++)
+        dest[i] = packed[i];
+    } else {
+      long[] packed = new long[n];
+      reader.readULongs(nb, packed, 0, n);
+      for (int i = 0; i < n; i++)
+        dest[i] = packed[i];
+    }
+  }
+
   /*
    * From WMO Manual on Codes I-2 bi - 5
    * (3) When second-order grid-point packing is indicated, the actual value Y (in the units of Code table 2)
@@ -476,9 +500,7 @@ public class Grib1DataReader {
 
     // meta groupWidths unsigned_bits(widthOfWidths,numberOfGroups) : read_only;
     int[] groupWidth = new int[NG];
-    for (int group = 0; group < NG; group++) {
-      groupWidth[group] = (int) reader.bits2UInt(widthOfWidths);
-    }
+    reader.readUInts(widthOfWidths, groupWidth, 0, NG);
 
     reader.incrByte(); // assume on byte boundary
     showOffset(f, "GroupLength", raf, NL - 1, 2723);
@@ -488,8 +510,7 @@ public class Grib1DataReader {
 
     // meta groupLengths unsigned_bits(widthOfLengths,numberOfGroups) : read_only;
     int[] groupLength = new int[NG];
-    for (int group = 0; group < NG; group++)
-      groupLength[group] = (int) reader.bits2UInt(widthOfLengths);
+    reader.readUInts(widthOfLengths, groupLength, 0, NG);
     showOffset(f, "FirstOrderValues", raf, N1 - 1, 5774);
 
     // meta countOfGroupLengths sum(groupLengths);
@@ -508,8 +529,7 @@ public class Grib1DataReader {
     // meta firstOrderValues unsigned_bits(widthOfFirstOrderValues,numberOfGroups) : read_only;
     reader.incrByte(); // assume on byte boundary
     int[] firstOrderValues = new int[NG];
-    for (int group = 0; group < NG; group++)
-      firstOrderValues[group] = (int) reader.bits2UInt(foWidth);
+    reader.readUInts(foWidth, firstOrderValues, 0, NG);
     int offset3 = (int) (raf.getFilePointer() - this.startPos);
     f.format("nbytes=%d%n", (foWidth * NG + 7) / 8);
     showOffset(f, "SecondOrderValues", raf, N2 - 1, 11367);
@@ -535,10 +555,8 @@ public class Grib1DataReader {
       int val = 0;
       double log2 = Math.log(2);
       for (int group = 0; group < NG; group++) {
-        for (int i = 0; i < groupLength[group]; i++) {
-          int secVal = (int) reader.bits2UInt(groupWidth[group]);
-          secondOrderValues[val++] = secVal;
-        }
+        reader.readUInts(groupWidth[group], secondOrderValues, val, groupLength[group]);
+        val += groupLength[group];
         countGroups++;
       }
     } catch (EOFException ioe) {
@@ -630,9 +648,7 @@ public class Grib1DataReader {
 
     BitReader reader = new BitReader(raf, raf.getFilePointer());
     int[] groupWidth = new int[NG];
-    for (int group = 0; group < NG; group++) {
-      groupWidth[group] = (int) reader.bits2UInt(widthOfWidths);
-    }
+    reader.readUInts(widthOfWidths, groupWidth, 0, NG);
     reader.incrByte(); // assume on byte boundary
     showOffset(f, "GroupLength", raf, startPos, NL - 1);
 
@@ -641,8 +657,7 @@ public class Grib1DataReader {
 
     // meta groupLengths unsigned_bits(widthOfLengths,numberOfGroups) : read_only;
     int[] groupLength = new int[NG];
-    for (int group = 0; group < NG; group++)
-      groupLength[group] = (int) reader.bits2UInt(widthOfLengths);
+    reader.readUInts(widthOfLengths, groupLength, 0, NG);
     showOffset(f, "FirstOrderValues", raf, startPos, N1 - 1);
 
     // meta countOfGroupLengths sum(groupLengths);
@@ -660,8 +675,7 @@ public class Grib1DataReader {
     // meta firstOrderValues unsigned_bits(widthOfFirstOrderValues,numberOfGroups) : read_only;
     reader.incrByte(); // assume on byte boundary
     int[] firstOrderValues = new int[NG];
-    for (int group = 0; group < NG; group++)
-      firstOrderValues[group] = (int) reader.bits2UInt(foWidth);
+    reader.readUInts(foWidth, firstOrderValues, 0, NG);
 
     showOffset(f, "SecondOrderValues", raf, startPos, N2 - 1);
 
@@ -805,9 +819,7 @@ public class Grib1DataReader {
     // *** read int values *******************************************************
     BitReader reader = new BitReader(raf, startPos + 11);
     int[] ivals = new int[nPts];
-    for (int i = 0; i < nPts; i++) {
-      ivals[i] = (int) reader.bits2UInt(numbits);
-    }
+    reader.readUInts(numbits, ivals, 0, nPts);
 
     return ivals;
   }
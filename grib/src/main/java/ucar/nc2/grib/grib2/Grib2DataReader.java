@@ -6,6 +6,7 @@
 package ucar.nc2.grib.grib2;
 
 import javax.annotation.Nullable;
+import ucar.ma2.RangeIterator;
 import ucar.nc2.grib.GribNumbers;
 import ucar.nc2.grib.GribUtils;
 import ucar.nc2.iosp.BitReader;
@@ -39,6 +40,41 @@ public class Grib2DataReader {
     }
   }
 
+  // Per thread scratch arrays, for intermediate results that do not escape a decode.
+  // The arrays only grow, so they are sized by the largest record decoded on the thread.
+  private static class Scratch {
+    private float[] floats = new float[0];
+    private boolean[] booleans = new boolean[0];
+    private int[] ints = new int[0];
+
+    // zeroed, length >= n
+    float[] floats(int n) {
+      if (floats.length < n)
+        floats = new float[n];
+      else
+        Arrays.fill(floats, 0, n, 0.0f);
+      return floats;
+    }
+
+    // all false, length >= n
+    boolean[] booleans(int n) {
+      if (booleans.length < n)
+        booleans = new boolean[n];
+      else
+        Arrays.fill(booleans, 0, n, false);
+      return booleans;
+    }
+
+    // not cleared, length >= n
+    int[] ints(int n) {
+      if (ints.length < n)
+        ints = new int[n];
+      return ints;
+    }
+  }
+
+  private static final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
+
   ///////////////////////////////////////////////
 
   private final int dataTemplate;
@@ -81,8 +117,14 @@ public class Grib2DataReader {
    */
 
   public float[] getData(RandomAccessFile raf, Grib2SectionBitMap bitmapSection, Grib2Drs gdrs) throws IOException {
-    this.bitmap = bitmapSection.getBitmap(raf);
-    this.bitmapIndicator = bitmapSection.getBitMapIndicator();
+    return getData(raf, bitmapSection.getBitmap(raf), bitmapSection.getBitMapIndicator(), gdrs);
+  }
+
+  // use when the bitmap has already been read, possibly from another RandomAccessFile
+  float[] getData(RandomAccessFile raf, @Nullable byte[] bitmap, int bitmapIndicator, Grib2Drs gdrs)
+      throws IOException {
+    this.bitmap = bitmap;
+    this.bitmapIndicator = bitmapIndicator;
 
     if (bitmap != null) { // is bitmap ok ?
       if (bitmap.length * 8 < totalNPoints) { // gdsNumberPoints == nx * ny ??
@@ -125,6 +167,133 @@ public class Grib2DataReader {
     return data;
   }
 
+  /**
+   * Decode only the points in the wanted rows and columns, instead of the whole field.
+   * Currently only done for simple packing (template 5.0), with or without a bitmap.
+   *
+   * @param yRange wanted rows, after the scan mode is applied, as in getData()
+   * @param xRange wanted columns, after the scan mode is applied, as in getData()
+   * @return the wanted values in row-major order, or null if this record can only be decoded with getData()
+   */
+  @Nullable
+  float[] getDataSubset(RandomAccessFile raf, @Nullable byte[] bitmap, int bitmapIndicator, Grib2Drs gdrs,
+      RangeIterator yRange, RangeIterator xRange) throws IOException {
+    if (dataTemplate != 0 || nx <= 0 || totalNPoints % nx != 0)
+      return null;
+    int nb = ((Grib2Drs.Type0) gdrs).numberOfBits;
+    if ((long) dataNPoints * nb > Integer.MAX_VALUE) // BitReader.setBitOffset is an int
+      return null;
+    int ny = totalNPoints / nx;
+    int[] xs = new int[xRange.length()];
+    int nxs = 0;
+    for (int x : xRange) {
+      if (x < 0 || x >= nx)
+        return null;
+      xs[nxs++] = x;
+    }
+    for (int y : yRange) {
+      if (y < 0 || y >= ny)
+        return null;
+    }
+
+    if (bitmap != null && bitmap.length * 8 < totalNPoints) { // same check as getData
+      logger.warn("Bitmap section length = {} != grid length {} ({},{})", bitmap.length, totalNPoints, nx,
+          totalNPoints / nx);
+      throw new IllegalStateException("Bitmap section length!= grid length");
+    }
+    this.bitmap = bitmap;
+    this.bitmapIndicator = bitmapIndicator;
+
+    return getData0Subset(raf, (Grib2Drs.Type0) gdrs, yRange, xs);
+  }
+
+  // Grid point data - simple packing. Each value has nb bits, so value k starts at bit k * nb.
+  // With a bitmap, the value for grid point i is value k = (number of bits set in the bitmap before i).
+  private float[] getData0Subset(RandomAccessFile raf, Grib2Drs.Type0 gdrs, RangeIterator yRange, int[] xs)
+      throws IOException {
+    int nb = gdrs.numberOfBits;
+    int D = gdrs.decimalScaleFactor;
+    float DD = (float) java.lang.Math.pow((double) 10, (double) D);
+    float R = gdrs.referenceValue;
+    int E = gdrs.binaryScaleFactor;
+    float EE = (float) java.lang.Math.pow(2.0, (double) E);
+
+    float[] data = new float[yRange.length() * xs.length];
+    BitReader reader = new BitReader(raf, startPos + 5);
+    BitmapRank rank = (bitmap == null) ? null : new BitmapRank(bitmap);
+    int nextValue = 0; // the value the reader is positioned at
+
+    int rowStart = 0;
+    for (int y : yRange) {
+      // visit the points of the row in the order they are stored
+      boolean flip = isRowReversed(y);
+      for (int j = 0; j < xs.length; j++) {
+        int col = flip ? xs.length - 1 - j : j;
+        int x = flip ? nx - 1 - xs[col] : xs[col];
+        int i = y * nx + x;
+
+        int k;
+        if (rank == null) {
+          k = i;
+        } else if (GribNumbers.testBitIsSet(bitmap[i / 8], i % 8)) {
+          k = rank.rankOf(i);
+        } else {
+          data[rowStart + col] = staticMissingValue;
+          continue;
+        }
+
+        if (k != nextValue)
+          reader.setBitOffset(k * nb);
+        data[rowStart + col] = (R + reader.bits2UInt(nb) * EE) / DD;
+        nextValue = k + 1;
+      }
+      rowStart += xs.length;
+    }
+    return data;
+  }
+
+  // true if scanningModeCheck() reverses the values in this row
+  private boolean isRowReversed(int row) {
+    if ((scanMode == 0) || (scanMode == 64))
+      return false;
+    if (!GribUtils.scanModeXisPositive(scanMode))
+      return true;
+    return !GribUtils.scanModeSameDirection(scanMode) && (row % 2 != 0);
+  }
+
+  // Number of bits set in the bitmap before a given point. Fast when called with increasing points.
+  private static class BitmapRank {
+    private final byte[] bitmap;
+    private int pos; // count is the number of bits set before pos
+    private int count;
+
+    BitmapRank(byte[] bitmap) {
+      this.bitmap = bitmap;
+    }
+
+    int rankOf(int point) {
+      if (point < pos) {
+        pos = 0;
+        count = 0;
+      }
+      while (pos < point && (pos % 8) != 0) {
+        if (GribNumbers.testBitIsSet(bitmap[pos / 8], pos % 8))
+          count++;
+        pos++;
+      }
+      while (pos + 8 <= point) {
+        count += Integer.bitCount(bitmap[pos / 8] & 0xff);
+        pos += 8;
+      }
+      while (pos < point) {
+        if (GribNumbers.testBitIsSet(bitmap[pos / 8], pos % 8))
+          count++;
+        pos++;
+      }
+      return count;
+    }
+  }
+
   @Nullable
   int[] getRawData(RandomAccessFile raf, Grib2SectionBitMap bitmapSection, Grib2Drs gdrs) throws IOException {
     this.bitmap = bitmapSection.getBitmap(raf);
@@ -230,14 +399,18 @@ public class Grib2DataReader {
 
     BitReader reader = new BitReader(raf, startPos + 5);
     if (bitmap == null) {
+      readUnsigned(reader, nb, data, totalNPoints);
       for (int i = 0; i < totalNPoints; i++) {
         // data[ i ] = (R + ( X1 + X2) * EE)/DD ;
-        data[i] = (R + reader.bits2UInt(nb) * EE) / DD;
+        data[i] = (R + data[i] * EE) / DD;
       }
     } else {
-      for (int i = 0; i < totalNPoints; i++) {
+      // X2 are at the start of data; spread them out from the end, so none is overwritten before it is used
+      int k = new BitmapRank(bitmap).rankOf(totalNPoints);
+      readUnsigned(reader, nb, data, k);
+      for (int i = totalNPoints - 1; i >= 0; i--) {
         if (GribNumbers.testBitIsSet(bitmap[i / 8], i % 8)) {
-          data[i] = (R + reader.bits2UInt(nb) * EE) / DD;
+          data[i] = (R + data[--k] * EE) / DD;
         } else {
           data[i] = staticMissingValue;
           // data[i] = R / DD;
@@ -248,6 +421,21 @@ public class Grib2DataReader {
     return data;
   }
 
+  // n unsigned values of nb bits, as floats. Values of 32 bits or more do not fit in an int, so are read as longs.
+  private static void readUnsigned(BitReader reader, int nb, float[] dest, int n) throws IOException {
+    if (nb < 32) {
+      int[] values = scratch.get().ints(n);
+      reader.readUInts(nb, values, 0, n);
+      for (int i = 0; i < n; i++)
+        dest[i] = values[i];
+    } else {
+      long[] values = new long[n];
+      reader.readULongs(nb, values, 0, n);
+      for (int i = 0; i < n; i++)
+        dest[i] = values[i];
+    }
+  }
+
   /*
    * Data template 7.2 – Grid point data – complex packing
    * Note: For most templates, details of the packing process are described in Regulation 92.9.4.
@@ -295,9 +483,7 @@ public class Grib2DataReader {
     int[] X1 = new int[NG];
     int nb = gdrs.numberOfBits;
     if (nb != 0) {
-      for (int i = 0; i < NG; i++) {
-        X1[i] = (int) reader.bits2UInt(nb);
-      }
+      reader.readUInts(nb, X1, 0, NG);
     }
 
     // [xx +1 ]-yy Get number of bits used to encode each group
@@ -305,9 +491,7 @@ public class Grib2DataReader {
     nb = gdrs.bitsGroupWidths;
     if (nb != 0) {
       reader.incrByte();
-      for (int i = 0; i < NG; i++) {
-        NB[i] = (int) reader.bits2UInt(nb);
-      }
+      reader.readUInts(nb, NB, 0, NG);
     }
 
     // [yy +1 ]-zz Get the scaled group lengths using formula
@@ -320,12 +504,14 @@ public class Grib2DataReader {
     nb = gdrs.bitsScaledGroupLength;
 
     reader.incrByte();
+    reader.readUInts(nb, L, 0, NG);
     for (int i = 0; i < NG; i++) {
-      L[i] = ref + (int) reader.bits2UInt(nb) * len_inc;
+      L[i] = ref + L[i] * len_inc;
     }
     L[NG - 1] = gdrs.lengthLastGroup; // enter Length of Last Group
 
-    float[] data = new float[totalNPoints];
+    // if there is a bitmap, data is expanded into a new array below
+    float[] data = (bitmap != null) ? scratch.get().floats(totalNPoints) : new float[totalNPoints];
 
     // [zz +1 ]-nn get X2 values and calculate the results Y using formula
 
@@ -338,8 +524,12 @@ public class Grib2DataReader {
     // E = THE BINARY SCALE FACTOR
     // D = THE DECIMAL SCALE FACTOR
     int count = 0;
+    int[] X2 = scratch.get().ints(maxLength(L));
     reader.incrByte();
     for (int i = 0; i < NG; i++) {
+      if (NB[i] != 0 && L[i] > 0) {
+        reader.readUInts(NB[i], X2, 0, L[i]);
+      }
       for (int j = 0; j < L[i]; j++) {
         if (NB[i] == 0) {
           if (mvm == 0) { // X2 = 0
@@ -348,15 +538,14 @@ public class Grib2DataReader {
             data[count++] = mv;
           }
         } else {
-          int X2 = (int) reader.bits2UInt(NB[i]);
           if (mvm == 0) {
-            data[count++] = (R + (X1[i] + X2) * EE) / DD;
+            data[count++] = (R + (X1[i] + X2[j]) * EE) / DD;
           } else { // if (mvm == 1) || (mvm == 2 )
             // X2 is also set to missing value if all bits set to 1's
-            if (X2 == bitsmv1[NB[i]]) {
+            if (X2[j] == bitsmv1[NB[i]]) {
               data[count++] = mv;
             } else {
-              data[count++] = (R + (X1[i] + X2) * EE) / DD;
+              data[count++] = (R + (X1[i] + X2[j]) * EE) / DD;
             }
           }
         }
@@ -380,6 +569,15 @@ public class Grib2DataReader {
   }
 
 
+  // the largest group length, so one buffer holds the values of any group
+  private static int maxLength(int[] L) {
+    int max = 0;
+    for (int len : L) {
+      max = Math.max(max, len);
+    }
+    return max;
+  }
+
   /*
    * from wgrib unpk_complex():
    * 
@@ -520,9 +718,7 @@ public class Grib2DataReader {
     int nb = gdrs.numberOfBits;
     if (nb != 0) {
       reader.incrByte();
-      for (int i = 0; i < NG; i++) {
-        X1[i] = (int) reader.bits2UInt(nb);
-      }
+      reader.readUInts(nb, X1, 0, NG);
     }
 
     // [xx +1 ]-yy Get number of bits used to encode each group
@@ -531,9 +727,7 @@ public class Grib2DataReader {
     nb = gdrs.bitsGroupWidths;
     if (nb != 0) {
       reader.incrByte();
-      for (int i = 0; i < NG; i++) {
-        NB[i] = (int) reader.bits2UInt(nb);
-      }
+      reader.readUInts(nb, NB, 0, NG);
     }
 
     int referenceGroupWidths = gdrs.referenceGroupWidths;
@@ -552,9 +746,7 @@ public class Grib2DataReader {
 
     if (nb != 0) {
       reader.incrByte();
-      for (int i = 0; i < NG; i++) {
-        L[i] = (int) reader.bits2UInt(nb);
-      }
+      reader.readUInts(nb, L, 0, NG);
     }
 
     int totalL = 0;
@@ -589,7 +781,10 @@ public class Grib2DataReader {
       }
     }
 
-    float[] data = new float[totalNPoints];
+    // if there are missing values or a bitmap, data is expanded into a new array below
+    Scratch buffers = scratch.get();
+    boolean expanded = (mvm == 1 || mvm == 2 || bitmap != null);
+    float[] data = expanded ? buffers.floats(totalNPoints) : new float[totalNPoints];
 
     // [zz +1 ]-nn get X2 values and calculate the results Y using formula
     // formula used to create values, Y * 10**D = R + (X1 + X2) * 2**E
@@ -603,14 +798,17 @@ public class Grib2DataReader {
     // E = THE BINARY SCALE FACTOR
     // D = THE DECIMAL SCALE FACTOR
     int count = 0;
+    int[] X2 = buffers.ints(maxLength(L));
     reader.incrByte();
     int dataSize = 0;
     boolean[] dataBitMap = null;
     if (mvm == 0) {
       for (int i = 0; i < NG; i++) {
         if (NB[i] != 0) {
+          if (L[i] > 0)
+            reader.readUInts(NB[i], X2, 0, L[i]);
           for (int j = 0; j < L[i]; j++) {
-            data[count++] = (int) reader.bits2UInt(NB[i]) + X1[i];
+            data[count++] = X2[j] + X1[i];
           }
         } else {
           for (int j = 0; j < L[i]; j++) {
@@ -621,14 +819,16 @@ public class Grib2DataReader {
 
     } else if (mvm == 1 || mvm == 2) {
       // don't add missing values into data but keep track of them in dataBitMap
-      dataBitMap = new boolean[totalNPoints];
+      dataBitMap = buffers.booleans(totalNPoints);
       dataSize = 0;
       for (int i = 0; i < NG; i++) {
         if (NB[i] != 0) {
           int msng1 = bitsmv1[NB[i]];
           int msng2 = msng1 - 1;
+          if (L[i] > 0)
+            reader.readUInts(NB[i], X2, 0, L[i]);
           for (int j = 0; j < L[i]; j++) {
-            data[count] = (int) reader.bits2UInt(NB[i]);
+            data[count] = X2[j];
             if (data[count] == msng1 || mvm == 2 && data[count] == msng2) {
               dataBitMap[count] = false;
             } else {
@@ -703,13 +903,13 @@ public class Grib2DataReader {
     // D = THE DECIMAL SCALE FACTOR
 
     if (mvm == 0) { // no missing values
-      for (int i = 0; i < data.length; i++) {
+      for (int i = 0; i < totalNPoints; i++) {
         data[i] = (R + (data[i] * EE)) / DD;
       }
     } else if (mvm == 1 || mvm == 2) { // missing value == 1 || missing value == 2
       int count2 = 0;
       float[] tmp = new float[totalNPoints];
-      for (int i = 0; i < data.length; i++) {
+      for (int i = 0; i < totalNPoints; i++) {
         if (dataBitMap[i]) {
           tmp[i] = (R + (data[count2++] * EE)) / DD;
         } else { // mvm = 1 or 2
@@ -752,16 +952,6 @@ public class Grib2DataReader {
     float EE = (float) java.lang.Math.pow(2.0, (double) E);
     float ref_val = R / DD;
 
-    Grib2JpegDecoder g2j = null;
-    // try {
-    if (nb != 0) { // there's data to decode
-      g2j = new Grib2JpegDecoder(nb, false);
-      byte[] buf = new byte[dataLength - 5];
-      raf.readFully(buf);
-      g2j.decode(buf);
-      gdrs.hasSignedProblem = g2j.hasSignedProblem();
-    }
-
     float[] result = new float[totalNPoints];
 
     // no data to decode, set to reference value
@@ -772,31 +962,35 @@ public class Grib2DataReader {
       return result;
     }
 
-    int[] idata = g2j.getGdata();
-    if (bitmap == null) { // must be one decoded value in idata for every expected data point
-      if (idata.length != dataNPoints) {
-        logger.debug("Number of points in the data record {} != {} expected from GDS", idata.length, dataNPoints);
-        throw new IllegalStateException("Number of points in the data record {} != expected from GDS");
-      }
+    // the values are scaled as they are decoded, into the start of result
+    // Y * 10^D = R + (X1 + X2) * 2^E ; // regulation 92.9.4
+    // Y = (R + ( 0 + X2) * EE)/DD ;
+    Grib2JpegDecoder g2j = new Grib2JpegDecoder(nb, false);
+    byte[] buf = new byte[dataLength - 5];
+    raf.readFully(buf);
+    int n = g2j.decode(buf, result, R, EE, DD);
+    gdrs.hasSignedProblem = g2j.hasSignedProblem();
+    if (n < 0) {
+      throw new IllegalStateException("jj2000 could not decode the data, exit code " + g2j.getExitCode());
+    }
 
-      for (int i = 0; i < dataNPoints; i++) {
-        // Y * 10^D = R + (X1 + X2) * 2^E ; // regulation 92.9.4
-        // Y = (R + ( 0 + X2) * EE)/DD ;
-        result[i] = (R + idata[i] * EE) / DD;
+    if (bitmap == null) { // must be one decoded value for every expected data point
+      if (n != dataNPoints) {
+        logger.debug("Number of points in the data record {} != {} expected from GDS", n, dataNPoints);
+        throw new IllegalStateException("Number of points in the data record {} != expected from GDS");
       }
       return result;
 
     } else { // use bitmap to skip missing values
-      for (int i = 0, j = 0; i < totalNPoints; i++) {
+      // spread the values out from the end, so none is overwritten before it is used
+      int k = new BitmapRank(bitmap).rankOf(totalNPoints);
+      if (n < k) {
+        logger.warn("jj2000 data count {} < bitmask count {}, totalNPoints={}", n, k, totalNPoints);
+      }
+      for (int i = totalNPoints - 1; i >= 0; i--) {
         if (GribNumbers.testBitIsSet(bitmap[i / 8], i % 8)) {
-          if (j >= idata.length) {
-            logger.warn("jj2000 data count {} < bitmask count {}, i={}, totalNPoints={}", idata.length, j, i,
-                totalNPoints);
-            break;
-          }
-          int indata = idata[j];
-          result[i] = (R + indata * EE) / DD;
-          j++;
+          k--;
+          result[i] = (k < n) ? result[k] : staticMissingValue;
         } else {
           result[i] = staticMissingValue;
         }
@@ -897,6 +1091,42 @@ public class Grib2DataReader {
 
     byte[] buf = new byte[dataLength - 5];
     raf.readFully(buf);
+    Grib2PngDecoder decoder = Grib2PngDecoder.open(buf);
+    if (decoder == null) { // not one of the usual kinds of image
+      getData41ImageIO(buf, nb, R, EE, DD, data);
+      return data;
+    }
+
+    if (nb != decoder.getPixelSize()) {
+      logger.debug("PNG pixel size {} disagrees with grib number of bits {}", decoder.getPixelSize(), nb);
+    }
+    int nvalues = (bitmap == null) ? dataNPoints : new BitmapRank(bitmap).rankOf(totalNPoints);
+    if (decoder.getNumPixels() < nvalues) {
+      throw new IllegalStateException(
+          "Number of points in the PNG image " + decoder.getNumPixels() + " < " + nvalues + " expected");
+    }
+    int[] values = scratch.get().ints((int) decoder.getNumPixels());
+    decoder.decode(values);
+
+    if (bitmap == null) {
+      for (int i = 0; i < dataNPoints; i++) {
+        data[i] = (R + values[i] * EE) / DD;
+      }
+    } else {
+      for (int bitPt = 0, dataPt = 0; bitPt < totalNPoints; bitPt++) {
+        if (GribNumbers.testBitIsSet(bitmap[bitPt / 8], bitPt % 8)) {
+          data[bitPt] = (R + values[dataPt++] * EE) / DD;
+        } else {
+          data[bitPt] = staticMissingValue;
+        }
+      }
+    }
+
+    return data;
+  }
+
+  // decode images that Grib2PngDecoder does not handle
+  private void getData41ImageIO(byte[] buf, int nb, float R, float EE, float DD, float[] data) throws IOException {
     InputStream in = new ByteArrayInputStream(buf);
     BufferedImage image = ImageIO.read(in);
 
@@ -926,8 +1156,6 @@ public class Grib2DataReader {
         }
       }
     }
-
-    return data;
   }
 
   private int decodePng(int numBands, int offset, DataBuffer db) throws IOException {
@@ -975,21 +1203,15 @@ public class Grib2DataReader {
 
     reader = new BitReader(raf, startPos + 5);
     int[] groupWidth = new int[gdrs.p1];
-    for (int i = 0; i < gdrs.p1; i++) {
-      groupWidth[i] = (int) reader.bits2UInt(gdrs.widthOfWidth);
-    }
+    reader.readUInts(gdrs.widthOfWidth, groupWidth, 0, gdrs.p1);
 
     reader = new BitReader(raf, raf.getFilePointer());
     int[] groupLength = new int[gdrs.p1];
-    for (int i = 0; i < gdrs.p1; i++) {
-      groupLength[i] = (int) reader.bits2UInt(gdrs.widthOfLength);
-    }
+    reader.readUInts(gdrs.widthOfLength, groupLength, 0, gdrs.p1);
 
     reader = new BitReader(raf, raf.getFilePointer());
     int[] firstOrderValues = new int[gdrs.p1];
-    for (int i = 0; i < gdrs.p1; i++) {
-      firstOrderValues[i] = (int) reader.bits2UInt(gdrs.widthOfFirstOrderValues);
-    }
+    reader.readUInts(gdrs.widthOfFirstOrderValues, firstOrderValues, 0, gdrs.p1);
 
     int bias = 0;
     if (gdrs.orderOfSPD > 0) {
@@ -1002,8 +1224,8 @@ public class Grib2DataReader {
     for (int i = 0; i < gdrs.p1; i++) {
       if (groupWidth[i] > 0) {
 
+        reader.readUInts(groupWidth[i], data, cnt, groupLength[i]);
         for (int j = 0; j < groupLength[i]; j++) {
-          data[cnt] = (int) reader.bits2UInt(groupWidth[i]);
           data[cnt] += firstOrderValues[i];
           cnt++;
         }
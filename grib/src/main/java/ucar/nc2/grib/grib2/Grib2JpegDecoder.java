@@ -26,6 +26,7 @@ import java.util.*;
 import java.io.IOException;
 import java.io.EOFException;
 import java.io.ByteArrayInputStream;
+import javax.annotation.Nullable;
 
 /**
  * Adaptation of jj2000.j2k.decoder.Decoder, in order to read input from memory.
@@ -74,29 +75,14 @@ public class Grib2JpegDecoder {
     this.debug = debug;
 
     // not sure if these are needed in the bowels of jj2000
-    String[] argv = new String[6];
+    String[] argv = new String[4];
     argv[0] = "-rate";
     argv[1] = Integer.toString(nbits);
     argv[2] = "-verbose";
     argv[3] = "off";
-    argv[4] = "-debug";
-    argv[5] = "on";
-
-    // Initialize default parameters
-    // System.err.println("calling Grib2JpegDecoder with argv argument");
-    /*
-     * The default parameter list (with modules arguments)
-     */
-    ParameterList defpl = new ParameterList();
-    String[][] param = Grib2JpegDecoder.getAllParameters();
-
-    for (int i = param.length - 1; i >= 0; i--) {
-      if (param[i][3] != null)
-        defpl.put(param[i][0], param[i][3]);
-    }
 
     // Create parameter list using defaults
-    pl = new ParameterList(defpl);
+    pl = new ParameterList(DefaultParameters.LIST);
 
     // Parse arguments from argv
     try {
@@ -106,6 +92,22 @@ public class Grib2JpegDecoder {
     }
   } // end Grib2JpegDecoder constructor
 
+  // The default parameter list (with modules arguments), made the first time it's needed, then shared.
+  // Only read after it is made, as the defaults of each decoder's own list.
+  private static class DefaultParameters {
+    static final ParameterList LIST = make();
+
+    private static ParameterList make() {
+      ParameterList defpl = new ParameterList();
+      String[][] param = Grib2JpegDecoder.getAllParameters();
+      for (int i = param.length - 1; i >= 0; i--) {
+        if (param[i][3] != null)
+          defpl.put(param[i][0], param[i][3]);
+      }
+      return defpl;
+    }
+  }
+
   /**
    * Returns the exit code of the class. This is only initialized after the
    * constructor and when the run method returns.
@@ -129,142 +131,11 @@ public class Grib2JpegDecoder {
    * @see #getExitCode
    */
   public void decode(byte[] buf) throws IOException {
-    // int dataSize = buf.length;
-    boolean verbose = false;
-    int res; // resolution level to reconstruct
-    FileFormatReader ff;
-    HeaderDecoder hd;
-    EntropyDecoder entdec;
-    ROIDeScaler roids;
-    Dequantizer deq;
-    InverseWT invWT;
-    InvCompTransf ictransf;
-    // ImgWriter imwriter[];
-    ImgDataConverter converter;
-    DecoderSpecs decSpec;
-    BlkImgDataSrc palettized;
-    BlkImgDataSrc channels;
-    BlkImgDataSrc resampled;
-    BlkImgDataSrc color;
-    int i;
-    int[] depth;
-
     try {
-
-      // create a ByteArrayInputStream from byte array for ISRandomAccessIO
-      ByteArrayInputStream bais = new ByteArrayInputStream(buf);
-      RandomAccessIO in = new ISRandomAccessIO(bais, buf.length, 1, buf.length);
-
-      // **** File Format ****
-      // If the codestream is wrapped in the jp2 fileformat, Read the
-      // file format wrapper
-      ff = new FileFormatReader(in);
-      ff.readFileFormat();
-      if (ff.JP2FFUsed) {
-        in.seek(ff.getFirstCodeStreamPos());
-        logger.warn("ff.JP2FFUsed is used"); // LOOK probably not
-      }
-
-      // +----------------------------+
-      // | Instantiate decoding chain |
-      // +----------------------------+
-
-      // **** Header decoder ****
-      // Instantiate header decoder and read main header
-      /*
-       * Information contained in the codestream's headers
-       */
-      HeaderInfo hi = new HeaderInfo();
-      try {
-        hd = new HeaderDecoder(in, pl, hi);
-      } catch (EOFException e) {
-        error("Codestream too short or bad header, unable to decode.", 2, e);
-        throw e;
-      }
-
-      int nCompCod = hd.getNumComps();
-      decSpec = hd.getDecoderSpecs();
-
-      // Get demixed bitdepths
-      depth = new int[nCompCod];
-      for (i = 0; i < nCompCod; i++) {
-        depth[i] = hd.getOriginalBitDepth(i);
-      }
-
-      // **** Bit stream reader ****
-      BitstreamReaderAgent breader = BitstreamReaderAgent.createInstance(in, hd, pl, decSpec, false, hi);
-
-      // **** Entropy decoder ****
-      try {
-        entdec = hd.createEntropyDecoder(breader, pl);
-      } catch (IllegalArgumentException e) {
-        error("Cannot instantiate entropy decoder", 2, e);
-        return;
-      }
-
-      // **** ROI de-scaler ****
-      try {
-        roids = hd.createROIDeScaler(entdec, pl, decSpec);
-      } catch (IllegalArgumentException e) {
-        error("Cannot instantiate roi de-scaler", 2, e);
+      BlkImgDataSrc decodedImage = makeDecodingChain(buf);
+      if (decodedImage == null) {
         return;
       }
-
-      // **** Dequantizer ****
-      try {
-        deq = hd.createDequantizer(roids, depth, decSpec);
-      } catch (IllegalArgumentException e) {
-        error("Cannot instantiate dequantizer", 2, e);
-        return;
-      }
-
-      // **** Inverse wavelet transform ***
-      try {
-        // full page inverse wavelet transform
-        invWT = InverseWT.createInstance(deq, decSpec);
-      } catch (IllegalArgumentException e) {
-        error("Cannot instantiate inverse wavelet transform", 2, e);
-        return;
-      }
-
-      res = breader.getImgRes();
-      invWT.setImgResLevel(res);
-
-      // **** Data converter **** (after inverse transform module)
-      converter = new ImgDataConverter(invWT, 0);
-
-      // **** Inverse component transformation ****
-      ictransf = new InvCompTransf(converter, decSpec, depth, pl);
-
-      // **** Color space mapping ****
-      String p = pl.getParameter("nocolorspace");
-      boolean nocolorspace = "off".equals(p); // LOOK not sure what default is here
-      if (ff.JP2FFUsed && nocolorspace) {
-        try {
-          csMap = new ColorSpace(in, hd, pl);
-          channels = hd.createChannelDefinitionMapper(ictransf, csMap);
-          resampled = hd.createResampler(channels, csMap);
-          palettized = hd.createPalettizedColorSpaceMapper(resampled, csMap);
-          color = hd.createColorSpaceMapper(palettized, csMap);
-
-        } catch (IllegalArgumentException e) {
-          error("Could not instantiate ICC profiler", 1, e);
-          return;
-        } catch (ColorSpaceException e) {
-          error("error processing jp2 colorspace information", 1, e);
-          return;
-        }
-      } else { // Skip colorspace mapping
-        color = ictransf;
-      }
-
-      // This is the last image in the decoding chain and should be
-      // assigned by the last transformation:
-      BlkImgDataSrc decodedImage = color;
-      if (color == null) {
-        decodedImage = ictransf;
-      }
-
       int nCompImg = decodedImage.getNumComps();
 
       // code to get data
@@ -273,16 +144,10 @@ public class Grib2JpegDecoder {
       ImgWriter[] imwriter = new ImgWriter[nCompImg];
 
       // Now write the image to the array (decodes as needed)
-      boolean isSigned;
-      for (i = 0; i < imwriter.length; i++) {
+      for (int i = 0; i < imwriter.length; i++) {
+        boolean isSigned = isSigned(i);
         try {
-          if (csMap != null) {
-            isSigned = csMap.isOutputSigned(i);
-            imwriter[i] = new ImgWriterArray(decodedImage, i, csMap.isOutputSigned(i));
-          } else {
-            isSigned = hd.isOriginalSigned(i);
-            imwriter[i] = new ImgWriterArray(decodedImage, i, hd.isOriginalSigned(i));
-          }
+          imwriter[i] = new ImgWriterArray(decodedImage, i, isSigned);
         } catch (IOException e) {
           if (debug)
             e.printStackTrace();
@@ -295,12 +160,7 @@ public class Grib2JpegDecoder {
           data = iwa.getGdata();
           // unSigned data processing here
           if (!isSigned) {
-            // float unSignIt = (float) java.lang.Math.pow((double) 2.0, fnb - 1); // LOOK WTF ?
-            int nb = depth[i];
-            int levShift = 1 << (nb - 1); // check
-            if (nb != rate)
-              hasSignedProblem = true;
-
+            int levShift = levShift(i);
             for (int j = 0; j < data.length; j++)
               data[j] += levShift;
           }
@@ -312,29 +172,56 @@ public class Grib2JpegDecoder {
         }
       } // end for(i=0; i<imwriter.length; i++)
 
-      // **** Print some resulting info ****
-      if (verbose) {
-        // Print actually read bitrate
-        // if file format used add the read file format bytes
-        float bitrate = breader.getActualRate();
-        int numBytes = breader.getActualNbytes();
-        if (ff.JP2FFUsed) {
-          int imageSize = (int) ((8.0f * numBytes) / bitrate);
-          numBytes += ff.getFirstCodeStreamPos();
-          bitrate = (numBytes * 8.0f) / imageSize;
-        }
+    } catch (IllegalArgumentException e) {
+      error(e.getMessage(), 2);
+      if (debug)
+        e.printStackTrace();
 
-        if (pl.getIntParameter("ncb_quit") == -1) {
-          logger.info("Actual bit rate = " + bitrate + " bpp (i.e. " + numBytes + " bytes)");
-        } else {
-          logger.info("Number of packet body bytes read = " + numBytes);
-        }
+    } catch (RuntimeException e) {
+      error("An uncaught runtime exception has occurred", 2, e);
+      throw new IOException(e);
+
+    } catch (Throwable e) {
+      throw new IOException(e);
+    }
+  } // end decode
+
+  /**
+   * Runs the decoder, writing the scaled values Y = (R + X * EE) / DD of the first image component straight into
+   * dest, in raster order, where X is the decoded value after any level shift. Values past the end of dest are
+   * dropped. After completion the exit code is set, a non-zero value indicates that an error occurred.
+   *
+   * @param buf the JPEG2000 code stream
+   * @param dest the values, from dest[0]
+   * @param R reference value
+   * @param EE binary scale factor, 2^E
+   * @param DD decimal scale factor, 10^D
+   * @return the number of decoded values, or -1 if the decoder failed
+   * @see #getExitCode
+   */
+  public int decode(byte[] buf, float[] dest, float R, float EE, float DD) throws IOException {
+    try {
+      BlkImgDataSrc decodedImage = makeDecodingChain(buf);
+      if (decodedImage == null) {
+        return -1;
       }
+      ImgWriterFloat writer;
+      try {
+        writer = new ImgWriterFloat(decodedImage, 0, isSigned(0) ? 0 : levShift(0), dest, R, EE, DD);
+      } catch (IOException e) {
+        if (debug)
+          e.printStackTrace();
+        return -1;
+      }
+      writer.writeAll();
+      packBytes = writer.getPackBytes();
+      return writer.getNumValues();
 
     } catch (IllegalArgumentException e) {
       error(e.getMessage(), 2);
       if (debug)
         e.printStackTrace();
+      return -1;
 
     } catch (RuntimeException e) {
       error("An uncaught runtime exception has occurred", 2, e);
@@ -343,7 +230,157 @@ public class Grib2JpegDecoder {
     } catch (Throwable e) {
       throw new IOException(e);
     }
-  } // end decode
+  }
+
+  // set by makeDecodingChain()
+  private HeaderDecoder hd;
+  private int[] depth;
+
+  private boolean isSigned(int c) {
+    return (csMap != null) ? csMap.isOutputSigned(c) : hd.isOriginalSigned(c);
+  }
+
+  // inverse level shift of unsigned data
+  private int levShift(int c) {
+    int nb = depth[c];
+    if (nb != rate)
+      hasSignedProblem = true;
+    return 1 << (nb - 1);
+  }
+
+  /**
+   * Reads the headers and instantiates the decoding chain.
+   *
+   * @return the last image in the decoding chain, or null if it could not be made
+   */
+  @Nullable
+  private BlkImgDataSrc makeDecodingChain(byte[] buf) throws Exception { // jj2000 also throws its own exceptions
+    int res; // resolution level to reconstruct
+    FileFormatReader ff;
+    EntropyDecoder entdec;
+    ROIDeScaler roids;
+    Dequantizer deq;
+    InverseWT invWT;
+    InvCompTransf ictransf;
+    ImgDataConverter converter;
+    DecoderSpecs decSpec;
+    BlkImgDataSrc palettized;
+    BlkImgDataSrc channels;
+    BlkImgDataSrc resampled;
+    BlkImgDataSrc color;
+    int i;
+
+    // create a ByteArrayInputStream from byte array for ISRandomAccessIO
+    ByteArrayInputStream bais = new ByteArrayInputStream(buf);
+    RandomAccessIO in = new ISRandomAccessIO(bais, buf.length, 1, buf.length);
+
+    // **** File Format ****
+    // If the codestream is wrapped in the jp2 fileformat, Read the
+    // file format wrapper
+    ff = new FileFormatReader(in);
+    ff.readFileFormat();
+    if (ff.JP2FFUsed) {
+      in.seek(ff.getFirstCodeStreamPos());
+      logger.warn("ff.JP2FFUsed is used"); // LOOK probably not
+    }
+
+    // +----------------------------+
+    // | Instantiate decoding chain |
+    // +----------------------------+
+
+    // **** Header decoder ****
+    // Instantiate header decoder and read main header
+    /*
+     * Information contained in the codestream's headers
+     */
+    HeaderInfo hi = new HeaderInfo();
+    try {
+      hd = new HeaderDecoder(in, pl, hi);
+    } catch (EOFException e) {
+      error("Codestream too short or bad header, unable to decode.", 2, e);
+      throw e;
+    }
+
+    int nCompCod = hd.getNumComps();
+    decSpec = hd.getDecoderSpecs();
+
+    // Get demixed bitdepths
+    depth = new int[nCompCod];
+    for (i = 0; i < nCompCod; i++) {
+      depth[i] = hd.getOriginalBitDepth(i);
+    }
+
+    // **** Bit stream reader ****
+    BitstreamReaderAgent breader = BitstreamReaderAgent.createInstance(in, hd, pl, decSpec, false, hi);
+
+    // **** Entropy decoder ****
+    try {
+      entdec = hd.createEntropyDecoder(breader, pl);
+    } catch (IllegalArgumentException e) {
+      error("Cannot instantiate entropy decoder", 2, e);
+      return null;
+    }
+
+    // **** ROI de-scaler ****
+    try {
+      roids = hd.createROIDeScaler(entdec, pl, decSpec);
+    } catch (IllegalArgumentException e) {
+      error("Cannot instantiate roi de-scaler", 2, e);
+      return null;
+    }
+
+    // **** Dequantizer ****
+    try {
+      deq = hd.createDequantizer(roids, depth, decSpec);
+    } catch (IllegalArgumentException e) {
+      error("Cannot instantiate dequantizer", 2, e);
+      return null;
+    }
+
+    // **** Inverse wavelet transform ***
+    try {
+      // full page inverse wavelet transform
+      invWT = InverseWT.createInstance(deq, decSpec);
+    } catch (IllegalArgumentException e) {
+      error("Cannot instantiate inverse wavelet transform", 2, e);
+      return null;
+    }
+
+    res = breader.getImgRes();
+    invWT.setImgResLevel(res);
+
+    // **** Data converter **** (after inverse transform module)
+    converter = new ImgDataConverter(invWT, 0);
+
+    // **** Inverse component transformation ****
+    ictransf = new InvCompTransf(converter, decSpec, depth, pl);
+
+    // **** Color space mapping ****
+    String p = pl.getParameter("nocolorspace");
+    boolean nocolorspace = "off".equals(p); // LOOK not sure what default is here
+    if (ff.JP2FFUsed && nocolorspace) {
+      try {
+        csMap = new ColorSpace(in, hd, pl);
+        channels = hd.createChannelDefinitionMapper(ictransf, csMap);
+        resampled = hd.createResampler(channels, csMap);
+        palettized = hd.createPalettizedColorSpaceMapper(resampled, csMap);
+        color = hd.createColorSpaceMapper(palettized, csMap);
+
+      } catch (IllegalArgumentException e) {
+        error("Could not instantiate ICC profiler", 1, e);
+        return null;
+      } catch (ColorSpaceException e) {
+        error("error processing jp2 colorspace information", 1, e);
+        return null;
+      }
+    } else { // Skip colorspace mapping
+      color = ictransf;
+    }
+
+    // This is the last image in the decoding chain and should be
+    // assigned by the last transformation:
+    return (color == null) ? ictransf : color;
+  }
 
   private void error(String msg, int code) {
     exitCode = code;
@@ -640,4 +677,114 @@ public class Grib2JpegDecoder {
     }
   } // end ImgWriterArray
 
+  /**
+   * Writes one component straight into a float array, applying the inverse level shift and the GRIB scaling
+   * Y = (R + X * EE) / DD to each block as it is decoded. Each tile is requested in strips, so only a strip of
+   * decoded ints is held at a time.
+   * <p>
+   * <u>NOTE</u>: This class is not thread safe, for reasons of internal buffering.
+   * </p>
+   */
+  private static class ImgWriterFloat extends ImgWriter {
+    private final int c;
+    private final int levShift;
+    private final float[] dest;
+    private final float R, EE, DD;
+    private final int packBytes;
+    private DataBlkInt db = new DataBlkInt();
+    private int tileX, tileY; // upper-left corner of the current tile, in the component
+
+    ImgWriterFloat(BlkImgDataSrc imgSrc, int c, int levShift, float[] dest, float R, float EE, float DD)
+        throws IOException {
+      this.c = c;
+      this.levShift = levShift;
+      this.dest = dest;
+      this.R = R;
+      this.EE = EE;
+      this.DD = DD;
+      src = imgSrc;
+      w = src.getImgWidth();
+      h = src.getImgHeight();
+
+      int bitDepth = src.getNomRangeBits(c);
+      if ((bitDepth <= 0) || (bitDepth > 31)) {
+        throw new IOException("Array supports only bit-depth between 1 and 31");
+      }
+      packBytes = (bitDepth <= 8) ? 1 : (bitDepth <= 16) ? 2 : 4;
+    }
+
+    public void close() {}
+
+    public void flush() {}
+
+    int getPackBytes() {
+      return packBytes;
+    }
+
+    int getNumValues() {
+      return w * h;
+    }
+
+    /**
+     * Writes an area of the current tile, coordinates are relative to the tile.
+     */
+    public void write(int ulx, int uly, int w, int h) {
+      db.ulx = ulx;
+      db.uly = uly;
+      db.w = w;
+      db.h = h;
+      if (db.data != null && db.data.length < w * h) {
+        // A new one will be allocated by getInternCompData()
+        db.data = null;
+      }
+      // Request the data and make sure it is not progressive
+      do {
+        db = (DataBlkInt) src.getInternCompData(db, c);
+      } while (db.progressive);
+
+      int[] block = db.data;
+      for (int row = 0; row < h; row++) {
+        int k = db.offset + row * db.scanw;
+        int i = (tileY + uly + row) * this.w + tileX + ulx;
+        int n = Math.min(w, dest.length - i);
+        for (int col = 0; col < n; col++) {
+          dest[i + col] = (R + (block[k + col] + levShift) * EE) / DD;
+        }
+      }
+    }
+
+    /**
+     * Writes the current tile, in strips.
+     */
+    public void write() {
+      int tIdx = src.getTileIdx();
+      int tw = src.getTileCompWidth(tIdx, c);
+      int th = src.getTileCompHeight(tIdx, c);
+      for (int y = 0; y < th; y += DEF_STRIP_HEIGHT) {
+        write(0, y, tw, Math.min(DEF_STRIP_HEIGHT, th - y));
+      }
+    }
+
+    public void writeAll() {
+      Coord nT = src.getNumTiles(null);
+      src.setTile(0, 0);
+      int ulx = src.getCompULX(c);
+      int uly = src.getCompULY(c);
+      for (int y = 0; y < nT.y; y++) {
+        for (int x = 0; x < nT.x; x++) {
+          src.setTile(x, y);
+          tileX = src.getCompULX(c) - ulx;
+          tileY = src.getCompULY(c) - uly;
+          write();
+        }
+      }
+    }
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(this).add("levShift", levShift).add("component", c).add("w", w).add("h", h)
+          .toString();
+    }
+  } // end ImgWriterFloat
+
 } // end Grib2JpegDecoder
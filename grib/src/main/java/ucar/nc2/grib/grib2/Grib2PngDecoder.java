@@ -0,0 +1,238 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.grib.grib2;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import javax.annotation.Nullable;
+import ucar.nc2.filter.ZlibPool;
+import ucar.nc2.grib.GribNumbers;
+
+/**
+ * Decodes the PNG images of data template 7.41, without going through ImageIO and a BufferedImage.
+ * Handles the images that GRIB encoders write: non-interlaced greyscale of 1 to 16 bits, and 8 bit RGB or RGBA for
+ * 24 and 32 bit values. {@link #open} returns null for anything else, so the caller can fall back to ImageIO.
+ * <p/>
+ * The rows are inflated and unfiltered one at a time, and each pixel becomes one int: the greyscale sample, or the
+ * bytes of the pixel as a big endian number (RGBA as GribNumbers.int4()).
+ */
+class Grib2PngDecoder {
+  private static final byte[] SIGNATURE = {(byte) 137, 80, 78, 71, 13, 10, 26, 10};
+  private static final int IHDR = 0x49484452;
+  private static final int IDAT = 0x49444154;
+  private static final int IEND = 0x49454e44;
+
+  /**
+   * Read the header of a PNG image.
+   *
+   * @param png the PNG image
+   * @return decoder, or null if the image is not one that this class decodes
+   * @throws IOException if png is not a PNG image
+   */
+  @Nullable
+  static Grib2PngDecoder open(byte[] png) throws IOException {
+    ByteBuffer bb = ByteBuffer.wrap(png); // big endian
+    if (png.length < SIGNATURE.length + 25)
+      throw new EOFException("PNG image is too short");
+    for (byte b : SIGNATURE) {
+      if (bb.get() != b)
+        throw new IOException("Not a PNG image");
+    }
+    if (bb.getInt() != 13 || bb.getInt() != IHDR)
+      throw new IOException("PNG image does not start with IHDR");
+
+    int width = bb.getInt();
+    int height = bb.getInt();
+    int bitDepth = bb.get() & 0xff;
+    int colorType = bb.get() & 0xff;
+    int compression = bb.get();
+    int filter = bb.get();
+    int interlace = bb.get();
+    bb.getInt(); // crc, not checked
+
+    if (width <= 0 || height <= 0 || compression != 0 || filter != 0 || interlace != 0)
+      return null;
+    int samples;
+    switch (colorType) {
+      case 0: // greyscale
+        if (bitDepth > 16 || Integer.bitCount(bitDepth) != 1)
+          return null;
+        samples = 1;
+        break;
+      case 2: // RGB
+        samples = 3;
+        break;
+      case 6: // RGBA
+        samples = 4;
+        break;
+      default: // palette, greyscale with alpha
+        return null;
+    }
+    if (samples > 1 && bitDepth != 8)
+      return null;
+    return new Grib2PngDecoder(png, bb.position(), width, height, bitDepth, samples);
+  }
+
+  private final byte[] png;
+  private final int firstChunk;
+  private final int width, height, bitDepth, samples;
+
+  private Grib2PngDecoder(byte[] png, int firstChunk, int width, int height, int bitDepth, int samples) {
+    this.png = png;
+    this.firstChunk = firstChunk;
+    this.width = width;
+    this.height = height;
+    this.bitDepth = bitDepth;
+    this.samples = samples;
+  }
+
+  /** The number of bits in each pixel. */
+  int getPixelSize() {
+    return bitDepth * samples;
+  }
+
+  /** The number of pixels, which is the number of values that decode() returns. */
+  long getNumPixels() {
+    return (long) width * height;
+  }
+
+  /**
+   * Decode the pixels, in raster order.
+   *
+   * @param dest put the values here, must have at least getNumPixels() elements
+   * @throws IOException if the image is truncated or the compressed data is bad
+   */
+  void decode(int[] dest) throws IOException {
+    int pixelBytes = Math.max(1, getPixelSize() / 8); // distance to the byte of the previous pixel, for filters
+    int rowBytes = (int) (((long) width * getPixelSize() + 7) / 8);
+    byte[] prev = new byte[rowBytes + 1]; // filter type byte, then the row
+    byte[] row = new byte[rowBytes + 1];
+
+    Inflater inflater = ZlibPool.getInflater();
+    try {
+      Chunks chunks = new Chunks();
+      int destPos = 0;
+      for (int y = 0; y < height; y++) {
+        int n = 0;
+        while (n < row.length) {
+          int count = inflater.inflate(row, n, row.length - n);
+          n += count;
+          if (count == 0) {
+            if (inflater.finished() || !inflater.needsInput())
+              throw new EOFException("PNG image data ends at row " + y + " of " + height);
+            chunks.nextData(inflater);
+          }
+        }
+        unfilter(row, prev, pixelBytes);
+        destPos = unpack(row, dest, destPos);
+        byte[] tmp = prev;
+        prev = row;
+        row = tmp;
+      }
+    } catch (DataFormatException e) {
+      throw new IOException("Bad PNG image data", e);
+    } finally {
+      ZlibPool.release(inflater);
+    }
+  }
+
+  // the IDAT chunks in order, given to the inflater as it asks for them
+  private class Chunks {
+    private int pos = firstChunk;
+
+    void nextData(Inflater inflater) throws IOException {
+      while (pos + 8 <= png.length) {
+        int length = readInt(pos);
+        int type = readInt(pos + 4);
+        int start = pos + 8;
+        if (length < 0 || start + (long) length > png.length)
+          throw new EOFException("PNG chunk is truncated");
+        pos = start + length + 4; // skip the crc
+        if (type == IEND)
+          break;
+        if (type == IDAT && length > 0) {
+          inflater.setInput(png, start, length);
+          return;
+        }
+      }
+      throw new EOFException("PNG image has no more image data");
+    }
+
+    private int readInt(int p) {
+      return (png[p] & 0xff) << 24 | (png[p + 1] & 0xff) << 16 | (png[p + 2] & 0xff) << 8 | (png[p + 3] & 0xff);
+    }
+  }
+
+  // undo the filter of row[1..], in place. prev is the previous row after unfiltering, all zeros for the first row
+  private static void unfilter(byte[] row, byte[] prev, int bpp) throws IOException {
+    int n = row.length;
+    switch (row[0]) {
+      case 0: // None
+        break;
+      case 1: // Sub
+        for (int i = 1 + bpp; i < n; i++)
+          row[i] += row[i - bpp];
+        break;
+      case 2: // Up
+        for (int i = 1; i < n; i++)
+          row[i] += prev[i];
+        break;
+      case 3: // Average
+        for (int i = 1; i < n; i++) {
+          int left = (i > bpp) ? row[i - bpp] & 0xff : 0;
+          row[i] += (left + (prev[i] & 0xff)) >>> 1;
+        }
+        break;
+      case 4: // Paeth
+        for (int i = 1; i < n; i++) {
+          int a = (i > bpp) ? row[i - bpp] & 0xff : 0;
+          int b = prev[i] & 0xff;
+          int c = (i > bpp) ? prev[i - bpp] & 0xff : 0;
+          int p = a + b - c;
+          int pa = Math.abs(p - a);
+          int pb = Math.abs(p - b);
+          int pc = Math.abs(p - c);
+          row[i] += (pa <= pb && pa <= pc) ? a : (pb <= pc) ? b : c;
+        }
+        break;
+      default:
+        throw new IOException("Unknown PNG filter type " + row[0]);
+    }
+  }
+
+  // the pixels of an unfiltered row, returns the next position in dest
+  private int unpack(byte[] row, int[] dest, int destPos) {
+    switch (getPixelSize()) {
+      case 8:
+        for (int x = 0; x < width; x++)
+          dest[destPos++] = row[1 + x] & 0xff;
+        break;
+      case 16:
+        for (int x = 0, i = 1; x < width; x++, i += 2)
+          dest[destPos++] = (row[i] & 0xff) << 8 | (row[i + 1] & 0xff);
+        break;
+      case 24:
+        for (int x = 0, i = 1; x < width; x++, i += 3)
+          dest[destPos++] = GribNumbers.uint3(row[i] & 0xff, row[i + 1] & 0xff, row[i + 2] & 0xff);
+        break;
+      case 32:
+        for (int x = 0, i = 1; x < width; x++, i += 4)
+          dest[destPos++] = GribNumbers.int4(row[i] & 0xff, row[i + 1] & 0xff, row[i + 2] & 0xff, row[i + 3] & 0xff);
+        break;
+      default: // 1, 2 or 4 bit greyscale, packed from the high bits of each byte
+        int perByte = 8 / bitDepth;
+        int mask = (1 << bitDepth) - 1;
+        for (int x = 0; x < width; x++) {
+          int shift = 8 - bitDepth * (1 + x % perByte);
+          dest[destPos++] = (row[1 + x / perByte] >> shift) & mask;
+        }
+        break;
+    }
+    return destPos;
+  }
+}
@@ -7,12 +7,15 @@ package ucar.nc2.grib.grib2;
 
 import com.google.common.base.MoreObjects;
 import javax.annotation.Nullable;
+import ucar.ma2.RangeIterator;
 import ucar.nc2.grib.GribData;
 import ucar.nc2.grib.QuasiRegular;
 import ucar.nc2.time.CalendarDate;
+import ucar.unidata.io.InMemoryRandomAccessFile;
 import ucar.unidata.io.RandomAccessFile;
 import ucar.unidata.util.StringUtil2;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Formatter;
 
 /**
@@ -305,27 +308,127 @@ public class Grib2Record {
    */
   public static float[] readData(RandomAccessFile raf, long drsPos, long bmsPos, int gdsNumberPoints, int scanMode,
       int nx, int ny, int[] nptsInLine) throws IOException {
-    raf.seek(drsPos);
-    Grib2SectionDataRepresentation drs = new Grib2SectionDataRepresentation(raf);
-    Grib2SectionBitMap bms = new Grib2SectionBitMap(raf);
-    Grib2SectionData dataSection = new Grib2SectionData(raf);
+    float[] data = readRawData(raf, drsPos, bmsPos).decode(gdsNumberPoints, scanMode, nx, ny, nptsInLine);
+    if (getlastRecordRead)
+      lastRecordRead = Grib2RecordScanner.findRecordByDrspos(raf, drsPos);
+    return data;
+  }
 
-    if (bmsPos > 0)
-      bms = Grib2SectionBitMap.factory(raf, bmsPos);
+  /**
+   * Read sections 5-7 (and a replaced bitmap) of a record into memory, without decoding them.
+   * Only positional reads are used, so the file pointer of raf is not changed. The result does not reference raf,
+   * and may be decoded on another thread, after raf is closed.
+   *
+   * @param raf from this RandomAccessFile
+   * @param drsPos Grib2SectionDataRepresentation starts here
+   * @param bmsPos if non-zero, use the bms that starts here
+   * @return the undecoded data
+   * @throws IOException on read error
+   */
+  public static RawData readRawData(RandomAccessFile raf, long drsPos, long bmsPos) throws IOException {
+    RandomAccessFile sections = readSections(raf, drsPos, 3);
+    RandomAccessFile bmsSection = (bmsPos > 0) ? readSections(raf, bmsPos, 1) : null;
+    return new RawData(sections, bmsSection);
+  }
 
-    Grib2DataReader reader = new Grib2DataReader(drs.getDataTemplate(), gdsNumberPoints, drs.getDataPoints(), scanMode,
-        nx, dataSection.getStartingPosition(), dataSection.getMsgLength());
+  /** The undecoded sections 5-7 of a record, from readRawData(). Positions are relative to the drs. */
+  public static class RawData {
+    private final RandomAccessFile sections;
+    private final RandomAccessFile bmsSection; // replaced bitmap, may be null
 
-    Grib2Drs gdrs = drs.getDrs(raf);
+    private RawData(RandomAccessFile sections, @Nullable RandomAccessFile bmsSection) {
+      this.sections = sections;
+      this.bmsSection = bmsSection;
+    }
 
-    float[] data = reader.getData(raf, bms, gdrs);
+    /**
+     * Decode the data. Not thread safe.
+     *
+     * @param gdsNumberPoints gdss.getNumberPoints()
+     * @param scanMode gds.scanMode
+     * @param nx gds.nx
+     * @return data as float[] array
+     * @throws IOException on read error
+     */
+    public float[] decode(int gdsNumberPoints, int scanMode, int nx, int ny, int[] nptsInLine) throws IOException {
+      sections.seek(0);
+      Grib2SectionDataRepresentation drs = new Grib2SectionDataRepresentation(sections);
+      Grib2SectionBitMap bms = new Grib2SectionBitMap(sections);
+      Grib2SectionData dataSection = new Grib2SectionData(sections);
+
+      byte[] bitmap;
+      if (bmsSection != null) {
+        bmsSection.seek(0);
+        bms = new Grib2SectionBitMap(bmsSection);
+        bitmap = bms.getBitmap(bmsSection);
+      } else {
+        bitmap = bms.getBitmap(sections);
+      }
 
-    if (nptsInLine != null)
-      data = QuasiRegular.convertQuasiGrid(data, nptsInLine, nx, ny, GribData.getInterpolationMethod());
+      Grib2DataReader reader = new Grib2DataReader(drs.getDataTemplate(), gdsNumberPoints, drs.getDataPoints(),
+          scanMode, nx, dataSection.getStartingPosition(), dataSection.getMsgLength());
 
-    if (getlastRecordRead)
-      lastRecordRead = Grib2RecordScanner.findRecordByDrspos(raf, drsPos);
-    return data;
+      Grib2Drs gdrs = drs.getDrs(sections);
+
+      float[] data = reader.getData(sections, bitmap, bms.getBitMapIndicator(), gdrs);
+
+      if (nptsInLine != null)
+        data = QuasiRegular.convertQuasiGrid(data, nptsInLine, nx, ny, GribData.getInterpolationMethod());
+      return data;
+    }
+
+    /**
+     * Decode only the wanted rows and columns of the data, if this record allows it. Not thread safe.
+     *
+     * @param gdsNumberPoints gdss.getNumberPoints()
+     * @param scanMode gds.scanMode
+     * @param nx gds.nx
+     * @param yRange wanted rows of the field returned by decode()
+     * @param xRange wanted columns of the field returned by decode()
+     * @return the wanted values in row-major order, or null if the record must be decoded with decode()
+     * @throws IOException on read error
+     */
+    @Nullable
+    public float[] decodeSubset(int gdsNumberPoints, int scanMode, int nx, int[] nptsInLine, RangeIterator yRange,
+        RangeIterator xRange) throws IOException {
+      if (nptsInLine != null) // thin grids are regridded after decoding
+        return null;
+      sections.seek(0);
+      Grib2SectionDataRepresentation drs = new Grib2SectionDataRepresentation(sections);
+      Grib2SectionBitMap bms = new Grib2SectionBitMap(sections);
+      Grib2SectionData dataSection = new Grib2SectionData(sections);
+      if (drs.getDataTemplate() != 0)
+        return null;
+
+      byte[] bitmap;
+      if (bmsSection != null) {
+        bmsSection.seek(0);
+        bms = new Grib2SectionBitMap(bmsSection);
+        bitmap = bms.getBitmap(bmsSection);
+      } else {
+        bitmap = bms.getBitmap(sections);
+      }
+
+      Grib2DataReader reader = new Grib2DataReader(drs.getDataTemplate(), gdsNumberPoints, drs.getDataPoints(),
+          scanMode, nx, dataSection.getStartingPosition(), dataSection.getMsgLength());
+
+      Grib2Drs gdrs = drs.getDrs(sections);
+
+      return reader.getDataSubset(sections, bitmap, bms.getBitMapIndicator(), gdrs, yRange, xRange);
+    }
+  }
+
+  // read nsections consecutive GRIB2 sections starting at pos into memory, without using the file pointer of raf
+  private static RandomAccessFile readSections(RandomAccessFile raf, long pos, int nsections) throws IOException {
+    byte[] len = new byte[4];
+    long total = 0;
+    for (int i = 0; i < nsections; i++) {
+      raf.readFully(pos + total, len, 0, 4);
+      total += ByteBuffer.wrap(len).getInt();
+    }
+    byte[] data = new byte[Math.toIntExact(total)];
+    raf.readFully(pos, data, 0, data.length);
+    return new InMemoryRandomAccessFile(raf.getLocation(), data);
   }
 
   public void check(RandomAccessFile raf, Formatter f) throws IOException {
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 1998-2021 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.grib.collection;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.Test;
+import ucar.ma2.Array;
+import ucar.ma2.DataType;
+import ucar.nc2.NetcdfFile;
+import ucar.nc2.NetcdfFiles;
+import ucar.nc2.Variable;
+
+/** Test that GribDataReader gives the same data when records are decoded concurrently. */
+public class TestGribDataReaderConcurrent {
+
+  private static float[] read(String filename, String varName) throws IOException {
+    try (NetcdfFile nc = NetcdfFiles.open(filename)) {
+      Variable var = nc.findVariable(varName);
+      assertThat(var).isNotNull();
+      Array data = var.read();
+      return (float[]) data.get1DJavaArray(DataType.FLOAT);
+    }
+  }
+
+  private static void check(String filename, String varName, int maxPerRequest, int maxTotal) throws IOException {
+    float[] expected = read(filename, varName);
+    ExecutorService exec = Executors.newFixedThreadPool(4);
+    try {
+      GribDataReader.setExecutor(exec, maxPerRequest, maxTotal);
+      assertThat(read(filename, varName)).isEqualTo(expected);
+    } finally {
+      GribDataReader.setExecutor(null, 8, 8);
+      exec.shutdown();
+    }
+  }
+
+  // template 5.40, many ensemble members
+  @Test
+  public void testJpeg2000Ensemble() throws IOException {
+    check("../grib/src/test/data/pdsScale.pds1.grib2", "Temperature_isobaric_ens", 8, 100);
+  }
+
+  // fewer permits than records in flight, so some records are decoded on the calling thread
+  @Test
+  public void testFewPermits() throws IOException {
+    check("../grib/src/test/data/pdsScale.pds1.grib2", "Temperature_isobaric_ens", 8, 1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBadLimits() {
+    GribDataReader.setExecutor(null, 0, 1);
+  }
+}
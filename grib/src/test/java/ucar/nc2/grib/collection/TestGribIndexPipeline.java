@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.nc2.grib.collection;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/** Test GribIndexPipeline, which runs the steps of building GRIB indexes concurrently. */
+public class TestGribIndexPipeline {
+  private ExecutorService exec;
+
+  @Before
+  public void setup() {
+    exec = Executors.newFixedThreadPool(4);
+  }
+
+  @After
+  public void cleanup() {
+    GribIndexPipeline.setExecutor(null, 8);
+    exec.shutdownNow();
+  }
+
+  @Test
+  public void testResultsInOrder() throws IOException {
+    GribIndexPipeline.setExecutor(exec, 4);
+    List<Integer> sources = Arrays.asList(50, 40, 30, 20, 10, 0, 5);
+    List<String> results = new ArrayList<>();
+    // the later tasks finish first
+    try (GribIndexPipeline.Ordered<Integer, String> ordered = GribIndexPipeline.start(sources.iterator(), msecs -> {
+      sleep(msecs);
+      return "took" + msecs;
+    })) {
+      while (ordered.hasNext()) {
+        int msecs = ordered.next();
+        String result = ordered.get();
+        assertThat(result).isEqualTo("took" + msecs);
+        results.add(result);
+      }
+    }
+    assertThat(results).containsExactly("took50", "took40", "took30", "took20", "took10", "took0", "took5").inOrder();
+  }
+
+  @Test
+  public void testFailureDoesNotStopOthers() throws IOException {
+    GribIndexPipeline.setExecutor(exec, 2);
+    List<String> results = new ArrayList<>();
+    try (GribIndexPipeline.Ordered<String, String> ordered =
+        GribIndexPipeline.start(Arrays.asList("a", "bad", "c").iterator(), s -> {
+          if (s.equals("bad"))
+            throw new IOException("bad file");
+          return s.toUpperCase();
+        })) {
+      while (ordered.hasNext()) {
+        String source = ordered.next();
+        try {
+          results.add(ordered.get());
+        } catch (IOException e) {
+          assertThat(source).isEqualTo("bad");
+          assertThat(e.getMessage()).isEqualTo("bad file");
+        }
+      }
+    }
+    assertThat(results).containsExactly("A", "C").inOrder();
+  }
+
+  @Test
+  public void testNoExecutorRunsOnCallingThread() throws IOException {
+    AtomicInteger started = new AtomicInteger();
+    Thread caller = Thread.currentThread();
+    try (GribIndexPipeline.Ordered<Integer, Integer> ordered =
+        GribIndexPipeline.start(Arrays.asList(1, 2, 3).iterator(), i -> {
+          assertThat(Thread.currentThread()).isSameInstanceAs(caller);
+          started.incrementAndGet();
+          return i * 10;
+        })) {
+      assertThat(ordered.next()).isEqualTo(1);
+      assertThat(started.get()).isEqualTo(0); // runs when the result is asked for
+      assertThat(ordered.get()).isEqualTo(10);
+      assertThat(started.get()).isEqualTo(1);
+    }
+    assertThat(started.get()).isEqualTo(1); // the others never ran
+  }
+
+  @Test
+  public void testUnusedResultsAreClosed() throws IOException {
+    GribIndexPipeline.setExecutor(exec, 4);
+    AtomicInteger opened = new AtomicInteger();
+    AtomicInteger closed = new AtomicInteger();
+    try (GribIndexPipeline.Ordered<Integer, Closeable> ordered =
+        GribIndexPipeline.start(Arrays.asList(1, 2, 3, 4, 5).iterator(), i -> {
+          opened.incrementAndGet();
+          return closed::incrementAndGet;
+        })) {
+      ordered.next();
+      ordered.get().close();
+      sleep(200); // let the others finish
+    }
+    assertThat(closed.get()).isEqualTo(opened.get());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testBadMaxInFlight() {
+    GribIndexPipeline.setExecutor(exec, 0);
+  }
+
+  private static void sleep(int msecs) {
+    try {
+      Thread.sleep(msecs);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+
+package ucar.nc2.grib.collection;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ucar.nc2.grib.coord.SparseArray;
+
+/** Test GribRecordColumns, the columnar storage of the records of a GRIB variable. */
+public class TestGribRecordColumns {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private static final int[] shape = {2, 3};
+  private static final int[] track = {1, 0, 2, 3, 0, 1};
+  private static final int[] fileno = {0, 1, 2};
+  private static final long[] pos = {100, 5000000000L, 300};
+  private static final int[] bmsOffset = {10, 0, 30};
+  private static final int[] drsOffset = {11, 21, 31};
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    byte[] section = GribRecordColumns.write(shape, track, 2, fileno, pos, bmsOffset, drsOffset);
+    check(GribRecordColumns.read(ByteBuffer.wrap(section)));
+  }
+
+  @Test
+  public void testMapped() throws IOException {
+    byte[] section = GribRecordColumns.write(shape, track, 2, fileno, pos, bmsOffset, drsOffset);
+    File file = tempFolder.newFile("test.ncx4");
+    try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+      out.write(new byte[] {1, 2, 3}); // section does not start at 0
+      out.write(section);
+    }
+
+    try (ucar.unidata.io.RandomAccessFile raf = new ucar.unidata.io.RandomAccessFile(file.getPath(), "r")) {
+      raf.seek(0);
+      assertThat(GribRecordColumns.isRecordColumns(raf, section.length)).isFalse();
+      raf.seek(3);
+      assertThat(GribRecordColumns.isRecordColumns(raf, section.length)).isTrue();
+    }
+    check(GribRecordColumns.map(file.getPath(), 3, section.length));
+  }
+
+  @Test(expected = IOException.class)
+  public void testTruncated() throws IOException {
+    byte[] section = GribRecordColumns.write(shape, track, 2, fileno, pos, bmsOffset, drsOffset);
+    GribRecordColumns.read(ByteBuffer.wrap(section, 0, section.length - 4));
+  }
+
+  private void check(SparseArray<GribCollectionImmutable.Record> sa) {
+    assertThat(sa.getShape()).isEqualTo(shape);
+    assertThat(sa.getNdups()).isEqualTo(2);
+    assertThat(sa.getTrack()).isEqualTo(track);
+    assertThat(sa.countNotMissing()).isEqualTo(4);
+
+    List<GribCollectionImmutable.Record> content = sa.getContent();
+    assertThat(content).hasSize(3);
+    GribCollectionImmutable.Record record = content.get(1);
+    assertThat(record.fileno).isEqualTo(1);
+    assertThat(record.pos).isEqualTo(5000000000L);
+    assertThat(record.bmsOffset).isEqualTo(0);
+    assertThat(record.drsOffset).isEqualTo(21);
+
+    GribCollectionImmutable.Record r = sa.getContent(new int[] {1, 0}); // track 3
+    assertThat(r.pos).isEqualTo(300);
+    assertThat(sa.getContent(new int[] {0, 1})).isNull();
+  }
+}
@@ -13,6 +13,8 @@ import ucar.nc2.NetcdfFile;
 import ucar.nc2.NetcdfFiles;
 import ucar.nc2.Variable;
 import ucar.nc2.grib.GribData;
+import ucar.unidata.io.InMemoryRandomAccessFile;
+import ucar.unidata.io.RandomAccessFile;
 import java.io.IOException;
 import java.lang.invoke.MethodHandles;
 import ucar.nc2.write.Ncdump;
@@ -156,4 +158,44 @@ public class TestGrib1Unpack {
     diff = Math.abs(fd - unpacked_data);
     System.out.printf("***   org=%f, packed_data-1=%d unpacked=%f diff = %f%n", fd, packed_data, unpacked_data, diff);
   }
+
+  // Tests simple packing with values of 32 bits or more, which do not fit in an int
+  @Test
+  public void testSimplePackingWideValues() throws IOException {
+    for (int nb : new int[] {32, 40}) {
+      long[] values = {0, 1, (1L << 31) - 1, 1L << 31, 3L << 30, (1L << nb) - 1};
+      int n = values.length;
+      int nbits = n * nb;
+      byte[] bds = new byte[11 + (nbits + 7) / 8];
+      bds[0] = (byte) (bds.length >> 16);
+      bds[1] = (byte) (bds.length >> 8);
+      bds[2] = (byte) bds.length;
+      bds[3] = (byte) ((8 - nbits % 8) % 8); // simple packing, unused bits at the end; E = 0, R = 0
+      bds[10] = (byte) nb;
+      for (int i = 0; i < n; i++) {
+        for (int b = 0; b < nb; b++) {
+          int bit = i * nb + b;
+          if ((values[i] >>> (nb - 1 - b) & 1) != 0)
+            bds[11 + bit / 8] |= (byte) (0x80 >>> (bit % 8));
+        }
+      }
+      RandomAccessFile raf = new InMemoryRandomAccessFile("bds", bds);
+
+      float[] expected = new float[n];
+      for (int i = 0; i < n; i++)
+        expected[i] = values[i];
+      Grib1DataReader reader = new Grib1DataReader(0, 0, n, 1, n, 0);
+      Assert.assertArrayEquals("nb=" + nb, expected, reader.getData(raf, null), 0.0f);
+
+      // every other point is missing
+      byte[] bitmap = {(byte) 0xAA, (byte) 0xA0};
+      float[] expectedWithBitmap = new float[2 * n];
+      for (int i = 0; i < n; i++) {
+        expectedWithBitmap[2 * i] = values[i];
+        expectedWithBitmap[2 * i + 1] = Float.NaN;
+      }
+      reader = new Grib1DataReader(0, 0, 2 * n, 1, 2 * n, 0);
+      Assert.assertArrayEquals("nb=" + nb, expectedWithBitmap, reader.getData(raf, bitmap), 0.0f);
+    }
+  }
 }
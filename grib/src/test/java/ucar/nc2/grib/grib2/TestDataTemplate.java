@@ -8,10 +8,16 @@ import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
+import ucar.ma2.Array;
 import ucar.ma2.DataType;
+import ucar.ma2.InvalidRangeException;
+import ucar.ma2.Range;
+import ucar.ma2.Section;
 import ucar.nc2.NetcdfFile;
 import ucar.nc2.NetcdfFiles;
 import ucar.nc2.Variable;
+import ucar.unidata.io.InMemoryRandomAccessFile;
+import ucar.unidata.io.RandomAccessFile;
 import java.io.IOException;
 
 @RunWith(JUnit4.class)
@@ -29,6 +35,63 @@ public class TestDataTemplate {
     }
   }
 
+  // Tests reading a subset of the x, y data using template 5.0, which only decodes the wanted points
+  @Test
+  public void testDrs0Subset() throws IOException, InvalidRangeException {
+    final String testfile = "../grib/src/test/data/Eumetsat.VerticalPerspective.grib2";
+    try (NetcdfFile nc = NetcdfFiles.open(testfile)) {
+      Variable var = nc.findVariable("Pixel_scene_type");
+      Array full = var.read();
+
+      int rank = var.getRank();
+      Section.Builder want = Section.builder().appendRanges(var.getShape());
+      want.replaceRange(rank - 2, new Range(500, 584, 3));
+      want.replaceRange(rank - 1, new Range(10, 1200, 7));
+      Section section = want.build();
+
+      float[] data = (float[]) var.read(section).get1DJavaArray(DataType.FLOAT);
+      float[] expected = (float[]) full.section(section.getRanges()).get1DJavaArray(DataType.FLOAT);
+      Assert.assertArrayEquals(expected, data, 0.0f);
+    }
+  }
+
+  // Tests template 5.0 with values of 32 bits or more, which do not fit in an int
+  @Test
+  public void testDrs0WideValues() throws IOException {
+    for (int nb : new int[] {32, 40}) {
+      long[] values = {0, 1, (1L << 31) - 1, 1L << 31, 3L << 30, (1L << nb) - 1};
+      byte[] drs = {0, 0, 0, 0, 0, 0, 0, 0, (byte) nb, 0}; // R = 0, E = 0, D = 0
+      Grib2Drs gdrs = new Grib2Drs.Type0(new InMemoryRandomAccessFile("drs", drs));
+
+      byte[] section = new byte[5 + (values.length * nb + 7) / 8];
+      for (int i = 0; i < values.length; i++) {
+        for (int b = 0; b < nb; b++) {
+          int bit = i * nb + b;
+          if ((values[i] >>> (nb - 1 - b) & 1) != 0)
+            section[5 + bit / 8] |= (byte) (0x80 >>> (bit % 8));
+        }
+      }
+      RandomAccessFile raf = new InMemoryRandomAccessFile("data", section);
+
+      float[] expected = new float[values.length];
+      for (int i = 0; i < values.length; i++)
+        expected[i] = values[i];
+      Grib2DataReader reader =
+          new Grib2DataReader(0, values.length, values.length, 0, values.length, 0, section.length);
+      Assert.assertArrayEquals("nb=" + nb, expected, reader.getData(raf, null, 255, gdrs), 0.0f);
+
+      // every other point is missing
+      byte[] bitmap = {(byte) 0xAA, (byte) 0xA0};
+      float[] expectedWithBitmap = new float[2 * values.length];
+      for (int i = 0; i < values.length; i++) {
+        expectedWithBitmap[2 * i] = values[i];
+        expectedWithBitmap[2 * i + 1] = Float.NaN;
+      }
+      reader = new Grib2DataReader(0, 2 * values.length, values.length, 0, 2 * values.length, 0, section.length);
+      Assert.assertArrayEquals("nb=" + nb, expectedWithBitmap, reader.getData(raf, bitmap, 0, gdrs), 0.0f);
+    }
+  }
+
   // Tests reading data using template 5.2
   @Test
   public void testDrs2() throws IOException {
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 1998-2021 John Caron and University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.grib.grib2;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import org.junit.Test;
+import ucar.nc2.grib.GribNumbers;
+
+/** Test Grib2PngDecoder against images written and read by ImageIO. */
+public class TestGrib2PngDecoder {
+  private static final int width = 37;
+  private static final int height = 23;
+
+  @Test
+  public void testGreyscale() throws IOException {
+    for (int bits : new int[] {1, 2, 4, 8, 16}) {
+      int dataType = (bits == 16) ? DataBuffer.TYPE_USHORT : DataBuffer.TYPE_BYTE;
+      BufferedImage image =
+          ImageTypeSpecifier.createGrayscale(bits, dataType, false).createBufferedImage(width, height);
+      int[] expected = fill(image.getRaster(), 1, bits);
+      assertThat(decode(image, bits)).isEqualTo(expected);
+    }
+  }
+
+  @Test
+  public void testRGB() throws IOException {
+    BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+    int[] samples = fill(image.getRaster(), 3, 8);
+    int[] expected = new int[width * height];
+    for (int i = 0; i < expected.length; i++)
+      expected[i] = GribNumbers.uint3(samples[3 * i], samples[3 * i + 1], samples[3 * i + 2]);
+    assertThat(decode(image, 24)).isEqualTo(expected);
+  }
+
+  @Test
+  public void testRGBA() throws IOException {
+    BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_4BYTE_ABGR);
+    int[] samples = fill(image.getRaster(), 4, 8);
+    int[] expected = new int[width * height];
+    for (int i = 0; i < expected.length; i++)
+      expected[i] = GribNumbers.int4(samples[4 * i], samples[4 * i + 1], samples[4 * i + 2], samples[4 * i + 3]);
+    assertThat(decode(image, 32)).isEqualTo(expected);
+  }
+
+  // template 7.41 with 24 bit values
+  @Test
+  public void testMRMS() throws IOException {
+    byte[] grib = Files.readAllBytes(Paths.get(TestMRMS.testfile24BitPng));
+    byte[] png = Arrays.copyOfRange(grib, indexOf(grib, new byte[] {(byte) 137, 'P', 'N', 'G'}), grib.length);
+
+    Grib2PngDecoder decoder = Grib2PngDecoder.open(png);
+    assertThat(decoder).isNotNull();
+    assertThat(decoder.getPixelSize()).isEqualTo(24);
+    int[] values = new int[(int) decoder.getNumPixels()];
+    decoder.decode(values);
+
+    WritableRaster raster = ImageIO.read(new ByteArrayInputStream(png)).getRaster();
+    int[] pixel = new int[3];
+    for (int i = 0; i < values.length; i++) {
+      raster.getPixel(i % raster.getWidth(), i / raster.getWidth(), pixel);
+      assertThat(values[i]).isEqualTo(GribNumbers.uint3(pixel[0], pixel[1], pixel[2]));
+    }
+  }
+
+  @Test
+  public void testNotHandled() throws IOException {
+    BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_INDEXED); // palette
+    assertThat(Grib2PngDecoder.open(write(image))).isNull();
+  }
+
+  @Test(expected = EOFException.class)
+  public void testTruncated() throws IOException {
+    BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_USHORT_GRAY);
+    fill(image.getRaster(), 1, 16);
+    byte[] png = write(image);
+    Grib2PngDecoder decoder = Grib2PngDecoder.open(Arrays.copyOf(png, png.length / 2));
+    decoder.decode(new int[width * height]);
+  }
+
+  // random samples, with runs of the same value so that the writer chooses different row filters
+  private static int[] fill(WritableRaster raster, int bands, int bits) {
+    Random random = new Random(bits * 31 + bands);
+    int[] samples = new int[width * height * bands];
+    for (int i = 0; i < samples.length; i++)
+      samples[i] = (i % 7 < 3 && i > 0) ? samples[i - 1] : random.nextInt(1 << bits);
+    raster.setPixels(0, 0, width, height, samples);
+    return samples;
+  }
+
+  private static int[] decode(BufferedImage image, int pixelSize) throws IOException {
+    Grib2PngDecoder decoder = Grib2PngDecoder.open(write(image));
+    assertThat(decoder).isNotNull();
+    assertThat(decoder.getPixelSize()).isEqualTo(pixelSize);
+    assertThat(decoder.getNumPixels()).isEqualTo(width * height);
+    int[] values = new int[width * height];
+    decoder.decode(values);
+    return values;
+  }
+
+  private static byte[] write(BufferedImage image) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    assertThat(ImageIO.write(image, "png", out)).isTrue();
+    return out.toByteArray();
+  }
+
+  private static int indexOf(byte[] data, byte[] want) {
+    for (int i = 0; i + want.length <= data.length; i++) {
+      if (Arrays.equals(Arrays.copyOfRange(data, i, i + want.length), want))
+        return i;
+    }
+    throw new IllegalStateException("not found");
+  }
+}
@@ -101,14 +101,14 @@ public class DConnect2 implements Closeable {
    */
   private boolean acceptCompress;
 
-  // various stuff that comes from the HTTP headers
-  private String lastModified = null;
-  private String lastExtended = null;
-  private String lastModifiedInvalid = null;
+  // various stuff that comes from the HTTP headers; volatile since requests may be made concurrently
+  private volatile String lastModified = null;
+  private volatile String lastExtended = null;
+  private volatile String lastModifiedInvalid = null;
   private boolean hasSession = true;
   protected HTTPSession _session = null;
 
-  private ServerVersion ver; // The OPeNDAP server version.
+  private volatile ServerVersion ver; // The OPeNDAP server version.
 
   private boolean debugHeaders = false;
 
@@ -3,6 +3,9 @@
  */
 package ucar.nc2.dods;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import java.nio.charset.StandardCharsets;
 import opendap.dap.*;
 import opendap.dap.parsers.ParseException;
@@ -17,11 +20,17 @@ import ucar.nc2.util.CancelTask;
 import ucar.nc2.util.rc.RC;
 import ucar.unidata.util.StringUtil2;
 import javax.annotation.concurrent.NotThreadSafe;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.channels.WritableByteChannel;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Access to DODS datasets through the Netcdf API.
@@ -128,6 +137,52 @@ public class DODSNetcdfFile extends ucar.nc2.NetcdfFile {
     preloadCoordVarSize = size;
   }
 
+  private static int maxConcurrentRequests = 4;
+  private static int batchReadSize = 8000;
+
+  /**
+   * Set the maximum number of data requests that may be in progress at once against one dataset.
+   * Requests beyond that wait for one to finish.
+   *
+   * @param n maximum number of concurrent requests for each dataset (default 4)
+   */
+  public static void setMaxConcurrentRequests(int n) {
+    if (n < 1)
+      throw new IllegalArgumentException("maxConcurrentRequests must be > 0");
+    maxConcurrentRequests = n;
+  }
+
+  /**
+   * Set the size of the section reads that may be batched. Section reads no bigger than this that are waiting for a
+   * request to the same dataset are sent to the server together, as one constraint expression with a projection for
+   * each.
+   *
+   * @param size maximum size in bytes of a batched read, 0 to turn off batching (default 8000)
+   */
+  public static void setBatchReadSize(int size) {
+    batchReadSize = size;
+  }
+
+  private static volatile Cache<String, String[]> metadataCache; // url -> { DDS, DAS }
+  private static volatile Cache<String, Array> coordinateCache; // location + "#" + variable name -> values
+
+  /**
+   * Cache the DDS and DAS of datasets, and their preloaded coordinate variables, for the given time, so that opening
+   * the same dataset again does not need to go back to the server. Turned off by default.
+   *
+   * @param ttl how long to keep the DDS, DAS and coordinate values of a dataset, or 0 for no caching.
+   * @param unit unit of ttl
+   */
+  public static synchronized void setMetadataCacheTtl(long ttl, TimeUnit unit) {
+    if (ttl <= 0) {
+      metadataCache = null;
+      coordinateCache = null;
+      return;
+    }
+    metadataCache = CacheBuilder.newBuilder().expireAfterWrite(ttl, unit).maximumSize(1000).build();
+    coordinateCache = CacheBuilder.newBuilder().expireAfterWrite(ttl, unit).maximumSize(10000).build();
+  }
+
   /**
    * Create the canonical form of the URL.
    * If the urlName starts with "http:" or "https:", change it to start with "dods:", otherwise
@@ -152,6 +207,10 @@ public class DODSNetcdfFile extends ucar.nc2.NetcdfFile {
   private DDS dds;
   private DAS das;
 
+  // data requests in progress; the small section reads that wait for one are batched
+  private final Semaphore requestPermits = new Semaphore(maxConcurrentRequests);
+  private final Deque<PendingRead> pendingReads = new ArrayDeque<>(); // guarded by itself
+
   /**
    * Open a DODS file.
    *
@@ -199,7 +258,15 @@ public class DODSNetcdfFile extends ucar.nc2.NetcdfFile {
 
     // fetch the DDS and DAS
     try {
-      dds = dodsConnection.getDDS();
+      Cache<String, String[]> mcache = metadataCache;
+      String[] cached = (mcache == null) ? null : mcache.getIfPresent(urlName);
+      if (cached != null) {
+        dds = new DDS();
+        dds.parse(new ByteArrayInputStream(cached[0].getBytes(StandardCharsets.UTF_8)));
+        dds.setURL(dodsConnection.URL());
+      } else {
+        dds = dodsConnection.getDDS();
+      }
       if (debugServerCall)
         System.out.println("DODSNetcdfFile readDDS");
       if (debugOpenResult) {
@@ -209,7 +276,15 @@ public class DODSNetcdfFile extends ucar.nc2.NetcdfFile {
       if (cancelTask != null && cancelTask.isCancel())
         return;
 
-      das = dodsConnection.getDAS();
+      if (cached != null) {
+        das = new DAS();
+        das.parse(new ByteArrayInputStream(cached[1].getBytes(StandardCharsets.UTF_8)));
+      } else {
+        das = dodsConnection.getDAS();
+        if (mcache != null) {
+          mcache.put(urlName, new String[] {printToString(dds), printToString(das)});
+        }
+      }
       if (debugServerCall)
         System.out.println("DODSNetcdfFile readDAS");
       if (debugOpenResult) {
@@ -1462,6 +1537,32 @@ public class DODSNetcdfFile extends ucar.nc2.NetcdfFile {
    * @throws opendap.dap.DAP2Exception if you have otherwise been bad
    */
   DataDDS readDataDDSfromServer(String CE) throws IOException, opendap.dap.DAP2Exception {
+    acquireRequestPermit();
+    try {
+      return readDataDDS(CE);
+    } finally {
+      requestPermits.release();
+    }
+  }
+
+  /** Send the requests for data through this connection, eg one that counts them. */
+  @VisibleForTesting
+  void setConnection(DConnect2 connection) {
+    this.dodsConnection = connection;
+  }
+
+  private void acquireRequestPermit() throws InterruptedIOException {
+    try {
+      requestPermits.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted waiting to read from " + location);
+    }
+  }
+
+  // caller must hold a request permit. Requests to one dataset do not otherwise need to be serialized,
+  // the http connections are pooled.
+  private DataDDS readDataDDS(String CE) throws IOException, opendap.dap.DAP2Exception {
     if (debugServerCall)
       System.out.println("DODSNetcdfFile.readDataDDSfromServer = <" + CE + ">");
 
@@ -1471,10 +1572,7 @@ public class DODSNetcdfFile extends ucar.nc2.NetcdfFile {
 
     if (!CE.startsWith("?"))
       CE = "?" + CE;
-    DataDDS data;
-    synchronized (this) {
-      data = dodsConnection.getData(CE, null);
-    }
+    DataDDS data = dodsConnection.getData(CE, null);
     if (debugTime)
       System.out
           .println("DODSNetcdfFile.readDataDDSfromServer took = " + (System.currentTimeMillis() - start) / 1000.0);
@@ -1504,6 +1602,19 @@ public class DODSNetcdfFile extends ucar.nc2.NetcdfFile {
     if (preloadVariables.size() == 0)
       return;
 
+    // coordinate values of this dataset that were read recently, if caching
+    Cache<String, Array> ccache = coordinateCache;
+    if (ccache != null) {
+      for (Variable var : preloadVariables) {
+        if (var.isCoordinateVariable() && !var.hasCachedData()) {
+          Array data = ccache.getIfPresent(location + "#" + var.getFullName());
+          if (data != null && Arrays.equals(data.getShape(), var.getShape())) { // the dataset may have grown
+            var.setCachedData(data.copy());
+          }
+        }
+      }
+    }
+
     // construct the list of variables, skipping ones with cached data
     List<DodsV> reqDodsVlist = new ArrayList<DodsV>();
     DodsV root;
@@ -1631,6 +1742,9 @@ public class DODSNetcdfFile extends ucar.nc2.NetcdfFile {
               System.out.println(" cache for <" + var.getFullName() + "> length =" + data.getSize());
             }
           }
+          if (ccache != null && var.isCoordinateVariable()) {
+            ccache.put(location + "#" + var.getFullName(), data.copy());
+          }
         }
       }
     }
@@ -1664,35 +1778,18 @@ public class DODSNetcdfFile extends ucar.nc2.NetcdfFile {
       makeSelector(buff, dodsSection);
     }
 
+    if (isBatchable(v, section)) {
+      return readBatched(new PendingRead(v, section, buff.toString()));
+    }
+
     Array dataArray;
     try {
       // DodsV root = DodsV.parseDDS( readDataDDSfromServer(buff.toString()));
       // data = convertD2N( (DodsV) root.children.get(0), v, section, false); // can only be one
 
       DataDDS dataDDS = readDataDDSfromServer(buff.toString());
-      DodsV root = DodsV.parseDataDDS(dataDDS);
-      DodsV want = null;
-      // Find the child node matching the requested variable
-      for (int i = 0; i < root.children.size(); i++) {
-        DodsV element = root.children.get(i);
-        if (element.getFullName().equals(v.getFullName())) {
-          want = element;
-          break;
-        }
-      }
-
-      if (want == null) {
-        throw new ParseException("Variable " + v.getFullName() + " not found in DDS.");
-      }
+      dataArray = convertData(v, section, DodsV.parseDataDDS(dataDDS));
 
-      dataArray = convertD2N.convertTopVariable(v, section.getRanges(), want);
-      // if reading from a server response, we have exactly the section of data
-      // requested. If reading from a file, we need to make sure we are only returning
-      // the section. What's not-so-good is that we've already read the entire array into
-      // memory when parsing the binary file.
-      if (location.startsWith("file:")) {
-        dataArray = dataArray.section(section.getRanges());
-      }
     } catch (DAP2Exception ex) {
       ex.printStackTrace();
       throw new IOException(ex.getMessage() + "; " + v.getShortName() + " -- " + section);
@@ -1705,6 +1802,178 @@ public class DODSNetcdfFile extends ucar.nc2.NetcdfFile {
     return dataArray;
   }
 
+  // find the requested top variable in the response and convert it
+  private Array convertData(Variable v, Section section, DodsV root)
+      throws IOException, DAP2Exception, ParseException, InvalidRangeException {
+    DodsV want = null;
+    // Find the child node matching the requested variable
+    for (int i = 0; i < root.children.size(); i++) {
+      DodsV element = root.children.get(i);
+      if (element.getFullName().equals(v.getFullName())) {
+        want = element;
+        break;
+      }
+    }
+
+    if (want == null) {
+      throw new ParseException("Variable " + v.getFullName() + " not found in DDS.");
+    }
+
+    Array dataArray = convertD2N.convertTopVariable(v, section.getRanges(), want);
+    // if reading from a server response, we have exactly the section of data
+    // requested. If reading from a file, we need to make sure we are only returning
+    // the section. What's not-so-good is that we've already read the entire array into
+    // memory when parsing the binary file.
+    if (location.startsWith("file:")) {
+      dataArray = dataArray.section(section.getRanges());
+    }
+    return dataArray;
+  }
+
+  ///////////////////////////////////////////////////////////////////
+  // batching of small section reads
+
+  private static class PendingRead {
+    final Variable v;
+    final Section section;
+    final String CE; // projection of this read
+    final CompletableFuture<Array> result = new CompletableFuture<>();
+
+    PendingRead(Variable v, Section section, String CE) {
+      this.v = v;
+      this.section = section;
+      this.CE = CE;
+    }
+  }
+
+  private boolean isBatchable(Variable v, Section section) {
+    int maxSize = batchReadSize;
+    return maxSize > 0 && !v.isVariableLength() && !v.isMemberOfStructure() && (v.getDataType() != DataType.STRUCTURE)
+        && section.computeSize() * v.getElementSize() <= maxSize;
+  }
+
+  /*
+   * Small section reads wait for a request permit in pendingReads. The thread that gets a permit sends all the reads
+   * waiting at that time in one request. So reads go out at once when a permit is free, and the ones that pile up
+   * while all permits are busy are batched.
+   */
+  private Array readBatched(PendingRead read) throws IOException, InvalidRangeException {
+    synchronized (pendingReads) {
+      pendingReads.add(read);
+    }
+
+    while (!read.result.isDone()) {
+      try {
+        acquireRequestPermit();
+      } catch (InterruptedIOException e) {
+        synchronized (pendingReads) {
+          pendingReads.remove(read);
+        }
+        throw e;
+      }
+      List<PendingRead> batch;
+      try {
+        batch = takeBatch();
+        if (!batch.isEmpty())
+          readBatch(batch);
+      } finally {
+        requestPermits.release();
+      }
+      if (batch.isEmpty())
+        break; // another thread has taken this read, wait for it below
+    }
+
+    try {
+      return read.result.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted reading " + read.v.getFullName() + " from " + location);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException)
+        throw (IOException) cause;
+      if (cause instanceof InvalidRangeException)
+        throw (InvalidRangeException) cause;
+      if (cause instanceof RuntimeException)
+        throw (RuntimeException) cause;
+      throw new IOException(cause);
+    }
+  }
+
+  // take the reads that fit in one request; each variable only once, and keep the query short (see preloadData)
+  private List<PendingRead> takeBatch() {
+    int maxQueryLength = 4096 - this.location.length();
+    List<PendingRead> batch = new ArrayList<>();
+    Set<Variable> vars = new HashSet<>();
+    int queryLength = 0;
+    synchronized (pendingReads) {
+      Iterator<PendingRead> iter = pendingReads.iterator();
+      while (iter.hasNext()) {
+        PendingRead read = iter.next();
+        int newQueryLength = queryLength + read.CE.length() + 1; // +1 for var separator
+        if (!batch.isEmpty() && newQueryLength >= maxQueryLength)
+          break;
+        if (vars.add(read.v)) {
+          iter.remove();
+          batch.add(read);
+          queryLength = newQueryLength;
+        }
+      }
+    }
+    return batch;
+  }
+
+  // caller must hold a request permit
+  private void readBatch(List<PendingRead> batch) {
+    try {
+      if (batch.size() > 1) {
+        StringBuilder CE = new StringBuilder();
+        for (PendingRead read : batch) {
+          CE.append(CE.length() == 0 ? "" : ",").append(read.CE);
+        }
+
+        DodsV root = null;
+        try {
+          root = DodsV.parseDataDDS(readDataDDS(CE.toString()));
+        } catch (Exception e) {
+          // send each read by itself below, so each gets its own result or error
+          logger.debug("batched read failed on {} CE={}", location, CE, e);
+        }
+        if (root != null) {
+          for (PendingRead read : batch) {
+            try {
+              read.result.complete(convertData(read.v, read.section, root));
+            } catch (Exception e) {
+              read.result.completeExceptionally(e instanceof IOException || e instanceof InvalidRangeException
+                  || e instanceof RuntimeException ? e : new IOException(e.getMessage(), e));
+            }
+          }
+          return;
+        }
+      }
+
+      for (PendingRead read : batch) {
+        try {
+          DataDDS dataDDS = readDataDDS(read.CE);
+          read.result.complete(convertData(read.v, read.section, DodsV.parseDataDDS(dataDDS)));
+        } catch (DAP2Exception ex) {
+          read.result.completeExceptionally(
+              new IOException(ex.getMessage() + "; " + read.v.getShortName() + " -- " + read.section));
+        } catch (ParseException ex) {
+          read.result.completeExceptionally(new IOException(ex.getMessage()));
+        } catch (IOException | InvalidRangeException | RuntimeException e) {
+          read.result.completeExceptionally(e);
+        }
+      }
+
+    } finally {
+      for (PendingRead read : batch) { // eg after an Error, dont leave anyone waiting
+        if (!read.result.isDone())
+          read.result.completeExceptionally(new IOException("Failed to read " + read.v.getFullName()));
+      }
+    }
+  }
+
   @Override
   public long readToByteChannel(ucar.nc2.Variable v, Section section, WritableByteChannel channel)
       throws java.io.IOException, ucar.ma2.InvalidRangeException {
@@ -2347,14 +2616,22 @@ public class DODSNetcdfFile extends ucar.nc2.NetcdfFile {
     super.getDetailInfo(f);
 
     f.format("DDS = %n");
+    f.format("%s%n", printToString(dds));
+
+    f.format("%nDAS = %n");
+    f.format("%s%n", printToString(das));
+  }
+
+  private static String printToString(DDS dds) {
     ByteArrayOutputStream buffOS = new ByteArrayOutputStream(8000);
     dds.print(buffOS);
-    f.format("%s%n", new String(buffOS.toByteArray(), StandardCharsets.UTF_8));
+    return new String(buffOS.toByteArray(), StandardCharsets.UTF_8);
+  }
 
-    f.format("%nDAS = %n");
-    buffOS = new ByteArrayOutputStream(8000);
+  private static String printToString(DAS das) {
+    ByteArrayOutputStream buffOS = new ByteArrayOutputStream(8000);
     das.print(buffOS);
-    f.format("%s%n", new String(buffOS.toByteArray(), StandardCharsets.UTF_8));
+    return new String(buffOS.toByteArray(), StandardCharsets.UTF_8);
   }
 
   public String getFileTypeId() {
@@ -0,0 +1,241 @@
+/*
+ * Copyright (c) 1998-2021 University Corporation for Atmospheric Research/Unidata
+ * See LICENSE for license information.
+ */
+package ucar.nc2.dods;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import opendap.dap.DAP2Exception;
+import opendap.dap.DConnect2;
+import opendap.dap.DataDDS;
+import opendap.dap.StatusUI;
+import org.junit.After;
+import org.junit.Test;
+import ucar.ma2.Array;
+import ucar.ma2.MAMath;
+import ucar.ma2.Section;
+import ucar.nc2.Variable;
+import ucar.unidata.util.test.TestDir;
+
+/** Test concurrent and batched section reads, and the metadata cache, on a local dap2 binary file */
+public class TestDODSConcurrentReads {
+
+  private static final String filename =
+      "file:" + TestDir.localTestDataDir + "cdm_read/GFS_Global_0p5deg_20201006_0600.grib2.dods";
+
+  // the sections of Temperature_surface, and lat, lon and time3
+  private static final int nreads = 3 * 8 + 3;
+
+  @After
+  public void reset() {
+    DODSNetcdfFile.setMaxConcurrentRequests(4);
+    DODSNetcdfFile.setBatchReadSize(8000);
+    DODSNetcdfFile.setMetadataCacheTtl(0, TimeUnit.SECONDS);
+    DODSNetcdfFile.setPreload(true);
+  }
+
+  @Test
+  public void testConcurrentSectionReads() throws Exception {
+    readSectionsConcurrently();
+  }
+
+  @Test
+  public void testBatchedSectionReads() throws Exception {
+    // with one request at a time, the reads that wait for it are sent together
+    DODSNetcdfFile.setMaxConcurrentRequests(1);
+    readSectionsConcurrently();
+  }
+
+  @Test
+  public void testUnbatchedSectionReads() throws Exception {
+    DODSNetcdfFile.setMaxConcurrentRequests(1);
+    DODSNetcdfFile.setBatchReadSize(0);
+    readSectionsConcurrently();
+  }
+
+  @Test
+  public void testRequestsAreBounded() throws Exception {
+    DODSNetcdfFile.setPreload(false);
+    DODSNetcdfFile.setMaxConcurrentRequests(3);
+    DODSNetcdfFile.setBatchReadSize(0);
+    CountingConnection connection = new CountingConnection();
+    readSectionsConcurrently(connection, nreads);
+
+    assertThat(connection.requests()).isEqualTo(nreads);
+    assertThat(connection.projections()).isEqualTo(nreads);
+    assertThat(connection.maxInFlight.get()).isAtMost(3);
+    assertThat(connection.maxInFlight.get()).isGreaterThan(1);
+  }
+
+  @Test
+  public void testWaitingReadsAreBatched() throws Exception {
+    DODSNetcdfFile.setPreload(false);
+    DODSNetcdfFile.setMaxConcurrentRequests(1);
+    CountingConnection connection = new CountingConnection();
+    connection.gate = new CountDownLatch(1);
+    Thread opener = new Thread(() -> {
+      try {
+        connection.started.await(10, TimeUnit.SECONDS);
+        Thread.sleep(200); // let the reads pile up behind the first request
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      connection.gate.countDown();
+    });
+    opener.start();
+    readSectionsConcurrently(connection, nreads);
+    opener.join();
+
+    // each read is sent exactly once, some of them together
+    assertThat(connection.projections()).isEqualTo(nreads);
+    assertThat(connection.requests()).isLessThan(nreads);
+    assertThat(connection.maxInFlight.get()).isEqualTo(1);
+  }
+
+  @Test
+  public void testUnbatchedRequestsAreSerialized() throws Exception {
+    DODSNetcdfFile.setPreload(false);
+    DODSNetcdfFile.setMaxConcurrentRequests(1);
+    DODSNetcdfFile.setBatchReadSize(0);
+    CountingConnection connection = new CountingConnection();
+    readSectionsConcurrently(connection, nreads);
+
+    assertThat(connection.requests()).isEqualTo(nreads);
+    assertThat(connection.maxInFlight.get()).isEqualTo(1);
+  }
+
+  private void readSectionsConcurrently() throws Exception {
+    readSectionsConcurrently(null, 8);
+  }
+
+  // if connection is not null, the concurrent reads are sent through it
+  private void readSectionsConcurrently(CountingConnection connection, int nthreads) throws Exception {
+    try (DODSNetcdfFile ncfile = new DODSNetcdfFile(filename)) {
+      Variable temperature = ncfile.findVariable("Temperature_surface");
+      assertThat(temperature.getShape()).isEqualTo(new int[] {3, 8, 15});
+      List<Variable> coords = new ArrayList<>();
+      List<Array> coordValues = new ArrayList<>();
+      for (String name : new String[] {"lat", "lon", "time3"}) {
+        Variable coord = ncfile.findVariable(name);
+        coord.setCaching(false);
+        coords.add(coord);
+        coordValues.add(coord.read());
+      }
+      temperature.setCaching(false); // else the sections are read from the cache, not the file
+      Array all = temperature.read();
+      if (connection != null) {
+        ncfile.setConnection(connection);
+      }
+
+      ExecutorService exec = Executors.newFixedThreadPool(nthreads);
+      try {
+        List<Future<Array>> futures = new ArrayList<>();
+        List<Section> sections = new ArrayList<>();
+        for (int t = 0; t < 3; t++) {
+          for (int y = 0; y < 8; y++) {
+            Section section = new Section(t + "," + y + ",0:14");
+            sections.add(section);
+            futures.add(exec.submit(() -> temperature.read(section)));
+          }
+        }
+        List<Future<Array>> coordFutures = new ArrayList<>();
+        for (Variable coord : coords) {
+          coordFutures.add(exec.submit(() -> coord.read()));
+        }
+
+        for (int i = 0; i < sections.size(); i++) {
+          Array expected = all.section(sections.get(i).getRanges());
+          assertThat(MAMath.nearlyEquals(futures.get(i).get(), expected)).isTrue();
+        }
+        for (int i = 0; i < coords.size(); i++) {
+          assertThat(MAMath.nearlyEquals(coordFutures.get(i).get(), coordValues.get(i))).isTrue();
+        }
+      } finally {
+        exec.shutdown();
+      }
+    }
+  }
+
+  /*
+   * Counts the requests for data, and the most sent at once. A file: connection ignores the constraint expression and
+   * returns the whole file, so the constraint expressions are kept to check what a server would have been sent.
+   */
+  private static class CountingConnection extends DConnect2 {
+    final List<String> constraints = Collections.synchronizedList(new ArrayList<>());
+    final AtomicInteger inFlight = new AtomicInteger();
+    final AtomicInteger maxInFlight = new AtomicInteger();
+    final CountDownLatch started = new CountDownLatch(1); // counted down by the first request
+    volatile CountDownLatch gate; // if set, the first request waits for it
+
+    CountingConnection() throws IOException {
+      super(filename);
+    }
+
+    int requests() {
+      return constraints.size();
+    }
+
+    // number of variables asked for, over all requests
+    int projections() {
+      synchronized (constraints) {
+        return constraints.stream().mapToInt(CE -> CE.split(",").length).sum();
+      }
+    }
+
+    @Override
+    public DataDDS getData(String CE, StatusUI statusUI) throws IOException, DAP2Exception {
+      boolean first = constraints.isEmpty();
+      constraints.add(CE);
+      maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+      try {
+        CountDownLatch wait = gate;
+        if (first) {
+          started.countDown();
+        }
+        if (first && wait != null) {
+          wait.await(10, TimeUnit.SECONDS);
+        } else {
+          Thread.sleep(20); // like a server, so that requests overlap
+        }
+        return super.getData(CE, statusUI);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException();
+      } finally {
+        inFlight.decrementAndGet();
+      }
+    }
+  }
+
+  @Test
+  public void testMetadataCache() throws IOException {
+    DODSNetcdfFile.setMetadataCacheTtl(1, TimeUnit.MINUTES);
+
+    String first;
+    Array time;
+    try (DODSNetcdfFile ncfile = new DODSNetcdfFile(filename)) {
+      first = ncfile.toString();
+      time = ncfile.findVariable("time3").read();
+    }
+
+    // the second open uses the cached DDS, DAS and coordinate values
+    try (DODSNetcdfFile ncfile = new DODSNetcdfFile(filename)) {
+      assertThat(ncfile.toString()).isEqualTo(first);
+      Variable timeVar = ncfile.findVariable("time3");
+      assertThat(timeVar.hasCachedData()).isTrue();
+      assertThat(MAMath.nearlyEquals(timeVar.read(), time)).isTrue();
+    }
+  }
+}